@@ -0,0 +1,100 @@
+package com.pusher.client.jdk21;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import com.pusher.client.PusherOptions;
+
+/**
+ * Runs the library on virtual threads. The event thread, the scheduler thread and the journal replay thread become
+ * virtual threads, and every listener callback and private or presence channel authorization runs in a virtual thread
+ * of its own, so a listener or authorizer that blocks on I/O doesn't hold up anything else.
+ *
+ * <pre>
+ * try (VirtualThreads virtualThreads = new VirtualThreads()) {
+ *     Pusher pusher = new Pusher(YOUR_APP_KEY, virtualThreads.apply(new PusherOptions()));
+ *     ...
+ *     pusher.disconnect();
+ * }
+ * </pre>
+ *
+ * <p>Closing waits for the listener callbacks and authorizations that have already started to finish, so that none of
+ * them outlives the scope that started them. Disconnect the {@link com.pusher.client.Pusher} first, as above: a
+ * client that is still connected once this is closed calls its listeners and authorizer on the event thread.</p>
+ *
+ * <p>The thread factory is shared by every {@link com.pusher.client.Pusher} in the JVM, as described at
+ * {@link PusherOptions#setThreadFactory(ThreadFactory)}, so the event thread is only a virtual thread if the first
+ * client to use it was created with these options.</p>
+ *
+ * <p>The websocket's reading thread is created by the websocket library and remains a platform thread.</p>
+ */
+public class VirtualThreads implements AutoCloseable {
+
+	private final ThreadFactory threadFactory;
+	private final ExecutorService executor;
+
+	public VirtualThreads() {
+		this("pusher-virtual-");
+	}
+
+	/**
+	 * @param namePrefix The prefix of the virtual threads' names, which are numbered from zero.
+	 */
+	public VirtualThreads(String namePrefix) {
+		if (namePrefix == null) {
+			throw new IllegalArgumentException("Cannot name virtual threads with a null prefix");
+		}
+		this.threadFactory = Thread.ofVirtual().name(namePrefix, 0).factory();
+		this.executor = Executors.newThreadPerTaskExecutor(threadFactory);
+	}
+
+	/**
+	 * Sets the thread factory, listener executor and authorization executor of the given options so that a
+	 * {@link com.pusher.client.Pusher} created with them runs on virtual threads.
+	 *
+	 * @return the options, for chaining
+	 */
+	public PusherOptions apply(PusherOptions options) {
+		if (options == null) {
+			throw new IllegalArgumentException("Cannot apply virtual threads to null options");
+		}
+		return options.setThreadFactory(threadFactory)
+				.setListenerExecutor(executor)
+				.setAuthorizationExecutor(executor);
+	}
+
+	/**
+	 * @return The factory for the library's own threads.
+	 */
+	public ThreadFactory getThreadFactory() {
+		return threadFactory;
+	}
+
+	/**
+	 * @return The executor that runs listener callbacks and authorizations, one virtual thread per task.
+	 */
+	public ExecutorService getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * Stops accepting listener callbacks and authorizations and waits for those already started to finish. If
+	 * interrupted while waiting, the remaining tasks are interrupted too and the thread's interrupt status is restored.
+	 * The {@link com.pusher.client.Pusher} should be disconnected first; any events it receives afterwards go to its
+	 * listeners on the event thread.
+	 */
+	@Override
+	public void close() {
+		executor.shutdown();
+		try {
+			while (!executor.awaitTermination(1, TimeUnit.DAYS)) {
+				// keep waiting
+			}
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+}
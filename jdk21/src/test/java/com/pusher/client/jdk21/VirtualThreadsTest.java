@@ -0,0 +1,64 @@
+package com.pusher.client.jdk21;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import com.pusher.client.PusherOptions;
+
+public class VirtualThreadsTest {
+
+	@Test
+	public void testApplySetsTheThreadFactoryAndExecutors() {
+		try (VirtualThreads virtualThreads = new VirtualThreads()) {
+			PusherOptions options = virtualThreads.apply(new PusherOptions());
+
+			assertSame(virtualThreads.getThreadFactory(), options.getThreadFactory());
+			assertSame(virtualThreads.getExecutor(), options.getListenerExecutor());
+			assertSame(virtualThreads.getExecutor(), options.getAuthorizationExecutor());
+		}
+	}
+
+	@Test
+	public void testTasksRunOnVirtualThreads() throws InterruptedException {
+		final AtomicBoolean virtual = new AtomicBoolean();
+		final CountDownLatch ran = new CountDownLatch(1);
+		try (VirtualThreads virtualThreads = new VirtualThreads()) {
+			virtualThreads.getExecutor().execute(() -> {
+				virtual.set(Thread.currentThread().isVirtual());
+				ran.countDown();
+			});
+			ran.await();
+		}
+		assertTrue(virtual.get());
+	}
+
+	@Test
+	public void testCloseWaitsForStartedTasks() {
+		final AtomicBoolean finished = new AtomicBoolean();
+		VirtualThreads virtualThreads = new VirtualThreads();
+		virtualThreads.getExecutor().execute(() -> {
+			try {
+				Thread.sleep(50);
+			} catch (InterruptedException e) {
+				return;
+			}
+			finished.set(true);
+		});
+		virtualThreads.close();
+
+		assertTrue(finished.get());
+		assertTrue(virtualThreads.getExecutor().isTerminated());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testApplyToNullOptionsThrowsException() {
+		try (VirtualThreads virtualThreads = new VirtualThreads()) {
+			virtualThreads.apply(null);
+		}
+	}
+}
@@ -0,0 +1,26 @@
+package com.pusher.client.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("com.pusher.client.Authorization")
+@Label("Authorization")
+@Description("A subscription to a private or presence channel was authorized")
+@Category("Pusher")
+@StackTrace(false)
+final class AuthorizationEvent extends jdk.jfr.Event {
+
+	@Label("Channel")
+	String channel;
+
+	@Label("Authorization Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long authorizationTime;
+
+	@Label("Succeeded")
+	boolean succeeded;
+}
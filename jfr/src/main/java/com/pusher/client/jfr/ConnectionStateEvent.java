@@ -0,0 +1,21 @@
+package com.pusher.client.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.pusher.client.ConnectionState")
+@Label("Connection State Change")
+@Description("The connection to Pusher moved from one state to another")
+@Category("Pusher")
+@StackTrace(false)
+final class ConnectionStateEvent extends jdk.jfr.Event {
+
+	@Label("Previous State")
+	String previous;
+
+	@Label("Current State")
+	String current;
+}
@@ -0,0 +1,169 @@
+package com.pusher.client.jfr;
+
+import java.util.concurrent.TimeUnit;
+
+import com.pusher.client.connection.ConnectionState;
+import com.pusher.client.metrics.PusherMetrics;
+
+/**
+ * A {@link PusherMetrics} that records the library's activity as Java Flight Recorder events in the
+ * <code>Pusher</code> category, and passes every measurement on to another {@link PusherMetrics}, so that it can be
+ * used alongside, for example, {@link com.pusher.client.metrics.InMemoryMetrics}. Each event is recorded on the thread
+ * that did the work, so it can be lined up with GC, CPU and lock events in the same recording.
+ *
+ * <p>The events are connection state changes, frames received and parsed, subscription round trips, authorizations,
+ * and listeners that take longer than a threshold to handle an event. The library reports times once the work is
+ * done, so the times are held in fields of the events rather than in their durations. Stack traces aren't recorded.
+ * Use {@link PusherFlightRecorder} to set it up, which does nothing where Flight Recorder isn't available.</p>
+ */
+public class FlightRecorderMetrics implements PusherMetrics {
+
+	/**
+	 * The time in milliseconds that a listener takes to handle an event before it is recorded as slow, by default.
+	 */
+	public static final long DEFAULT_SLOW_LISTENER_THRESHOLD_MILLIS = 10;
+
+	private final PusherMetrics delegate;
+	private final long slowListenerThresholdNanos;
+
+	public FlightRecorderMetrics() {
+		this(PusherMetrics.NONE, DEFAULT_SLOW_LISTENER_THRESHOLD_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @param delegate The metrics to pass every measurement on to, or {@link PusherMetrics#NONE}.
+	 * @param slowListenerThreshold How long a listener can take to handle an event before it is recorded as slow.
+	 */
+	public FlightRecorderMetrics(PusherMetrics delegate, long slowListenerThreshold, TimeUnit unit) {
+		if (delegate == null) {
+			throw new IllegalArgumentException("Cannot pass measurements on to null metrics");
+		}
+		if (slowListenerThreshold < 0 || unit == null) {
+			throw new IllegalArgumentException("The slow listener threshold must be a non-negative time with a unit");
+		}
+		this.delegate = delegate;
+		this.slowListenerThresholdNanos = unit.toNanos(slowListenerThreshold);
+	}
+
+	/**
+	 * @return The metrics that every measurement is passed on to.
+	 */
+	public PusherMetrics getDelegate() {
+		return delegate;
+	}
+
+	/**
+	 * @return How long a listener can take to handle an event before it is recorded as slow, in nanoseconds.
+	 */
+	public long getSlowListenerThresholdNanos() {
+		return slowListenerThresholdNanos;
+	}
+
+	/* PusherMetrics implementation */
+
+	@Override
+	public void frameReceived(int size) {
+		delegate.frameReceived(size);
+
+		FrameReceivedEvent event = new FrameReceivedEvent();
+		if (event.isEnabled()) {
+			event.size = size;
+			event.commit();
+		}
+	}
+
+	@Override
+	public void frameSent(int size) {
+		delegate.frameSent(size);
+	}
+
+	@Override
+	public void frameParsed(long nanos) {
+		delegate.frameParsed(nanos);
+
+		FrameParsedEvent event = new FrameParsedEvent();
+		if (event.isEnabled()) {
+			event.parseTime = nanos;
+			event.commit();
+		}
+	}
+
+	@Override
+	public void routingMissed() {
+		delegate.routingMissed();
+	}
+
+	@Override
+	public void frameQueued(int depth) {
+		delegate.frameQueued(depth);
+	}
+
+	@Override
+	public void frameDequeued(long waitNanos) {
+		delegate.frameDequeued(waitNanos);
+	}
+
+	@Override
+	public void listenerInvoked(String channelName, String eventName, long nanos) {
+		delegate.listenerInvoked(channelName, eventName, nanos);
+
+		if (nanos < slowListenerThresholdNanos) {
+			return;
+		}
+		SlowListenerEvent event = new SlowListenerEvent();
+		if (event.isEnabled()) {
+			event.channel = channelName;
+			event.event = eventName;
+			event.listenerTime = nanos;
+			event.commit();
+		}
+	}
+
+	@Override
+	public void eventDelivered(String channelName, String eventName, long receiveNanos, long parseNanos, long routeNanos,
+			long queueNanos, long listenerNanos) {
+		delegate.eventDelivered(channelName, eventName, receiveNanos, parseNanos, routeNanos, queueNanos, listenerNanos);
+	}
+
+	@Override
+	public void reconnected() {
+		delegate.reconnected();
+	}
+
+	@Override
+	public void authorized(String channelName, long nanos, boolean succeeded) {
+		delegate.authorized(channelName, nanos, succeeded);
+
+		AuthorizationEvent event = new AuthorizationEvent();
+		if (event.isEnabled()) {
+			event.channel = channelName;
+			event.authorizationTime = nanos;
+			event.succeeded = succeeded;
+			event.commit();
+		}
+	}
+
+	@Override
+	public void subscribed(String channelName, long nanos) {
+		delegate.subscribed(channelName, nanos);
+
+		SubscriptionEvent event = new SubscriptionEvent();
+		if (event.isEnabled()) {
+			event.channel = channelName;
+			event.roundTrip = nanos;
+			event.commit();
+		}
+	}
+
+	@Override
+	public void connectionStateChanged(ConnectionState previous, ConnectionState current) {
+		delegate.connectionStateChanged(previous, current);
+
+		ConnectionStateEvent event = new ConnectionStateEvent();
+		if (event.isEnabled()) {
+			event.previous = String.valueOf(previous);
+			event.current = String.valueOf(current);
+			event.commit();
+		}
+	}
+}
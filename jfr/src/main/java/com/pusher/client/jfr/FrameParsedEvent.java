@@ -0,0 +1,20 @@
+package com.pusher.client.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("com.pusher.client.FrameParsed")
+@Label("Frame Parsed")
+@Description("A received frame was parsed to find its event name")
+@Category("Pusher")
+@StackTrace(false)
+final class FrameParsedEvent extends jdk.jfr.Event {
+
+	@Label("Parse Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long parseTime;
+}
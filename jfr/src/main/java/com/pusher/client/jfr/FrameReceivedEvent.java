@@ -0,0 +1,21 @@
+package com.pusher.client.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.pusher.client.FrameReceived")
+@Label("Frame Received")
+@Description("A frame arrived from Pusher")
+@Category("Pusher")
+@StackTrace(false)
+final class FrameReceivedEvent extends jdk.jfr.Event {
+
+	@Label("Size")
+	@Description("The size of the frame in characters, which is its size in bytes when it is ASCII")
+	@DataAmount
+	int size;
+}
@@ -0,0 +1,64 @@
+package com.pusher.client.jfr;
+
+import java.util.concurrent.TimeUnit;
+
+import com.pusher.client.PusherOptions;
+
+/**
+ * Sets up a {@link com.pusher.client.Pusher} to record its activity as Java Flight Recorder events, as described by
+ * {@link FlightRecorderMetrics}.
+ *
+ * <pre>
+ * Pusher pusher = new Pusher(YOUR_APP_KEY, PusherFlightRecorder.apply(new PusherOptions()));
+ * </pre>
+ *
+ * <p>The events are recorded whenever a recording is running, for example one started with
+ * <code>-XX:StartFlightRecording</code> or from JDK Mission Control. On a JVM without Flight Recorder the options
+ * are left as they are, so the same code runs there without recording anything.</p>
+ */
+public final class PusherFlightRecorder {
+
+	private PusherFlightRecorder() {
+	}
+
+	/**
+	 * Records events, with listeners that take longer than
+	 * {@link FlightRecorderMetrics#DEFAULT_SLOW_LISTENER_THRESHOLD_MILLIS} recorded as slow.
+	 *
+	 * @return the options, for chaining
+	 */
+	public static PusherOptions apply(PusherOptions options) {
+		return apply(options, FlightRecorderMetrics.DEFAULT_SLOW_LISTENER_THRESHOLD_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Sets the metrics of the given options to a {@link FlightRecorderMetrics} that passes measurements on to the
+	 * metrics they already have, if Flight Recorder is available and the options don't record events already.
+	 *
+	 * @param slowListenerThreshold How long a listener can take to handle an event before it is recorded as slow.
+	 * @return the options, for chaining
+	 */
+	public static PusherOptions apply(PusherOptions options, long slowListenerThreshold, TimeUnit unit) {
+		if (options == null) {
+			throw new IllegalArgumentException("Cannot record events for null options");
+		}
+		if (isAvailable() && !(options.getMetrics() instanceof FlightRecorderMetrics)) {
+			options.setMetrics(new FlightRecorderMetrics(options.getMetrics(), slowListenerThreshold, unit));
+		}
+		return options;
+	}
+
+	/**
+	 * @return true if this JVM has Flight Recorder, which some runtimes, such as those built without the
+	 * <code>jdk.jfr</code> module, don't.
+	 */
+	public static boolean isAvailable() {
+		// looked up reflectively so that this class loads even where the jdk.jfr module is missing
+		try {
+			Class<?> flightRecorder = Class.forName("jdk.jfr.FlightRecorder");
+			return (Boolean) flightRecorder.getMethod("isAvailable").invoke(null);
+		} catch (Exception | LinkageError e) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,26 @@
+package com.pusher.client.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("com.pusher.client.SlowListener")
+@Label("Slow Listener")
+@Description("A listener took longer than the threshold to handle an event")
+@Category("Pusher")
+@StackTrace(false)
+final class SlowListenerEvent extends jdk.jfr.Event {
+
+	@Label("Channel")
+	String channel;
+
+	@Label("Event")
+	String event;
+
+	@Label("Listener Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long listenerTime;
+}
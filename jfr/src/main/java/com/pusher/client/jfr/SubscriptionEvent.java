@@ -0,0 +1,24 @@
+package com.pusher.client.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("com.pusher.client.Subscription")
+@Label("Subscription")
+@Description("Pusher confirmed a subscription to a channel")
+@Category("Pusher")
+@StackTrace(false)
+final class SubscriptionEvent extends jdk.jfr.Event {
+
+	@Label("Channel")
+	String channel;
+
+	@Label("Round Trip")
+	@Description("From the subscribe message being sent to the confirmation arriving")
+	@Timespan(Timespan.NANOSECONDS)
+	long roundTrip;
+}
@@ -0,0 +1,127 @@
+package com.pusher.client.jfr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.pusher.client.PusherOptions;
+import com.pusher.client.connection.ConnectionState;
+import com.pusher.client.metrics.InMemoryMetrics;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class FlightRecorderMetricsTest {
+
+	@Test
+	public void testOnlyListenersAtOrOverTheThresholdAreRecordedAsSlow() throws IOException {
+		FlightRecorderMetrics metrics = new FlightRecorderMetrics(new InMemoryMetrics(), 1, TimeUnit.MILLISECONDS);
+
+		List<RecordedEvent> events = record("com.pusher.client.SlowListener", () -> {
+			metrics.listenerInvoked("my-channel", "fast", 999_999);
+			metrics.listenerInvoked("my-channel", "slow", 2_000_000);
+		});
+
+		assertEquals(1, events.size());
+		assertEquals("my-channel", events.get(0).getString("channel"));
+		assertEquals("slow", events.get(0).getString("event"));
+		assertEquals(2_000_000, events.get(0).getLong("listenerTime"));
+	}
+
+	@Test
+	public void testConnectionStateChangesAreRecorded() throws IOException {
+		FlightRecorderMetrics metrics = new FlightRecorderMetrics();
+
+		List<RecordedEvent> events = record("com.pusher.client.ConnectionState", () -> {
+			metrics.connectionStateChanged(ConnectionState.DISCONNECTED, ConnectionState.CONNECTING);
+		});
+
+		assertEquals(1, events.size());
+		assertEquals("DISCONNECTED", events.get(0).getString("previous"));
+		assertEquals("CONNECTING", events.get(0).getString("current"));
+	}
+
+	@Test
+	public void testSubscriptionsAndAuthorizationsAreRecorded() throws IOException {
+		FlightRecorderMetrics metrics = new FlightRecorderMetrics();
+
+		List<RecordedEvent> subscriptions = record("com.pusher.client.Subscription", () -> {
+			metrics.subscribed("private-channel", 5000);
+		});
+		List<RecordedEvent> authorizations = record("com.pusher.client.Authorization", () -> {
+			metrics.authorized("private-channel", 3000, false);
+		});
+
+		assertEquals(5000, subscriptions.get(0).getLong("roundTrip"));
+		assertEquals("private-channel", authorizations.get(0).getString("channel"));
+		assertEquals(false, authorizations.get(0).getBoolean("succeeded"));
+	}
+
+	@Test
+	public void testMeasurementsArePassedOnToTheDelegate() {
+		InMemoryMetrics delegate = new InMemoryMetrics();
+		FlightRecorderMetrics metrics = new FlightRecorderMetrics(delegate, 1, TimeUnit.MILLISECONDS);
+		metrics.frameReceived(10);
+		metrics.frameParsed(100);
+		metrics.listenerInvoked("my-channel", "my-event", 5);
+		metrics.eventDelivered("my-channel", "my-event", 1, 1, 1, 1, 5);
+
+		assertEquals(10, delegate.getBytesReceived());
+		assertEquals(1, delegate.getParseTime().getCount());
+		assertEquals(1, delegate.getListenerTime().getCount());
+		assertEquals(1, delegate.getChannelLatency("my-channel").getCount());
+	}
+
+	@Test
+	public void testApplyWrapsTheExistingMetricsOnce() {
+		InMemoryMetrics existing = new InMemoryMetrics();
+		PusherOptions options = new PusherOptions().setMetrics(existing);
+		PusherFlightRecorder.apply(options);
+		PusherFlightRecorder.apply(options);
+
+		assertTrue(PusherFlightRecorder.isAvailable());
+		assertSame(existing, ((FlightRecorderMetrics) options.getMetrics()).getDelegate());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testApplyToNullOptionsThrowsException() {
+		PusherFlightRecorder.apply(null);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeThresholdThrowsException() {
+		new FlightRecorderMetrics(new InMemoryMetrics(), -1, TimeUnit.MILLISECONDS);
+	}
+
+	private static List<RecordedEvent> record(String eventName, Runnable activity) throws IOException {
+
+		Path file = Files.createTempFile("pusher", ".jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable(eventName);
+			recording.start();
+			activity.run();
+			recording.stop();
+			recording.dump(file);
+
+			List<RecordedEvent> events = new ArrayList<>();
+			for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+				if (event.getEventType().getName().equals(eventName)) {
+					events.add(event);
+				}
+			}
+			return events;
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+}
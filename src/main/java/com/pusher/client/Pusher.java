@@ -1,18 +1,32 @@
 package com.pusher.client;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import com.pusher.client.channel.BulkSubscription;
 import com.pusher.client.channel.Channel;
 import com.pusher.client.channel.ChannelEventListener;
+import com.pusher.client.channel.ChannelHandle;
 import com.pusher.client.channel.PresenceChannel;
 import com.pusher.client.channel.PresenceChannelEventListener;
 import com.pusher.client.channel.PrivateChannel;
 import com.pusher.client.channel.PrivateChannelEventListener;
+import com.pusher.client.channel.SubscriptionEventListener;
+import com.pusher.client.channel.SubscriptionStats;
 import com.pusher.client.channel.impl.ChannelManager;
 import com.pusher.client.channel.impl.InternalChannel;
 import com.pusher.client.channel.impl.PresenceChannelImpl;
 import com.pusher.client.channel.impl.PrivateChannelImpl;
+import com.pusher.client.channel.impl.SubscriptionFuture;
+import com.pusher.client.connection.ArrivalStats;
 import com.pusher.client.connection.Connection;
 import com.pusher.client.connection.ConnectionEventListener;
 import com.pusher.client.connection.ConnectionState;
+import com.pusher.client.connection.InboundQueueStats;
+import com.pusher.client.connection.impl.ConnectionStateFuture;
 import com.pusher.client.connection.impl.InternalConnection;
 import com.pusher.client.util.Factory;
 
@@ -30,6 +44,7 @@ public class Pusher {
 	private final PusherOptions pusherOptions;
 	private final InternalConnection connection;
 	private final ChannelManager channelManager;
+	private final List<InternalConnection> standbyConnections = new ArrayList<InternalConnection>();
 
 	/**
 	 * <p>
@@ -73,9 +88,22 @@ public class Pusher {
 		}
 
 		this.pusherOptions = pusherOptions;
-		this.connection = Factory.getConnection(apiKey, this.pusherOptions.isEncrypted());
+		if (pusherOptions.getThreadFactory() != null) {
+			Factory.setThreadFactory(pusherOptions.getThreadFactory());
+		}
+		this.connection = Factory.getConnection(apiKey, this.pusherOptions);
 		this.channelManager = Factory.getChannelManager();
 		this.channelManager.setConnection(this.connection);
+		this.channelManager.setPusherOptions(this.pusherOptions);
+
+		if (pusherOptions.getJournalReplayDirectory() == null) {
+			for (int i = 0; i < pusherOptions.getStandbyConnections(); i++) {
+				standbyConnections.add(Factory.newStandbyConnection(apiKey, this.pusherOptions));
+			}
+		}
+		if (!standbyConnections.isEmpty()) {
+			this.channelManager.setStandbyConnections(standbyConnections);
+		}
 	}
 
 	/* Connection methods */
@@ -89,6 +117,16 @@ public class Pusher {
 		return connection;
 	}
 
+	/**
+	 * Gets the standby connections opened alongside the primary connection, as configured with {@link PusherOptions#setStandbyConnections(int)}.
+	 * Bind to these to be told when a standby connects, disconnects or reports an error.
+	 * 
+	 * @return The standby connections, which is an empty list if none have been configured.
+	 */
+	public List<Connection> getStandbyConnections() {
+		return Collections.<Connection>unmodifiableList(standbyConnections);
+	}
+
 	/**
 	 * Connects to Pusher. Any {@link ConnectionEventListener}s that have already been registered using
 	 * the {@link Connection#bind(ConnectionState, ConnectionEventListener)} method will receive connection events.
@@ -125,6 +163,28 @@ public class Pusher {
 		}
 
 		connection.connect();
+		connectStandbys();
+	}
+
+	/**
+	 * Connects to Pusher and returns a {@link Future} that completes when the connection reaches {@link ConnectionState#CONNECTED}.
+	 * 
+	 * <p>If the connection is already established the returned {@link Future} is already complete. If the connection attempt fails and the connection
+	 * returns to {@link ConnectionState#DISCONNECTED}, {@link Future#get()} throws an {@link java.util.concurrent.ExecutionException}. Use
+	 * {@link Future#get(long, java.util.concurrent.TimeUnit)} to bound how long to wait for the connection.</p>
+	 * 
+	 * @return A {@link Future} that completes with the {@link Connection} once it is connected.
+	 */
+	public Future<Connection> connectAsync() {
+
+		ConnectionStateFuture future = new ConnectionStateFuture(connection, ConnectionState.CONNECTED);
+		if (connection.getState() == ConnectionState.DISCONNECTING) {
+			future.setException(new IllegalStateException("Cannot connect while the connection is disconnecting"));
+		} else {
+			connection.connect();
+			connectStandbys();
+		}
+		return future;
 	}
 
 	/**
@@ -136,6 +196,30 @@ public class Pusher {
 		if (connection.getState() == ConnectionState.CONNECTED) {
 			connection.disconnect();
 		}
+		for (InternalConnection standby : standbyConnections) {
+			if (standby.getState() == ConnectionState.CONNECTED) {
+				standby.disconnect();
+			}
+		}
+	}
+
+	/**
+	 * Disconnects from Pusher and returns a {@link Future} that completes when the connection reaches {@link ConnectionState#DISCONNECTED}.
+	 * 
+	 * <p>If the connection is already disconnected the returned {@link Future} is already complete. If the connection is still being established
+	 * the returned {@link Future} fails with an {@link IllegalStateException}, in the same way that {@link #disconnect()} is ignored in that state.</p>
+	 * 
+	 * @return A {@link Future} that completes with the {@link Connection} once it is disconnected.
+	 */
+	public Future<Connection> disconnectAsync() {
+
+		ConnectionStateFuture future = new ConnectionStateFuture(connection, ConnectionState.DISCONNECTED);
+		if (connection.getState() == ConnectionState.CONNECTING) {
+			future.setException(new IllegalStateException("Cannot disconnect while the connection is connecting"));
+		} else {
+			disconnect();
+		}
+		return future;
 	}
 
 	/* Subscription methods */
@@ -174,6 +258,59 @@ public class Pusher {
 		return channel;
 	}
 
+	/**
+	 * Subscribes to a public {@link Channel} and returns a {@link Future} that completes when the subscription succeeds.
+	 * 
+	 * <p>This is equivalent to calling {@link #subscribe(String, ChannelEventListener, String...)} and waiting for
+	 * {@link ChannelEventListener#onSubscriptionSucceeded(String)}, without having to implement the callback. If the subscription fails, or the
+	 * channel is unsubscribed before the subscription succeeds, {@link Future#get()} throws an {@link java.util.concurrent.ExecutionException}.</p>
+	 * 
+	 * @param channelName The name of the {@link Channel} to subscribe to.
+	 * @param listener A {@link ChannelEventListener} to receive events. This can be null.
+	 * @param eventNames An optional list of event names to bind your {@link ChannelEventListener} to before subscribing.
+	 * @return A {@link Future} that completes with the {@link Channel} once it is subscribed.
+	 * @throws IllegalArgumentException For the same reasons as {@link #subscribe(String, ChannelEventListener, String...)}.
+	 */
+	public Future<Channel> subscribeAsync(String channelName, ChannelEventListener listener, String... eventNames) {
+
+		InternalChannel channel = Factory.newPublicChannel(channelName);
+		return subscribeAsync(channel, (Channel) channel, listener, eventNames);
+	}
+
+	/**
+	 * Subscribes to a group of public {@link Channel}s in a single call, optionally binding a {@link ChannelEventListener} to the specified events on every channel.
+	 * 
+	 * <p>All of the channel names are validated before any channel is subscribed, so if an exception is thrown none of the channels will have been subscribed.
+	 * The subscribe messages are sent to Pusher together rather than being queued one channel at a time, which makes this considerably cheaper than
+	 * calling {@link #subscribe(String, ChannelEventListener, String...)} for each channel when subscribing to a large number of channels.</p>
+	 * 
+	 * @param channelNames The names of the {@link Channel}s to subscribe to.
+	 * @param listener A {@link ChannelEventListener} to receive events from every channel. This can be null if you don't want to bind a listener at subscription time.
+	 * @param eventNames An optional list of event names to bind your {@link ChannelEventListener} to on every channel before subscribing.
+	 * @return A {@link BulkSubscription} that gives access to the {@link Channel} objects and completes once every channel has been successfully subscribed.
+	 * @throws IllegalArgumentException If any of the following are true:
+	 *             <ul>
+	 *             <li>The collection of channel names is null or contains a null name.</li>
+	 *             <li>A channel name appears more than once, or you are already subscribed to one of the channels.</li>
+	 *             <li>A channel name starts with "private-" or "presence-".</li>
+	 *             <li>At least one of the specified event names is null.</li>
+	 *             <li>You have specified at least one event name and your {@link ChannelEventListener} is null.</li>
+	 *             </ul>
+	 */
+	public BulkSubscription subscribeAll(Collection<String> channelNames, ChannelEventListener listener, String... eventNames) {
+
+		if (channelNames == null) {
+			throw new IllegalArgumentException("Cannot subscribe to a null collection of channels");
+		}
+
+		List<InternalChannel> channels = new ArrayList<InternalChannel>(channelNames.size());
+		for (String channelName : channelNames) {
+			channels.add(Factory.newPublicChannel(channelName));
+		}
+
+		return channelManager.subscribeToAll(channels, listener, eventNames);
+	}
+
 	/**
 	 * Subscribes to a {@link com.pusher.client.channel.PrivateChannel} which requires authentication.
 	 * 
@@ -234,6 +371,42 @@ public class Pusher {
 		return channel;
 	}
 
+	/**
+	 * Subscribes to a {@link com.pusher.client.channel.PrivateChannel} and returns a {@link Future} that completes when the subscription succeeds.
+	 * If authentication fails {@link Future#get()} throws an {@link java.util.concurrent.ExecutionException}.
+	 * 
+	 * @param channelName The name of the channel to subscribe to.
+	 * @param listener A listener to be informed of both Pusher channel protocol events and subscription data events. This can be null.
+	 * @param eventNames An optional list of names of events to be bound to on the channel.
+	 * @return A {@link Future} that completes with the {@link com.pusher.client.channel.PrivateChannel} once it is subscribed.
+	 * @throws IllegalStateException if a {@link com.pusher.client.Authorizer} has not been set for the {@link Pusher} instance via {@link #Pusher(String, PusherOptions)}.
+	 */
+	public Future<PrivateChannel> subscribePrivateAsync(String channelName, PrivateChannelEventListener listener, String... eventNames) {
+
+		throwExceptionIfNoAuthorizerHasBeenSet();
+
+		PrivateChannelImpl channel = Factory.newPrivateChannel(connection, channelName, pusherOptions.getAuthorizer());
+		return subscribeAsync(channel, (PrivateChannel) channel, listener, eventNames);
+	}
+
+	/**
+	 * Subscribes to a {@link com.pusher.client.channel.PresenceChannel} and returns a {@link Future} that completes when the subscription succeeds.
+	 * If authentication fails {@link Future#get()} throws an {@link java.util.concurrent.ExecutionException}.
+	 * 
+	 * @param channelName The name of the channel to subscribe to.
+	 * @param listener A listener to be informed of Pusher channel protocol, including presence-specific events, and subscription data events. This can be null.
+	 * @param eventNames An optional list of names of events to be bound to on the channel.
+	 * @return A {@link Future} that completes with the {@link com.pusher.client.channel.PresenceChannel} once it is subscribed.
+	 * @throws IllegalStateException if a {@link com.pusher.client.Authorizer} has not been set for the {@link Pusher} instance via {@link #Pusher(String, PusherOptions)}.
+	 */
+	public Future<PresenceChannel> subscribePresenceAsync(String channelName, PresenceChannelEventListener listener, String... eventNames) {
+
+		throwExceptionIfNoAuthorizerHasBeenSet();
+
+		PresenceChannelImpl channel = Factory.newPresenceChannel(connection, channelName, pusherOptions.getAuthorizer());
+		return subscribeAsync(channel, (PresenceChannel) channel, listener, eventNames);
+	}
+
 	/**
 	 * Unsubscribes from a channel using via the name of the channel.
 	 * @param channelName the name of the channel to be unsubscribed from.
@@ -249,8 +422,145 @@ public class Pusher {
 		channelManager.unsubscribeFrom(channelName);
 	}
 
+	/**
+	 * Unsubscribes from a group of channels in a single call. The unsubscribe messages are sent to Pusher together.
+	 * @param channelNames the names of the channels to be unsubscribed from.
+	 * 
+	 * @throws IllegalArgumentException if the collection is null or you are not subscribed to one of the channels. In this case none of the channels are unsubscribed.
+	 * @throws IllegalStateException if {@link Pusher.getConnection().getState()} is not {@link com.pusher.client.connection.ConnectionState.CONNECTED CONNECTED}
+	 */
+	public void unsubscribeAll(Collection<String> channelNames) {
+
+		if (connection.getState() != ConnectionState.CONNECTED) {
+			throw new IllegalStateException("Cannot unsubscribe from channels " + channelNames + " while not connected");
+		}
+
+		channelManager.unsubscribeFromAll(channelNames);
+	}
+
+	/**
+	 * Binds a {@link SubscriptionEventListener} to events across channels by name pattern. A pattern is a name, a prefix
+	 * followed by <code>*</code>, or <code>*</code> on its own to match every name, so for example:
+	 * <ul>
+	 *  <li><code>bind("my-channel", "*", listener)</code> receives every event on <code>my-channel</code>.</li>
+	 *  <li><code>bind("*", "my-event", listener)</code> receives <code>my-event</code> on every channel.</li>
+	 *  <li><code>bind("ticker-*", "trade", listener)</code> receives <code>trade</code> on every channel whose name starts with <code>ticker-</code>.</li>
+	 * </ul>
+	 * 
+	 * <p>The binding applies to channels that are subscribed to now and later, and lasts until it is unbound. The
+	 * listener is called on the event thread after the channel's own listeners. A listener whose bindings match an
+	 * event more than once receives it once.</p>
+	 * 
+	 * @param channelPattern The pattern that channel names must match.
+	 * @param eventPattern The pattern that event names must match.
+	 * @param listener A listener to receive the matching events.
+	 * @throws IllegalArgumentException if a pattern or the listener is null, a pattern has a <code>*</code> other than at the end, or the event pattern names an internal event.
+	 */
+	public void bind(String channelPattern, String eventPattern, SubscriptionEventListener listener) {
+		channelManager.bind(channelPattern, eventPattern, listener);
+	}
+
+	/**
+	 * Unbinds a listener that was bound with {@link #bind(String, String, SubscriptionEventListener)} with the same patterns.
+	 * 
+	 * @throws IllegalArgumentException if a pattern or the listener is null, or a pattern is not valid.
+	 */
+	public void unbind(String channelPattern, String eventPattern, SubscriptionEventListener listener) {
+		channelManager.unbind(channelPattern, eventPattern, listener);
+	}
+
+	/**
+	 * Binds a {@link SubscriptionEventListener} to every event on every subscribed channel, including events whose names
+	 * aren't known in advance. Internal <code>pusher_internal:</code> events are not included.
+	 * 
+	 * <p>The listener is called once per event, on the event thread after the channel's own listeners, even when
+	 * standby connections deliver the event more than once. When no global listener is bound this costs nothing per
+	 * event.</p>
+	 * 
+	 * @param listener A listener to receive every event.
+	 * @throws IllegalArgumentException if the listener is null.
+	 */
+	public void bindGlobal(SubscriptionEventListener listener) {
+		channelManager.bindGlobal(listener);
+	}
+
+	/**
+	 * Unbinds a listener that was bound with {@link #bindGlobal(SubscriptionEventListener)}.
+	 * 
+	 * @throws IllegalArgumentException if the listener is null.
+	 */
+	public void unbindGlobal(SubscriptionEventListener listener) {
+		channelManager.unbindGlobal(listener);
+	}
+
+	/**
+	 * Acquires a shared reference to a public {@link Channel}. Use this instead of {@link #subscribe(String)} when several
+	 * independent parts of an application are interested in the same channel.
+	 * 
+	 * <p>The first call for a channel subscribes to it and every later call shares that subscription. Once every
+	 * {@link ChannelHandle} for the channel has been released the channel is unsubscribed from, after the grace period
+	 * set with {@link PusherOptions#setSharedChannelLinger(long)}.</p>
+	 * 
+	 * @param channelName The name of the {@link Channel} to acquire.
+	 * @return A {@link ChannelHandle} that must be released when it is no longer needed.
+	 * @throws IllegalArgumentException if the channel has already been subscribed to with {@link #subscribe(String)} or one of its variants.
+	 */
+	public ChannelHandle acquire(String channelName) {
+		return channelManager.acquire(channelName);
+	}
+
+	/**
+	 * Gets a snapshot of the state of all current subscriptions, including how many subscription attempts have
+	 * timed out, been retried or failed since this instance was created.
+	 * 
+	 * @see PusherOptions#setSubscriptionTimeout(long)
+	 */
+	public SubscriptionStats getSubscriptionStats() {
+		return channelManager.getSubscriptionStats();
+	}
+
+	/**
+	 * Gets how each connection has performed when standby connections are in use: how often it delivered an event first, and how far
+	 * its copies of the events delivered by other connections trailed behind.
+	 * 
+	 * @return One entry per connection, starting with the primary connection, or an empty list if there are no standby connections.
+	 * @see PusherOptions#setStandbyConnections(int)
+	 */
+	public List<ArrivalStats> getArrivalStats() {
+		return channelManager.getArrivalStats();
+	}
+
+	/**
+	 * Gets a snapshot of the queue of frames that have been received on the primary connection and are waiting to be handled,
+	 * including how many frames have been dropped or have made the connection wait because the queue was full.
+	 * 
+	 * @see PusherOptions#setInboundQueueLimit(int, long)
+	 */
+	public InboundQueueStats getInboundQueueStats() {
+		return connection.getInboundQueueStats();
+	}
+
 	/* implementation detail */
 
+	private void connectStandbys() {
+		for (InternalConnection standby : standbyConnections) {
+			standby.connect();
+		}
+	}
+
+	private <C extends Channel> Future<C> subscribeAsync(InternalChannel channel, C publicChannel, ChannelEventListener listener, String... eventNames) {
+
+		// the future observes the channel before the subscribe message can be sent so that the acknowledgement cannot be missed
+		SubscriptionFuture<C> future = new SubscriptionFuture<C>(channel, publicChannel);
+		try {
+			channelManager.subscribeTo(channel, listener, eventNames);
+		} catch (RuntimeException e) {
+			channel.removeStateObserver(future);
+			throw e;
+		}
+		return future;
+	}
+
 	private void throwExceptionIfNoAuthorizerHasBeenSet() {
 		if (pusherOptions.getAuthorizer() == null) {
 			throw new IllegalStateException("Cannot subscribe to a private or presence channel because no Authorizer has been set. Call PusherOptions.setAuthorizer() before connecting to Pusher");
@@ -1,5 +1,13 @@
 package com.pusher.client;
 
+import java.io.File;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+
+import com.pusher.client.connection.InboundOverflowPolicy;
+import com.pusher.client.journal.JournalWriter;
+import com.pusher.client.metrics.PusherMetrics;
+
 /**
  * Options to be used with a {@link com.pusher.client.Pusher} instance. 
  */
@@ -7,6 +15,26 @@ public class PusherOptions {
 
 		private boolean encrypted = false;
     private Authorizer authorizer;
+    private long subscriptionTimeoutMillis = 30000;
+    private int maxSubscriptionRetries = 3;
+    private long subscriptionRetryDelayMillis = 1000;
+    private long sharedChannelLingerMillis = 0;
+    private int eventHistoryMaxEvents = 0;
+    private long eventHistoryMaxBytes = 0;
+    private File journalRecordingDirectory;
+    private int journalSegmentSize = JournalWriter.DEFAULT_SEGMENT_SIZE;
+    private File journalReplayDirectory;
+    private boolean journalReplayTimingPreserved;
+    private int standbyConnections = 0;
+    private int deduplicationWindow = 4096;
+    private int inboundQueueMaxFrames;
+    private long inboundQueueMaxBytes;
+    private InboundOverflowPolicy inboundOverflowPolicy = InboundOverflowPolicy.BLOCK;
+    private boolean inlineDispatch = false;
+    private ThreadFactory threadFactory;
+    private Executor listenerExecutor;
+    private Executor authorizationExecutor;
+    private PusherMetrics metrics = PusherMetrics.NONE;
     
     /**
      * Gets whether an encrypted (SSL) connection should be used when connecting to Pusher.
@@ -43,4 +71,439 @@ public class PusherOptions {
     	this.authorizer = authorizer;
     	return this;
     }
+
+    /**
+     * Gets how long to wait for Pusher to acknowledge a subscription before the subscription is considered to have timed out.
+     * @return the timeout in milliseconds, or 0 if subscriptions never time out.
+     */
+    public long getSubscriptionTimeout() {
+    	return subscriptionTimeoutMillis;
+    }
+
+    /**
+     * Sets how long to wait for Pusher to acknowledge a subscription. If the acknowledgement has not been received within this time
+     * the channel moves to {@link com.pusher.client.channel.ChannelState#SUBSCRIBE_TIMED_OUT} and the subscription is retried.
+     * The default is 30 seconds.
+     * @param timeoutMillis The timeout in milliseconds. 0 disables subscription timeouts.
+     * @return this, for chaining
+     */
+    public PusherOptions setSubscriptionTimeout(long timeoutMillis) {
+    	if (timeoutMillis < 0) {
+    		throw new IllegalArgumentException("Subscription timeout cannot be negative");
+    	}
+    	this.subscriptionTimeoutMillis = timeoutMillis;
+    	return this;
+    }
+
+    /**
+     * Gets the number of times a timed out subscription is retried before the channel is moved to {@link com.pusher.client.channel.ChannelState#FAILED}.
+     * @return the maximum number of retries.
+     */
+    public int getMaxSubscriptionRetries() {
+    	return maxSubscriptionRetries;
+    }
+
+    /**
+     * Sets the number of times a timed out subscription is retried before the channel is moved to {@link com.pusher.client.channel.ChannelState#FAILED}.
+     * The default is 3.
+     * @param maxRetries The maximum number of retries. 0 means a subscription fails on its first timeout.
+     * @return this, for chaining
+     */
+    public PusherOptions setMaxSubscriptionRetries(int maxRetries) {
+    	if (maxRetries < 0) {
+    		throw new IllegalArgumentException("Maximum subscription retries cannot be negative");
+    	}
+    	this.maxSubscriptionRetries = maxRetries;
+    	return this;
+    }
+
+    /**
+     * Gets the delay before the first retry of a timed out subscription.
+     * @return the delay in milliseconds.
+     */
+    public long getSubscriptionRetryDelay() {
+    	return subscriptionRetryDelayMillis;
+    }
+
+    /**
+     * Sets the delay before the first retry of a timed out subscription. The delay doubles for every subsequent retry of the same subscription,
+     * up to a maximum of one minute. The default is 1 second.
+     * @param delayMillis The delay in milliseconds.
+     * @return this, for chaining
+     */
+    public PusherOptions setSubscriptionRetryDelay(long delayMillis) {
+    	if (delayMillis < 0) {
+    		throw new IllegalArgumentException("Subscription retry delay cannot be negative");
+    	}
+    	this.subscriptionRetryDelayMillis = delayMillis;
+    	return this;
+    }
+
+    /**
+     * Gets how long a shared channel stays subscribed after its last {@link com.pusher.client.channel.ChannelHandle} has been released.
+     * @return the linger period in milliseconds.
+     */
+    public long getSharedChannelLinger() {
+    	return sharedChannelLingerMillis;
+    }
+
+    /**
+     * Sets how long a shared channel stays subscribed after its last {@link com.pusher.client.channel.ChannelHandle} has been released.
+     * If the channel is acquired again within this period the existing subscription is reused. The default is 0, which unsubscribes
+     * as soon as the last handle is released.
+     * @param lingerMillis The linger period in milliseconds.
+     * @return this, for chaining
+     */
+    public PusherOptions setSharedChannelLinger(long lingerMillis) {
+    	if (lingerMillis < 0) {
+    		throw new IllegalArgumentException("Shared channel linger cannot be negative");
+    	}
+    	this.sharedChannelLingerMillis = lingerMillis;
+    	return this;
+    }
+
+    /**
+     * @return true if channels retain recent events for replay.
+     */
+    public boolean isEventHistoryEnabled() {
+    	return eventHistoryMaxEvents > 0 || eventHistoryMaxBytes > 0;
+    }
+
+    /**
+     * Gets the maximum number of events that each channel retains for replay.
+     * @return the number of events, or 0 if the history is not limited by count.
+     */
+    public int getEventHistoryMaxEvents() {
+    	return eventHistoryMaxEvents;
+    }
+
+    /**
+     * Gets the maximum approximate size of the events that each channel retains for replay.
+     * @return the size in bytes, or 0 if the history is not limited by size.
+     */
+    public long getEventHistoryMaxBytes() {
+    	return eventHistoryMaxBytes;
+    }
+
+    /**
+     * Makes each channel that is subscribed to after this call retain its most recent events, so that listeners bound
+     * with {@link com.pusher.client.channel.BindOptions#setReplay(int)} can receive events that arrived before they were bound.
+     * The oldest events are discarded as soon as either limit would be exceeded. Event history is disabled by default.
+     * @param maxEvents The maximum number of events to retain per channel, or 0 to limit by size only.
+     * @param maxBytes The maximum approximate size in bytes of the events retained per channel, or 0 to limit by count only.
+     * Setting both limits to 0 disables event history.
+     * @return this, for chaining
+     */
+    public PusherOptions setEventHistory(int maxEvents, long maxBytes) {
+    	if (maxEvents < 0 || maxBytes < 0) {
+    		throw new IllegalArgumentException("Event history limits cannot be negative");
+    	}
+    	this.eventHistoryMaxEvents = maxEvents;
+    	this.eventHistoryMaxBytes = maxBytes;
+    	return this;
+    }
+
+    /**
+     * Gets the directory that inbound frames are recorded to.
+     * @return the directory, or null if recording is disabled.
+     */
+    public File getJournalRecordingDirectory() {
+    	return journalRecordingDirectory;
+    }
+
+    /**
+     * Gets the size of each memory-mapped journal segment file.
+     * @return the size in bytes.
+     */
+    public int getJournalSegmentSize() {
+    	return journalSegmentSize;
+    }
+
+    /**
+     * Records every frame received from Pusher, with the time that it arrived, to a journal in the given directory. The
+     * journal is written to memory-mapped segment files of {@link #getJournalSegmentSize()} bytes, and a new segment is started
+     * whenever the current one is full. Recording into a directory that already holds a journal appends to it. Recording is
+     * disabled by default.
+     * @param directory The journal directory, which is created if necessary, or null to disable recording.
+     * @return this, for chaining
+     */
+    public PusherOptions setJournalRecording(File directory) {
+    	this.journalRecordingDirectory = directory;
+    	return this;
+    }
+
+    /**
+     * Sets the size of each journal segment file. Every recorded frame must fit in a single segment. The default is 64MB.
+     * @param segmentSize The size in bytes.
+     * @return this, for chaining
+     */
+    public PusherOptions setJournalSegmentSize(int segmentSize) {
+    	if (segmentSize <= 1024) {
+    		throw new IllegalArgumentException("Journal segment size must be larger than 1KB");
+    	}
+    	this.journalSegmentSize = segmentSize;
+    	return this;
+    }
+
+    /**
+     * Gets the directory of the journal that is replayed instead of connecting to Pusher.
+     * @return the directory, or null if replay is disabled.
+     */
+    public File getJournalReplayDirectory() {
+    	return journalReplayDirectory;
+    }
+
+    /**
+     * @return true if a replayed journal is paced with the gaps between frames that were originally recorded.
+     */
+    public boolean isJournalReplayTimingPreserved() {
+    	return journalReplayTimingPreserved;
+    }
+
+    /**
+     * Replays a journal recorded with {@link #setJournalRecording(File)} instead of connecting to Pusher. Connecting feeds the
+     * recorded frames to the client, including the original connection established and subscription succeeded messages, so
+     * subscribe to the same channels as the recorded session to receive their events. Messages sent by the client are
+     * discarded, and the connection is closed once the journal has been replayed.
+     * @param directory The journal directory, or null to connect to Pusher as normal.
+     * @param preserveTiming true to pace frames with the gaps that were originally recorded, false to replay them as fast as possible.
+     * @return this, for chaining
+     */
+    public PusherOptions setJournalReplay(File directory, boolean preserveTiming) {
+    	this.journalReplayDirectory = directory;
+    	this.journalReplayTimingPreserved = preserveTiming;
+    	return this;
+    }
+
+    /**
+     * Gets the number of standby connections that are opened alongside the primary connection.
+     * @return the number of standby connections.
+     */
+    public int getStandbyConnections() {
+    	return standbyConnections;
+    }
+
+    /**
+     * Opens redundant standby connections alongside the primary connection. Every standby is subscribed to the same public
+     * channels as the primary connection, and each event is delivered from whichever connection receives it first, which cuts
+     * tail latency and means that events keep arriving while any one connection is reconnecting. Private and presence channels
+     * are only subscribed on the primary connection. Standby connections are not opened when replaying a journal. The default is 0.
+     * @param count The number of standby connections.
+     * @return this, for chaining
+     * @see com.pusher.client.Pusher#getArrivalStats()
+     */
+    public PusherOptions setStandbyConnections(int count) {
+    	if (count < 0) {
+    		throw new IllegalArgumentException("Number of standby connections cannot be negative");
+    	}
+    	this.standbyConnections = count;
+    	return this;
+    }
+
+    /**
+     * Gets the number of recent events that are remembered in order to drop the copies received over standby connections.
+     * @return the number of events.
+     */
+    public int getDeduplicationWindow() {
+    	return deduplicationWindow;
+    }
+
+    /**
+     * Sets the number of recent events that are remembered in order to drop the copies received over standby connections. The least
+     * recently seen event is forgotten first, and a copy that arrives after this many other events is delivered again, so the
+     * window should cover the largest expected lag between connections. The default is 4096.
+     * @param events The number of events.
+     * @return this, for chaining
+     */
+    public PusherOptions setDeduplicationWindow(int events) {
+    	if (events < 1) {
+    		throw new IllegalArgumentException("Deduplication window must hold at least one event");
+    	}
+    	this.deduplicationWindow = events;
+    	return this;
+    }
+
+    /**
+     * Gets the maximum number of received frames that can wait to be handled on the event thread.
+     * @return the number of frames, or 0 if the queue is not limited by count.
+     */
+    public int getInboundQueueMaxFrames() {
+    	return inboundQueueMaxFrames;
+    }
+
+    /**
+     * Gets the maximum approximate size of the received frames that can wait to be handled on the event thread.
+     * @return the size in bytes, or 0 if the queue is not limited by size.
+     */
+    public long getInboundQueueMaxBytes() {
+    	return inboundQueueMaxBytes;
+    }
+
+    /**
+     * Limits the frames that have been received from Pusher but not yet handled on the event thread, which would otherwise grow
+     * without bound when listeners can't keep up with a burst of events. What happens to a frame that doesn't fit is set with
+     * {@link #setInboundOverflowPolicy(InboundOverflowPolicy)}. Control frames such as <code>pusher:connection_established</code>,
+     * <code>pusher:error</code> and <code>pusher_internal:</code> events are always queued. By default the queue is not limited,
+     * so the websocket reader never waits and no frame is dropped, as in earlier versions.
+     * @param maxFrames The maximum number of frames, or 0 to limit by size only.
+     * @param maxBytes The maximum approximate size in bytes of the frames, or 0 to limit by count only.
+     * @return this, for chaining
+     * @see com.pusher.client.Pusher#getInboundQueueStats()
+     */
+    public PusherOptions setInboundQueueLimit(int maxFrames, long maxBytes) {
+    	if (maxFrames < 0 || maxBytes < 0) {
+    		throw new IllegalArgumentException("Inbound queue limits cannot be negative");
+    	}
+    	this.inboundQueueMaxFrames = maxFrames;
+    	this.inboundQueueMaxBytes = maxBytes;
+    	return this;
+    }
+
+    /**
+     * Gets what happens to a received frame when the inbound queue is full.
+     * @return the policy.
+     */
+    public InboundOverflowPolicy getInboundOverflowPolicy() {
+    	return inboundOverflowPolicy;
+    }
+
+    /**
+     * Sets what happens to a received frame when the inbound queue is full. It only applies once a limit has been set with
+     * {@link #setInboundQueueLimit(int, long)}. The default is {@link InboundOverflowPolicy#BLOCK}.
+     * @param policy The policy.
+     * @return this, for chaining
+     */
+    public PusherOptions setInboundOverflowPolicy(InboundOverflowPolicy policy) {
+    	if (policy == null) {
+    		throw new IllegalArgumentException("Inbound overflow policy cannot be null");
+    	}
+    	this.inboundOverflowPolicy = policy;
+    	return this;
+    }
+
+    /**
+     * Gets whether channel events are dispatched on the websocket thread that receives them.
+     * @return true if events are dispatched inline.
+     */
+    public boolean isInlineDispatch() {
+    	return inlineDispatch;
+    }
+
+    /**
+     * Dispatches channel events on the websocket thread that receives them. Each event is parsed, routed to its channel
+     * and passed to the bound {@link com.pusher.client.channel.SubscriptionEventListener}s on that thread, without
+     * waiting in the inbound queue or in the event queue. This removes two thread hand-offs from every event, but a
+     * listener that blocks stops the connection from reading, so only enable it if every listener returns quickly.
+     * 
+     * <p>Channel lifecycle callbacks, such as subscription succeeded and presence membership changes, are called on
+     * the websocket thread too, so that they stay in order with the channel's events. Connection events are still
+     * delivered on the event thread, and conflated or batched listeners and presence deltas still receive events there.
+     * Frames are not held in the inbound queue, so the limits set with {@link #setInboundQueueLimit(int, long)} do not
+     * apply. The default is false.</p>
+     * 
+     * @param inlineDispatch true to dispatch channel events on the websocket thread.
+     * @return this, for chaining
+     */
+    public PusherOptions setInlineDispatch(boolean inlineDispatch) {
+    	this.inlineDispatch = inlineDispatch;
+    	return this;
+    }
+
+    /**
+     * Gets the factory for the threads that the library creates.
+     * @return the factory, or null if the library creates its own threads.
+     */
+    public ThreadFactory getThreadFactory() {
+    	return threadFactory;
+    }
+
+    /**
+     * Sets the factory for the threads that the library creates: the event thread, the scheduler thread and the
+     * journal replay thread. The websocket's own reading thread is created by the websocket library and is not
+     * affected. By default the library creates its own threads.
+     * 
+     * <p>The event thread and the scheduler thread are shared by every {@link Pusher} instance in the JVM, and so is
+     * the factory. It is applied when a {@link Pusher} instance is created with these options, and then only to threads
+     * that have not already been started, so it has no effect on the event thread if an earlier instance has already
+     * used it. An instance created afterwards with a different factory replaces this one for the threads created from
+     * then on. Set the same factory on every instance, or only on the first.</p>
+     * 
+     * @param threadFactory The factory, or null to use the library's own threads.
+     * @return this, for chaining
+     */
+    public PusherOptions setThreadFactory(ThreadFactory threadFactory) {
+    	this.threadFactory = threadFactory;
+    	return this;
+    }
+
+    /**
+     * Gets the executor that runs {@link com.pusher.client.channel.SubscriptionEventListener} callbacks.
+     * @return the executor, or null if listeners are called on the event thread.
+     */
+    public Executor getListenerExecutor() {
+    	return listenerExecutor;
+    }
+
+    /**
+     * Runs {@link com.pusher.client.channel.SubscriptionEventListener} callbacks on the given executor rather than on the
+     * event thread. Each listener still receives its events one at a time and in order, but different listeners run in
+     * parallel, so a slow listener only holds up its own events. This applies to listeners bound with
+     * {@link com.pusher.client.channel.Channel#bind(String, com.pusher.client.channel.SubscriptionEventListener)} and to
+     * listeners bound with options that don't conflate. By default listeners are called on the event thread.
+     * 
+     * <p>The executor should outlive the {@link Pusher} instance. If it rejects an event, for example because it has
+     * been shut down before the instance was disconnected, the listener is called on the event thread instead.</p>
+     * 
+     * @param executor The executor, or null to call listeners on the event thread.
+     * @return this, for chaining
+     */
+    public PusherOptions setListenerExecutor(Executor executor) {
+    	this.listenerExecutor = executor;
+    	return this;
+    }
+
+    /**
+     * Gets the executor that authorizes subscriptions to private and presence channels.
+     * @return the executor, or null if subscriptions are authorized on the event thread.
+     */
+    public Executor getAuthorizationExecutor() {
+    	return authorizationExecutor;
+    }
+
+    /**
+     * Calls the {@link Authorizer} for private and presence channel subscriptions on the given executor rather than on
+     * the event thread, so that a slow authorization endpoint doesn't hold up events and other subscriptions. By default
+     * subscriptions are authorized on the event thread.
+     * 
+     * <p>The executor should outlive the {@link Pusher} instance. If it rejects an authorization, for example because it
+     * has been shut down before the instance was disconnected, the subscription is authorized on the event thread
+     * instead.</p>
+     * 
+     * @param executor The executor, or null to authorize on the event thread.
+     * @return this, for chaining
+     */
+    public PusherOptions setAuthorizationExecutor(Executor executor) {
+    	this.authorizationExecutor = executor;
+    	return this;
+    }
+
+    /**
+     * Gets the metrics that the library reports to.
+     * @return the metrics, which are {@link PusherMetrics#NONE} unless they have been set.
+     */
+    public PusherMetrics getMetrics() {
+    	return metrics;
+    }
+
+    /**
+     * Sets the metrics that the library reports measurements of its event pipeline to, such as
+     * {@link com.pusher.client.metrics.InMemoryMetrics}. By default measurements are not taken.
+     * 
+     * @param metrics The metrics, or null to stop taking measurements.
+     * @return this, for chaining
+     */
+    public PusherOptions setMetrics(PusherMetrics metrics) {
+    	this.metrics = (metrics == null) ? PusherMetrics.NONE : metrics;
+    	return this;
+    }
 }
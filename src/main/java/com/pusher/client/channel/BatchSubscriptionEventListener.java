@@ -0,0 +1,23 @@
+package com.pusher.client.channel;
+
+import java.util.List;
+
+/**
+ * Client applications can implement this interface instead of {@link SubscriptionEventListener} to receive the events
+ * that have arrived on a channel in batches rather than one call per event. This suits consumers that write events
+ * downstream in batches anyway, such as analytics ingestion.
+ * 
+ * <p>Bind an implementation with {@link Channel#bindBatch(String, BatchSubscriptionEventListener, BindOptions)}. The size of the
+ * batches and how long the first event in a batch can wait for others are set with {@link BindOptions#setMaxBatchSize(int)}
+ * and {@link BindOptions#setBatchLinger(long)}.</p>
+ */
+public interface BatchSubscriptionEventListener {
+
+    /**
+     * Callback that is fired with the events that have arrived since the previous batch, oldest first.
+     * 
+     * @param channelName The name of the channel that the events have been received on.
+     * @param batch The events, which is never empty. The list cannot be modified.
+     */
+    void onEvents(String channelName, List<Event> batch);
+}
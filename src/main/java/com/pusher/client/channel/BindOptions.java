@@ -0,0 +1,130 @@
+package com.pusher.client.channel;
+
+/**
+ * Options that change how a {@link SubscriptionEventListener} bound with
+ * {@link Channel#bind(String, SubscriptionEventListener, BindOptions)} or a {@link BatchSubscriptionEventListener} bound
+ * with {@link Channel#bindBatch(String, BatchSubscriptionEventListener, BindOptions)} receives events.
+ */
+public class BindOptions {
+
+	private int replay = 0;
+	private boolean conflated = false;
+	private String conflationKey;
+	private int maxBatchSize = 1000;
+	private long batchLingerMillis = 0;
+
+	/**
+	 * Gets the maximum number of retained events that are replayed to the listener when it is bound.
+	 * @return the number of events.
+	 */
+	public int getReplay() {
+		return replay;
+	}
+
+	/**
+	 * Replays up to this many of the most recent events with the bound event name, oldest first, from the channel's
+	 * {@link EventHistory} before the listener receives any new events. Events are only retained if event history has
+	 * been enabled with {@link com.pusher.client.PusherOptions#setEventHistory(int, long)}. The default is 0, which
+	 * replays nothing.
+	 * 
+	 * @param maxEvents The maximum number of events to replay. Use {@link Integer#MAX_VALUE} to replay every retained event.
+	 * @return this, for chaining
+	 */
+	public BindOptions setReplay(int maxEvents) {
+		if (maxEvents < 0) {
+			throw new IllegalArgumentException("Number of events to replay cannot be negative");
+		}
+		this.replay = maxEvents;
+		return this;
+	}
+
+	/**
+	 * @return true if events that arrive while the listener is busy are conflated.
+	 */
+	public boolean isConflated() {
+		return conflated;
+	}
+
+	/**
+	 * Gets the field of the event data whose value identifies events that replace each other.
+	 * @return the field name, or null if every event replaces the previous one.
+	 */
+	public String getConflationKey() {
+		return conflationKey;
+	}
+
+	/**
+	 * Conflates events for the listener. While the listener is busy, or waiting for its turn on the event thread, a newer
+	 * event replaces the one that is pending rather than being queued behind it, so the listener always receives the latest
+	 * state and never a backlog of stale events. Use this for channels that publish faster than the listener can keep up,
+	 * where only the most recent value matters. Conflation is disabled by default.
+	 * 
+	 * @param conflate true to conflate events.
+	 * @return this, for chaining
+	 */
+	public BindOptions setConflate(boolean conflate) {
+		this.conflated = conflate;
+		return this;
+	}
+
+	/**
+	 * Conflates events for the listener per value of a top level field of the event data, such as a symbol on a price channel.
+	 * A newer event only replaces a pending event with the same value, so at most one event per value is waiting for the
+	 * listener. Events whose data does not contain the field conflate with each other.
+	 * 
+	 * @param field The name of the field, or null to conflate every event as with {@link #setConflate(boolean)}.
+	 * @return this, for chaining
+	 */
+	public BindOptions setConflationKey(String field) {
+		this.conflated = true;
+		this.conflationKey = field;
+		return this;
+	}
+
+	/**
+	 * Gets the maximum number of events delivered to a {@link BatchSubscriptionEventListener} in one call.
+	 * @return the number of events, or 0 if batches are not limited.
+	 */
+	public int getMaxBatchSize() {
+		return maxBatchSize;
+	}
+
+	/**
+	 * Sets the maximum number of events delivered to a {@link BatchSubscriptionEventListener} in one call. A batch that
+	 * reaches this size is delivered without waiting for the linger time. The default is 1000.
+	 * 
+	 * @param maxBatchSize The maximum number of events, or 0 for no limit.
+	 * @return this, for chaining
+	 */
+	public BindOptions setMaxBatchSize(int maxBatchSize) {
+		if (maxBatchSize < 0) {
+			throw new IllegalArgumentException("Maximum batch size cannot be negative");
+		}
+		this.maxBatchSize = maxBatchSize;
+		return this;
+	}
+
+	/**
+	 * Gets how long the first event of a batch waits for more events before the batch is delivered.
+	 * @return the linger time in milliseconds.
+	 */
+	public long getBatchLinger() {
+		return batchLingerMillis;
+	}
+
+	/**
+	 * Sets how long the first event of a batch waits for more events before the batch is delivered to a
+	 * {@link BatchSubscriptionEventListener}. The default is 0, which delivers each batch as soon as the event thread is free,
+	 * holding whatever events have arrived by then.
+	 * 
+	 * @param lingerMillis The linger time in milliseconds.
+	 * @return this, for chaining
+	 */
+	public BindOptions setBatchLinger(long lingerMillis) {
+		if (lingerMillis < 0) {
+			throw new IllegalArgumentException("Batch linger time cannot be negative");
+		}
+		this.batchLingerMillis = lingerMillis;
+		return this;
+	}
+}
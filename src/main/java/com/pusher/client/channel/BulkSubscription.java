@@ -0,0 +1,23 @@
+package com.pusher.client.channel;
+
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * A handle to a group of public channels that were subscribed to in a single call to
+ * {@link com.pusher.client.Pusher#subscribeAll(java.util.Collection, ChannelEventListener, String...)}.
+ *
+ * <p>The {@link Channel} objects are available immediately from {@link #getChannels()}. The {@link Future} completes
+ * once every channel in the group has received its subscription success acknowledgement from Pusher, so a
+ * consumer can wait for thousands of subscriptions with a single call to {@link #get()}. If any channel in the group
+ * fails to subscribe, or is unsubscribed before its subscription succeeds, {@link #get()} throws an
+ * {@link java.util.concurrent.ExecutionException}.</p>
+ */
+public interface BulkSubscription extends Future<List<Channel>> {
+
+	/**
+	 * Gets the channels in this group, in the order that their names were supplied.
+	 * @return The channels.
+	 */
+	List<Channel> getChannels();
+}
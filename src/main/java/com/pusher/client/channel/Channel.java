@@ -1,5 +1,7 @@
 package com.pusher.client.channel;
 
+import java.util.concurrent.Executor;
+
 /**
  * An object that represents a Pusher channel. An implementation of this interface is returned when you call
  * {@link com.pusher.client.Pusher#subscribe(String)} or {@link com.pusher.client.Pusher#subscribe(String, ChannelEventListener, String...)}.
@@ -31,6 +33,56 @@ public interface Channel {
      */
     void bind(String eventName, SubscriptionEventListener listener);
     
+    /**
+     * Binds a {@link SubscriptionEventListener} to an event with the given {@link BindOptions}.
+     * 
+     * <p>If the options ask for events to be replayed, the listener is bound from the event thread. It first receives
+     * the retained events with the given name and then every event that arrives after them, without gaps or
+     * duplicates.</p>
+     * 
+     * @param eventName The name of the event to listen to.
+     * @param listener A listener to receive notifications when the event is received.
+     * @param options Options for this binding.
+     * @throws IllegalArgumentException If the name of the event, the {@link SubscriptionEventListener} or the options are null.
+     * @throws IllegalStateException If the channel has been unsubscribed, in the same way as {@link #bind(String, SubscriptionEventListener)}.
+     */
+    void bind(String eventName, SubscriptionEventListener listener, BindOptions options);
+    
+    /**
+     * Binds a {@link SubscriptionEventListener} to an event and calls it on the given executor rather than on the event
+     * thread, so that an expensive listener can run on a pool of its own without holding up other listeners. The
+     * listener still receives its events one at a time and in the order they arrived, including events of different
+     * names that it is bound to on this channel with the same executor, however many threads the executor has.
+     * 
+     * <p>An executor that runs tasks on the calling thread calls the listener as the event is dispatched, without a
+     * task on the event queue, which suits cheap listeners.</p>
+     * 
+     * <p>The listener is unbound with {@link #unbind(String, SubscriptionEventListener)}. Events that have already been
+     * handed to the executor are still delivered.</p>
+     * 
+     * @param eventName The name of the event to listen to.
+     * @param listener A listener to receive notifications when the event is received.
+     * @param executor The executor to call the listener on.
+     * @throws IllegalArgumentException If the name of the event, the {@link SubscriptionEventListener} or the executor is null.
+     * @throws IllegalStateException If the channel has been unsubscribed, in the same way as {@link #bind(String, SubscriptionEventListener)}.
+     */
+    void bind(String eventName, SubscriptionEventListener listener, Executor executor);
+    
+    /**
+     * Binds a {@link BatchSubscriptionEventListener} to an event. Events are collected and delivered in batches, whose size
+     * and timing are set with {@link BindOptions#setMaxBatchSize(int)} and {@link BindOptions#setBatchLinger(long)}, instead
+     * of with one call per event. Events can also be replayed as with {@link #bind(String, SubscriptionEventListener, BindOptions)},
+     * but cannot be conflated.
+     * 
+     * @param eventName The name of the event to listen to.
+     * @param listener A listener to receive batches of events.
+     * @param options Options for this binding.
+     * @throws IllegalArgumentException If the name of the event, the {@link BatchSubscriptionEventListener} or the options are null,
+     * or the options ask for conflation.
+     * @throws IllegalStateException If the channel has been unsubscribed, in the same way as {@link #bind(String, SubscriptionEventListener)}.
+     */
+    void bindBatch(String eventName, BatchSubscriptionEventListener listener, BindOptions options);
+    
     /**
      * <p>Unbinds a previously bound {@link SubscriptionEventListener} from an event. The {@link SubscriptionEventListener} will no
      * longer be notified whenever the specified event is received on this channel.</p> 
@@ -52,4 +104,37 @@ public interface Channel {
      *  again to receive a fresh {@linkplain Channel} instance.
      */
     void unbind(String eventName, SubscriptionEventListener listener);
-}
\ No newline at end of file
+    
+    /**
+     * Unbinds a {@link BatchSubscriptionEventListener} bound with {@link #bindBatch(String, BatchSubscriptionEventListener, BindOptions)}
+     * from an event. Events that have been collected but
+     * not yet delivered to it are still delivered.
+     * 
+     * @param eventName The name of the event to stop listening to.
+     * @param listener The listener to unbind from the event.
+     * @throws IllegalArgumentException If the name of the event or the {@link BatchSubscriptionEventListener} is null.
+     * @throws IllegalStateException If the channel has been unsubscribed, in the same way as {@link #unbind(String, SubscriptionEventListener)}.
+     */
+    void unbindBatch(String eventName, BatchSubscriptionEventListener listener);
+    
+    /**
+     * Opens a {@link ChannelEventQueue} that collects events from this channel for an application thread to take with
+     * {@link ChannelEventQueue#poll()} or {@link ChannelEventQueue#drainTo(java.util.Collection)}, rather than having them
+     * pushed to a listener. Events are added to the queue as they are dispatched, without a task per event on the event
+     * queue, so a consumer with its own threading model can take them in batches.
+     * 
+     * @param capacity The maximum number of events the queue holds. It is rounded up to a power of two.
+     * @param eventNames The names of the events to collect, or none to collect every event on the channel.
+     * @return The queue, which should be closed when it is no longer used.
+     * @throws IllegalArgumentException If the capacity is less than 1 or an event name is null or internal.
+     * @throws IllegalStateException If the channel has been unsubscribed, in the same way as {@link #bind(String, SubscriptionEventListener)}.
+     */
+    ChannelEventQueue openEventQueue(int capacity, String... eventNames);
+
+    /**
+     * Gets the buffer of recent events that this channel retains for replay.
+     * @return The event history, or null if event history has not been enabled with
+     * {@link com.pusher.client.PusherOptions#setEventHistory(int, long)}.
+     */
+    EventHistory getEventHistory();
+}
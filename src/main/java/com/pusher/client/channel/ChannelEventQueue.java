@@ -0,0 +1,75 @@
+package com.pusher.client.channel;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded queue of the events received on a channel, for an application thread to poll instead of having events
+ * pushed to a {@link SubscriptionEventListener} on the event thread. Queues are opened with
+ * {@link Channel#openEventQueue(int, String...)}.
+ *
+ * <p>Events are added directly by the thread that dispatches them, with no task on the event queue, and are taken by
+ * a single consumer thread. Only one thread may call the poll and drain methods. An event that arrives when the queue is
+ * full is dropped and counted by {@link #getDroppedCount()}; the dispatching thread never waits for the consumer.</p>
+ */
+public interface ChannelEventQueue {
+
+	/**
+	 * Takes the oldest event from the queue, if there is one.
+	 * @return The event, or null if the queue is empty.
+	 */
+	Event poll();
+
+	/**
+	 * Takes the oldest event from the queue, waiting for one to arrive if the queue is empty.
+	 * 
+	 * @param timeout How long to wait.
+	 * @param unit The unit of the timeout.
+	 * @return The event, or null if none arrived before the timeout or the queue is closed and empty.
+	 * @throws InterruptedException If the thread is interrupted while waiting.
+	 */
+	Event poll(long timeout, TimeUnit unit) throws InterruptedException;
+
+	/**
+	 * Takes every event in the queue, oldest first, without waiting.
+	 * 
+	 * @param events The collection to add the events to.
+	 * @return The number of events added.
+	 */
+	int drainTo(Collection<? super Event> events);
+
+	/**
+	 * Takes up to the given number of events from the queue, oldest first, without waiting.
+	 * 
+	 * @param events The collection to add the events to.
+	 * @param maxEvents The maximum number of events to take.
+	 * @return The number of events added.
+	 */
+	int drainTo(Collection<? super Event> events, int maxEvents);
+
+	/**
+	 * @return The number of events in the queue.
+	 */
+	int size();
+
+	/**
+	 * @return The maximum number of events the queue can hold.
+	 */
+	int getCapacity();
+
+	/**
+	 * @return The number of events that have been dropped because the queue was full.
+	 */
+	long getDroppedCount();
+
+	/**
+	 * Stops adding events to the queue. Events already in the queue can still be taken. A queue is also closed when its
+	 * channel is unsubscribed.
+	 */
+	void close();
+
+	/**
+	 * @return true if the queue has been closed.
+	 */
+	boolean isClosed();
+}
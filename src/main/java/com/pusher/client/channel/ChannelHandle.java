@@ -0,0 +1,47 @@
+package com.pusher.client.channel;
+
+/**
+ * A reference to a public channel that may be shared by several independent parts of an application. Handles are
+ * obtained from {@link com.pusher.client.Pusher#acquire(String)}.
+ *
+ * <p>The first handle acquired for a channel subscribes to it and releasing the last handle unsubscribes from it,
+ * optionally after the grace period set with {@link com.pusher.client.PusherOptions#setSharedChannelLinger(long)}.
+ * Listeners that are bound through a handle are unbound when that handle is released, so each part of the
+ * application only needs to look after its own handle.</p>
+ */
+public interface ChannelHandle {
+
+	/**
+	 * Gets the shared channel. The same {@link Channel} object is returned by every handle for the channel.
+	 * @return The channel.
+	 */
+	Channel getChannel();
+
+	/**
+	 * Binds a listener to an event on the shared channel. The listener is unbound automatically when this handle is
+	 * released.
+	 * 
+	 * @param eventName The name of the event to bind to.
+	 * @param listener A listener to receive the events.
+	 * @throws IllegalStateException if this handle has been released.
+	 */
+	void bind(String eventName, SubscriptionEventListener listener);
+
+	/**
+	 * Unbinds a listener that was bound through this handle.
+	 * 
+	 * @param eventName The name of the event.
+	 * @param listener The listener to unbind.
+	 */
+	void unbind(String eventName, SubscriptionEventListener listener);
+
+	/**
+	 * Releases this handle. Calls after the first have no effect.
+	 */
+	void release();
+
+	/**
+	 * @return true once {@link #release()} has been called.
+	 */
+	boolean isReleased();
+}
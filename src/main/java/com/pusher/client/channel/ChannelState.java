@@ -6,6 +6,7 @@ package com.pusher.client.channel;
 public enum ChannelState {
     INITIAL,
     SUBSCRIBE_SENT,
+    SUBSCRIBE_TIMED_OUT,
     SUBSCRIBED,
     UNSUBSCRIBED,
     FAILED
@@ -0,0 +1,46 @@
+package com.pusher.client.channel;
+
+/**
+ * An event received on a channel, as delivered to a {@link BatchSubscriptionEventListener}.
+ */
+public class Event {
+
+	private final String channelName;
+	private final String eventName;
+	private final String data;
+
+	/**
+	 * Used within the library to deliver events. Not to be used as part of the API.
+	 */
+	public Event(String channelName, String eventName, String data) {
+		this.channelName = channelName;
+		this.eventName = eventName;
+		this.data = data;
+	}
+
+	/**
+	 * @return The name of the channel that the event was received on.
+	 */
+	public String getChannelName() {
+		return channelName;
+	}
+
+	/**
+	 * @return The name of the event.
+	 */
+	public String getEventName() {
+		return eventName;
+	}
+
+	/**
+	 * @return The JSON data that was included with the event.
+	 */
+	public String getData() {
+		return data;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("[Event channel=%s, event=%s, data=%s]", channelName, eventName, data);
+	}
+}
@@ -0,0 +1,36 @@
+package com.pusher.client.channel;
+
+/**
+ * Reports on the bounded buffer of recent events that a channel retains so that listeners which bind late can have
+ * them replayed. Returned by {@link Channel#getEventHistory()} when event history has been enabled with
+ * {@link com.pusher.client.PusherOptions#setEventHistory(int, long)}.
+ */
+public interface EventHistory {
+
+	/**
+	 * @return The maximum number of events retained, or 0 if the history is only limited by size.
+	 */
+	int getMaxEvents();
+
+	/**
+	 * @return The maximum approximate size in bytes of the retained events, or 0 if the history is only limited by count.
+	 */
+	long getMaxBytes();
+
+	/**
+	 * @return The number of events currently retained.
+	 */
+	int size();
+
+	/**
+	 * @return The approximate size in bytes of the events currently retained. This never exceeds {@link #getMaxBytes()}
+	 * when a size limit is set.
+	 */
+	long getRetainedBytes();
+
+	/**
+	 * @return The number of events that have been discarded, either to make room for newer events or because a single
+	 * event was larger than {@link #getMaxBytes()}.
+	 */
+	long getEvictedCount();
+}
@@ -14,11 +14,40 @@ import com.pusher.client.channel.User;
 public interface PresenceChannel extends PrivateChannel {
 
 	/**
-	 * Gets a set of users currently subscribed to the channel.
+	 * Gets a set of users currently subscribed to the channel. The returned set is an immutable snapshot and is
+	 * not updated as users join or leave.
 	 * @return The users.
 	 */
 	Set<User> getUsers();
 
+	/**
+	 * Gets an immutable, versioned snapshot of the users currently subscribed to the channel. This is the same
+	 * object that {@link #getUsers()} returns.
+	 * @return The roster.
+	 */
+	PresenceRoster getRoster();
+
+	/**
+	 * Declares a secondary index on a top level field of the members' user info, so that {@link #query(String, String)}
+	 * can find the members with a particular value without scanning every member. The index is built from the
+	 * current members and then kept up to date as members join and leave. Declaring the same field twice has no
+	 * effect.
+	 * 
+	 * @param field The name of a top level field in the user info, for example "region".
+	 */
+	void addIndex(String field);
+
+	/**
+	 * Finds the members whose user info has the given value for an indexed field. Values are compared as strings, so
+	 * a numeric field with the value 3 matches the string "3".
+	 * 
+	 * @param field A field that has been declared with {@link #addIndex(String)}.
+	 * @param value The value to match.
+	 * @return An immutable set of the matching users, which is empty if there are none.
+	 * @throws IllegalArgumentException if no index has been declared for the field.
+	 */
+	Set<User> query(String field, String value);
+
 	/**
 	 * Gets the user that represents the currently connected client.
 	 * @return A user.
@@ -0,0 +1,75 @@
+package com.pusher.client.channel;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The changes to the membership of a presence channel between two versions of its {@link PresenceRoster}. Passed to
+ * {@link PresenceDeltaListener#onPresenceDelta(String, PresenceDelta)}.
+ */
+public final class PresenceDelta {
+
+	private final long fromVersion;
+	private final long toVersion;
+	private final List<User> added;
+	private final List<User> removed;
+	private final List<User> changed;
+
+	/**
+	 * Deltas are created within the library.
+	 */
+	public PresenceDelta(long fromVersion, long toVersion, List<User> added, List<User> removed, List<User> changed) {
+		this.fromVersion = fromVersion;
+		this.toVersion = toVersion;
+		this.added = Collections.unmodifiableList(added);
+		this.removed = Collections.unmodifiableList(removed);
+		this.changed = Collections.unmodifiableList(changed);
+	}
+
+	/**
+	 * @return The roster version that this delta applies to.
+	 */
+	public long getFromVersion() {
+		return fromVersion;
+	}
+
+	/**
+	 * @return The roster version that results from applying this delta.
+	 */
+	public long getToVersion() {
+		return toVersion;
+	}
+
+	/**
+	 * @return The users who joined the channel.
+	 */
+	public List<User> getAdded() {
+		return added;
+	}
+
+	/**
+	 * @return The users who left the channel, as they were before they left.
+	 */
+	public List<User> getRemoved() {
+		return removed;
+	}
+
+	/**
+	 * @return The users who were already members but whose information changed, with their new information.
+	 */
+	public List<User> getChanged() {
+		return changed;
+	}
+
+	/**
+	 * @return true if the membership is the same at both versions.
+	 */
+	public boolean isEmpty() {
+		return added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("[PresenceDelta %d->%d: added=%s, removed=%s, changed=%s]", fromVersion, toVersion, added, removed, changed);
+	}
+}
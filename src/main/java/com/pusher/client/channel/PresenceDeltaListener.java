@@ -0,0 +1,21 @@
+package com.pusher.client.channel;
+
+/**
+ * <p>Client applications can implement this interface, in addition to {@link PresenceChannelEventListener}, to be told
+ * about changes to the membership of a presence channel as batched deltas rather than one user at a time.</p>
+ * 
+ * <p>Changes that arrive in quick succession are coalesced into a single {@link PresenceDelta}. A user who joins and
+ * leaves within the same batch does not appear in it at all. When the channel is resubscribed, for example after a
+ * reconnection, the delta is computed against the roster from before the reconnection, so applying every delta in
+ * turn to a copy of the roster keeps that copy identical to {@link PresenceChannel#getRoster()}.</p>
+ */
+public interface PresenceDeltaListener {
+
+	/**
+	 * Called on the event thread with the changes to a channel's membership since the previous delta.
+	 * 
+	 * @param channelName The name of the presence channel.
+	 * @param delta The changes.
+	 */
+	void onPresenceDelta(String channelName, PresenceDelta delta);
+}
@@ -0,0 +1,119 @@
+package com.pusher.client.channel;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable snapshot of the users subscribed to a {@link PresenceChannel}, as returned by
+ * {@link PresenceChannel#getUsers()} and {@link PresenceChannel#getRoster()}.
+ *
+ * <p>Every change to the membership of a channel increments its version, so two snapshots of the same channel with
+ * the same version contain the same users. Each version shares all but the few changed nodes of its structure with
+ * the version before it, so a change costs O(log n) rather than a copy of the roster, and polling a channel whose
+ * membership has not changed returns the same instance.</p>
+ */
+public abstract class PresenceRoster extends AbstractSet<User> {
+
+	private final long version;
+	private Map<String, User> mapView;
+
+	/**
+	 * Rosters are created within the library.
+	 * @param version The version of the channel membership that this roster represents.
+	 */
+	protected PresenceRoster(long version) {
+		this.version = version;
+	}
+
+	/**
+	 * @return The version of the channel membership that this roster represents.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Gets a user by id.
+	 * @param userId The id of the user.
+	 * @return The user, or null if no user with that id is in this roster.
+	 */
+	public abstract User getUser(String userId);
+
+	/**
+	 * @return An unmodifiable view of the users in this roster, keyed by user id.
+	 */
+	public Map<String, User> asMap() {
+		// a racing reader may build a second view, which is harmless as views hold no state of their own
+		Map<String, User> view = mapView;
+		if (view == null) {
+			view = new MapView(this);
+			mapView = view;
+		}
+		return view;
+	}
+
+	@Override
+	public boolean contains(Object object) {
+		if (!(object instanceof User)) {
+			return false;
+		}
+		User user = (User) object;
+		return user.equals(getUser(user.getId()));
+	}
+
+	private static class MapView extends AbstractMap<String, User> {
+
+		private final PresenceRoster roster;
+
+		MapView(PresenceRoster roster) {
+			this.roster = roster;
+		}
+
+		@Override
+		public User get(Object key) {
+			return (key instanceof String) ? roster.getUser((String) key) : null;
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return get(key) != null;
+		}
+
+		@Override
+		public int size() {
+			return roster.size();
+		}
+
+		@Override
+		public Set<Map.Entry<String, User>> entrySet() {
+			return new AbstractSet<Map.Entry<String, User>>() {
+				@Override
+				public Iterator<Map.Entry<String, User>> iterator() {
+					final Iterator<User> users = roster.iterator();
+					return new Iterator<Map.Entry<String, User>>() {
+						public boolean hasNext() {
+							return users.hasNext();
+						}
+
+						public Map.Entry<String, User> next() {
+							User user = users.next();
+							return new AbstractMap.SimpleImmutableEntry<String, User>(user.getId(), user);
+						}
+
+						public void remove() {
+							throw new UnsupportedOperationException();
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return roster.size();
+				}
+			};
+		}
+	}
+}
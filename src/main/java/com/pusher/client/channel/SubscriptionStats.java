@@ -0,0 +1,83 @@
+package com.pusher.client.channel;
+
+/**
+ * A point in time snapshot of the state of the subscriptions held by a {@link com.pusher.client.Pusher} instance,
+ * returned by {@link com.pusher.client.Pusher#getSubscriptionStats()}.
+ */
+public class SubscriptionStats {
+
+	private final int subscribedCount;
+	private final int pendingCount;
+	private final int timedOutCount;
+	private final long totalTimeouts;
+	private final long totalRetries;
+	private final long totalFailures;
+
+	/**
+	 * Used within the library to create a snapshot. Not to be used as part of the API.
+	 */
+	public SubscriptionStats(int subscribedCount, int pendingCount, int timedOutCount, long totalTimeouts,
+			long totalRetries, long totalFailures) {
+		this.subscribedCount = subscribedCount;
+		this.pendingCount = pendingCount;
+		this.timedOutCount = timedOutCount;
+		this.totalTimeouts = totalTimeouts;
+		this.totalRetries = totalRetries;
+		this.totalFailures = totalFailures;
+	}
+
+	/**
+	 * The number of channels whose subscription has been acknowledged by Pusher.
+	 * @return the number of subscribed channels.
+	 */
+	public int getSubscribedCount() {
+		return subscribedCount;
+	}
+
+	/**
+	 * The number of channels that are waiting to be subscribed or waiting for Pusher to acknowledge the subscription.
+	 * @return the number of pending channels.
+	 */
+	public int getPendingCount() {
+		return pendingCount;
+	}
+
+	/**
+	 * The number of channels whose latest subscribe attempt has timed out and which are waiting to be retried. These
+	 * are the channels that are currently stuck.
+	 * @return the number of timed out channels.
+	 */
+	public int getTimedOutCount() {
+		return timedOutCount;
+	}
+
+	/**
+	 * The total number of subscribe attempts that have timed out since the {@link com.pusher.client.Pusher} instance was created.
+	 * @return the number of timeouts.
+	 */
+	public long getTotalTimeouts() {
+		return totalTimeouts;
+	}
+
+	/**
+	 * The total number of subscribe attempts that have been retried after a timeout.
+	 * @return the number of retries.
+	 */
+	public long getTotalRetries() {
+		return totalRetries;
+	}
+
+	/**
+	 * The total number of subscriptions that have failed because their retries were exhausted.
+	 * @return the number of failed subscriptions.
+	 */
+	public long getTotalFailures() {
+		return totalFailures;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("[SubscriptionStats subscribed=%d, pending=%d, timedOut=%d, totalTimeouts=%d, totalRetries=%d, totalFailures=%d]",
+				subscribedCount, pendingCount, timedOutCount, totalTimeouts, totalRetries, totalFailures);
+	}
+}
@@ -0,0 +1,24 @@
+package com.pusher.client.channel;
+
+/**
+ * <p>Client applications can implement this interface, in addition to {@link ChannelEventListener} or one of its
+ * sub-interfaces, if they want to be notified when Pusher does not acknowledge a subscription in time.</p>
+ * 
+ * <p>The listener that is passed to {@link com.pusher.client.Pusher#subscribe(String, ChannelEventListener, String...)}
+ * (or the private and presence equivalents) receives this callback if it implements this interface. The timeout and
+ * retry behaviour is configured using {@link com.pusher.client.PusherOptions#setSubscriptionTimeout(long)},
+ * {@link com.pusher.client.PusherOptions#setMaxSubscriptionRetries(int)} and
+ * {@link com.pusher.client.PusherOptions#setSubscriptionRetryDelay(long)}.</p>
+ */
+public interface SubscriptionTimeoutListener {
+
+	/**
+	 * Called when a subscription success acknowledgement has not been received within the subscription timeout.
+	 * 
+	 * @param channelName The name of the channel whose subscription timed out.
+	 * @param attempt The number of subscribe attempts that have now timed out for this channel, starting at 1.
+	 * @param willRetry true if the subscription will be retried, false if the retries have been exhausted and the
+	 * channel has moved to {@link ChannelState#FAILED}.
+	 */
+	void onSubscriptionTimeout(String channelName, int attempt, boolean willRetry);
+}
@@ -1,13 +1,19 @@
 package com.pusher.client.channel;
 
+import com.google.gson.Gson;
+
 /**
  * Represents a user that is subscribed to a
  * {@link com.pusher.client.channel.PresenceChannel PresenceChannel}.
  */
 public class User {
 
+	// Gson caches the type adapter for each class that it decodes, so sharing one instance shares those decoders
+	private static final Gson GSON = new Gson();
+
 	private final String id;
 	private final String jsonData;
+	private volatile DecodedInfo decodedInfo;
 
 	/**
 	 * Create a new user. Users should not be created within an application. Users are created within the library and represent subscriptions to presence channels.
@@ -28,13 +34,36 @@ public class User {
 	}
 
 	/**
-	 * Custom additional information about a user.
-	 * @return
+	 * Custom additional information about a user, exactly as it was supplied by your authentication endpoint.
+	 * @return The user info as a JSON string, or null if there is none.
 	 */
 	public String getInfo() {
 		return jsonData;
 	}
 
+	/**
+	 * Custom additional information about a user, decoded into an instance of the given class using Gson. The info
+	 * is only decoded the first time that it is requested and the decoded object is then reused, so it should be
+	 * treated as read only.
+	 * 
+	 * @param type The class to decode the info into, such as your own user info class or {@link java.util.Map}.
+	 * @return The decoded info, or null if there is none.
+	 * @throws com.google.gson.JsonSyntaxException if the info cannot be decoded into the given class.
+	 */
+	public <V> V getInfo(Class<V> type) {
+
+		if (type == null) {
+			throw new IllegalArgumentException("Cannot decode user info into a null type");
+		}
+
+		DecodedInfo decoded = decodedInfo;
+		if (decoded == null || decoded.type != type) {
+			decoded = new DecodedInfo(type, (jsonData != null) ? GSON.fromJson(jsonData, type) : null);
+			decodedInfo = decoded;
+		}
+		return type.cast(decoded.value);
+	}
+
 	@Override
 	public String toString() {
 		return String.format("[User id=%s, data=%s]", id, jsonData);
@@ -51,9 +80,20 @@ public class User {
 		if (other instanceof User) {
 			User otherUser = (User) other;
 			return this.getId().equals(otherUser.getId())
-					&& this.getInfo().equals(otherUser.getInfo());
+					&& ((this.getInfo() == null) ? otherUser.getInfo() == null : this.getInfo().equals(otherUser.getInfo()));
 		}
 
 		return false;
 	}
-}
\ No newline at end of file
+
+	private static class DecodedInfo {
+
+		private final Class<?> type;
+		private final Object value;
+
+		DecodedInfo(Class<?> type, Object value) {
+			this.type = type;
+			this.value = value;
+		}
+	}
+}
@@ -0,0 +1,159 @@
+package com.pusher.client.channel.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.pusher.client.channel.BatchSubscriptionEventListener;
+import com.pusher.client.channel.Event;
+import com.pusher.client.util.Factory;
+
+/**
+ * Stands in for a {@link BatchSubscriptionEventListener}. Events are collected until a batch is full, or until the
+ * linger time has passed since the first event of the batch arrived, and are then delivered in one call from a single
+ * task on the event queue. With no linger time a batch holds whatever has arrived by the time the event thread gets
+ * round to delivering it.
+ */
+class BatchingListener implements StandInListener {
+
+	private final BatchSubscriptionEventListener delegate;
+	private final int maxBatchSize;
+	private final long lingerMillis;
+	private final List<Event> pending = new ArrayList<Event>(); // guarded by this
+	private boolean flushQueued; // guarded by this
+	private LingerExpiry linger; // guarded by this
+
+	private final Runnable flush = new Runnable() {
+		@Override
+		public void run() {
+			flush();
+		}
+	};
+
+	/**
+	 * @param maxBatchSize The maximum number of events in a batch, or 0 for no limit.
+	 * @param lingerMillis How long the first event in a batch can wait for a full batch, or 0 to deliver without waiting.
+	 */
+	BatchingListener(BatchSubscriptionEventListener delegate, int maxBatchSize, long lingerMillis) {
+		this.delegate = delegate;
+		this.maxBatchSize = maxBatchSize;
+		this.lingerMillis = lingerMillis;
+	}
+
+	@Override
+	public Object getDelegate() {
+		return delegate;
+	}
+
+	@Override
+	public void onEvent(String channelName, String eventName, String data) {
+
+		synchronized (this) {
+			pending.add(new Event(channelName, eventName, data));
+			if (!scheduleFlush()) {
+				return;
+			}
+		}
+		Factory.getEventQueue().execute(flush);
+	}
+
+	/**
+	 * Two stand-ins are equal if they batch the same listener in the same way, so that binding a listener twice has
+	 * no effect, as it does for listeners bound without options.
+	 */
+	@Override
+	public boolean equals(Object other) {
+		if (!(other instanceof BatchingListener)) {
+			return false;
+		}
+		BatchingListener that = (BatchingListener) other;
+		return delegate.equals(that.delegate) && maxBatchSize == that.maxBatchSize && lingerMillis == that.lingerMillis;
+	}
+
+	@Override
+	public int hashCode() {
+		return (delegate.hashCode() * 31 + maxBatchSize) * 31 + (int) (lingerMillis ^ (lingerMillis >>> 32));
+	}
+
+	/* implementation detail */
+
+	private void flush() {
+
+		List<Event> batch;
+		boolean more;
+		synchronized (this) {
+			flushQueued = false;
+			int size = (maxBatchSize == 0) ? pending.size() : Math.min(maxBatchSize, pending.size());
+			List<Event> taken = pending.subList(0, size);
+			batch = new ArrayList<Event>(taken);
+			taken.clear();
+			more = !pending.isEmpty() && scheduleFlush();
+		}
+
+		if (!batch.isEmpty()) {
+			delegate.onEvents(batch.get(0).getChannelName(), Collections.unmodifiableList(batch));
+		}
+		if (more) {
+			Factory.getEventQueue().execute(flush);
+		}
+	}
+
+	private void lingerExpired(LingerExpiry expiry) {
+
+		synchronized (this) {
+			// an expiry that was cancelled too late belongs to a batch that has already been flushed
+			if (linger != expiry) {
+				return;
+			}
+			linger = null;
+			flushQueued = true;
+		}
+		Factory.getEventQueue().execute(flush);
+	}
+
+	/**
+	 * Decides what to do about the pending events: nothing if a flush is already queued, start the linger timer if
+	 * the batch isn't full yet, or queue a flush now. Callers hold the lock.
+	 * 
+	 * @return true if the caller must queue a flush on the event queue.
+	 */
+	private boolean scheduleFlush() {
+
+		if (flushQueued) {
+			return false;
+		}
+
+		boolean full = maxBatchSize > 0 && pending.size() >= maxBatchSize;
+		if (lingerMillis > 0 && !full) {
+			if (linger == null) {
+				linger = new LingerExpiry();
+				linger.future = Factory.getScheduler().schedule(linger, lingerMillis, TimeUnit.MILLISECONDS);
+			}
+			return false;
+		}
+
+		if (linger != null) {
+			if (linger.future != null) {
+				linger.future.cancel(false);
+			}
+			linger = null;
+		}
+		flushQueued = true;
+		return true;
+	}
+
+	/**
+	 * Fires on the shared scheduler thread once the first event of a batch has waited for the linger time.
+	 */
+	private class LingerExpiry implements Runnable {
+
+		private ScheduledFuture<?> future;
+
+		@Override
+		public void run() {
+			lingerExpired(this);
+		}
+	}
+}
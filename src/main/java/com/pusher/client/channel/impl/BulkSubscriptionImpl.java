@@ -0,0 +1,75 @@
+package com.pusher.client.channel.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.pusher.client.channel.BulkSubscription;
+import com.pusher.client.channel.Channel;
+import com.pusher.client.channel.ChannelState;
+import com.pusher.client.util.SettableFuture;
+
+public class BulkSubscriptionImpl extends SettableFuture<List<Channel>> implements BulkSubscription, ChannelStateObserver {
+
+	private final List<InternalChannel> channels;
+	private final List<Channel> publicChannels;
+	private final Set<String> pendingChannelNames = new HashSet<String>();
+
+	public BulkSubscriptionImpl(List<InternalChannel> channels) {
+
+		this.channels = channels;
+		this.publicChannels = Collections.unmodifiableList(new ArrayList<Channel>(channels));
+
+		for (InternalChannel channel : channels) {
+			pendingChannelNames.add(channel.getName());
+		}
+
+		for (InternalChannel channel : channels) {
+			channel.addStateObserver(this);
+		}
+
+		if (channels.isEmpty()) {
+			set(publicChannels);
+		}
+	}
+
+	/* BulkSubscription implementation */
+
+	@Override
+	public List<Channel> getChannels() {
+		return publicChannels;
+	}
+
+	/* ChannelStateObserver implementation */
+
+	@Override
+	public void onStateChange(InternalChannel channel, ChannelState previousState, ChannelState newState) {
+
+		if (newState == ChannelState.SUBSCRIBED) {
+			boolean allSubscribed;
+			synchronized (pendingChannelNames) {
+				pendingChannelNames.remove(channel.getName());
+				allSubscribed = pendingChannelNames.isEmpty();
+			}
+
+			if (allSubscribed) {
+				set(publicChannels);
+			}
+		} else if (newState == ChannelState.FAILED) {
+			setException(new IllegalStateException("Subscription to channel " + channel.getName() + " failed"));
+		} else if (newState == ChannelState.UNSUBSCRIBED && previousState != ChannelState.SUBSCRIBED) {
+			setException(new IllegalStateException("Channel " + channel.getName() + " was unsubscribed before its subscription succeeded"));
+		}
+	}
+
+	/* SettableFuture overrides */
+
+	@Override
+	protected void onCompletion() {
+		for (InternalChannel channel : channels) {
+			channel.removeStateObserver(this);
+		}
+	}
+}
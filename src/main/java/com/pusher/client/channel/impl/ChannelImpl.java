@@ -1,25 +1,48 @@
 package com.pusher.client.channel.impl;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 
 import com.google.gson.Gson;
+import com.pusher.client.channel.BatchSubscriptionEventListener;
+import com.pusher.client.channel.BindOptions;
+import com.pusher.client.channel.ChannelEventQueue;
 import com.pusher.client.channel.ChannelEventListener;
 import com.pusher.client.channel.ChannelState;
+import com.pusher.client.channel.EventHistory;
 import com.pusher.client.channel.SubscriptionEventListener;
+import com.pusher.client.metrics.PusherMetrics;
 import com.pusher.client.util.Factory;
+import com.pusher.client.util.FrameTiming;
+import com.pusher.client.util.ListenerRegistry;
+import com.pusher.client.util.SerialExecutor;
 
 public class ChannelImpl implements InternalChannel {
 
     private static final String INTERNAL_EVENT_PREFIX = "pusher_internal:";
     protected static final String SUBSCRIPTION_SUCCESS_EVENT = "pusher_internal:subscription_succeeded";
+    // Gson instances are thread safe and expensive to create, so one is shared rather than built per message
+    protected static final Gson GSON = new Gson();
     protected final String name;
-    protected final Map<String, Set<SubscriptionEventListener>> eventNameToListenerMap = new HashMap<String, Set<SubscriptionEventListener>>();
-    protected ChannelState state = ChannelState.INITIAL;
+    protected final ListenerRegistry<String, SubscriptionEventListener> eventNameToListeners = new ListenerRegistry<String, SubscriptionEventListener>(SubscriptionEventListener.class);
+    protected volatile ChannelState state = ChannelState.INITIAL;
+    // guards changes to the state, which the subscription deadline and an inline acknowledgement can make at once
+    private final Object stateLock = new Object();
+    private final List<ChannelStateObserver> stateObservers = new CopyOnWriteArrayList<ChannelStateObserver>();
+    private final List<SubscriptionEventListener> directListeners = new CopyOnWriteArrayList<SubscriptionEventListener>();
 	private ChannelEventListener eventListener;
+	private volatile EventHistoryBuffer eventHistory;
+	private volatile boolean inlineDispatch;
+	private volatile Executor listenerExecutor;
+	private volatile PusherMetrics metrics = PusherMetrics.NONE;
+	private volatile long subscribeSentAt;
 
     public ChannelImpl(String channelName) {
 	
@@ -47,49 +70,148 @@ public class ChannelImpl implements InternalChannel {
     public void bind(String eventName, SubscriptionEventListener listener) {
 	
 	validateArguments(eventName, listener);
+	synchronized(eventNameToListeners) {
+	    eventNameToListeners.add(eventName, onListenerExecutor(listener));
+	}
+    }
+
+    @Override
+    public void bind(String eventName, SubscriptionEventListener listener, BindOptions options) {
+	
+	validateOptions(options);
+	validateArguments(eventName, listener);
 	
-	Set<SubscriptionEventListener> listeners = eventNameToListenerMap.get(eventName);
-	if(listeners == null) {
-	    listeners = new HashSet<SubscriptionEventListener>();
-	    eventNameToListenerMap.put(eventName, listeners);
+	if(options.isConflated()) {
+	    register(eventName, new ConflatingListener(listener, options.getConflationKey()), null, options.getReplay());
+	} else {
+	    register(eventName, listener, listenerExecutor, options.getReplay());
 	}
+    }
+
+    @Override
+    public void bind(String eventName, SubscriptionEventListener listener, Executor executor) {
 	
-	listeners.add(listener);
+	validateArguments(eventName, listener);
+	if(executor == null) {
+	    throw new IllegalArgumentException("Cannot bind to channel " + name + " with a null executor");
+	}
+	
+	synchronized(eventNameToListeners) {
+	    eventNameToListeners.add(eventName, onExecutor(listener, executor));
+	}
     }
 
     @Override
-    public void unbind(String eventName, SubscriptionEventListener listener) {
+    public void bindBatch(String eventName, BatchSubscriptionEventListener listener, BindOptions options) {
 	
+	validateOptions(options);
 	validateArguments(eventName, listener);
+	if(options.isConflated()) {
+	    throw new IllegalArgumentException("Cannot conflate events for a BatchSubscriptionEventListener");
+	}
 	
-	Set<SubscriptionEventListener> listeners = eventNameToListenerMap.get(eventName);
-	if(listeners != null) {
-	    listeners.remove(listener);
-	    if(listeners.isEmpty()) {
-		eventNameToListenerMap.remove(eventName);
-	    }
+	register(eventName, new BatchingListener(listener, options.getMaxBatchSize(), options.getBatchLinger()), null, options.getReplay());
+    }
+
+    @Override
+    public ChannelEventQueue openEventQueue(int capacity, String... eventNames) {
+	
+	if(eventNames == null) {
+	    throw new IllegalArgumentException("Cannot open an event queue on channel " + name + " with null event names");
 	}
+	for(String eventName : eventNames) {
+	    validateEventName(eventName);
+	}
+	if(state == ChannelState.UNSUBSCRIBED) {
+	    throw new IllegalStateException("Cannot open an event queue on a channel that has been unsubscribed. Call Pusher.subscribe() to resubscribe to this channel");
+	}
+	
+	Set<String> names = (eventNames.length == 0) ? null : new HashSet<String>(Arrays.asList(eventNames));
+	SpscChannelEventQueue queue = new SpscChannelEventQueue(this, capacity, names);
+	queue.open();
+	return queue;
+    }
+
+    @Override
+    public EventHistory getEventHistory() {
+	return eventHistory;
+    }
+
+    @Override
+    public void unbind(String eventName, SubscriptionEventListener listener) {
+	
+	validateArguments(eventName, listener);
+	if(!eventNameToListeners.remove(eventName, listener)) {
+	    removeStandInFor(eventName, listener);
+	}
+    }
+
+    @Override
+    public void unbindBatch(String eventName, BatchSubscriptionEventListener listener) {
+	
+	validateArguments(eventName, listener);
+	removeStandInFor(eventName, listener);
     }
     
     /* InternalChannel implementation */
    
     @Override
-    public void onMessage(final String event, String message) {
+    public void onMessage(String event, String message) {
+	onMessage(event, message, extractDataFrom(message));
+    }
+
+    @Override
+    public void onMessage(final String event, String message, final String data) {
 
 	if(event.equals(SUBSCRIPTION_SUCCESS_EVENT)) {
 	    updateState(ChannelState.SUBSCRIBED);
 	} else {
-	    Set<SubscriptionEventListener> listeners = eventNameToListenerMap.get(event);
-	    if(listeners != null) {
+	    SubscriptionEventListener[] listeners = eventNameToListeners.get(event);
+	    EventHistoryBuffer history = eventHistory;
+	    boolean internal = event.startsWith(INTERNAL_EVENT_PREFIX);
+	    if(listeners.length > 0 || (!internal && (history != null || !directListeners.isEmpty()))) {
+		
+		if(!internal) {
+		    if(history != null) {
+			synchronized(history) {
+			    history.add(event, data);
+			    // a registration with replay holds the same lock, so the listener gets this event either from the
+			    // replay or from here, never both and never neither
+			    listeners = eventNameToListeners.get(event);
+			}
+		    }
+		    for(SubscriptionEventListener direct : directListeners) {
+			direct.onEvent(name, event, data);
+		    }
+		}
+		
+		// when metrics are taken, the frame's stages so far go with each delivery so that they can be reported, and
+		// the time a listener waits for the ones before it counts as queueing, whether they run inline or not
+		FrameTiming timing = (metrics == PusherMetrics.NONE) ? null : FrameTiming.current();
+		final boolean timed = timing != null;
+		final long routedAt = timed ? System.nanoTime() : 0;
+		final long receiveNanos = timed ? timing.getReceiveNanos() : 0;
+		final long parseNanos = timed ? timing.getParseNanos() : 0;
+		final long routeNanos = timed ? routedAt - timing.getParsedAt() : 0;
 		for(final SubscriptionEventListener listener : listeners) {
-        		
-		    final String data = extractDataFrom(message);
-        		
-		    Factory.getEventQueue().execute(new Runnable() {
-			public void run() {
-			    listener.onEvent(name, event, data);
+		    if(listener instanceof StandInListener) {
+			// stand-ins schedule their own delivery, at most one task at a time
+			listener.onEvent(name, event, data);
+		    } else if(inlineDispatch) {
+			// with inline dispatch every other listener is called on this thread, so a listener that throws mustn't
+			// keep the event from the ones after it or reach the websocket's read loop
+			try {
+			    invoke(listener, event, data, timed, receiveNanos, parseNanos, routeNanos, routedAt);
+			} catch(RuntimeException e) {
+			    listenerFailed(e);
 			}
-		    });
+		    } else {
+			Factory.getEventQueue().execute(new Runnable() {
+			    public void run() {
+				invoke(listener, event, data, timed, receiveNanos, parseNanos, routeNanos, routedAt);
+			    }
+			});
+		    }
 		}
 	    }
 	}
@@ -106,7 +228,7 @@ public class ChannelImpl implements InternalChannel {
 	
 	jsonObject.put("data", dataMap);
 	
-	return new Gson().toJson(jsonObject);
+	return GSON.toJson(jsonObject);
     }
     
     @Override
@@ -119,16 +241,51 @@ public class ChannelImpl implements InternalChannel {
 	
 	jsonObject.put("data", dataMap);
 	
-	return new Gson().toJson(jsonObject);
+	return GSON.toJson(jsonObject);
     }
 
     @Override
     public void updateState(ChannelState state) {
 	
-	this.state = state;
+	ChannelState previousState;
+	synchronized(stateLock) {
+	    previousState = this.state;
+	    this.state = state;
+	}
+	stateChanged(previousState, state);
+    }
+
+    @Override
+    public boolean compareAndSetState(ChannelState expected, ChannelState state) {
+	
+	synchronized(stateLock) {
+	    if(this.state != expected) {
+		return false;
+	    }
+	    this.state = state;
+	}
+	stateChanged(expected, state);
+	return true;
+    }
+    
+    private void stateChanged(ChannelState previousState, ChannelState state) {
+	
+	PusherMetrics m = metrics;
+	if(m != PusherMetrics.NONE) {
+	    // the round trip is timed from the latest subscribe message, so a retry is timed from when it was sent
+	    if(state == ChannelState.SUBSCRIBE_SENT) {
+		subscribeSentAt = System.nanoTime();
+	    } else if(state == ChannelState.SUBSCRIBED && previousState == ChannelState.SUBSCRIBE_SENT) {
+		m.subscribed(name, System.nanoTime() - subscribeSentAt);
+	    }
+	}
+	
+	for(ChannelStateObserver observer : stateObservers) {
+	    observer.onStateChange(this, previousState, state);
+	}
 	
 	if(state == ChannelState.SUBSCRIBED && eventListener != null) {
-	    Factory.getEventQueue().execute(new Runnable() {
+	    notifyEventListeners(new Runnable() {
 			public void run() {
 			    eventListener.onSubscriptionSucceeded(ChannelImpl.this.getName());
 			}
@@ -136,7 +293,20 @@ public class ChannelImpl implements InternalChannel {
 		}
     }
 
-    /* Comparable implementation */
+    @Override
+    public ChannelState getState() {
+	return state;
+    }
+
+    @Override
+    public void addStateObserver(ChannelStateObserver observer) {
+	stateObservers.add(observer);
+    }
+
+    @Override
+    public void removeStateObserver(ChannelStateObserver observer) {
+	stateObservers.remove(observer);
+    }
 
 	@Override
 	public void setEventListener(ChannelEventListener listener) {
@@ -147,6 +317,41 @@ public class ChannelImpl implements InternalChannel {
 	public ChannelEventListener getEventListener() {
 		return eventListener;
 	}
+
+	@Override
+	public void enableEventHistory(int maxEvents, long maxBytes) {
+		this.eventHistory = new EventHistoryBuffer(maxEvents, maxBytes);
+	}
+
+	@Override
+	public void addDirectListener(SubscriptionEventListener listener) {
+		if(listener == null) {
+			throw new IllegalArgumentException("Cannot add a null listener to channel " + name);
+		}
+		directListeners.add(listener);
+	}
+
+	@Override
+	public void removeDirectListener(SubscriptionEventListener listener) {
+		directListeners.remove(listener);
+	}
+
+	@Override
+	public void setInlineDispatch(boolean inlineDispatch) {
+		this.inlineDispatch = inlineDispatch;
+	}
+
+	@Override
+	public void setListenerExecutor(Executor listenerExecutor) {
+		this.listenerExecutor = listenerExecutor;
+	}
+
+	@Override
+	public void setMetrics(PusherMetrics metrics) {
+		this.metrics = metrics;
+	}
+    
+    /* Comparable implementation */
     
     @Override
     public int compareTo(InternalChannel other) {
@@ -162,9 +367,36 @@ public class ChannelImpl implements InternalChannel {
     
     @SuppressWarnings("unchecked")
     private String extractDataFrom(String message) {
-	Gson gson = new Gson();
-	Map<Object, Object> jsonObject = gson.fromJson(message, Map.class);
-	return gson.toJson(jsonObject.get("data"));
+	Map<Object, Object> jsonObject = GSON.fromJson(message, Map.class);
+	return GSON.toJson(jsonObject.get("data"));
+    }
+
+    /**
+     * Gets every {@link SubscriptionEventListener} bound to any event, as the listener that was passed to bind rather
+     * than the {@link StandInListener} that stands in for it. {@link BatchSubscriptionEventListener}s are left out.
+     */
+    protected SubscriptionEventListener[] getBoundListeners() {
+	
+	SubscriptionEventListener[] listeners = eventNameToListeners.getAll();
+	for(SubscriptionEventListener listener : listeners) {
+	    if(listener instanceof StandInListener) {
+		return unwrap(listeners);
+	    }
+	}
+	return listeners;
+    }
+
+    /**
+     * Calls a channel event listener's callback from a task on the event queue or, with inline dispatch, directly on
+     * the dispatching thread, so that it stays in order with the events delivered to bound listeners.
+     */
+    protected void notifyEventListeners(Runnable callback) {
+	
+	if(inlineDispatch) {
+	    callback.run();
+	} else {
+	    Factory.getEventQueue().execute(callback);
+	}
     }
 
     protected String[] getDisallowedNameExpressions() {
@@ -174,22 +406,174 @@ public class ChannelImpl implements InternalChannel {
 	};
     }
     
-    private void validateArguments(String eventName, SubscriptionEventListener listener) {
+    /**
+     * Adds the listener, or a stand-in that runs it on the executor if there is one, replaying recent events to it
+     * first. The listener is always added before this returns, so an unbind straight after it finds it. The stand-in
+     * is made under the registry's lock like the other bindings' are, but a replaying registration takes the history's
+     * lock first and the registry's inside it, so the registry's lock is never held here while waiting for the
+     * history's.
+     */
+    private void register(final String eventName, SubscriptionEventListener listener, Executor executor, int replay) {
 	
-	if(eventName == null) {
-	    throw new IllegalArgumentException("Cannot bind or unbind to channel " + name + " with a null event name");
+	final EventHistoryBuffer history = eventHistory;
+	if(replay == 0 || history == null) {
+	    synchronized(eventNameToListeners) {
+		eventNameToListeners.add(eventName, (executor == null) ? listener : onExecutor(listener, executor));
+	    }
+	    return;
 	}
 	
-	if(listener == null) {
-	    throw new IllegalArgumentException("Cannot bind or unbind to channel " + name + " with a null listener");
+	synchronized(history) {
+	    final List<String> recent = history.getRecent(eventName, replay);
+	    final SubscriptionEventListener bound;
+	    synchronized(eventNameToListeners) {
+		bound = (executor == null) ? listener : onExecutor(listener, executor);
+		if(!eventNameToListeners.add(eventName, bound)) {
+		    // binding the same listener again has no effect, so it isn't replayed to again either
+		    return;
+		}
+	    }
+	    
+	    Runnable replayRecent = new Runnable() {
+		public void run() {
+		    for(String data : recent) {
+			if(!isRegistered(eventName, bound)) {
+			    return;
+			}
+			bound.onEvent(name, eventName, data);
+		    }
+		}
+	    };
+	    
+	    if(inlineDispatch) {
+		// events are dispatched on the websocket thread, which waits for the lock while the replay runs here, so
+		// the replay still comes before any live event
+		replayRecent.run();
+	    } else {
+		// queued while the lock is held, so the replay is delivered on the event thread ahead of the tasks for any
+		// events that arrive after the listener was added
+		Factory.getEventQueue().execute(replayRecent);
+	    }
+	}
+    }
+    
+    private boolean isRegistered(String eventName, SubscriptionEventListener bound) {
+	
+	for(SubscriptionEventListener registered : eventNameToListeners.get(eventName)) {
+	    if(registered == bound) {
+		return true;
+	    }
+	}
+	return false;
+    }
+    
+    /**
+     * @param timed Whether the event's frame was timed, in which case the stages before routing are given.
+     * @param queuedAt When the listener's task was queued, or when it was called if it wasn't.
+     */
+    private void invoke(SubscriptionEventListener listener, String event, String data, boolean timed, long receiveNanos,
+	    long parseNanos, long routeNanos, long queuedAt) {
+	
+	PusherMetrics m = metrics;
+	if(m == PusherMetrics.NONE) {
+	    listener.onEvent(name, event, data);
+	    return;
 	}
 	
-	if(eventName.startsWith(INTERNAL_EVENT_PREFIX)) {
-	    throw new IllegalArgumentException("Cannot bind or unbind channel " + name + " with an internal event name such as " + eventName);
+	long start = System.nanoTime();
+	try {
+	    listener.onEvent(name, event, data);
+	} finally {
+	    long end = System.nanoTime();
+	    m.listenerInvoked(name, event, end - start);
+	    if(timed) {
+		m.eventDelivered(name, event, receiveNanos, parseNanos, routeNanos, start - queuedAt, end - start);
+	    }
+	}
+    }
+    
+    /**
+     * Reports an exception thrown by a listener that shares its thread or task with other listeners the way it would
+     * have been reported had the listener had an event queue task of its own, that is to the current thread's uncaught
+     * exception handler, so that the caller can carry on with the next listener.
+     */
+    static void listenerFailed(RuntimeException e) {
+	Thread thread = Thread.currentThread();
+	thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+    }
+    
+    private SubscriptionEventListener onListenerExecutor(SubscriptionEventListener listener) {
+	
+	Executor executor = listenerExecutor;
+	return (executor == null) ? listener : onExecutor(listener, executor);
+    }
+    
+    /**
+     * Gets a stand-in that runs the listener on the executor, sharing the serial executor of any stand-in that already
+     * runs the same listener on the same executor so that the listener's events stay in order across event names.
+     * Callers that add the stand-in straight away hold the registry's lock until they have, so that two bindings made
+     * at the same time can't both miss the other.
+     */
+    private ExecutorListener onExecutor(SubscriptionEventListener listener, Executor executor) {
+	
+	for(SubscriptionEventListener bound : eventNameToListeners.getAll()) {
+	    if(bound instanceof ExecutorListener && ((ExecutorListener) bound).runs(listener, executor)) {
+		return new ExecutorListener(listener, ((ExecutorListener) bound).getSerialExecutor());
+	    }
+	}
+	return new ExecutorListener(listener, new SerialExecutor(executor));
+    }
+    
+    private void removeStandInFor(String eventName, Object listener) {
+	
+	for(SubscriptionEventListener registered : eventNameToListeners.get(eventName)) {
+	    if(registered instanceof StandInListener && ((StandInListener) registered).getDelegate().equals(listener)) {
+		eventNameToListeners.remove(eventName, registered);
+		return;
+	    }
+	}
+    }
+    
+    private static SubscriptionEventListener[] unwrap(SubscriptionEventListener[] listeners) {
+	
+	List<SubscriptionEventListener> unwrapped = new ArrayList<SubscriptionEventListener>(listeners.length);
+	for(SubscriptionEventListener listener : listeners) {
+	    Object delegate = (listener instanceof StandInListener) ? ((StandInListener) listener).getDelegate() : listener;
+	    if(delegate instanceof SubscriptionEventListener) {
+		unwrapped.add((SubscriptionEventListener) delegate);
+	    }
+	}
+	return unwrapped.toArray(new SubscriptionEventListener[unwrapped.size()]);
+    }
+    
+    private void validateOptions(BindOptions options) {
+	
+	if(options == null) {
+	    throw new IllegalArgumentException("Cannot bind to channel " + name + " with null options");
+	}
+    }
+    
+    private void validateArguments(String eventName, Object listener) {
+	
+	validateEventName(eventName);
+	
+	if(listener == null) {
+	    throw new IllegalArgumentException("Cannot bind or unbind to channel " + name + " with a null listener");
 	}
 	
 	if(state == ChannelState.UNSUBSCRIBED) {
 	    throw new IllegalStateException("Cannot bind or unbind to events on a channel that has been unsubscribed. Call Pusher.subscribe() to resubscribe to this channel");
 	}
     }
-}
\ No newline at end of file
+    
+    private void validateEventName(String eventName) {
+	
+	if(eventName == null) {
+	    throw new IllegalArgumentException("Cannot bind or unbind to channel " + name + " with a null event name");
+	}
+	
+	if(eventName.startsWith(INTERNAL_EVENT_PREFIX)) {
+	    throw new IllegalArgumentException("Cannot bind or unbind channel " + name + " with an internal event name such as " + eventName);
+	}
+    }
+}
@@ -1,26 +1,75 @@
 package com.pusher.client.channel.impl;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.google.gson.Gson;
 import com.pusher.client.AuthorizationFailureException;
+import com.pusher.client.PusherOptions;
+import com.pusher.client.channel.BulkSubscription;
+import com.pusher.client.channel.ChannelHandle;
 import com.pusher.client.channel.ChannelEventListener;
 import com.pusher.client.channel.ChannelState;
 import com.pusher.client.channel.PrivateChannelEventListener;
+import com.pusher.client.channel.SubscriptionEventListener;
+import com.pusher.client.channel.SubscriptionStats;
+import com.pusher.client.channel.SubscriptionTimeoutListener;
+import com.pusher.client.connection.ArrivalStats;
 import com.pusher.client.connection.ConnectionEventListener;
 import com.pusher.client.connection.ConnectionState;
 import com.pusher.client.connection.ConnectionStateChange;
 import com.pusher.client.connection.impl.InternalConnection;
+import com.pusher.client.metrics.PusherMetrics;
 import com.pusher.client.util.Factory;
+import com.pusher.client.util.FrameTiming;
 
 public class ChannelManager implements ConnectionEventListener {
 
-	private final Map<String, InternalChannel> channelNameToChannelMap = new HashMap<String, InternalChannel>();
+	private static final long MAX_SUBSCRIPTION_RETRY_DELAY_MILLIS = 60000;
+	private static final String INTERNAL_EVENT_PREFIX = "pusher_internal:";
+	private static final String SUBSCRIPTION_SUCCEEDED_EVENT = "pusher_internal:subscription_succeeded";
+	private static final Gson GSON = new Gson();
+	private static final SubscriptionEventListener[] NO_LISTENERS = new SubscriptionEventListener[0];
+
+	private final Map<String, InternalChannel> channelNameToChannelMap = new ConcurrentHashMap<String, InternalChannel>();
+	private final ConcurrentMap<String, SubscriptionDeadline> channelNameToDeadlineMap = new ConcurrentHashMap<String, SubscriptionDeadline>();
+	private final Map<String, SharedChannel> channelNameToSharedChannelMap = new HashMap<String, SharedChannel>(); // guarded by this
+	private final AtomicLong totalSubscriptionTimeouts = new AtomicLong();
+	private final AtomicLong totalSubscriptionRetries = new AtomicLong();
+	private final AtomicLong totalSubscriptionFailures = new AtomicLong();
+	private final List<StandbyConnection> standbyConnections = new CopyOnWriteArrayList<StandbyConnection>();
+	private volatile EventDeduplicator deduplicator;
+	private final Object inlineDispatchLock = new Object();
+	private final EventRouter eventRouter = new EventRouter();
+	private volatile SubscriptionEventListener[] globalListeners = NO_LISTENERS;
 	private InternalConnection connection;
+	private PusherOptions pusherOptions = new PusherOptions();
 
 	public ChannelManager() {
 	}
+
+	public void setPusherOptions(PusherOptions pusherOptions) {
+		if (pusherOptions == null) {
+			throw new IllegalArgumentException("Cannot configure ChannelManager with null options");
+		}
+
+		this.pusherOptions = pusherOptions;
+	}
 	
 	public void setConnection(InternalConnection connection) {
 		if (connection == null) {
@@ -35,12 +84,87 @@ public class ChannelManager implements ConnectionEventListener {
 		connection.bind(ConnectionState.CONNECTED, this);
 	}
 
+	/**
+	 * Sets redundant connections that are subscribed to every public channel alongside the primary connection. Each
+	 * event is delivered from whichever connection receives it first and the copies received later are dropped.
+	 * Private and presence channels are only subscribed on the primary connection, because their authorization is
+	 * tied to its socket id.
+	 */
+	public void setStandbyConnections(List<InternalConnection> connections) {
+		if (connections == null) {
+			throw new IllegalArgumentException("Cannot use a null list of standby connections");
+		}
+
+		for (StandbyConnection standby : standbyConnections) {
+			standby.connection.unbind(ConnectionState.CONNECTED, standby);
+		}
+
+		List<StandbyConnection> standbys = new ArrayList<StandbyConnection>(connections.size());
+		for (InternalConnection standbyConnection : connections) {
+			StandbyConnection standby = new StandbyConnection(standbyConnection);
+			standbyConnection.bind(ConnectionState.CONNECTED, standby);
+			standbys.add(standby);
+		}
+
+		standbyConnections.clear();
+		standbyConnections.addAll(standbys);
+		deduplicator = standbys.isEmpty() ? null : new EventDeduplicator(standbys.size() + 1, pusherOptions.getDeduplicationWindow());
+	}
+
 	public void subscribeTo(InternalChannel channel, ChannelEventListener listener, String... eventNames) {
 
-		validateArgumentsAndBindEvents(channel, listener, eventNames);
-		channelNameToChannelMap.put(channel.getName(), channel);
+		synchronized (this) {
+			validateArguments(channel);
+			// configured first so that the events bound here are dispatched in the same way as later bindings
+			configure(channel);
+			bindEvents(channel, listener, eventNames);
+			channelNameToChannelMap.put(channel.getName(), channel);
+		}
 		sendOrQueueSubscribeMessage(channel);
 	}
+
+	/**
+	 * Subscribes to a group of channels. Every channel is validated before any of them is registered, so either all
+	 * of the channels are subscribed or, if an exception is thrown, none of them are. The subscribe messages are
+	 * then sent together from a single task on the event queue rather than one task per channel.
+	 */
+	public BulkSubscription subscribeToAll(List<InternalChannel> channels, ChannelEventListener listener, String... eventNames) {
+
+		if (channels == null) {
+			throw new IllegalArgumentException("Cannot subscribe to a null collection of channels");
+		}
+
+		for (String eventName : eventNames) {
+			if (eventName == null) {
+				throw new IllegalArgumentException("Cannot bind to channels with a null event name");
+			}
+			if (listener == null) {
+				throw new IllegalArgumentException("Cannot bind to events " + eventName + " with a null listener");
+			}
+		}
+
+		BulkSubscriptionImpl subscription;
+		synchronized (this) {
+			Set<String> namesInThisCall = new HashSet<String>();
+			for (InternalChannel channel : channels) {
+				validateArguments(channel);
+				if (!namesInThisCall.add(channel.getName())) {
+					throw new IllegalArgumentException("Channel " + channel.getName() + " appears more than once");
+				}
+			}
+
+			for (InternalChannel channel : channels) {
+				configure(channel);
+				bindEvents(channel, listener, eventNames);
+				channelNameToChannelMap.put(channel.getName(), channel);
+			}
+
+			subscription = new BulkSubscriptionImpl(channels);
+		}
+
+		sendOrQueueSubscribeMessages(new ArrayList<InternalChannel>(channels));
+		return subscription;
+	}
 	
 	public void unsubscribeFrom(String channelName) {
 
@@ -51,24 +175,286 @@ public class ChannelManager implements ConnectionEventListener {
 		InternalChannel channel = channelNameToChannelMap.remove(channelName);
 		if (channel != null) {
 			connection.sendMessage(channel.toUnsubscribeMessage());
+			unsubscribeStandbys(Collections.singletonList(channel));
 			channel.updateState(ChannelState.UNSUBSCRIBED);
 		} else {
 			throw new IllegalArgumentException("Cannot unsubscribe to channel " + channelName + ", no subscription found");
 		}
 	}
 
-	@SuppressWarnings("unchecked")
+	/**
+	 * Unsubscribes from a group of channels. All of the names are checked before any channel is removed and the
+	 * unsubscribe messages are sent together.
+	 */
+	public void unsubscribeFromAll(Collection<String> channelNames) {
+
+		if (channelNames == null) {
+			throw new IllegalArgumentException("Cannot unsubscribe from a null collection of channels");
+		}
+
+		List<InternalChannel> channels = new ArrayList<InternalChannel>(channelNames.size());
+		synchronized (this) {
+			for (String channelName : channelNames) {
+				if (channelName == null) {
+					throw new IllegalArgumentException("Cannot unsubscribe from null channel");
+				}
+				if (!channelNameToChannelMap.containsKey(channelName)) {
+					throw new IllegalArgumentException("Cannot unsubscribe to channel " + channelName + ", no subscription found");
+				}
+			}
+
+			for (String channelName : channelNames) {
+				InternalChannel channel = channelNameToChannelMap.remove(channelName);
+				if (channel != null) {
+					channels.add(channel);
+				}
+			}
+		}
+
+		List<String> messages = new ArrayList<String>(channels.size());
+		for (InternalChannel channel : channels) {
+			messages.add(channel.toUnsubscribeMessage());
+		}
+		connection.sendMessages(messages);
+		unsubscribeStandbys(channels);
+
+		for (InternalChannel channel : channels) {
+			channel.updateState(ChannelState.UNSUBSCRIBED);
+		}
+	}
+
+	/**
+	 * Acquires a reference to a shared public channel. The first reference subscribes to the channel and later
+	 * references share that subscription until every one of them has been released.
+	 */
+	public ChannelHandle acquire(String channelName) {
+
+		if (channelName == null) {
+			throw new IllegalArgumentException("Cannot acquire a null channel");
+		}
+
+		synchronized (this) {
+			SharedChannel shared = channelNameToSharedChannelMap.get(channelName);
+
+			// a shared channel that failed or was unsubscribed directly is replaced with a fresh subscription
+			if (shared != null && channelNameToChannelMap.get(channelName) != shared.channel) {
+				shared.cancelLinger();
+				channelNameToSharedChannelMap.remove(channelName);
+				shared = null;
+			}
+
+			if (shared == null) {
+				if (channelNameToChannelMap.containsKey(channelName)) {
+					throw new IllegalArgumentException("Already subscribed to a channel with name " + channelName + " outside of a shared subscription");
+				}
+
+				InternalChannel channel = Factory.newPublicChannel(channelName);
+				subscribeTo(channel, null);
+				shared = new SharedChannel(channel);
+				channelNameToSharedChannelMap.put(channelName, shared);
+			}
+
+			shared.references++;
+			shared.cancelLinger();
+			return new SharedChannelHandle(this, shared.channel, shared.bindings);
+		}
+	}
+
+	public SubscriptionStats getSubscriptionStats() {
+
+		int subscribed = 0;
+		int pending = 0;
+		int timedOut = 0;
+		for (InternalChannel channel : channelNameToChannelMap.values()) {
+			ChannelState state = channel.getState();
+			if (state == ChannelState.SUBSCRIBED) {
+				subscribed++;
+			} else if (state == ChannelState.SUBSCRIBE_TIMED_OUT) {
+				timedOut++;
+			} else {
+				pending++;
+			}
+		}
+
+		return new SubscriptionStats(subscribed, pending, timedOut, totalSubscriptionTimeouts.get(),
+				totalSubscriptionRetries.get(), totalSubscriptionFailures.get());
+	}
+
+	/**
+	 * Gets how each connection has performed against the others when standby connections are in use.
+	 * @return one entry per connection, starting with the primary connection, or an empty list if there are no standby connections.
+	 */
+	public List<ArrivalStats> getArrivalStats() {
+
+		EventDeduplicator current = deduplicator;
+		return current == null ? Collections.<ArrivalStats>emptyList() : current.getStats();
+	}
+
 	public void onMessage(String event, String wholeMessage) {
+		onMessage(connection, event, wholeMessage);
+	}
+
+	@SuppressWarnings("unchecked")
+	public void onMessage(InternalConnection source, String event, String wholeMessage) {
+
+		Map<Object, Object> json = GSON.fromJson(wholeMessage, Map.class);
+		if (pusherOptions.getMetrics() != PusherMetrics.NONE) {
+			FrameTiming.parsed(System.nanoTime());
+		}
+		onMessage(source, event, wholeMessage, json);
+	}
+
+	/**
+	 * Routes a message that the connection has already parsed, so that it isn't parsed again.
+	 * @param json The parsed message.
+	 */
+	public void onMessage(InternalConnection source, String event, String wholeMessage, Map<Object, Object> json) {
 
-		Map<Object, Object> json = new Gson().fromJson(wholeMessage, Map.class);
 		Object channelNameObject = json.get("channel");
 
 		if (channelNameObject != null) {
 			String channelName = (String) channelNameObject;
 			InternalChannel channel = channelNameToChannelMap.get(channelName);
 
-			if (channel != null) {
-				channel.onMessage(event, wholeMessage);
+			if (channel == null) {
+				pusherOptions.getMetrics().routingMissed();
+				return;
+			}
+			if (pusherOptions.isInlineDispatch() && !standbyConnections.isEmpty()) {
+				// with inline dispatch every connection calls in on its own websocket thread, so they take turns to
+				// keep deduplication and each channel's listeners single threaded
+				synchronized (inlineDispatchLock) {
+					dispatch(source, channel, event, wholeMessage, json);
+				}
+			} else {
+				dispatch(source, channel, event, wholeMessage, json);
+			}
+		}
+	}
+
+	/**
+	 * Binds a listener to the events that match the event name pattern on every subscribed channel whose name matches
+	 * the channel name pattern. A pattern is a name, a prefix followed by <code>*</code>, or <code>*</code> to match
+	 * every name.
+	 */
+	public void bind(String channelPattern, String eventPattern, SubscriptionEventListener listener) {
+		eventRouter.bind(channelPattern, eventPattern, listener);
+	}
+
+	public void unbind(String channelPattern, String eventPattern, SubscriptionEventListener listener) {
+		eventRouter.unbind(channelPattern, eventPattern, listener);
+	}
+
+	/**
+	 * Binds a listener to every event on every subscribed channel.
+	 */
+	public synchronized void bindGlobal(SubscriptionEventListener listener) {
+
+		if (listener == null) {
+			throw new IllegalArgumentException("Cannot bind a null global listener");
+		}
+
+		for (SubscriptionEventListener existing : globalListeners) {
+			if (existing.equals(listener)) {
+				return;
+			}
+		}
+		SubscriptionEventListener[] listeners = Arrays.copyOf(globalListeners, globalListeners.length + 1);
+		listeners[globalListeners.length] = listener;
+		globalListeners = listeners;
+	}
+
+	public synchronized void unbindGlobal(SubscriptionEventListener listener) {
+
+		if (listener == null) {
+			throw new IllegalArgumentException("Cannot unbind a null global listener");
+		}
+
+		List<SubscriptionEventListener> listeners = new ArrayList<SubscriptionEventListener>(Arrays.asList(globalListeners));
+		if (listeners.remove(listener)) {
+			globalListeners = listeners.toArray(new SubscriptionEventListener[listeners.size()]);
+		}
+	}
+
+	private void dispatch(InternalConnection source, InternalChannel channel, String event, String wholeMessage, Map<Object, Object> json) {
+
+		if (!isFirstArrival(source, channel, event, wholeMessage)) {
+			return;
+		}
+
+		// the event data is serialised once, for the channel and for any pattern or global bindings
+		String data = GSON.toJson(json.get("data"));
+		channel.onMessage(event, wholeMessage, data);
+		if (event.startsWith(INTERNAL_EVENT_PREFIX)) {
+			return;
+		}
+
+		// with no pattern or global bindings this is two reads
+		SubscriptionEventListener[] routed = eventRouter.isEmpty() ? NO_LISTENERS : eventRouter.match(channel.getName(), event);
+		SubscriptionEventListener[] global = globalListeners;
+		if (routed.length != 0 || global.length != 0) {
+			deliver(channel.getName(), event, data, routed, global);
+		}
+	}
+
+	private void deliver(final String channelName, final String event, final String data, final SubscriptionEventListener[] routed, final SubscriptionEventListener[] global) {
+
+		final PusherMetrics metrics = pusherOptions.getMetrics();
+		FrameTiming timing = (metrics == PusherMetrics.NONE) ? null : FrameTiming.current();
+		final boolean timed = timing != null;
+		final long queuedAt = timed ? System.nanoTime() : 0;
+		final long receiveNanos = timed ? timing.getReceiveNanos() : 0;
+		final long parseNanos = timed ? timing.getParseNanos() : 0;
+		final long routeNanos = timed ? queuedAt - timing.getParsedAt() : 0;
+		Runnable delivery = new Runnable() {
+			@Override
+			public void run() {
+				// the listeners share this task, so one that throws is reported on its own and the rest still run
+				for (SubscriptionEventListener listener : routed) {
+					try {
+						invoke(listener, channelName, event, data, metrics, timed, receiveNanos, parseNanos, routeNanos, queuedAt);
+					} catch (RuntimeException e) {
+						ChannelImpl.listenerFailed(e);
+					}
+				}
+				for (SubscriptionEventListener listener : global) {
+					try {
+						invoke(listener, channelName, event, data, metrics, timed, receiveNanos, parseNanos, routeNanos, queuedAt);
+					} catch (RuntimeException e) {
+						ChannelImpl.listenerFailed(e);
+					}
+				}
+			}
+		};
+
+		if (pusherOptions.isInlineDispatch()) {
+			delivery.run();
+		} else {
+			// one task for all of them, queued after the tasks for the channel's own listeners
+			Factory.getEventQueue().execute(delivery);
+		}
+	}
+
+	/**
+	 * @param timed Whether the event's frame was timed, in which case the stages before routing are given.
+	 * @param queuedAt When the delivery was queued, or started if it was inline.
+	 */
+	private static void invoke(SubscriptionEventListener listener, String channelName, String event, String data, PusherMetrics metrics,
+			boolean timed, long receiveNanos, long parseNanos, long routeNanos, long queuedAt) {
+
+		if (metrics == PusherMetrics.NONE) {
+			listener.onEvent(channelName, event, data);
+			return;
+		}
+
+		long start = System.nanoTime();
+		try {
+			listener.onEvent(channelName, event, data);
+		} finally {
+			long end = System.nanoTime();
+			metrics.listenerInvoked(channelName, event, end - start);
+			if (timed) {
+				metrics.eventDelivered(channelName, event, receiveNanos, parseNanos, routeNanos, start - queuedAt, end - start);
 			}
 		}
 	}
@@ -93,18 +479,27 @@ public class ChannelManager implements ConnectionEventListener {
 	
 	/* implementation detail */
 	
-	private void sendOrQueueSubscribeMessage(final InternalChannel channel) {
+	private void sendOrQueueSubscribeMessage(InternalChannel channel) {
+		sendOrQueueSubscribeMessage(channel, 0);
+	}
+
+	private void sendOrQueueSubscribeMessage(final InternalChannel channel, final int previousAttempts) {
 
 		Factory.getEventQueue().execute(new Runnable() {
 
 			@Override
 			public void run() {
-					
+
+				subscribeStandbys(Collections.singletonList(channel));
 				if (connection.getState() == ConnectionState.CONNECTED) {
+					Executor authorizationExecutor = pusherOptions.getAuthorizationExecutor();
+					if (authorizationExecutor != null && !isPublic(channel)) {
+						authorizeAndSubscribe(channel, previousAttempts, authorizationExecutor);
+						return;
+					}
+
 					try {
-						String message = channel.toSubscribeMessage();
-						connection.sendMessage(message);
-						channel.updateState(ChannelState.SUBSCRIBE_SENT);
+						sendSubscribeMessage(channel, toSubscribeMessage(channel), previousAttempts);
 					} catch(AuthorizationFailureException e) {
 						clearDownSubscription(channel, e);
 					}
@@ -113,6 +508,202 @@ public class ChannelManager implements ConnectionEventListener {
 		});
 	}
 
+	/**
+	 * Builds the subscribe message for a private or presence channel on the authorization executor, which calls the
+	 * authorizer, and then sends it from the event queue. If the executor rejects the authorization, because it has been
+	 * shut down, the authorizer is called on the event thread instead.
+	 */
+	private void authorizeAndSubscribe(final InternalChannel channel, final int previousAttempts, Executor authorizationExecutor) {
+
+		final String socketId = connection.getSocketId();
+		Runnable authorization = new Runnable() {
+
+			@Override
+			public void run() {
+
+				String message = null;
+				AuthorizationFailureException failure = null;
+				try {
+					message = toSubscribeMessage(channel);
+				} catch(AuthorizationFailureException e) {
+					failure = e;
+				}
+
+				final String authorizedMessage = message;
+				final AuthorizationFailureException authorizationFailure = failure;
+				Factory.getEventQueue().execute(new Runnable() {
+
+					@Override
+					public void run() {
+
+						// while the channel was being authorized it may have been unsubscribed, or the connection may
+						// have been replaced, in which case the authorization is for a socket that has gone and the
+						// channel is resubscribed when the new connection is established
+						if (channelNameToChannelMap.get(channel.getName()) != channel
+								|| connection.getState() != ConnectionState.CONNECTED
+								|| !socketId.equals(connection.getSocketId())) {
+							return;
+						}
+
+						if (authorizationFailure != null) {
+							clearDownSubscription(channel, authorizationFailure);
+						} else {
+							sendSubscribeMessage(channel, authorizedMessage, previousAttempts);
+						}
+					}
+				});
+			}
+		};
+		try {
+			authorizationExecutor.execute(authorization);
+		} catch (RejectedExecutionException e) {
+			// the executor has been shut down while the client is still in use, so the channel is authorized here on
+			// the event thread as it is when there is no authorization executor
+			authorization.run();
+		}
+	}
+
+	/**
+	 * Builds the subscribe message, which for a private or presence channel calls the authorizer, and times the
+	 * authorization when metrics are being taken.
+	 */
+	private String toSubscribeMessage(InternalChannel channel) {
+
+		PusherMetrics metrics = pusherOptions.getMetrics();
+		if (metrics == PusherMetrics.NONE || isPublic(channel)) {
+			return channel.toSubscribeMessage();
+		}
+
+		long start = System.nanoTime();
+		boolean succeeded = false;
+		try {
+			String message = channel.toSubscribeMessage();
+			succeeded = true;
+			return message;
+		} finally {
+			metrics.authorized(channel.getName(), System.nanoTime() - start, succeeded);
+		}
+	}
+
+	private void sendSubscribeMessage(InternalChannel channel, String message, int previousAttempts) {
+
+		connection.sendMessage(message);
+		channel.updateState(ChannelState.SUBSCRIBE_SENT);
+		scheduleSubscriptionDeadline(channel, previousAttempts);
+	}
+
+	private void sendOrQueueSubscribeMessages(final List<InternalChannel> channels) {
+
+		Factory.getEventQueue().execute(new Runnable() {
+
+			@Override
+			public void run() {
+
+				subscribeStandbys(channels);
+				if (connection.getState() == ConnectionState.CONNECTED) {
+					List<String> messages = new ArrayList<String>(channels.size());
+					List<InternalChannel> sent = new ArrayList<InternalChannel>(channels.size());
+
+					for (InternalChannel channel : channels) {
+						// the channel may have been unsubscribed between being queued and this task running
+						if (channelNameToChannelMap.get(channel.getName()) != channel) {
+							continue;
+						}
+
+						try {
+							messages.add(channel.toSubscribeMessage());
+							sent.add(channel);
+						} catch(AuthorizationFailureException e) {
+							clearDownSubscription(channel, e);
+						}
+					}
+
+					connection.sendMessages(messages);
+					for (InternalChannel channel : sent) {
+						channel.updateState(ChannelState.SUBSCRIBE_SENT);
+						scheduleSubscriptionDeadline(channel, 0);
+					}
+				}
+			}
+		});
+	}
+
+	private void scheduleSubscriptionDeadline(InternalChannel channel, int previousAttempts) {
+
+		long timeout = pusherOptions.getSubscriptionTimeout();
+		if (timeout <= 0) {
+			return;
+		}
+
+		// replacing any earlier deadline for this channel means that the earlier one is ignored when it fires
+		SubscriptionDeadline deadline = new SubscriptionDeadline(channel, previousAttempts + 1);
+		channelNameToDeadlineMap.put(channel.getName(), deadline);
+		Factory.getScheduler().schedule(deadline, timeout, TimeUnit.MILLISECONDS);
+	}
+
+	private void handleSubscriptionDeadline(SubscriptionDeadline deadline) {
+
+		final InternalChannel channel = deadline.channel;
+		String channelName = channel.getName();
+
+		// with inline dispatch the acknowledgement is handled on the websocket thread, so the channel only times out
+		// if it is still waiting at the moment its state is changed
+		if (!channelNameToDeadlineMap.remove(channelName, deadline)
+				|| channelNameToChannelMap.get(channelName) != channel
+				|| connection.getState() != ConnectionState.CONNECTED
+				|| !channel.compareAndSetState(ChannelState.SUBSCRIBE_SENT, ChannelState.SUBSCRIBE_TIMED_OUT)) {
+			// superseded, unsubscribed or already subscribed; a reconnection resubscribes every channel anyway
+			return;
+		}
+
+		final int attempt = deadline.attempt;
+		final boolean willRetry = attempt <= pusherOptions.getMaxSubscriptionRetries();
+
+		totalSubscriptionTimeouts.incrementAndGet();
+		notifySubscriptionTimeout(channel, attempt, willRetry);
+
+		if (willRetry) {
+			long delay = Math.min(pusherOptions.getSubscriptionRetryDelay() << Math.min(attempt - 1, 16), MAX_SUBSCRIPTION_RETRY_DELAY_MILLIS);
+			Factory.getScheduler().schedule(new Runnable() {
+				@Override
+				public void run() {
+					// subscribe messages are sent from the event thread, so the retry is handed to it
+					Factory.getEventQueue().execute(new Runnable() {
+						@Override
+						public void run() {
+							retrySubscription(channel, attempt);
+						}
+					});
+				}
+			}, Math.max(delay, 0), TimeUnit.MILLISECONDS);
+		} else {
+			totalSubscriptionFailures.incrementAndGet();
+			channelNameToChannelMap.remove(channelName);
+			unsubscribeStandbys(Collections.singletonList(channel));
+			channel.updateState(ChannelState.FAILED);
+		}
+	}
+
+	private void retrySubscription(final InternalChannel channel, int previousAttempts) {
+
+		if (channelNameToChannelMap.get(channel.getName()) == channel && channel.getState() == ChannelState.SUBSCRIBE_TIMED_OUT) {
+			totalSubscriptionRetries.incrementAndGet();
+			sendOrQueueSubscribeMessage(channel, previousAttempts);
+		}
+	}
+
+	private void notifySubscriptionTimeout(final InternalChannel channel, final int attempt, final boolean willRetry) {
+
+		if (channel.getEventListener() instanceof SubscriptionTimeoutListener) {
+			Factory.getEventQueue().execute(new Runnable() {
+				public void run() {
+					SubscriptionTimeoutListener listener = (SubscriptionTimeoutListener) channel.getEventListener();
+					listener.onSubscriptionTimeout(channel.getName(), attempt, willRetry);
+				}
+			});
+		}
+	}
+
 	private void clearDownSubscription(final InternalChannel channel, final Exception e) {
 		
 		channelNameToChannelMap.remove(channel.getName());
@@ -132,7 +723,55 @@ public class ChannelManager implements ConnectionEventListener {
 		}
 	}
 	
-	private void validateArgumentsAndBindEvents(InternalChannel channel, ChannelEventListener listener, String... eventNames) {
+	synchronized void release(InternalChannel channel) {
+
+		final SharedChannel shared = channelNameToSharedChannelMap.get(channel.getName());
+		if (shared == null || shared.channel != channel || shared.references == 0) {
+			return;
+		}
+
+		if (--shared.references > 0) {
+			return;
+		}
+
+		long linger = pusherOptions.getSharedChannelLinger();
+		if (linger > 0) {
+			shared.lingerTask = Factory.getScheduler().schedule(new Runnable() {
+				@Override
+				public void run() {
+					Factory.getEventQueue().execute(new Runnable() {
+						@Override
+						public void run() {
+							unsubscribeIfIdle(shared);
+						}
+					});
+				}
+			}, linger, TimeUnit.MILLISECONDS);
+		} else {
+			unsubscribeIfIdle(shared);
+		}
+	}
+
+	private synchronized void unsubscribeIfIdle(SharedChannel shared) {
+
+		String channelName = shared.channel.getName();
+		if (shared.references > 0 || channelNameToSharedChannelMap.get(channelName) != shared) {
+			return;
+		}
+
+		channelNameToSharedChannelMap.remove(channelName);
+		if (channelNameToChannelMap.get(channelName) == shared.channel) {
+			channelNameToChannelMap.remove(channelName);
+			// without a connection the server side subscription has already gone, and it won't be resubscribed
+			if (connection.getState() == ConnectionState.CONNECTED) {
+				connection.sendMessage(shared.channel.toUnsubscribeMessage());
+			}
+			unsubscribeStandbys(Collections.singletonList(shared.channel));
+			shared.channel.updateState(ChannelState.UNSUBSCRIBED);
+		}
+	}
+
+	private void validateArguments(InternalChannel channel) {
 
 		if (channel == null) {
 			throw new IllegalArgumentException("Cannot subscribe to a null channel");
@@ -141,6 +780,9 @@ public class ChannelManager implements ConnectionEventListener {
 		if (channelNameToChannelMap.containsKey(channel.getName())) {
 			throw new IllegalArgumentException("Already subscribed to a channel with name " + channel.getName());
 		}
+	}
+
+	private void bindEvents(InternalChannel channel, ChannelEventListener listener, String... eventNames) {
 
 		for (String eventName : eventNames) {
 			channel.bind(eventName, listener);
@@ -148,4 +790,179 @@ public class ChannelManager implements ConnectionEventListener {
 		
 		channel.setEventListener(listener);
 	}
-}
\ No newline at end of file
+
+	private boolean isFirstArrival(InternalConnection source, InternalChannel channel, String event, String wholeMessage) {
+
+		EventDeduplicator current = deduplicator;
+		if (current == null) {
+			return true;
+		}
+
+		int connectionIndex = indexOf(source);
+		boolean deduplicated = isPublic(channel) && !event.startsWith(INTERNAL_EVENT_PREFIX);
+		if (!deduplicated) {
+			if (event.equals(SUBSCRIPTION_SUCCEEDED_EVENT)) {
+				// the connection missed whatever was published while it was not subscribed
+				current.resynchronize(connectionIndex, channel.getName());
+			}
+			// a standby's own subscription acknowledgements say nothing about the state of the channel
+			return connectionIndex == 0;
+		}
+
+		return current.isFirstArrival(connectionIndex, channel.getName(), wholeMessage, System.nanoTime());
+	}
+
+	private int indexOf(InternalConnection source) {
+
+		for (int i = 0; i < standbyConnections.size(); i++) {
+			if (standbyConnections.get(i).connection == source) {
+				return i + 1;
+			}
+		}
+		return 0;
+	}
+
+	private static boolean isPublic(InternalChannel channel) {
+		return !(channel instanceof PrivateChannelImpl);
+	}
+
+	private void subscribeStandbys(Collection<InternalChannel> channels) {
+
+		for (StandbyConnection standby : standbyConnections) {
+			standby.subscribe(channels);
+		}
+	}
+
+	private void unsubscribeStandbys(final Collection<InternalChannel> channels) {
+
+		if (standbyConnections.isEmpty()) {
+			return;
+		}
+
+		Factory.getEventQueue().execute(new Runnable() {
+			@Override
+			public void run() {
+				for (StandbyConnection standby : standbyConnections) {
+					standby.unsubscribe(channels);
+				}
+			}
+		});
+	}
+
+	private static class SharedChannel {
+
+		private final InternalChannel channel;
+		private final SharedBindings bindings;
+		private int references;
+		private ScheduledFuture<?> lingerTask;
+
+		SharedChannel(InternalChannel channel) {
+			this.channel = channel;
+			this.bindings = new SharedBindings(channel);
+		}
+
+		void cancelLinger() {
+			if (lingerTask != null) {
+				lingerTask.cancel(false);
+				lingerTask = null;
+			}
+		}
+	}
+
+	private void configure(InternalChannel channel) {
+
+		if (pusherOptions.isEventHistoryEnabled()) {
+			channel.enableEventHistory(pusherOptions.getEventHistoryMaxEvents(), pusherOptions.getEventHistoryMaxBytes());
+		}
+		channel.setInlineDispatch(pusherOptions.isInlineDispatch());
+		channel.setListenerExecutor(pusherOptions.getListenerExecutor());
+		channel.setMetrics(pusherOptions.getMetrics());
+	}
+
+	/**
+	 * Keeps a standby connection subscribed to the same public channels as the primary connection. The set of channels
+	 * that the standby has subscribed to is only used on the event queue.
+	 */
+	private class StandbyConnection implements ConnectionEventListener {
+
+		private final InternalConnection connection;
+		private final Set<String> subscribedChannelNames = new HashSet<String>();
+
+		StandbyConnection(InternalConnection connection) {
+			this.connection = connection;
+		}
+
+		void subscribe(Collection<InternalChannel> channels) {
+
+			if (connection.getState() != ConnectionState.CONNECTED) {
+				return;
+			}
+
+			List<String> messages = new ArrayList<String>();
+			for (InternalChannel channel : channels) {
+				if (isPublic(channel) && channelNameToChannelMap.get(channel.getName()) == channel
+						&& subscribedChannelNames.add(channel.getName())) {
+					messages.add(channel.toSubscribeMessage());
+				}
+			}
+
+			if (!messages.isEmpty()) {
+				connection.sendMessages(messages);
+			}
+		}
+
+		void unsubscribe(Collection<InternalChannel> channels) {
+
+			List<String> messages = new ArrayList<String>();
+			for (InternalChannel channel : channels) {
+				if (subscribedChannelNames.remove(channel.getName())) {
+					messages.add(channel.toUnsubscribeMessage());
+				}
+			}
+
+			if (!messages.isEmpty() && connection.getState() == ConnectionState.CONNECTED) {
+				connection.sendMessages(messages);
+			}
+		}
+
+		@Override
+		public void onConnectionStateChange(ConnectionStateChange change) {
+
+			if (change.getCurrentState() == ConnectionState.CONNECTED) {
+				// a new socket starts with no subscriptions
+				subscribedChannelNames.clear();
+				subscribe(new ArrayList<InternalChannel>(channelNameToChannelMap.values()));
+			}
+		}
+
+		@Override
+		public void onError(String message, String code, Exception e) {
+			// errors are reported to the standby connection's own listeners
+		}
+	}
+
+	/**
+	 * Fires on the shared scheduler thread and hands the deadline check over to the event queue, where all other
+	 * channel state changes are made.
+	 */
+	private class SubscriptionDeadline implements Runnable {
+
+		private final InternalChannel channel;
+		private final int attempt;
+
+		SubscriptionDeadline(InternalChannel channel, int attempt) {
+			this.channel = channel;
+			this.attempt = attempt;
+		}
+
+		@Override
+		public void run() {
+			Factory.getEventQueue().execute(new Runnable() {
+				@Override
+				public void run() {
+					handleSubscriptionDeadline(SubscriptionDeadline.this);
+				}
+			});
+		}
+	}
+}
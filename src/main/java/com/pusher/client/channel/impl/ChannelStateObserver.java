@@ -0,0 +1,13 @@
+package com.pusher.client.channel.impl;
+
+import com.pusher.client.channel.ChannelState;
+
+/**
+ * Used within the library to observe every state transition of an {@link InternalChannel}, for example to complete
+ * a future when the subscription succeeds. Observers are called on the thread that changes the state, which is
+ * normally the event thread, and must not block.
+ */
+public interface ChannelStateObserver {
+
+	void onStateChange(InternalChannel channel, ChannelState previousState, ChannelState newState);
+}
@@ -0,0 +1,130 @@
+package com.pusher.client.channel.impl;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.JsonParseException;
+import com.pusher.client.channel.SubscriptionEventListener;
+import com.pusher.client.util.Factory;
+
+/**
+ * Stands in for a listener bound with conflation. Events are held in a map of pending events, keyed by the
+ * conflation key, and a newer event replaces a pending event with the same key. At most one drain task is waiting
+ * on the event queue at any time, so a slow listener leaves one pending event per key rather than a growing
+ * backlog of stale events.
+ */
+class ConflatingListener implements StandInListener {
+
+	private static final Object NO_KEY = new Object();
+
+	private final SubscriptionEventListener delegate;
+	private final String keyField;
+	private final Map<Object, String> pending = new LinkedHashMap<Object, String>(); // guarded by this
+	private boolean drainScheduled; // guarded by this
+	private String channelName;
+	private String eventName;
+
+	private final Runnable drain = new Runnable() {
+		@Override
+		public void run() {
+			drain();
+		}
+	};
+
+	/**
+	 * @param keyField A top level field of the event data whose value is the conflation key, or null to conflate every event.
+	 */
+	ConflatingListener(SubscriptionEventListener delegate, String keyField) {
+		this.delegate = delegate;
+		this.keyField = keyField;
+	}
+
+	@Override
+	public SubscriptionEventListener getDelegate() {
+		return delegate;
+	}
+
+	@Override
+	public void onEvent(String channelName, String eventName, String data) {
+
+		Object key = keyOf(data);
+		boolean schedule;
+		synchronized (this) {
+			this.channelName = channelName;
+			this.eventName = eventName;
+			// removing first moves the key to the end, so pending events are delivered in the order of their latest update
+			pending.remove(key);
+			pending.put(key, data);
+			schedule = !drainScheduled;
+			drainScheduled = true;
+		}
+
+		if (schedule) {
+			Factory.getEventQueue().execute(drain);
+		}
+	}
+
+	private void drain() {
+
+		List<String> events;
+		String channel;
+		String event;
+		synchronized (this) {
+			events = new ArrayList<String>(pending.values());
+			pending.clear();
+			drainScheduled = false;
+			channel = channelName;
+			event = eventName;
+		}
+
+		for (String data : events) {
+			delegate.onEvent(channel, event, data);
+		}
+	}
+
+	/**
+	 * Two stand-ins are equal if they conflate the same listener by the same key, so that binding a listener twice
+	 * has no effect, as it does for listeners bound without options.
+	 */
+	@Override
+	public boolean equals(Object other) {
+		if (!(other instanceof ConflatingListener)) {
+			return false;
+		}
+		ConflatingListener that = (ConflatingListener) other;
+		return delegate.equals(that.delegate) && (keyField == null ? that.keyField == null : keyField.equals(that.keyField));
+	}
+
+	@Override
+	public int hashCode() {
+		return delegate.hashCode() * 31 + (keyField == null ? 0 : keyField.hashCode());
+	}
+
+	// scans the top level of the data for the key without building a tree, as this runs for every event
+	private Object keyOf(String data) {
+
+		if (keyField == null) {
+			return NO_KEY;
+		}
+
+		try {
+			RawJsonReader reader = new RawJsonReader(data);
+			if (reader.peekObject()) {
+				reader.beginObject();
+				while (reader.hasNextMember()) {
+					if (!reader.nextName().equals(keyField)) {
+						reader.skipValue();
+						continue;
+					}
+					String value = reader.peekScalar() ? reader.nextString() : reader.nextRawValue();
+					return (value != null) ? value : NO_KEY;
+				}
+			}
+		} catch (JsonParseException e) {
+			// data that is not JSON shares the slot used for events without a key
+		}
+		return NO_KEY;
+	}
+}
@@ -0,0 +1,157 @@
+package com.pusher.client.channel.impl;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.pusher.client.connection.ArrivalStats;
+
+/**
+ * Decides which copy of an event received over several redundant connections is delivered. The first copy to arrive
+ * wins and the copies that arrive later over the other connections are dropped.
+ *
+ * <p>Events are identified by a 64 bit fingerprint of the whole message. Each fingerprint keeps a count of how many
+ * times it has arrived over every connection, so an event that is genuinely published twice with the same payload is
+ * still delivered twice: an arrival is only a duplicate if another connection has already delivered that occurrence.
+ * Only the {@code windowSize} most recently seen fingerprints are remembered, so a copy that arrives after that many
+ * other events is delivered again.</p>
+ *
+ * <p>A connection that was not subscribed to a channel for a while misses the events published in that time, which
+ * would leave its counts behind the other connections' and make it drop the next real events that it alone receives.
+ * So when a connection (re)subscribes to a channel, {@link #resynchronize(int, String)} marks it as having seen every
+ * occurrence of that channel's events that has already been delivered.</p>
+ */
+class EventDeduplicator {
+
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private final int connectionCount;
+	private final Map<Long, Arrivals> window; // guarded by this
+	private final long[] wins;
+	private final long[] duplicates;
+	private final long[] totalSkewNanos;
+	private final long[] maxSkewNanos;
+
+	EventDeduplicator(int connectionCount, final int windowSize) {
+
+		if (connectionCount < 1) {
+			throw new IllegalArgumentException("Cannot deduplicate events from " + connectionCount + " connections");
+		}
+		if (windowSize < 1) {
+			throw new IllegalArgumentException("Deduplication window must hold at least one event");
+		}
+
+		this.connectionCount = connectionCount;
+		// access ordered, so the least recently seen fingerprint is forgotten first
+		this.window = new LinkedHashMap<Long, Arrivals>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Arrivals> eldest) {
+				return size() > windowSize;
+			}
+		};
+		this.wins = new long[connectionCount];
+		this.duplicates = new long[connectionCount];
+		this.totalSkewNanos = new long[connectionCount];
+		this.maxSkewNanos = new long[connectionCount];
+	}
+
+	/**
+	 * Records the arrival of a message over a connection.
+	 *
+	 * @param connectionIndex The index of the connection, where 0 is the primary connection.
+	 * @param channelName The channel that the message was received on.
+	 * @param message The whole message as it was received.
+	 * @param arrivalNanos The {@link System#nanoTime()} at which the message arrived.
+	 * @return true if this is the first copy of the message and it should be delivered, false if it is a duplicate.
+	 */
+	synchronized boolean isFirstArrival(int connectionIndex, String channelName, String message, long arrivalNanos) {
+
+		Long fingerprint = Long.valueOf(fingerprintOf(message));
+		Arrivals arrivals = window.get(fingerprint);
+		if (arrivals == null) {
+			arrivals = new Arrivals(channelName, connectionCount);
+			window.put(fingerprint, arrivals);
+		}
+
+		int occurrence = ++arrivals.seen[connectionIndex];
+		if (occurrence > arrivals.delivered) {
+			arrivals.deliveredAt(occurrence, arrivalNanos);
+			wins[connectionIndex]++;
+			return true;
+		}
+
+		long skew = arrivalNanos - arrivals.deliveredAt[occurrence - 1];
+		duplicates[connectionIndex]++;
+		totalSkewNanos[connectionIndex] += skew;
+		if (skew > maxSkewNanos[connectionIndex]) {
+			maxSkewNanos[connectionIndex] = skew;
+		}
+		return false;
+	}
+
+	/**
+	 * Brings a connection's counts for a channel up to date with what has been delivered, after the connection has
+	 * subscribed or resubscribed to the channel and so cannot receive any of the earlier occurrences.
+	 */
+	synchronized void resynchronize(int connectionIndex, String channelName) {
+
+		for (Arrivals arrivals : window.values()) {
+			if (arrivals.channelName.equals(channelName)) {
+				arrivals.seen[connectionIndex] = arrivals.delivered;
+			}
+		}
+	}
+
+	synchronized List<ArrivalStats> getStats() {
+
+		List<ArrivalStats> stats = new ArrayList<ArrivalStats>(connectionCount);
+		for (int i = 0; i < connectionCount; i++) {
+			stats.add(new ArrivalStats(i, wins[i], duplicates[i], totalSkewNanos[i], maxSkewNanos[i]));
+		}
+		return stats;
+	}
+
+	/**
+	 * 64 bit FNV-1a over the characters of the message, which is cheap to compute and, unlike {@link String#hashCode()},
+	 * wide enough that two different events in the window are very unlikely to collide.
+	 */
+	static long fingerprintOf(String message) {
+
+		long hash = FNV_OFFSET_BASIS;
+		for (int i = 0; i < message.length(); i++) {
+			char c = message.charAt(i);
+			hash ^= (c & 0xff);
+			hash *= FNV_PRIME;
+			hash ^= (c >>> 8);
+			hash *= FNV_PRIME;
+		}
+		return hash;
+	}
+
+	private static class Arrivals {
+
+		private final String channelName;
+		private final int[] seen;
+		private int delivered;
+		private long[] deliveredAt = new long[1];
+
+		Arrivals(String channelName, int connectionCount) {
+			this.channelName = channelName;
+			this.seen = new int[connectionCount];
+		}
+
+		void deliveredAt(int occurrence, long arrivalNanos) {
+			if (occurrence > deliveredAt.length) {
+				long[] grown = new long[Math.max(occurrence, deliveredAt.length * 2)];
+				System.arraycopy(deliveredAt, 0, grown, 0, deliveredAt.length);
+				deliveredAt = grown;
+			}
+			deliveredAt[occurrence - 1] = arrivalNanos;
+			delivered = occurrence;
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package com.pusher.client.channel.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import com.pusher.client.channel.EventHistory;
+
+/**
+ * A bounded buffer of the most recent events received on a channel. Events are added on the event thread and the
+ * oldest events are discarded as soon as either the count or the size limit would be exceeded.
+ */
+public class EventHistoryBuffer implements EventHistory {
+
+	// rough cost of the entry object, its references and the two string headers
+	private static final int ENTRY_OVERHEAD_BYTES = 64;
+
+	private final int maxEvents;
+	private final long maxBytes;
+	private final ArrayDeque<Entry> entries = new ArrayDeque<Entry>();
+	private long retainedBytes;
+	private long evictedCount;
+
+	public EventHistoryBuffer(int maxEvents, long maxBytes) {
+
+		if (maxEvents < 0 || maxBytes < 0) {
+			throw new IllegalArgumentException("Event history limits cannot be negative");
+		}
+		if (maxEvents == 0 && maxBytes == 0) {
+			throw new IllegalArgumentException("Event history must be limited by count, size or both");
+		}
+
+		this.maxEvents = maxEvents;
+		this.maxBytes = maxBytes;
+	}
+
+	public synchronized void add(String eventName, String data) {
+
+		Entry entry = new Entry(eventName, data);
+		if (maxBytes > 0 && entry.bytes > maxBytes) {
+			evictedCount++;
+			return;
+		}
+
+		while ((maxEvents > 0 && entries.size() >= maxEvents)
+				|| (maxBytes > 0 && retainedBytes + entry.bytes > maxBytes)) {
+			Entry evicted = entries.removeFirst();
+			retainedBytes -= evicted.bytes;
+			evictedCount++;
+		}
+
+		entries.addLast(entry);
+		retainedBytes += entry.bytes;
+	}
+
+	/**
+	 * Gets the data of up to maxEvents of the most recent events with the given name, oldest first.
+	 */
+	public synchronized List<String> getRecent(String eventName, int maxEvents) {
+
+		List<String> recent = new ArrayList<String>();
+		Iterator<Entry> newestFirst = entries.descendingIterator();
+		while (recent.size() < maxEvents && newestFirst.hasNext()) {
+			Entry entry = newestFirst.next();
+			if (entry.eventName.equals(eventName)) {
+				recent.add(entry.data);
+			}
+		}
+
+		Collections.reverse(recent);
+		return recent;
+	}
+
+	@Override
+	public int getMaxEvents() {
+		return maxEvents;
+	}
+
+	@Override
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	@Override
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	@Override
+	public synchronized long getRetainedBytes() {
+		return retainedBytes;
+	}
+
+	@Override
+	public synchronized long getEvictedCount() {
+		return evictedCount;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("[EventHistory: events=%d/%d, bytes=%d/%d, evicted=%d]", entries.size(), maxEvents, retainedBytes, maxBytes, evictedCount);
+	}
+
+	private static class Entry {
+
+		private final String eventName;
+		private final String data;
+		private final long bytes;
+
+		Entry(String eventName, String data) {
+			this.eventName = eventName;
+			this.data = data;
+			// strings hold two bytes per char
+			this.bytes = ENTRY_OVERHEAD_BYTES + 2L * (eventName.length() + ((data != null) ? data.length() : 0));
+		}
+	}
+}
@@ -0,0 +1,156 @@
+package com.pusher.client.channel.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.pusher.client.channel.SubscriptionEventListener;
+
+/**
+ * Routes events to listeners bound with a channel name pattern and an event name pattern, as described by
+ * {@link NameIndex}.
+ *
+ * <p>Binding and unbinding replace the routing table. The table compiles a {@link NameIndex} of the event patterns
+ * for each channel the first time an event arrives on it, so after that routing an event costs a map lookup for the
+ * channel and a lookup in its index, however many bindings there are.</p>
+ */
+class EventRouter {
+
+	private static final String INTERNAL_EVENT_PREFIX = "pusher_internal:";
+	private static final int MAX_CACHED_CHANNELS = 1024;
+
+	private final List<Route> routes = new ArrayList<Route>(); // guarded by this
+	private volatile Table table = new Table(Collections.<Route>emptyList());
+
+	/**
+	 * @return true if the binding was added, or false if the listener was already bound with these patterns.
+	 */
+	synchronized boolean bind(String channelPattern, String eventPattern, SubscriptionEventListener listener) {
+
+		validate(channelPattern, eventPattern, listener);
+		Route route = new Route(channelPattern, eventPattern, listener);
+		if (routes.contains(route)) {
+			return false;
+		}
+		routes.add(route);
+		table = new Table(new ArrayList<Route>(routes));
+		return true;
+	}
+
+	/**
+	 * @return true if the binding was removed, or false if there was no such binding.
+	 */
+	synchronized boolean unbind(String channelPattern, String eventPattern, SubscriptionEventListener listener) {
+
+		validate(channelPattern, eventPattern, listener);
+		if (!routes.remove(new Route(channelPattern, eventPattern, listener))) {
+			return false;
+		}
+		table = new Table(new ArrayList<Route>(routes));
+		return true;
+	}
+
+	boolean isEmpty() {
+		return table.routes.isEmpty();
+	}
+
+	/**
+	 * @return The listeners bound to the event on the channel, in the order they were bound. Each listener appears once
+	 * however many of its bindings match. The array is shared and must not be modified.
+	 */
+	SubscriptionEventListener[] match(String channelName, String eventName) {
+		return table.indexFor(channelName).match(eventName);
+	}
+
+	/* implementation detail */
+
+	private static void validate(String channelPattern, String eventPattern, SubscriptionEventListener listener) {
+
+		validatePattern("channel", channelPattern);
+		validatePattern("event", eventPattern);
+
+		if (listener == null) {
+			throw new IllegalArgumentException("Cannot bind or unbind a null listener");
+		}
+
+		if (eventPattern.startsWith(INTERNAL_EVENT_PREFIX)) {
+			throw new IllegalArgumentException("Cannot bind or unbind an internal event name such as " + eventPattern);
+		}
+	}
+
+	private static void validatePattern(String kind, String pattern) {
+
+		if (pattern == null) {
+			throw new IllegalArgumentException("Cannot bind or unbind with a null " + kind + " name pattern");
+		}
+
+		int wildcard = pattern.indexOf('*');
+		if (wildcard != -1 && wildcard != pattern.length() - 1) {
+			throw new IllegalArgumentException("The " + kind + " name pattern " + pattern + " can only have a * at the end");
+		}
+	}
+
+	private static final class Table {
+
+		private final List<Route> routes;
+		private final ConcurrentMap<String, NameIndex> channelToIndex = new ConcurrentHashMap<String, NameIndex>();
+
+		Table(List<Route> routes) {
+			this.routes = routes;
+		}
+
+		NameIndex indexFor(String channelName) {
+
+			NameIndex index = channelToIndex.get(channelName);
+			if (index != null) {
+				return index;
+			}
+
+			List<String> eventPatterns = new ArrayList<String>();
+			List<SubscriptionEventListener> listeners = new ArrayList<SubscriptionEventListener>();
+			for (Route route : routes) {
+				if (NameIndex.matches(route.channelPattern, channelName)) {
+					eventPatterns.add(route.eventPattern);
+					listeners.add(route.listener);
+				}
+			}
+
+			index = eventPatterns.isEmpty() ? NameIndex.EMPTY : NameIndex.compile(eventPatterns, listeners);
+			if (channelToIndex.size() >= MAX_CACHED_CHANNELS) {
+				// channels come and go, so rather than keep an index for every channel ever seen, start again
+				channelToIndex.clear();
+			}
+			NameIndex existing = channelToIndex.putIfAbsent(channelName, index);
+			return (existing != null) ? existing : index;
+		}
+	}
+
+	private static final class Route {
+
+		final String channelPattern;
+		final String eventPattern;
+		final SubscriptionEventListener listener;
+
+		Route(String channelPattern, String eventPattern, SubscriptionEventListener listener) {
+			this.channelPattern = channelPattern;
+			this.eventPattern = eventPattern;
+			this.listener = listener;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof Route)) {
+				return false;
+			}
+			Route that = (Route) other;
+			return channelPattern.equals(that.channelPattern) && eventPattern.equals(that.eventPattern) && listener.equals(that.listener);
+		}
+
+		@Override
+		public int hashCode() {
+			return (channelPattern.hashCode() * 31 + eventPattern.hashCode()) * 31 + listener.hashCode();
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package com.pusher.client.channel.impl;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.pusher.client.channel.SubscriptionEventListener;
+import com.pusher.client.util.Factory;
+import com.pusher.client.util.SerialExecutor;
+
+/**
+ * Stands in for a listener that runs on its own executor rather than on the event thread. Events are handed to a
+ * {@link SerialExecutor} of the listener's own, so the listener receives them one at a time and in order while other
+ * listeners carry on in parallel. A listener bound to several events on the same executor shares one serial executor
+ * between its stand-ins, so it receives the events in the order they arrived whatever their names. If the executor
+ * rejects an event, because it has been shut down, the event is delivered on the event thread instead.
+ */
+class ExecutorListener implements StandInListener {
+
+	private final SubscriptionEventListener delegate;
+	private final SerialExecutor executor;
+
+	ExecutorListener(SubscriptionEventListener delegate, SerialExecutor executor) {
+		this.delegate = delegate;
+		this.executor = executor;
+	}
+
+	/**
+	 * @return true if this stands in for the given listener on the given executor.
+	 */
+	boolean runs(Object listener, Executor underlying) {
+		return delegate.equals(listener) && executor.getExecutor().equals(underlying);
+	}
+
+	SerialExecutor getSerialExecutor() {
+		return executor;
+	}
+
+	@Override
+	public Object getDelegate() {
+		return delegate;
+	}
+
+	@Override
+	public void onEvent(final String channelName, final String eventName, final String data) {
+		Runnable delivery = new Runnable() {
+			@Override
+			public void run() {
+				delegate.onEvent(channelName, eventName, data);
+			}
+		};
+		try {
+			executor.execute(delivery);
+		} catch (RejectedExecutionException e) {
+			// the executor has been shut down while the channel is still subscribed, so rather than lose the event or
+			// throw at the caller the listener gets it on the event thread
+			Factory.getEventQueue().execute(delivery);
+		}
+	}
+
+	/**
+	 * Two stand-ins are equal if they run the same listener on the same executor, so that binding a listener twice
+	 * has no effect, as it does for listeners on the event thread.
+	 */
+	@Override
+	public boolean equals(Object other) {
+		if (!(other instanceof ExecutorListener)) {
+			return false;
+		}
+		ExecutorListener that = (ExecutorListener) other;
+		return runs(that.delegate, that.executor.getExecutor());
+	}
+
+	@Override
+	public int hashCode() {
+		return delegate.hashCode() * 31 + executor.getExecutor().hashCode();
+	}
+}
@@ -1,8 +1,12 @@
 package com.pusher.client.channel.impl;
 
+import java.util.concurrent.Executor;
+
 import com.pusher.client.channel.Channel;
 import com.pusher.client.channel.ChannelEventListener;
 import com.pusher.client.channel.ChannelState;
+import com.pusher.client.channel.SubscriptionEventListener;
+import com.pusher.client.metrics.PusherMetrics;
 
 public interface InternalChannel extends Channel, Comparable<InternalChannel> {
     
@@ -11,10 +15,55 @@ public interface InternalChannel extends Channel, Comparable<InternalChannel> {
     String toUnsubscribeMessage();
 
     void onMessage(String event, String message);
+
+    /**
+     * Handles a message whose data has already been taken from it, so that the message isn't parsed again.
+     * @param data The message's data as JSON.
+     */
+    void onMessage(String event, String message, String data);
     
     void updateState(ChannelState state);
 
+    /**
+     * Changes the state only if it is still the expected state, so that a change made on another thread in between
+     * isn't overwritten.
+     * @return true if the state was changed.
+     */
+    boolean compareAndSetState(ChannelState expected, ChannelState state);
+
+    ChannelState getState();
+
+    void addStateObserver(ChannelStateObserver observer);
+
+    void removeStateObserver(ChannelStateObserver observer);
+
 	void setEventListener(ChannelEventListener listener);
 
 	ChannelEventListener getEventListener();
+
+	void enableEventHistory(int maxEvents, long maxBytes);
+
+	/**
+	 * Adds a listener that receives every event on the channel other than internal events. It is called directly on
+	 * the dispatching thread rather than from a task on the event queue, so it must not block.
+	 */
+	void addDirectListener(SubscriptionEventListener listener);
+
+	void removeDirectListener(SubscriptionEventListener listener);
+
+	/**
+	 * Calls bound listeners directly on the dispatching thread rather than from a task per event on the event queue.
+	 */
+	void setInlineDispatch(boolean inlineDispatch);
+
+	/**
+	 * Runs listeners bound from now on with the given executor rather than on the event thread, or on the event thread
+	 * again if the executor is null.
+	 */
+	void setListenerExecutor(Executor listenerExecutor);
+
+	/**
+	 * Reports the time that listeners take to the given metrics.
+	 */
+	void setMetrics(PusherMetrics metrics);
 }
\ No newline at end of file
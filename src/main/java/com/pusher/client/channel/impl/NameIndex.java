@@ -0,0 +1,159 @@
+package com.pusher.client.channel.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.pusher.client.channel.SubscriptionEventListener;
+
+/**
+ * An immutable index from names to the listeners bound with name patterns that match them. A pattern is a name, a
+ * prefix followed by <code>*</code>, or <code>*</code> on its own to match every name.
+ *
+ * <p>The index is compiled once from its patterns. Every exact name and every node of a trie of the prefixes holds
+ * the complete set of listeners that match there, so a lookup is one hash lookup or a walk down the trie as far as the
+ * name goes, whatever the number of patterns, and doesn't allocate.</p>
+ */
+final class NameIndex {
+
+	private static final SubscriptionEventListener[] NONE = new SubscriptionEventListener[0];
+
+	static final NameIndex EMPTY = compile(new ArrayList<String>(), new ArrayList<SubscriptionEventListener>());
+
+	private final Map<String, SubscriptionEventListener[]> exact;
+	private final Node root;
+
+	private NameIndex(Map<String, SubscriptionEventListener[]> exact, Node root) {
+		this.exact = exact;
+		this.root = root;
+	}
+
+	/**
+	 * @param patterns The patterns, in the order they were bound.
+	 * @param listeners The listener bound with each pattern.
+	 */
+	static NameIndex compile(List<String> patterns, List<SubscriptionEventListener> listeners) {
+
+		Node root = new Node();
+		for (String pattern : patterns) {
+			if (isPrefix(pattern)) {
+				root.insert(pattern, 0, pattern.length() - 1);
+			}
+		}
+		root.resolve("", patterns, listeners);
+
+		Map<String, SubscriptionEventListener[]> exact = new HashMap<String, SubscriptionEventListener[]>();
+		for (String pattern : patterns) {
+			if (!isPrefix(pattern) && !exact.containsKey(pattern)) {
+				exact.put(pattern, matching(pattern, patterns, listeners));
+			}
+		}
+
+		return new NameIndex(exact, root);
+	}
+
+	/**
+	 * @return The listeners bound with patterns that match the name, in the order they were bound and without
+	 * duplicates. The array is shared and must not be modified.
+	 */
+	SubscriptionEventListener[] match(String name) {
+
+		SubscriptionEventListener[] listeners = exact.get(name);
+		if (listeners != null) {
+			return listeners;
+		}
+
+		Node node = root;
+		for (int i = 0; i < name.length(); i++) {
+			Node child = node.child(name.charAt(i));
+			if (child == null) {
+				break;
+			}
+			node = child;
+		}
+		return node.listeners;
+	}
+
+	static boolean isPrefix(String pattern) {
+		return pattern.endsWith("*");
+	}
+
+	static boolean matches(String pattern, String name) {
+		return isPrefix(pattern) ? name.startsWith(pattern.substring(0, pattern.length() - 1)) : pattern.equals(name);
+	}
+
+	private static SubscriptionEventListener[] matching(String name, List<String> patterns, List<SubscriptionEventListener> listeners) {
+
+		Set<SubscriptionEventListener> matched = new LinkedHashSet<SubscriptionEventListener>();
+		for (int i = 0; i < patterns.size(); i++) {
+			if (matches(patterns.get(i), name)) {
+				matched.add(listeners.get(i));
+			}
+		}
+		return matched.isEmpty() ? NONE : matched.toArray(new SubscriptionEventListener[matched.size()]);
+	}
+
+	/**
+	 * A node of the prefix trie, whose children are kept in arrays sorted by character.
+	 */
+	private static final class Node {
+
+		private char[] keys = new char[0];
+		private Node[] children = new Node[0];
+		private SubscriptionEventListener[] listeners = NONE;
+
+		Node child(char c) {
+			int index = Arrays.binarySearch(keys, c);
+			return (index >= 0) ? children[index] : null;
+		}
+
+		void insert(String prefix, int start, int end) {
+
+			if (start == end) {
+				return;
+			}
+
+			char c = prefix.charAt(start);
+			int index = Arrays.binarySearch(keys, c);
+			if (index < 0) {
+				index = -index - 1;
+				char[] newKeys = new char[keys.length + 1];
+				Node[] newChildren = new Node[children.length + 1];
+				System.arraycopy(keys, 0, newKeys, 0, index);
+				System.arraycopy(children, 0, newChildren, 0, index);
+				newKeys[index] = c;
+				newChildren[index] = new Node();
+				System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+				System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+				keys = newKeys;
+				children = newChildren;
+			}
+			children[index].insert(prefix, start + 1, end);
+		}
+
+		/**
+		 * Works out the listeners of this node and those below it. A name that ends here, or leaves the trie here, is
+		 * matched only by the prefix patterns, as an exact match would have been found before the trie was walked.
+		 */
+		void resolve(String path, List<String> patterns, List<SubscriptionEventListener> allListeners) {
+
+			List<String> prefixes = new ArrayList<String>();
+			List<SubscriptionEventListener> prefixListeners = new ArrayList<SubscriptionEventListener>();
+			for (int i = 0; i < patterns.size(); i++) {
+				if (isPrefix(patterns.get(i))) {
+					prefixes.add(patterns.get(i));
+					prefixListeners.add(allListeners.get(i));
+				}
+			}
+			listeners = matching(path, prefixes, prefixListeners);
+
+			for (int i = 0; i < keys.length; i++) {
+				children[i].resolve(path + keys[i], prefixes, prefixListeners);
+			}
+		}
+	}
+}
@@ -1,7 +1,8 @@
 package com.pusher.client.channel.impl;
 
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -9,21 +10,37 @@ import java.util.Map;
 import java.util.Set;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
 import com.pusher.client.AuthorizationFailureException;
 import com.pusher.client.Authorizer;
 import com.pusher.client.channel.User;
 import com.pusher.client.channel.PresenceChannel;
+import com.pusher.client.channel.BindOptions;
+import com.pusher.client.channel.ChannelEventListener;
 import com.pusher.client.channel.PresenceChannelEventListener;
+import com.pusher.client.channel.PresenceDelta;
+import com.pusher.client.channel.PresenceDeltaListener;
+import com.pusher.client.channel.PresenceRoster;
 import com.pusher.client.channel.SubscriptionEventListener;
 import com.pusher.client.connection.impl.InternalConnection;
 import com.pusher.client.util.Factory;
+import com.pusher.client.util.PersistentOrderedMap;
 
 public class PresenceChannelImpl extends PrivateChannelImpl implements PresenceChannel {
 
     private static final String MEMBER_ADDED_EVENT = "pusher_internal:member_added";
     private static final String MEMBER_REMOVED_EVENT = "pusher_internal:member_removed";
-    private final Map<String, User> idToUserMap = Collections.synchronizedMap(new LinkedHashMap<String, User>());
-    private String myUserID;
+    // membership changes path-copy the persistent map, so each version of the roster shares all but O(log n) nodes
+    private final Object membershipLock = new Object();
+    private PersistentOrderedMap<String, User> members = PersistentOrderedMap.empty(); // guarded by membershipLock
+    private final Map<String, PresenceUserIndex> fieldToIndex = new LinkedHashMap<String, PresenceUserIndex>(); // guarded by membershipLock
+    private long rosterVersion;
+    private volatile PresenceRoster roster = new PresenceRosterSnapshot(0, members);
+    // each user touched since the last delta, mapped to what they were at that delta (null if they were not a member)
+    private Map<String, User> usersAtLastDelta = new LinkedHashMap<String, User>(); // guarded by membershipLock
+    private long lastDeltaVersion;
+    private boolean deltaPending;
+    private volatile String myUserID;
     
     public PresenceChannelImpl(InternalConnection connection, String channelName, Authorizer authorizer) {
 	super(connection, channelName, authorizer);
@@ -33,27 +50,66 @@ public class PresenceChannelImpl extends PrivateChannelImpl implements PresenceC
     
     @Override
     public Set<User> getUsers() {
-	return new LinkedHashSet<User>(idToUserMap.values());
+	return getRoster();
+    }
+    
+    @Override
+    public PresenceRoster getRoster() {
+	return roster;
+    }
+    
+    @Override
+    public void addIndex(String field) {
+	
+	if (field == null) {
+	    throw new IllegalArgumentException("Cannot index presence members by a null field");
+	}
+	
+	synchronized (membershipLock) {
+	    if (fieldToIndex.containsKey(field)) {
+		return;
+	    }
+	    
+	    PresenceUserIndex index = new PresenceUserIndex();
+	    Set<String> fields = Collections.singleton(field);
+	    for (User user : roster) {
+		index.add(user, indexedValuesOf(user, fields).get(field));
+	    }
+	    fieldToIndex.put(field, index);
+	}
+    }
+    
+    @Override
+    public Set<User> query(String field, String value) {
+	
+	synchronized (membershipLock) {
+	    PresenceUserIndex index = fieldToIndex.get(field);
+	    if (index == null) {
+		throw new IllegalArgumentException("Cannot query presence members by " + field + " because no index has been added for it. Call addIndex() first");
+	    }
+	    return index.get(value);
+	}
     }
     
     @Override
     public User getMe() {
-	return idToUserMap.get(myUserID);
+	String userId = myUserID;
+	return (userId != null) ? roster.getUser(userId) : null;
     }
     
     /* Base class overrides */
     
     @Override
-    public void onMessage(String event, String message) {
+    public void onMessage(String event, String message, String data) {
 
-	super.onMessage(event, message);
+	super.onMessage(event, message, data);
 	
 	if(event.equals(SUBSCRIPTION_SUCCESS_EVENT)) {
-	    handleSubscriptionSuccessfulMessage(message);
+	    handleSubscriptionSuccessfulMessage(data);
 	} else if(event.equals(MEMBER_ADDED_EVENT)) {
-	    handleMemberAddedEvent(message);
+	    handleMemberAddedEvent(data);
 	} else if(event.equals(MEMBER_REMOVED_EVENT)) {
-	    handleMemberRemovedEvent(message);
+	    handleMemberRemovedEvent(data);
 	}
     }
 
@@ -98,6 +154,16 @@ public class PresenceChannelImpl extends PrivateChannelImpl implements PresenceC
 	super.bind(eventName, listener);
     }
     
+    @Override
+    public void bind(String eventName, SubscriptionEventListener listener, BindOptions options) {
+	
+	if( (listener instanceof PresenceChannelEventListener) == false) {
+	    throw new IllegalArgumentException("Only instances of PresenceChannelEventListener can be bound to a presence channel");
+	}
+	
+	super.bind(eventName, listener, options);
+    }
+    
     @Override
     protected String[] getDisallowedNameExpressions() {
 	return new String[] {
@@ -110,44 +176,104 @@ public class PresenceChannelImpl extends PrivateChannelImpl implements PresenceC
 	return String.format("[Presence Channel: name=%s]", name);
     }
     
-    @SuppressWarnings({ "rawtypes", "unchecked" })
-    private void handleSubscriptionSuccessfulMessage(String message) {
+    private void handleSubscriptionSuccessfulMessage(String data) {
 	
-	// extract data from the JSON message
-	Map presenceMap = extractPresenceMapFrom(message);
-
-	List<String> ids = (List<String>) presenceMap.get("ids");
-	Map hash = (Map) presenceMap.get("hash");
+	// read the ids and the raw user_info of each member from the JSON message
+	List<String> ids = new ArrayList<String>();
+	Map<String, String> hash = new HashMap<String, String>();
+	RawJsonReader reader = dataReaderFor(data);
+	reader.beginObject();
+	while (reader.hasNextMember()) {
+	    if (!reader.nextName().equals("presence")) {
+		reader.skipValue();
+		continue;
+	    }
+	    reader.beginObject();
+	    while (reader.hasNextMember()) {
+		String name = reader.nextName();
+		if (name.equals("ids")) {
+		    reader.beginArray();
+		    while (reader.hasNextElement()) {
+			ids.add(reader.nextString());
+		    }
+		} else if (name.equals("hash")) {
+		    reader.beginObject();
+		    while (reader.hasNextMember()) {
+			String id = reader.nextName();
+			hash.put(id, reader.nextRawValue());
+		    }
+		} else {
+		    reader.skipValue();
+		}
+	    }
+	}
 	
-	// build the collection of Users
-	for(String id : ids) {
-	    String userData = (hash.get(id) != null) ? hash.get(id).toString() : null;
-	    User user = new User(id, userData);
-	    idToUserMap.put(id, user);
+	// the subscription success message carries the complete membership, replacing whatever was known before, so
+	// the next delta is the difference between the two
+	boolean scheduleDelta;
+	synchronized (membershipLock) {
+	    for(User user : roster) {
+		rememberForDelta(user.getId());
+	    }
+	    for(String id : ids) {
+		rememberForDelta(id);
+	    }
+	    
+	    members = PersistentOrderedMap.empty();
+	    for(PresenceUserIndex index : fieldToIndex.values()) {
+		index.clear();
+	    }
+	    for(String id : ids) {
+		putUser(new User(id, hash.get(id)));
+	    }
+	    scheduleDelta = membershipChanged();
+	}
+	if (scheduleDelta) {
+	    scheduleDelta();
 	}
 	
-	// notify the event listeners
+	// notify the event listeners, all of which share the one snapshot
+	final PresenceRoster users = getRoster();
 	for(final SubscriptionEventListener eventListener : getAllEventListeners()) {
-	    Factory.getEventQueue().execute(new Runnable() {
+	    notifyEventListeners(new Runnable() {
 		public void run() {
-		    ((PresenceChannelEventListener)eventListener).onUsersInformationReceived(name, new HashSet<User>(idToUserMap.values()));
+		    ((PresenceChannelEventListener)eventListener).onUsersInformationReceived(name, users);
 		}
 	    });
 	}
     }
 
-    @SuppressWarnings("rawtypes")
-    private void handleMemberAddedEvent(String message) {
+    private void handleMemberAddedEvent(String data) {
 	
-	Map dataMap = extractDataMapFrom(message);
-	String id = (String) dataMap.get("user_id");
-	String userData = (dataMap.get("user_info") != null) ? dataMap.get("user_info").toString() : null;
+	String id = null;
+	String userData = null;
+	RawJsonReader reader = dataReaderFor(data);
+	reader.beginObject();
+	while (reader.hasNextMember()) {
+	    String name = reader.nextName();
+	    if (name.equals("user_id")) {
+		id = reader.nextString();
+	    } else if (name.equals("user_info")) {
+		userData = reader.nextRawValue();
+	    } else {
+		reader.skipValue();
+	    }
+	}
+	requireUserId(id, data);
 	
 	final User user = new User(id, userData);
-	idToUserMap.put(id, user);
+	boolean scheduleDelta;
+	synchronized (membershipLock) {
+	    rememberForDelta(id);
+	    putUser(user);
+	    scheduleDelta = membershipChanged();
+	}
+	if (scheduleDelta) {
+	    scheduleDelta();
+	}
 	
 	for(final SubscriptionEventListener eventListener : getAllEventListeners()) {
-	    Factory.getEventQueue().execute(new Runnable() {
+	    notifyEventListeners(new Runnable() {
 		public void run() {
 		    ((PresenceChannelEventListener)eventListener).userSubscribed(name, user);
 		}
@@ -155,16 +281,35 @@ public class PresenceChannelImpl extends PrivateChannelImpl implements PresenceC
 	}
     }
 
-    @SuppressWarnings("rawtypes")
-    private void handleMemberRemovedEvent(String message) {
+    private void handleMemberRemovedEvent(String data) {
 	
-	Map dataMap = extractDataMapFrom(message);
-	String id = (String) dataMap.get("user_id");
+	String id = null;
+	RawJsonReader reader = dataReaderFor(data);
+	reader.beginObject();
+	while (reader.hasNextMember()) {
+	    if (reader.nextName().equals("user_id")) {
+		id = reader.nextString();
+	    } else {
+		reader.skipValue();
+	    }
+	}
+	requireUserId(id, data);
 	
-	final User user = idToUserMap.remove(id);
+	final User user;
+	boolean scheduleDelta = false;
+	synchronized (membershipLock) {
+	    rememberForDelta(id);
+	    user = removeUser(id);
+	    if (user != null) {
+		scheduleDelta = membershipChanged();
+	    }
+	}
+	if (scheduleDelta) {
+	    scheduleDelta();
+	}
 	
 	for(final SubscriptionEventListener eventListener : getAllEventListeners()) {
-	    Factory.getEventQueue().execute(new Runnable() {
+	    notifyEventListeners(new Runnable() {
 		public void run() {
 		    ((PresenceChannelEventListener)eventListener).userUnsubscribed(name, user);
 		}
@@ -172,23 +317,170 @@ public class PresenceChannelImpl extends PrivateChannelImpl implements PresenceC
 	}
     }
     
-    @SuppressWarnings("rawtypes")
-    private static Map extractDataMapFrom(String message) {
-	Gson gson = new Gson();
-	Map jsonObject = gson.fromJson(message, Map.class);
-	String dataString = (String) jsonObject.get("data");
+    // callers hold membershipLock
+    private void putUser(User user) {
+	
+	members = members.put(user.getId(), user);
+	if (!fieldToIndex.isEmpty()) {
+	    Map<String, String> values = indexedValuesOf(user, fieldToIndex.keySet());
+	    for (Map.Entry<String, PresenceUserIndex> entry : fieldToIndex.entrySet()) {
+		entry.getValue().add(user, values.get(entry.getKey()));
+	    }
+	}
+    }
+    
+    // callers hold membershipLock
+    private User removeUser(String id) {
+	
+	User user = members.get(id);
+	if (user == null) {
+	    return null;
+	}
+	for (PresenceUserIndex index : fieldToIndex.values()) {
+	    index.remove(id);
+	}
+	members = members.remove(id);
+	return user;
+    }
+    
+    // callers hold membershipLock; returns true if a delta needs to be scheduled
+    private boolean membershipChanged() {
+	rosterVersion++;
+	roster = new PresenceRosterSnapshot(rosterVersion, members);
+	
+	if (deltaPending) {
+	    return false;
+	}
+	deltaPending = true;
+	return true;
+    }
+    
+    // callers hold membershipLock
+    private void rememberForDelta(String id) {
+	if (!usersAtLastDelta.containsKey(id)) {
+	    usersAtLastDelta.put(id, members.get(id));
+	}
+    }
+    
+    /**
+     * Changes made before the delivery task runs on the event queue are coalesced into the delta that it delivers, so
+     * a burst of membership events produces one callback rather than one per event.
+     */
+    private void scheduleDelta() {
+	Factory.getEventQueue().execute(new Runnable() {
+	    public void run() {
+		deliverDelta();
+	    }
+	});
+    }
+    
+    private void deliverDelta() {
+	
+	PresenceDelta delta;
+	synchronized (membershipLock) {
+	    deltaPending = false;
+	    
+	    List<User> added = new ArrayList<User>();
+	    List<User> removed = new ArrayList<User>();
+	    List<User> changed = new ArrayList<User>();
+	    for (Map.Entry<String, User> entry : usersAtLastDelta.entrySet()) {
+		User before = entry.getValue();
+		User after = members.get(entry.getKey());
+		if (before == null && after != null) {
+		    added.add(after);
+		} else if (before != null && after == null) {
+		    removed.add(before);
+		} else if (before != null && !sameInfo(before, after)) {
+		    changed.add(after);
+		}
+	    }
 	    
-	Map dataMap = gson.fromJson(dataString, Map.class);
-	return dataMap;
+	    delta = new PresenceDelta(lastDeltaVersion, rosterVersion, added, removed, changed);
+	    usersAtLastDelta = new LinkedHashMap<String, User>();
+	    if (delta.isEmpty()) {
+		// changes that cancelled out are not delivered, so the next delta still starts from the last version that
+		// listeners were given
+		return;
+	    }
+	    lastDeltaVersion = rosterVersion;
+	}
+	
+	for (PresenceDeltaListener listener : getDeltaListeners()) {
+	    listener.onPresenceDelta(name, delta);
+	}
     }
     
-    @SuppressWarnings("rawtypes")
-    private static Map extractPresenceMapFrom(String message) {
+    private List<PresenceDeltaListener> getDeltaListeners() {
 	
-	Map dataMap = extractDataMapFrom(message);
-	Map presenceMap = (Map) dataMap.get("presence");
+	Set<Object> candidates = new LinkedHashSet<Object>();
+	ChannelEventListener eventListener = getEventListener();
+	if (eventListener != null) {
+	    candidates.add(eventListener);
+	}
+	for (SubscriptionEventListener listener : getAllEventListeners()) {
+	    candidates.add(listener);
+	}
 	
-	return presenceMap;
+	List<PresenceDeltaListener> deltaListeners = new ArrayList<PresenceDeltaListener>();
+	for (Object candidate : candidates) {
+	    if (candidate instanceof PresenceDeltaListener) {
+		deltaListeners.add((PresenceDeltaListener) candidate);
+	    }
+	}
+	return deltaListeners;
+    }
+    
+    private static boolean sameInfo(User before, User after) {
+	String beforeInfo = before.getInfo();
+	String afterInfo = after.getInfo();
+	return (beforeInfo == null) ? afterInfo == null : beforeInfo.equals(afterInfo);
+    }
+    
+    /*
+     * Presence messages are streamed rather than decoded into a tree or maps, so that each member's user_info can be
+     * kept as the exact JSON that was sent. It is only decoded if and when User.getInfo(Class) is called. The data is
+     * sent as a string holding the JSON, which unescapes back to exactly what was sent.
+     */
+    private static RawJsonReader dataReaderFor(String data) {
+	
+	String json = new RawJsonReader(data).nextString();
+	if (json == null) {
+	    throw new JsonSyntaxException("Presence message has no data");
+	}
+	return new RawJsonReader(json);
+    }
+    
+    private static void requireUserId(String id, String data) {
+	if (id == null) {
+	    throw new JsonSyntaxException("Presence member message has no user_id: " + data);
+	}
+    }
+    
+    /*
+     * Reads the indexed fields from the top level of the user's info in one pass over the JSON that was sent, without
+     * building a tree. Only strings, numbers and booleans are indexed, each by its string form.
+     */
+    private static Map<String, String> indexedValuesOf(User user, Set<String> fields) {
+	
+	if (user.getInfo() == null) {
+	    return Collections.emptyMap();
+	}
+	RawJsonReader reader = new RawJsonReader(user.getInfo());
+	if (!reader.peekObject()) {
+	    return Collections.emptyMap();
+	}
+	
+	Map<String, String> values = new HashMap<String, String>();
+	reader.beginObject();
+	while (reader.hasNextMember()) {
+	    String name = reader.nextName();
+	    if (fields.contains(name) && reader.peekScalar()) {
+		values.put(name, reader.nextString());
+	    } else {
+		reader.skipValue();
+	    }
+	}
+	return values;
     }
     
     @SuppressWarnings("rawtypes")
@@ -198,12 +490,7 @@ public class PresenceChannelImpl extends PrivateChannelImpl implements PresenceC
 	myUserID = (String) channelDataMap.get("user_id");
     }
     
-    private Set<SubscriptionEventListener> getAllEventListeners() {
-	
-	Set<SubscriptionEventListener> allListeners = new HashSet<SubscriptionEventListener>();
-	for(Set<SubscriptionEventListener> listenersForThisEvent : eventNameToListenerMap.values()) {
-	    allListeners.addAll(listenersForThisEvent);
-	}
-	return allListeners;
+    private SubscriptionEventListener[] getAllEventListeners() {
+	return getBoundListeners();
     }
 }
\ No newline at end of file
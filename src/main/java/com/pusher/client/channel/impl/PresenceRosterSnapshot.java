@@ -0,0 +1,50 @@
+package com.pusher.client.channel.impl;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import com.pusher.client.channel.PresenceRoster;
+import com.pusher.client.channel.User;
+import com.pusher.client.util.PersistentOrderedMap;
+
+/**
+ * A {@link PresenceRoster} over one version of a presence channel's members. The map is immutable, so it is shared
+ * rather than copied.
+ */
+final class PresenceRosterSnapshot extends PresenceRoster {
+
+	private final PersistentOrderedMap<String, User> idToUser;
+
+	PresenceRosterSnapshot(long version, PersistentOrderedMap<String, User> idToUser) {
+		super(version);
+		this.idToUser = idToUser;
+	}
+
+	@Override
+	public User getUser(String userId) {
+		return idToUser.get(userId);
+	}
+
+	@Override
+	public Iterator<User> iterator() {
+		final Iterator<Map.Entry<String, User>> entries = idToUser.iterator();
+		return new Iterator<User>() {
+			public boolean hasNext() {
+				return entries.hasNext();
+			}
+
+			public User next() {
+				return entries.next().getValue();
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Override
+	public int size() {
+		return idToUser.size();
+	}
+}
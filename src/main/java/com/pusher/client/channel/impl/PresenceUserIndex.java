@@ -0,0 +1,68 @@
+package com.pusher.client.channel.impl;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.pusher.client.channel.User;
+
+/**
+ * A secondary index over the members of a presence channel, keyed by the value of one top level field of their
+ * user_info. Not thread safe; {@link PresenceChannelImpl} only uses it while holding the lock on its members.
+ */
+class PresenceUserIndex {
+
+	private final Map<String, Map<String, User>> valueToUsers = new HashMap<String, Map<String, User>>();
+	private final Map<String, String> idToValue = new HashMap<String, String>();
+
+	/**
+	 * Adds a user, replacing any earlier entry for the same user id.
+	 * @param value The value of the indexed field for this user, or null if the user does not have the field.
+	 */
+	void add(User user, String value) {
+
+		remove(user.getId());
+		if (value == null) {
+			return;
+		}
+
+		Map<String, User> users = valueToUsers.get(value);
+		if (users == null) {
+			users = new LinkedHashMap<String, User>();
+			valueToUsers.put(value, users);
+		}
+		users.put(user.getId(), user);
+		idToValue.put(user.getId(), value);
+	}
+
+	void remove(String userId) {
+
+		String value = idToValue.remove(userId);
+		if (value == null) {
+			return;
+		}
+
+		Map<String, User> users = valueToUsers.get(value);
+		users.remove(userId);
+		if (users.isEmpty()) {
+			valueToUsers.remove(value);
+		}
+	}
+
+	void clear() {
+		valueToUsers.clear();
+		idToValue.clear();
+	}
+
+	Set<User> get(String value) {
+
+		Map<String, User> users = valueToUsers.get(value);
+		if (users == null) {
+			return Collections.emptySet();
+		}
+		return Collections.unmodifiableSet(new LinkedHashSet<User>(users.values()));
+	}
+}
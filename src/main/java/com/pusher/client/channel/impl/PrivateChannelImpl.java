@@ -7,6 +7,7 @@ import com.google.gson.Gson;
 import com.google.gson.JsonSyntaxException;
 import com.pusher.client.AuthorizationFailureException;
 import com.pusher.client.Authorizer;
+import com.pusher.client.channel.BindOptions;
 import com.pusher.client.channel.ChannelState;
 import com.pusher.client.channel.PrivateChannel;
 import com.pusher.client.channel.PrivateChannelEventListener;
@@ -72,6 +73,16 @@ public class PrivateChannelImpl extends ChannelImpl implements PrivateChannel {
 	super.bind(eventName, listener);
     }
     
+    @Override
+    public void bind(String eventName, SubscriptionEventListener listener, BindOptions options) {
+	
+	if( (listener instanceof PrivateChannelEventListener) == false) {
+	    throw new IllegalArgumentException("Only instances of PrivateChannelEventListener can be bound to a private channel");
+	}
+	
+	super.bind(eventName, listener, options);
+    }
+    
     @Override
     @SuppressWarnings("rawtypes")
     public String toSubscribeMessage() {
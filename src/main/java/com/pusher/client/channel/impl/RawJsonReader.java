@@ -0,0 +1,235 @@
+package com.pusher.client.channel.impl;
+
+import com.google.gson.JsonSyntaxException;
+
+/**
+ * Reads a JSON document front to back without building a tree, like Gson's {@link com.google.gson.stream.JsonReader},
+ * but can also return any value as the exact substring that was sent. Gson's reader buffers its input and does not
+ * expose offsets, so it cannot slice out a value.
+ *
+ * <p>Only what the presence messages need is supported: objects, arrays, strings and raw values.</p>
+ */
+class RawJsonReader {
+
+	private final String json;
+	private int pos;
+
+	RawJsonReader(String json) {
+		this.json = json;
+	}
+
+	void beginObject() {
+		expect('{');
+	}
+
+	void beginArray() {
+		expect('[');
+	}
+
+	/**
+	 * @return true if the current object has another member, after consuming any separating comma. Consumes the
+	 *         closing brace and returns false at the end of the object.
+	 */
+	boolean hasNextMember() {
+		return hasNext('}');
+	}
+
+	/**
+	 * @return true if the current array has another element, after consuming any separating comma. Consumes the
+	 *         closing bracket and returns false at the end of the array.
+	 */
+	boolean hasNextElement() {
+		return hasNext(']');
+	}
+
+	/**
+	 * @return true if the next value is an object.
+	 */
+	boolean peekObject() {
+		skipWhitespace();
+		return peek() == '{';
+	}
+
+	/**
+	 * @return true if the next value is a string, number, boolean or null rather than an object or an array.
+	 */
+	boolean peekScalar() {
+		skipWhitespace();
+		return peek() != '{' && peek() != '[';
+	}
+
+	String nextName() {
+		String name = nextQuotedString();
+		expect(':');
+		return name;
+	}
+
+	/**
+	 * @return The next value as a string: a string is unescaped, any other scalar is returned as written and null is
+	 *         returned as null.
+	 */
+	String nextString() {
+
+		skipWhitespace();
+		if (peek() == '"') {
+			return nextQuotedString();
+		}
+		if (peek() == '{' || peek() == '[') {
+			throw syntaxError("Expected a string");
+		}
+		return nextRawValue();
+	}
+
+	/**
+	 * @return The next value exactly as it appears in the document, or null if it is the literal null.
+	 */
+	String nextRawValue() {
+
+		skipWhitespace();
+		int start = pos;
+		skipValue();
+		String raw = json.substring(start, pos);
+		return raw.equals("null") ? null : raw;
+	}
+
+	void skipValue() {
+
+		skipWhitespace();
+		char c = peek();
+		if (c == '"') {
+			skipQuotedString();
+		} else if (c == '{' || c == '[') {
+			skipContainer();
+		} else {
+			int start = pos;
+			while (pos < json.length() && ",}] \t\r\n".indexOf(json.charAt(pos)) < 0) {
+				pos++;
+			}
+			if (pos == start) {
+				throw syntaxError("Expected a value");
+			}
+		}
+	}
+
+	private boolean hasNext(char close) {
+
+		skipWhitespace();
+		char c = peek();
+		if (c == close) {
+			pos++;
+			return false;
+		}
+		if (c == ',') {
+			pos++;
+		}
+		return true;
+	}
+
+	private void skipContainer() {
+
+		int depth = 0;
+		do {
+			char c = peek();
+			if (c == '"') {
+				skipQuotedString();
+				continue;
+			}
+			if (c == '{' || c == '[') {
+				depth++;
+			} else if (c == '}' || c == ']') {
+				depth--;
+			}
+			pos++;
+		} while (depth > 0);
+	}
+
+	private void skipQuotedString() {
+
+		pos++;
+		while (true) {
+			char c = peek();
+			pos++;
+			if (c == '"') {
+				return;
+			}
+			if (c == '\\') {
+				peek();
+				pos++;
+			}
+		}
+	}
+
+	private String nextQuotedString() {
+
+		skipWhitespace();
+		expect('"');
+		int start = pos;
+		StringBuilder unescaped = null;
+		while (true) {
+			char c = peek();
+			if (c == '"') {
+				String value = (unescaped == null) ? json.substring(start, pos) : unescaped.append(json, start, pos).toString();
+				pos++;
+				return value;
+			}
+			if (c != '\\') {
+				pos++;
+				continue;
+			}
+
+			if (unescaped == null) {
+				unescaped = new StringBuilder();
+			}
+			unescaped.append(json, start, pos);
+			pos++;
+			char escaped = peek();
+			pos++;
+			switch (escaped) {
+			case 'b': unescaped.append('\b'); break;
+			case 'f': unescaped.append('\f'); break;
+			case 'n': unescaped.append('\n'); break;
+			case 'r': unescaped.append('\r'); break;
+			case 't': unescaped.append('\t'); break;
+			case 'u':
+				if (pos + 4 > json.length()) {
+					throw syntaxError("Unterminated escape sequence");
+				}
+				try {
+					unescaped.append((char) Integer.parseInt(json.substring(pos, pos + 4), 16));
+				} catch (NumberFormatException e) {
+					throw syntaxError("Malformed unicode escape");
+				}
+				pos += 4;
+				break;
+			default: unescaped.append(escaped);
+			}
+			start = pos;
+		}
+	}
+
+	private void expect(char expected) {
+
+		skipWhitespace();
+		if (peek() != expected) {
+			throw syntaxError("Expected '" + expected + "'");
+		}
+		pos++;
+	}
+
+	private void skipWhitespace() {
+		while (pos < json.length() && " \t\r\n".indexOf(json.charAt(pos)) >= 0) {
+			pos++;
+		}
+	}
+
+	private char peek() {
+		if (pos >= json.length()) {
+			throw syntaxError("Unexpected end of input");
+		}
+		return json.charAt(pos);
+	}
+
+	private JsonSyntaxException syntaxError(String message) {
+		return new JsonSyntaxException(message + " at character " + pos + " of " + json);
+	}
+}
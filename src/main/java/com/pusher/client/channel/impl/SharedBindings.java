@@ -0,0 +1,76 @@
+package com.pusher.client.channel.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.pusher.client.channel.ChannelState;
+import com.pusher.client.channel.SubscriptionEventListener;
+
+/**
+ * Counts the handles that have bound each listener to each event of a shared channel. The channel keeps one
+ * registration however many times an equal listener is bound to an event, so a binding is only removed from the
+ * channel when the last handle that made it lets it go.
+ */
+class SharedBindings {
+
+	private final InternalChannel channel;
+	private final Map<Binding, Integer> handleCounts = new HashMap<Binding, Integer>(); // guarded by this
+
+	SharedBindings(InternalChannel channel) {
+		this.channel = channel;
+	}
+
+	synchronized void bind(Binding binding) {
+
+		Integer count = handleCounts.get(binding);
+		if (count == null) {
+			channel.bind(binding.eventName, binding.listener);
+			handleCounts.put(binding, 1);
+		} else {
+			handleCounts.put(binding, count + 1);
+		}
+	}
+
+	synchronized void unbind(Binding binding) {
+
+		Integer count = handleCounts.get(binding);
+		if (count == null) {
+			return;
+		}
+		if (count > 1) {
+			handleCounts.put(binding, count - 1);
+			return;
+		}
+
+		handleCounts.remove(binding);
+		// a channel that was unsubscribed outside of the shared subscription no longer accepts unbind calls
+		if (channel.getState() != ChannelState.UNSUBSCRIBED) {
+			channel.unbind(binding.eventName, binding.listener);
+		}
+	}
+
+	static class Binding {
+
+		private final String eventName;
+		private final SubscriptionEventListener listener;
+
+		Binding(String eventName, SubscriptionEventListener listener) {
+			this.eventName = eventName;
+			this.listener = listener;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof Binding)) {
+				return false;
+			}
+			Binding binding = (Binding) other;
+			return eventName.equals(binding.eventName) && listener.equals(binding.listener);
+		}
+
+		@Override
+		public int hashCode() {
+			return eventName.hashCode() * 31 + listener.hashCode();
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package com.pusher.client.channel.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.pusher.client.channel.Channel;
+import com.pusher.client.channel.ChannelHandle;
+import com.pusher.client.channel.SubscriptionEventListener;
+import com.pusher.client.channel.impl.SharedBindings.Binding;
+
+/**
+ * One reference to a channel that is shared through {@link ChannelManager#acquire(String)}. The handle remembers what
+ * was bound through it so that the bindings can be removed when it is released, while any other handle that bound the
+ * same listener to the same event keeps receiving it.
+ */
+public class SharedChannelHandle implements ChannelHandle {
+
+	private final ChannelManager channelManager;
+	private final InternalChannel channel;
+	private final SharedBindings sharedBindings;
+	private final List<Binding> bindings = new ArrayList<Binding>();
+	private boolean released;
+
+	SharedChannelHandle(ChannelManager channelManager, InternalChannel channel, SharedBindings sharedBindings) {
+		this.channelManager = channelManager;
+		this.channel = channel;
+		this.sharedBindings = sharedBindings;
+	}
+
+	@Override
+	public Channel getChannel() {
+		return channel;
+	}
+
+	@Override
+	public void bind(String eventName, SubscriptionEventListener listener) {
+
+		synchronized (this) {
+			if (released) {
+				throw new IllegalStateException("Cannot bind to channel " + channel.getName() + " through a handle that has been released");
+			}
+			if (eventName == null || listener == null) {
+				throw new IllegalArgumentException("Cannot bind to channel " + channel.getName() + " with a null event name or listener");
+			}
+			Binding binding = new Binding(eventName, listener);
+			if (!bindings.contains(binding)) {
+				sharedBindings.bind(binding);
+				bindings.add(binding);
+			}
+		}
+	}
+
+	@Override
+	public void unbind(String eventName, SubscriptionEventListener listener) {
+
+		synchronized (this) {
+			Binding binding = new Binding(eventName, listener);
+			if (bindings.remove(binding)) {
+				sharedBindings.unbind(binding);
+			}
+		}
+	}
+
+	@Override
+	public void release() {
+
+		synchronized (this) {
+			if (released) {
+				return;
+			}
+			released = true;
+
+			for (Binding binding : bindings) {
+				sharedBindings.unbind(binding);
+			}
+			bindings.clear();
+		}
+		channelManager.release(channel);
+	}
+
+	@Override
+	public synchronized boolean isReleased() {
+		return released;
+	}
+
+	@Override
+	public String toString() {
+		return "[Shared channel handle: name=" + channel.getName() + (isReleased() ? ", released" : "") + "]";
+	}
+}
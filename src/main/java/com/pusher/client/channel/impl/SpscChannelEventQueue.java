@@ -0,0 +1,219 @@
+package com.pusher.client.channel.impl;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.pusher.client.channel.ChannelEventQueue;
+import com.pusher.client.channel.ChannelState;
+import com.pusher.client.channel.Event;
+import com.pusher.client.channel.SubscriptionEventListener;
+
+/**
+ * A {@link ChannelEventQueue} backed by a single producer, single consumer ring. The producer is the thread that
+ * dispatches the channel's events and the consumer is the application thread that polls.
+ *
+ * <p>Each side owns one index and only reads the other's, so neither side takes a lock. Each side also caches the
+ * last value it read of the other's index and only reads it again when the cached value says the ring is full or
+ * empty, so most operations touch no memory written by the other thread. A drain publishes its progress once for the
+ * whole batch.</p>
+ */
+class SpscChannelEventQueue implements ChannelEventQueue, SubscriptionEventListener, ChannelStateObserver {
+
+	private static final int MAX_CAPACITY = 1 << 30;
+
+	private final InternalChannel channel;
+	private final Set<String> eventNames;
+	private final Event[] ring;
+	private final int mask;
+	private final AtomicLong head = new AtomicLong(); // written by the consumer
+	private final AtomicLong tail = new AtomicLong(); // written by the producer
+	private final AtomicLong dropped = new AtomicLong();
+	private long cachedHead; // producer only
+	private long cachedTail; // consumer only
+	private volatile Thread waiter;
+	private volatile boolean closed;
+
+	/**
+	 * @param eventNames The names of the events to collect, or null to collect every event.
+	 */
+	SpscChannelEventQueue(InternalChannel channel, int capacity, Set<String> eventNames) {
+
+		if (capacity < 1 || capacity > MAX_CAPACITY) {
+			throw new IllegalArgumentException("Event queue capacity must be between 1 and " + MAX_CAPACITY);
+		}
+
+		int size = 1;
+		while (size < capacity) {
+			size <<= 1;
+		}
+
+		this.channel = channel;
+		this.eventNames = eventNames;
+		this.ring = new Event[size];
+		this.mask = size - 1;
+	}
+
+	void open() {
+		channel.addStateObserver(this);
+		channel.addDirectListener(this);
+		if (channel.getState() == ChannelState.UNSUBSCRIBED) {
+			close();
+		}
+	}
+
+	/* SubscriptionEventListener implementation, called by the producer */
+
+	@Override
+	public void onEvent(String channelName, String eventName, String data) {
+
+		if (closed || (eventNames != null && !eventNames.contains(eventName))) {
+			return;
+		}
+
+		long t = tail.get();
+		if (t - cachedHead >= ring.length) {
+			cachedHead = head.get();
+			if (t - cachedHead >= ring.length) {
+				dropped.incrementAndGet();
+				return;
+			}
+		}
+
+		ring[(int) t & mask] = new Event(channelName, eventName, data);
+		// a volatile write rather than lazySet, so that reading the waiter below can't move ahead of it and miss a
+		// consumer that has just checked for events and is about to park
+		tail.set(t + 1);
+
+		Thread w = waiter;
+		if (w != null) {
+			LockSupport.unpark(w);
+		}
+	}
+
+	/* ChannelStateObserver implementation */
+
+	@Override
+	public void onStateChange(InternalChannel channel, ChannelState previousState, ChannelState newState) {
+		if (newState == ChannelState.UNSUBSCRIBED) {
+			close();
+		}
+	}
+
+	/* ChannelEventQueue implementation, called by the consumer */
+
+	@Override
+	public Event poll() {
+
+		long h = head.get();
+		if (h >= cachedTail) {
+			cachedTail = tail.get();
+			if (h >= cachedTail) {
+				return null;
+			}
+		}
+
+		int index = (int) h & mask;
+		Event event = ring[index];
+		ring[index] = null;
+		head.lazySet(h + 1);
+		return event;
+	}
+
+	@Override
+	public Event poll(long timeout, TimeUnit unit) throws InterruptedException {
+
+		Event event = poll();
+		if (event != null) {
+			return event;
+		}
+
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		waiter = Thread.currentThread();
+		try {
+			while (true) {
+				event = poll();
+				if (event != null || closed) {
+					// a close can race with a final event, so look once more before giving up
+					return (event != null) ? event : poll();
+				}
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0) {
+					return null;
+				}
+				LockSupport.parkNanos(this, remaining);
+				if (Thread.interrupted()) {
+					throw new InterruptedException();
+				}
+			}
+		} finally {
+			waiter = null;
+		}
+	}
+
+	@Override
+	public int drainTo(Collection<? super Event> events) {
+		return drainTo(events, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public int drainTo(Collection<? super Event> events, int maxEvents) {
+
+		if (events == null) {
+			throw new IllegalArgumentException("Cannot drain events to a null collection");
+		}
+
+		long h = head.get();
+		long available = tail.get() - h;
+		cachedTail = h + available;
+		int count = (int) Math.min(available, Math.max(maxEvents, 0));
+
+		for (int i = 0; i < count; i++) {
+			int index = (int) (h + i) & mask;
+			events.add(ring[index]);
+			ring[index] = null;
+		}
+
+		if (count > 0) {
+			head.lazySet(h + count);
+		}
+		return count;
+	}
+
+	@Override
+	public int size() {
+		// the head is read first so that a concurrent offer can only make the result larger, never negative
+		long h = head.get();
+		return (int) (tail.get() - h);
+	}
+
+	@Override
+	public int getCapacity() {
+		return ring.length;
+	}
+
+	@Override
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	@Override
+	public void close() {
+
+		closed = true;
+		channel.removeDirectListener(this);
+		channel.removeStateObserver(this);
+
+		Thread w = waiter;
+		if (w != null) {
+			LockSupport.unpark(w);
+		}
+	}
+
+	@Override
+	public boolean isClosed() {
+		return closed;
+	}
+}
@@ -0,0 +1,16 @@
+package com.pusher.client.channel.impl;
+
+import com.pusher.client.channel.SubscriptionEventListener;
+
+/**
+ * A listener registered in place of a bound listener whose events are not delivered one task per event, such as a
+ * {@link ConflatingListener} or a {@link BatchingListener}. {@link #onEvent(String, String, String)} is called directly
+ * on the dispatching thread and the stand-in schedules delivery to the bound listener itself.
+ */
+interface StandInListener extends SubscriptionEventListener {
+
+	/**
+	 * @return The listener that was passed to bind.
+	 */
+	Object getDelegate();
+}
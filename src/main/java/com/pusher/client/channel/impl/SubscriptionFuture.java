@@ -0,0 +1,42 @@
+package com.pusher.client.channel.impl;
+
+import com.pusher.client.channel.Channel;
+import com.pusher.client.channel.ChannelState;
+import com.pusher.client.util.SettableFuture;
+
+/**
+ * Completes with the channel once it reaches {@link ChannelState#SUBSCRIBED}, or fails if the channel reaches
+ * {@link ChannelState#FAILED} or is unsubscribed before the subscription succeeds.
+ */
+public class SubscriptionFuture<C extends Channel> extends SettableFuture<C> implements ChannelStateObserver {
+
+	private final InternalChannel channel;
+	private final C publicChannel;
+
+	public SubscriptionFuture(InternalChannel channel, C publicChannel) {
+		this.channel = channel;
+		this.publicChannel = publicChannel;
+		channel.addStateObserver(this);
+	}
+
+	/* ChannelStateObserver implementation */
+
+	@Override
+	public void onStateChange(InternalChannel channel, ChannelState previousState, ChannelState newState) {
+
+		if (newState == ChannelState.SUBSCRIBED) {
+			set(publicChannel);
+		} else if (newState == ChannelState.FAILED) {
+			setException(new IllegalStateException("Subscription to channel " + channel.getName() + " failed"));
+		} else if (newState == ChannelState.UNSUBSCRIBED) {
+			setException(new IllegalStateException("Channel " + channel.getName() + " was unsubscribed before its subscription succeeded"));
+		}
+	}
+
+	/* SettableFuture overrides */
+
+	@Override
+	protected void onCompletion() {
+		channel.removeStateObserver(this);
+	}
+}
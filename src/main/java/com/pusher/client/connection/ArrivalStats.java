@@ -0,0 +1,85 @@
+package com.pusher.client.connection;
+
+/**
+ * A point in time snapshot of how one of the redundant connections held by a {@link com.pusher.client.Pusher} instance
+ * has performed against the others, returned by {@link com.pusher.client.Pusher#getArrivalStats()}.
+ *
+ * <p>Every event received on a public channel is counted as a win for the connection that delivered it first and as a
+ * duplicate for each connection that delivered it later. The skew of a duplicate is how long after the winning copy it
+ * arrived.</p>
+ */
+public class ArrivalStats {
+
+	private final int connectionIndex;
+	private final long wins;
+	private final long duplicates;
+	private final long totalSkewNanos;
+	private final long maxSkewNanos;
+
+	/**
+	 * Used within the library to create a snapshot. Not to be used as part of the API.
+	 */
+	public ArrivalStats(int connectionIndex, long wins, long duplicates, long totalSkewNanos, long maxSkewNanos) {
+		this.connectionIndex = connectionIndex;
+		this.wins = wins;
+		this.duplicates = duplicates;
+		this.totalSkewNanos = totalSkewNanos;
+		this.maxSkewNanos = maxSkewNanos;
+	}
+
+	/**
+	 * The index of the connection. 0 is the connection returned by {@link com.pusher.client.Pusher#getConnection()} and
+	 * the standby connections are numbered from 1.
+	 * @return the index of the connection.
+	 */
+	public int getConnectionIndex() {
+		return connectionIndex;
+	}
+
+	/**
+	 * The number of events that arrived on this connection before any other.
+	 * @return the number of events won.
+	 */
+	public long getWins() {
+		return wins;
+	}
+
+	/**
+	 * The number of events that arrived on this connection after another connection had already delivered them.
+	 * @return the number of duplicate events.
+	 */
+	public long getDuplicates() {
+		return duplicates;
+	}
+
+	/**
+	 * The proportion of the events received on this connection that it delivered first.
+	 * @return a value between 0 and 1, or 0 if no events have been received.
+	 */
+	public double getWinRate() {
+		long total = wins + duplicates;
+		return total == 0 ? 0 : (double) wins / total;
+	}
+
+	/**
+	 * The mean time by which this connection's duplicates trailed the winning copy.
+	 * @return the skew in milliseconds, or 0 if there have been no duplicates.
+	 */
+	public double getMeanSkewMillis() {
+		return duplicates == 0 ? 0 : totalSkewNanos / (double) duplicates / 1000000;
+	}
+
+	/**
+	 * The longest time by which one of this connection's duplicates trailed the winning copy.
+	 * @return the skew in milliseconds.
+	 */
+	public double getMaxSkewMillis() {
+		return maxSkewNanos / 1000000.0;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("[ArrivalStats connection=%d, wins=%d, duplicates=%d, winRate=%.3f, meanSkewMillis=%.3f, maxSkewMillis=%.3f]",
+				connectionIndex, wins, duplicates, getWinRate(), getMeanSkewMillis(), getMaxSkewMillis());
+	}
+}
@@ -0,0 +1,26 @@
+package com.pusher.client.connection;
+
+/**
+ * What a connection does with a frame received from Pusher when its inbound queue is full.
+ * 
+ * @see com.pusher.client.PusherOptions#setInboundQueueLimit(int, long)
+ */
+public enum InboundOverflowPolicy {
+    /**
+     * Stop reading from the socket until there is room in the queue. Nothing is lost, and TCP flow control slows
+     * the server down, but a listener that never returns stalls the connection.
+     */
+    BLOCK,
+    /**
+     * Discard the oldest queued frames to make room for the new one.
+     */
+    DROP_OLDEST,
+    /**
+     * Discard the new frame.
+     */
+    DROP_NEWEST,
+    /**
+     * Discard the new frame and disconnect, reporting an error to the connection's listeners.
+     */
+    DISCONNECT
+}
@@ -0,0 +1,103 @@
+package com.pusher.client.connection;
+
+/**
+ * A point in time snapshot of the queue of frames that have been received from Pusher and are waiting to be handled
+ * on the event thread, returned by {@link com.pusher.client.Pusher#getInboundQueueStats()}.
+ */
+public class InboundQueueStats {
+
+	private final int depth;
+	private final long bytes;
+	private final int highWaterMark;
+	private final long droppedOldest;
+	private final long droppedNewest;
+	private final long blockedCount;
+	private final long blockedNanos;
+	private final long overflowDisconnects;
+
+	/**
+	 * Used within the library to create a snapshot. Not to be used as part of the API.
+	 */
+	public InboundQueueStats(int depth, long bytes, int highWaterMark, long droppedOldest, long droppedNewest,
+			long blockedCount, long blockedNanos, long overflowDisconnects) {
+		this.depth = depth;
+		this.bytes = bytes;
+		this.highWaterMark = highWaterMark;
+		this.droppedOldest = droppedOldest;
+		this.droppedNewest = droppedNewest;
+		this.blockedCount = blockedCount;
+		this.blockedNanos = blockedNanos;
+		this.overflowDisconnects = overflowDisconnects;
+	}
+
+	/**
+	 * The number of frames waiting to be handled.
+	 * @return the number of frames.
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * The approximate size of the frames waiting to be handled.
+	 * @return the size in bytes.
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * The largest number of frames that have been waiting at once.
+	 * @return the number of frames.
+	 */
+	public int getHighWaterMark() {
+		return highWaterMark;
+	}
+
+	/**
+	 * The number of queued frames discarded to make room under {@link InboundOverflowPolicy#DROP_OLDEST}.
+	 * @return the number of frames dropped.
+	 */
+	public long getDroppedOldest() {
+		return droppedOldest;
+	}
+
+	/**
+	 * The number of new frames discarded because the queue was full, under {@link InboundOverflowPolicy#DROP_NEWEST} or
+	 * {@link InboundOverflowPolicy#DISCONNECT}.
+	 * @return the number of frames dropped.
+	 */
+	public long getDroppedNewest() {
+		return droppedNewest;
+	}
+
+	/**
+	 * The number of times the socket reader has waited for room under {@link InboundOverflowPolicy#BLOCK}.
+	 * @return the number of waits.
+	 */
+	public long getBlockedCount() {
+		return blockedCount;
+	}
+
+	/**
+	 * The total time the socket reader has spent waiting for room under {@link InboundOverflowPolicy#BLOCK}.
+	 * @return the time in milliseconds.
+	 */
+	public double getBlockedMillis() {
+		return blockedNanos / 1000000.0;
+	}
+
+	/**
+	 * The number of times the connection has been closed because the queue overflowed under {@link InboundOverflowPolicy#DISCONNECT}.
+	 * @return the number of disconnections.
+	 */
+	public long getOverflowDisconnects() {
+		return overflowDisconnects;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("[InboundQueueStats depth=%d, bytes=%d, highWaterMark=%d, droppedOldest=%d, droppedNewest=%d, blockedCount=%d, blockedMillis=%.3f, overflowDisconnects=%d]",
+				depth, bytes, highWaterMark, droppedOldest, droppedNewest, blockedCount, getBlockedMillis(), overflowDisconnects);
+	}
+}
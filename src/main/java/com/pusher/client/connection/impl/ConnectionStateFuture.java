@@ -0,0 +1,57 @@
+package com.pusher.client.connection.impl;
+
+import com.pusher.client.connection.Connection;
+import com.pusher.client.connection.ConnectionEventListener;
+import com.pusher.client.connection.ConnectionState;
+import com.pusher.client.connection.ConnectionStateChange;
+import com.pusher.client.util.SettableFuture;
+
+/**
+ * Completes with the connection once it reaches the target {@link ConnectionState}. A future that is waiting for
+ * {@link ConnectionState#CONNECTED} fails if the connection attempt falls back to
+ * {@link ConnectionState#DISCONNECTED}.
+ */
+public class ConnectionStateFuture extends SettableFuture<Connection> implements ConnectionEventListener {
+
+	private final Connection connection;
+	private final ConnectionState targetState;
+
+	public ConnectionStateFuture(Connection connection, ConnectionState targetState) {
+
+		this.connection = connection;
+		this.targetState = targetState;
+
+		connection.bind(ConnectionState.ALL, this);
+
+		// checked after binding so that a transition that happens in between is not missed
+		if (connection.getState() == targetState) {
+			set(connection);
+		}
+	}
+
+	/* ConnectionEventListener implementation */
+
+	@Override
+	public void onConnectionStateChange(ConnectionStateChange change) {
+
+		if (change.getCurrentState() == targetState) {
+			set(connection);
+		} else if (targetState == ConnectionState.CONNECTED
+				&& change.getPreviousState() == ConnectionState.CONNECTING
+				&& change.getCurrentState() == ConnectionState.DISCONNECTED) {
+			setException(new IllegalStateException("The connection attempt failed"));
+		}
+	}
+
+	@Override
+	public void onError(String message, String code, Exception e) {
+		// errors are not terminal; the state change that follows a fatal error completes the future
+	}
+
+	/* SettableFuture overrides */
+
+	@Override
+	protected void onCompletion() {
+		connection.unbind(ConnectionState.ALL, this);
+	}
+}
@@ -1,10 +1,17 @@
 package com.pusher.client.connection.impl;
 
+import java.util.List;
+
 import com.pusher.client.connection.Connection;
+import com.pusher.client.connection.InboundQueueStats;
 
 public interface InternalConnection extends Connection {
 
     void sendMessage(String message);
 
+    void sendMessages(List<String> messages);
+
 		void disconnect();
+
+    InboundQueueStats getInboundQueueStats();
 }
\ No newline at end of file
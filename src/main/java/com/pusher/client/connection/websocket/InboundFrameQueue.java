@@ -0,0 +1,365 @@
+package com.pusher.client.connection.websocket;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.pusher.client.connection.InboundOverflowPolicy;
+import com.pusher.client.connection.InboundQueueStats;
+import com.pusher.client.metrics.PusherMetrics;
+import com.pusher.client.util.Factory;
+import com.pusher.client.util.FrameTiming;
+
+/**
+ * The frames received on a connection that are waiting to be handled on the event thread. Frames are offered by the
+ * websocket reader thread and handled by a single drain task on the event queue, so the event queue holds at most
+ * one task for the connection's frames however far behind the event thread falls. The queue is bounded by a number
+ * of frames and an approximate number of bytes, and the {@link InboundOverflowPolicy} decides what happens to a frame
+ * that doesn't fit.
+ *
+ * <p>Control frames that the connection and channel state depend on, <code>pusher:connection_established</code>,
+ * <code>pusher:error</code> and every <code>pusher_internal:</code> event, are exempt from the policy. They are always
+ * queued, in order with the other frames, even past the limits, and are never dropped to make room.</p>
+ */
+class InboundFrameQueue {
+
+	/**
+	 * The maximum number of frames handled by one drain task. The drain then yields to the tasks that handling the
+	 * frames has queued, such as listener callbacks, so that those don't build up behind an unbounded batch.
+	 */
+	static final int DRAIN_BATCH_SIZE = 64;
+
+	private static final int ENTRY_OVERHEAD_BYTES = 64;
+	private static final String EVENT_KEY = "\"event\"";
+	private static final String INTERNAL_EVENT_PREFIX = "pusher_internal:";
+	private static final String CONNECTION_ESTABLISHED_EVENT = "pusher:connection_established\"";
+	private static final String ERROR_EVENT = "pusher:error\"";
+
+	interface FrameHandler {
+
+		/**
+		 * Called on the event thread for each frame, in the order they were received.
+		 */
+		void onFrame(String frame);
+
+		/**
+		 * Called on the event thread when {@link #onFrame(String)} throws. The frame is lost, and the frames after it
+		 * are still handled.
+		 */
+		void onError(String frame, RuntimeException e);
+
+		/**
+		 * Called on the websocket reader thread when a frame is dropped under {@link InboundOverflowPolicy#DISCONNECT}.
+		 */
+		void onOverflow();
+	}
+
+	private final int maxFrames;
+	private final long maxBytes;
+	private final InboundOverflowPolicy policy;
+	private final FrameHandler handler;
+	private final ArrayDeque<String> frames = new ArrayDeque<String>(); // guarded by this
+	private long bytes;
+	private boolean drainScheduled;
+	private int highWaterMark;
+	private long droppedOldest;
+	private long droppedNewest;
+	private long blockedCount;
+	private long blockedNanos;
+	private long overflowDisconnects;
+	private final PusherMetrics metrics;
+	private final boolean timed;
+	private long[] queuedAt; // guarded by this, the times the frames were queued in the same order, if timed
+	private int queuedAtHead;
+	private int queuedAtCount;
+
+	private final Runnable drain = new Runnable() {
+		@Override
+		public void run() {
+			drain();
+		}
+	};
+
+	/**
+	 * @param maxFrames The maximum number of queued frames, or 0 for no limit.
+	 * @param maxBytes The maximum approximate size of the queued frames, or 0 for no limit.
+	 */
+	InboundFrameQueue(int maxFrames, long maxBytes, InboundOverflowPolicy policy, FrameHandler handler) {
+		this(maxFrames, maxBytes, policy, handler, PusherMetrics.NONE);
+	}
+
+	/**
+	 * @param metrics The metrics to report the depth of the queue and the time frames wait in it to.
+	 */
+	InboundFrameQueue(int maxFrames, long maxBytes, InboundOverflowPolicy policy, FrameHandler handler,
+			PusherMetrics metrics) {
+		this.maxFrames = maxFrames;
+		this.maxBytes = maxBytes;
+		this.policy = policy;
+		this.handler = handler;
+		this.metrics = metrics;
+		this.timed = metrics != PusherMetrics.NONE;
+		this.queuedAt = timed ? new long[16] : null;
+	}
+
+	/**
+	 * Queues a frame for the event thread. Called on the websocket reader thread, which may be made to wait for
+	 * room under {@link InboundOverflowPolicy#BLOCK}.
+	 */
+	void offer(String frame) {
+		offer(frame, timed ? System.nanoTime() : 0);
+	}
+
+	/**
+	 * @param receivedAt The {@link System#nanoTime()} at which the frame arrived, which is reported as the time it
+	 * was queued, if the queue is timed.
+	 */
+	void offer(String frame, long receivedAt) {
+
+		long size = sizeOf(frame);
+		boolean control = isControlFrame(frame);
+		boolean overflowed = false;
+		boolean schedule;
+		int depth;
+		synchronized (this) {
+			if (!control && !fits(size)) {
+				switch (policy) {
+				case BLOCK:
+					if (!awaitRoom(size)) {
+						droppedNewest++;
+						return;
+					}
+					break;
+				case DROP_OLDEST:
+					dropOldest(size);
+					break;
+				case DROP_NEWEST:
+					droppedNewest++;
+					return;
+				case DISCONNECT:
+					droppedNewest++;
+					overflowDisconnects++;
+					overflowed = true;
+					break;
+				}
+			}
+
+			if (!overflowed) {
+				frames.add(frame);
+				bytes += size;
+				highWaterMark = Math.max(highWaterMark, frames.size());
+				if (timed) {
+					putQueuedAt(receivedAt);
+				}
+			}
+			depth = frames.size();
+			schedule = !overflowed && !drainScheduled;
+			drainScheduled |= schedule;
+		}
+
+		if (timed && !overflowed) {
+			metrics.frameQueued(depth);
+		}
+
+		if (overflowed) {
+			handler.onOverflow();
+		} else if (schedule) {
+			Factory.getEventQueue().execute(drain);
+		}
+	}
+
+	synchronized InboundQueueStats getStats() {
+		return new InboundQueueStats(frames.size(), bytes, highWaterMark, droppedOldest, droppedNewest, blockedCount,
+				blockedNanos, overflowDisconnects);
+	}
+
+	/* implementation detail */
+
+	private void drain() {
+
+		boolean drained = false;
+		try {
+			for (int i = 0; i < DRAIN_BATCH_SIZE; i++) {
+				String frame;
+				long queuedTime = 0;
+				synchronized (this) {
+					frame = frames.poll();
+					if (frame == null) {
+						drainScheduled = false;
+						drained = true;
+						return;
+					}
+					bytes -= sizeOf(frame);
+					if (timed) {
+						queuedTime = takeQueuedAt();
+					}
+					if (policy == InboundOverflowPolicy.BLOCK) {
+						notifyAll();
+					}
+				}
+				handle(frame, queuedTime);
+			}
+		} finally {
+			// after a full batch, or if anything escaped it, the drain is still scheduled and so has to carry on, or
+			// the frames left in the queue would never be handled
+			if (!drained) {
+				Factory.getEventQueue().execute(drain);
+			}
+		}
+	}
+
+	private void handle(String frame, long queuedTime) {
+
+		try {
+			if (!timed) {
+				handler.onFrame(frame);
+				return;
+			}
+
+			long dequeuedAt = System.nanoTime();
+			metrics.frameDequeued(dequeuedAt - queuedTime);
+			// the rest of the frame's journey is timed from here, on this thread
+			FrameTiming.begin(queuedTime, dequeuedAt);
+			try {
+				handler.onFrame(frame);
+			} finally {
+				FrameTiming.end();
+			}
+		} catch (RuntimeException e) {
+			// only the frame that couldn't be handled is lost, as when each frame was handled by a task of its own
+			handler.onError(frame, e);
+		}
+	}
+
+	// callers hold the lock; control frames are set aside rather than dropped and then put back at the head in order,
+	// so if only control frames are queued the new frame is accepted past the limits
+	private void dropOldest(long size) {
+
+		List<String> keptFrames = null;
+		List<Long> keptTimes = null;
+		while (!fits(size)) {
+			String oldest = frames.poll();
+			bytes -= sizeOf(oldest);
+			long time = timed ? takeQueuedAt() : 0;
+			if (!isControlFrame(oldest)) {
+				droppedOldest++;
+				continue;
+			}
+			if (keptFrames == null) {
+				keptFrames = new ArrayList<String>();
+				keptTimes = new ArrayList<Long>();
+			}
+			keptFrames.add(oldest);
+			keptTimes.add(time);
+		}
+
+		if (keptFrames == null) {
+			return;
+		}
+		for (int i = keptFrames.size() - 1; i >= 0; i--) {
+			String kept = keptFrames.get(i);
+			frames.addFirst(kept);
+			bytes += sizeOf(kept);
+			if (timed) {
+				pushQueuedAtFront(keptTimes.get(i));
+			}
+		}
+	}
+
+	// callers hold the lock; the ring of times only grows when the queue is deeper than it has been before
+	private void putQueuedAt(long time) {
+
+		growQueuedAtIfFull();
+		queuedAt[(queuedAtHead + queuedAtCount) & (queuedAt.length - 1)] = time;
+		queuedAtCount++;
+	}
+
+	// callers hold the lock
+	private void pushQueuedAtFront(long time) {
+
+		growQueuedAtIfFull();
+		queuedAtHead = (queuedAtHead - 1) & (queuedAt.length - 1);
+		queuedAt[queuedAtHead] = time;
+		queuedAtCount++;
+	}
+
+	// callers hold the lock
+	private void growQueuedAtIfFull() {
+
+		if (queuedAtCount == queuedAt.length) {
+			long[] grown = new long[queuedAt.length * 2];
+			for (int i = 0; i < queuedAtCount; i++) {
+				grown[i] = queuedAt[(queuedAtHead + i) & (queuedAt.length - 1)];
+			}
+			queuedAt = grown;
+			queuedAtHead = 0;
+		}
+	}
+
+	// callers hold the lock
+	private long takeQueuedAt() {
+
+		long time = queuedAt[queuedAtHead];
+		queuedAtHead = (queuedAtHead + 1) & (queuedAt.length - 1);
+		queuedAtCount--;
+		return time;
+	}
+
+	// callers hold the lock
+	private boolean awaitRoom(long size) {
+
+		long start = System.nanoTime();
+		blockedCount++;
+		try {
+			while (!fits(size)) {
+				wait();
+			}
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} finally {
+			blockedNanos += System.nanoTime() - start;
+		}
+	}
+
+	// callers hold the lock; a frame that is larger than the byte limit is still accepted into an empty queue
+	private boolean fits(long size) {
+		return frames.isEmpty()
+				|| ((maxFrames == 0 || frames.size() < maxFrames) && (maxBytes == 0 || bytes + size <= maxBytes));
+	}
+
+	/**
+	 * Finds the event name in the raw frame without parsing it. The data of a Pusher frame is an encoded string, so the
+	 * first unescaped <code>"event"</code> key is the frame's own.
+	 */
+	static boolean isControlFrame(String frame) {
+
+		int key = frame.indexOf(EVENT_KEY);
+		if (key < 0) {
+			return false;
+		}
+		int i = skipWhitespace(frame, key + EVENT_KEY.length());
+		if (i == frame.length() || frame.charAt(i) != ':') {
+			return false;
+		}
+		i = skipWhitespace(frame, i + 1);
+		if (i == frame.length() || frame.charAt(i) != '"') {
+			return false;
+		}
+		i++;
+		return frame.startsWith(INTERNAL_EVENT_PREFIX, i) || frame.startsWith(CONNECTION_ESTABLISHED_EVENT, i)
+				|| frame.startsWith(ERROR_EVENT, i);
+	}
+
+	private static int skipWhitespace(String frame, int i) {
+		while (i < frame.length() && Character.isWhitespace(frame.charAt(i))) {
+			i++;
+		}
+		return i;
+	}
+
+	private static long sizeOf(String frame) {
+		return ENTRY_OVERHEAD_BYTES + 2L * frame.length();
+	}
+}
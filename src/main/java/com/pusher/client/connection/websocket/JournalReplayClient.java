@@ -0,0 +1,135 @@
+package com.pusher.client.connection.websocket;
+
+import java.io.File;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLException;
+
+import com.pusher.client.journal.JournalReader;
+import com.pusher.client.journal.JournalRecord;
+import com.pusher.client.util.Factory;
+
+/**
+ * Stands in for the websocket when {@link com.pusher.client.PusherOptions#setJournalReplay(File, boolean)} is set.
+ * Instead of connecting to Pusher it feeds the frames from a journal to the connection, either with the gaps between
+ * them that were originally recorded or as fast as possible. Frames that the client sends are discarded. Once the
+ * journal has been read the connection is closed.
+ */
+public class JournalReplayClient extends WebSocketClientWrapper {
+
+	private static final int CLOSE_NORMAL = 1000;
+	private static final int CLOSE_ABNORMAL = 1006;
+	private static final long MAX_CLOCK_DISAGREEMENT_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	private final File directory;
+	private final boolean preserveTiming;
+	private volatile boolean closeRequested;
+	private Thread replayThread;
+	private boolean closeNotified;
+
+	public JournalReplayClient(URI uri, WebSocketListener proxy, File directory, boolean preserveTiming) throws SSLException {
+		super(uri, proxy);
+		this.directory = directory;
+		this.preserveTiming = preserveTiming;
+	}
+
+	@Override
+	public synchronized void connect() {
+
+		if (replayThread != null) {
+			return;
+		}
+
+		replayThread = Factory.newThread(new Runnable() {
+			@Override
+			public void run() {
+				replay();
+			}
+		}, "pusher-java-client-journal-replay");
+		replayThread.start();
+	}
+
+	@Override
+	public void send(String text) {
+		// there is no server to send to
+	}
+
+	@Override
+	public void close() {
+
+		Thread thread;
+		synchronized (this) {
+			closeRequested = true;
+			thread = replayThread;
+		}
+
+		if (thread != null) {
+			// the replay thread reports the close once it stops
+			thread.interrupt();
+		} else {
+			notifyClosed(CLOSE_NORMAL, "Journal replay closed", false);
+		}
+	}
+
+	/* implementation detail */
+
+	private void replay() {
+
+		JournalReader reader = null;
+		try {
+			reader = Factory.newJournalReader(directory);
+			onOpen(null);
+
+			JournalRecord previous = null;
+			long due = System.nanoTime();
+			JournalRecord record;
+			while (!closeRequested && (record = reader.next()) != null) {
+				if (preserveTiming && previous != null) {
+					due += gapBetween(previous, record);
+					long wait = due - System.nanoTime();
+					if (wait > 0) {
+						TimeUnit.NANOSECONDS.sleep(wait);
+					}
+				}
+				onMessage(record.getFrame());
+				previous = record;
+			}
+			notifyClosed(CLOSE_NORMAL, closeRequested ? "Journal replay closed" : "Journal replay finished", false);
+		} catch (InterruptedException e) {
+			notifyClosed(CLOSE_NORMAL, "Journal replay closed", false);
+		} catch (Exception e) {
+			onError(e);
+			notifyClosed(CLOSE_ABNORMAL, "Journal replay failed", true);
+		} finally {
+			if (reader != null) {
+				reader.close();
+			}
+		}
+	}
+
+	/*
+	 * The monotonic clock gives the most accurate gaps, but it restarts with each process, so a journal that spans
+	 * several recording sessions falls back to the wall clock where the two clocks disagree.
+	 */
+	private static long gapBetween(JournalRecord previous, JournalRecord next) {
+
+		long wallClockNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, next.getTimestamp() - previous.getTimestamp()));
+		long nanos = next.getNanoTime() - previous.getNanoTime();
+		if (nanos >= 0 && Math.abs(nanos - wallClockNanos) <= MAX_CLOCK_DISAGREEMENT_NANOS) {
+			return nanos;
+		}
+		return wallClockNanos;
+	}
+
+	private void notifyClosed(int code, String reason, boolean remote) {
+
+		synchronized (this) {
+			if (closeNotified) {
+				return;
+			}
+			closeNotified = true;
+		}
+		onClose(code, reason, remote);
+	}
+}
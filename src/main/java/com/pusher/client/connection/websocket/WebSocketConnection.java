@@ -1,11 +1,11 @@
 package com.pusher.client.connection.websocket;
 
+import java.io.File;
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import javax.net.ssl.SSLException;
 
@@ -13,11 +13,17 @@ import org.java_websocket.client.WebSocketClient;
 import org.java_websocket.handshake.ServerHandshake;
 
 import com.google.gson.Gson;
+import com.pusher.client.PusherOptions;
 import com.pusher.client.connection.ConnectionEventListener;
 import com.pusher.client.connection.ConnectionState;
 import com.pusher.client.connection.ConnectionStateChange;
+import com.pusher.client.connection.InboundQueueStats;
 import com.pusher.client.connection.impl.InternalConnection;
+import com.pusher.client.journal.JournalWriter;
+import com.pusher.client.metrics.PusherMetrics;
 import com.pusher.client.util.Factory;
+import com.pusher.client.util.FrameTiming;
+import com.pusher.client.util.ListenerRegistry;
 
 public class WebSocketConnection implements InternalConnection,
 		WebSocketListener {
@@ -37,22 +43,50 @@ public class WebSocketConnection implements InternalConnection,
 	private static final String URI_SUFFIX = "?client=java-client&protocol=5&version="
 			+ APP_VERSION;
 	private static final String INTERNAL_EVENT_PREFIX = "pusher:";
+	// Gson instances are thread safe and expensive to create, so one is shared rather than built per message
+	private static final Gson GSON = new Gson();
 
-	private final Map<ConnectionState, Set<ConnectionEventListener>> eventListeners = new HashMap<ConnectionState, Set<ConnectionEventListener>>();
+	private final ListenerRegistry<ConnectionState, ConnectionEventListener> eventListeners = new ListenerRegistry<ConnectionState, ConnectionEventListener>(
+			ConnectionEventListener.class);
 	private volatile ConnectionState state = ConnectionState.DISCONNECTED;
 	private WebSocketClient underlyingConnection;
 	private final URI webSocketUri;
+	private final PusherOptions options;
+	private final boolean primary;
+	private final InboundFrameQueue inboundFrames;
+	private volatile JournalWriter journal;
 	private String socketId;
+	private boolean connectedBefore;
+	private final PusherMetrics metrics;
 
 	public WebSocketConnection(String apiKey, boolean encrypted)
 			throws URISyntaxException {
+		this(apiKey, new PusherOptions().setEncrypted(encrypted));
+	}
+
+	public WebSocketConnection(String apiKey, PusherOptions options)
+			throws URISyntaxException {
+		this(apiKey, options, true);
+	}
+
+	/**
+	 * @param primary false for a standby connection, which never records or replays a journal.
+	 */
+	public WebSocketConnection(String apiKey, PusherOptions options,
+			boolean primary) throws URISyntaxException {
+		boolean encrypted = options.isEncrypted();
 		String url = String.format("%s://%s:%s/app/%s%s", (encrypted ? WSS_SCHEME
 				: WS_SCHEME), HOST, (encrypted ? WSS_PORT : WS_PORT), apiKey,
 				URI_SUFFIX);
 		webSocketUri = new URI(url);
-		for (ConnectionState state : ConnectionState.values()) {
-			eventListeners.put(state, new HashSet<ConnectionEventListener>());
-		}
+		this.options = options;
+		this.primary = primary;
+		this.metrics = options.getMetrics();
+		this.inboundFrames = new InboundFrameQueue(
+				options.getInboundQueueMaxFrames(),
+				options.getInboundQueueMaxBytes(),
+				options.getInboundOverflowPolicy(), new InboundFrameHandler(),
+				metrics);
 	}
 
 	/* Connection implementation */
@@ -65,10 +99,8 @@ public class WebSocketConnection implements InternalConnection,
 			public void run() {
 				if (state == ConnectionState.DISCONNECTED) {
 					try {
-						WebSocketConnection.this.underlyingConnection = Factory
-								.newWebSocketClientWrapper(
-										WebSocketConnection.this.webSocketUri,
-										WebSocketConnection.this);
+						openJournal();
+						WebSocketConnection.this.underlyingConnection = newUnderlyingConnection();
 
 						WebSocketConnection.this.updateState(ConnectionState.CONNECTING);
 						WebSocketConnection.this.underlyingConnection.connect();
@@ -98,13 +130,13 @@ public class WebSocketConnection implements InternalConnection,
 
 	@Override
 	public void bind(ConnectionState state, ConnectionEventListener eventListener) {
-		eventListeners.get(state).add(eventListener);
+		eventListeners.add(state, eventListener);
 	}
 
 	@Override
 	public boolean unbind(ConnectionState state,
 			ConnectionEventListener eventListener) {
-		return eventListeners.get(state).remove(eventListener);
+		return eventListeners.remove(state, eventListener);
 	}
 
 	@Override
@@ -123,6 +155,7 @@ public class WebSocketConnection implements InternalConnection,
 				try {
 					if (state == ConnectionState.CONNECTED) {
 						underlyingConnection.send(message);
+						metrics.frameSent(message.length());
 					} else {
 						sendErrorToAllListeners("Cannot send a message while in " + state
 								+ " state", null, null);
@@ -136,71 +169,181 @@ public class WebSocketConnection implements InternalConnection,
 		});
 	}
 
+	@Override
+	public void sendMessages(final List<String> messages) {
+
+		if (messages.isEmpty()) {
+			return;
+		}
+
+		Factory.getEventQueue().execute(new Runnable() {
+			public void run() {
+
+				if (state != ConnectionState.CONNECTED) {
+					sendErrorToAllListeners("Cannot send " + messages.size()
+							+ " messages while in " + state + " state", null, null);
+					return;
+				}
+
+				for (String message : messages) {
+					try {
+						underlyingConnection.send(message);
+						metrics.frameSent(message.length());
+					} catch (Exception e) {
+						sendErrorToAllListeners(
+								"An exception occurred while sending message [" + message + "]",
+								null, e);
+					}
+				}
+			}
+		});
+	}
+
 	@Override
 	public String getSocketId() {
 		return socketId;
 	}
 
+	@Override
+	public InboundQueueStats getInboundQueueStats() {
+		return inboundFrames.getStats();
+	}
+
 	/** implementation detail **/
 
+	private WebSocketClient newUnderlyingConnection() throws SSLException {
+
+		File replayDirectory = options.getJournalReplayDirectory();
+		if (primary && replayDirectory != null) {
+			return Factory.newJournalReplayClient(webSocketUri, this,
+					replayDirectory, options.isJournalReplayTimingPreserved());
+		}
+		return Factory.newWebSocketClientWrapper(webSocketUri, this);
+	}
+
+	private void openJournal() {
+
+		File directory = options.getJournalRecordingDirectory();
+		if (!primary || directory == null || journal != null) {
+			return;
+		}
+
+		try {
+			journal = Factory.newJournalWriter(directory,
+					options.getJournalSegmentSize());
+		} catch (IOException e) {
+			sendErrorToAllListeners("Unable to open journal in " + directory
+					+ ", frames will not be recorded", null, e);
+		}
+	}
+
+	/**
+	 * Appends the frame to the journal synchronously, on the websocket thread that reads the socket, so the time taken
+	 * to write it adds to the latency of every frame while a journal is being kept.
+	 */
+	private void record(String message) {
+
+		JournalWriter writer = journal;
+		if (writer == null) {
+			return;
+		}
+
+		try {
+			writer.append(System.currentTimeMillis(), System.nanoTime(), message);
+		} catch (IOException e) {
+			// recording must never get in the way of the connection, so it is abandoned
+			journal = null;
+			try {
+				writer.close();
+			} catch (IOException ignored) {
+			}
+			sendErrorToAllListeners("Unable to write to journal, recording has stopped",
+					null, e);
+		}
+	}
+
 	private void updateState(ConnectionState newState) {
 
 		final ConnectionStateChange change = new ConnectionStateChange(state,
 				newState);
 		this.state = newState;
+		metrics.connectionStateChanged(change.getPreviousState(), newState);
 
-		Set<ConnectionEventListener> interestedListeners = new HashSet<ConnectionEventListener>();
-		interestedListeners.addAll(eventListeners.get(ConnectionState.ALL));
-		interestedListeners.addAll(eventListeners.get(newState));
+		ConnectionEventListener[] allStateListeners = eventListeners
+				.get(ConnectionState.ALL);
+		for (ConnectionEventListener listener : allStateListeners) {
+			notifyStateChange(listener, change);
+		}
 
-		for (final ConnectionEventListener listener : interestedListeners) {
+		// a listener bound to both ALL and the new state is only notified once
+		for (ConnectionEventListener listener : eventListeners.get(newState)) {
+			if (!contains(allStateListeners, listener)) {
+				notifyStateChange(listener, change);
+			}
+		}
+	}
 
-			Factory.getEventQueue().execute(new Runnable() {
-				public void run() {
-					listener.onConnectionStateChange(change);
-				}
-			});
+	private void notifyStateChange(final ConnectionEventListener listener,
+			final ConnectionStateChange change) {
+
+		Factory.getEventQueue().execute(new Runnable() {
+			public void run() {
+				listener.onConnectionStateChange(change);
+			}
+		});
+	}
+
+	private static boolean contains(ConnectionEventListener[] listeners,
+			ConnectionEventListener listener) {
+
+		for (ConnectionEventListener candidate : listeners) {
+			if (candidate.equals(listener)) {
+				return true;
+			}
 		}
+		return false;
 	}
 
-	private void handleEvent(String event, String wholeMessage) {
+	private void handleEvent(String event, String wholeMessage, Map<Object, Object> json) {
 
 		if (event.startsWith(INTERNAL_EVENT_PREFIX)) {
-			handleInternalEvent(event, wholeMessage);
+			handleInternalEvent(event, json);
 		} else {
-			Factory.getChannelManager().onMessage(event, wholeMessage);
+			Factory.getChannelManager().onMessage(this, event, wholeMessage, json);
 		}
 	}
 
-	private void handleInternalEvent(String event, String wholeMessage) {
+	private void handleInternalEvent(String event, Map<Object, Object> json) {
 
 		if (event.equals("pusher:connection_established")) {
-			handleConnectionMessage(wholeMessage);
+			handleConnectionMessage(json);
 		} else if (event.equals("pusher:error")) {
-			handleError(wholeMessage);
+			handleError(json);
 		}
 	}
 
 	@SuppressWarnings("rawtypes")
-	private void handleConnectionMessage(String message) {
+	private void handleConnectionMessage(Map<Object, Object> json) {
 
-		Map jsonObject = new Gson().fromJson(message, Map.class);
-		String dataString = (String) jsonObject.get("data");
-		Map dataMap = new Gson().fromJson(dataString, Map.class);
+		String dataString = (String) json.get("data");
+		Map dataMap = GSON.fromJson(dataString, Map.class);
 		socketId = (String) dataMap.get("socket_id");
 
+		if (connectedBefore) {
+			metrics.reconnected();
+		}
+		connectedBefore = true;
 		updateState(ConnectionState.CONNECTED);
 	}
 
 	@SuppressWarnings("rawtypes")
-	private void handleError(String wholeMessage) {
+	private void handleError(Map<Object, Object> json) {
 
-		Map json = new Gson().fromJson(wholeMessage, Map.class);
 		Object data = json.get("data");
 
 		Map dataMap;
 		if (data instanceof String) {
-			dataMap = new Gson().fromJson(((String) data), Map.class);
+			dataMap = GSON.fromJson(((String) data), Map.class);
 		} else {
 			dataMap = (Map) data;
 		}
@@ -219,13 +362,7 @@ public class WebSocketConnection implements InternalConnection,
 	private void sendErrorToAllListeners(final String message, final String code,
 			final Exception e) {
 
-		Set<ConnectionEventListener> allListeners = new HashSet<ConnectionEventListener>();
-		for (Set<ConnectionEventListener> listenersForState : eventListeners
-				.values()) {
-			allListeners.addAll(listenersForState);
-		}
-
-		for (final ConnectionEventListener listener : allListeners) {
+		for (final ConnectionEventListener listener : eventListeners.getAll()) {
 			Factory.getEventQueue().execute(new Runnable() {
 				public void run() {
 					listener.onError(message, code, e);
@@ -242,21 +379,125 @@ public class WebSocketConnection implements InternalConnection,
 	}
 
 	@Override
+	public void onMessage(String message) {
+
+		// the frame's latency is timed from here, when metrics are being taken
+		long receivedAt = (metrics == PusherMetrics.NONE) ? 0 : System.nanoTime();
+
+		// frames are recorded on the websocket thread, before anything is done with them
+		record(message);
+		metrics.frameReceived(message.length());
+
+		if (options.isInlineDispatch()) {
+			handleInline(message, receivedAt);
+		} else {
+			inboundFrames.offer(message, receivedAt);
+		}
+	}
+
+	/**
+	 * Handles a frame on the websocket thread. Every channel event, including the internal ones such as subscription
+	 * succeeded, is handled here so that a channel sees its events in the order they were sent. Connection events
+	 * change state that the event thread looks after, so they are handed to it once they have been parsed.
+	 */
+	private void handleInline(String frame, long receivedAt) {
+
+		boolean timed = metrics != PusherMetrics.NONE;
+		if (timed) {
+			FrameTiming.begin(receivedAt, receivedAt);
+		}
+		try {
+			final Map<Object, Object> json = parse(frame);
+			final String event = (String) json.get("event");
+			if (event == null) {
+				return;
+			}
+			if (event.startsWith(INTERNAL_EVENT_PREFIX)) {
+				Factory.getEventQueue().execute(new Runnable() {
+					public void run() {
+						handleInternalEvent(event, json);
+					}
+				});
+			} else {
+				Factory.getChannelManager().onMessage(this, event, frame, json);
+			}
+		} finally {
+			if (timed) {
+				FrameTiming.end();
+			}
+		}
+	}
+
+	/**
+	 * Parses a frame once, for everything that handles it.
+	 */
 	@SuppressWarnings("unchecked")
-	public void onMessage(final String message) {
+	private Map<Object, Object> parse(String frame) {
 
-		Factory.getEventQueue().execute(new Runnable() {
-			public void run() {
-				Map<String, String> map = new Gson().fromJson(message, Map.class);
-				String event = map.get("event");
-				handleEvent(event, message);
+		if (metrics == PusherMetrics.NONE) {
+			return GSON.fromJson(frame, Map.class);
+		}
+
+		long start = System.nanoTime();
+		Map<Object, Object> json = GSON.fromJson(frame, Map.class);
+		long parsedAt = System.nanoTime();
+		metrics.frameParsed(parsedAt - start);
+		FrameTiming.parsed(parsedAt);
+		return json;
+	}
+
+	/**
+	 * Handles the frames taken from the inbound queue.
+	 */
+	private class InboundFrameHandler implements InboundFrameQueue.FrameHandler {
+
+		@Override
+		public void onFrame(String frame) {
+			Map<Object, Object> json = parse(frame);
+			String event = (String) json.get("event");
+			if (event != null) {
+				handleEvent(event, frame, json);
 			}
-		});
+		}
+
+		@Override
+		public void onError(String frame, RuntimeException e) {
+			sendErrorToAllListeners("An exception occurred while handling message [" + frame + "]", null, e);
+		}
+
+		@Override
+		public void onOverflow() {
+
+			Factory.getEventQueue().execute(new Runnable() {
+				public void run() {
+					if (state == ConnectionState.CONNECTING
+							|| state == ConnectionState.CONNECTED) {
+						sendErrorToAllListeners(
+								"Inbound queue is full, disconnecting", null, null);
+						updateState(ConnectionState.DISCONNECTING);
+						underlyingConnection.close();
+					}
+				}
+			});
+		}
 	}
 
 	@Override
 	public void onClose(int code, String reason, boolean remote) {
 
+		// the journal is closed with the connection, which closes its file, and reopened by the next connect, which
+		// carries on in a new segment. The segment's mapping stays in place until it is garbage collected, as Java 6
+		// has no way to unmap a buffer
+		JournalWriter writer = journal;
+		if (writer != null) {
+			journal = null;
+			try {
+				writer.close();
+			} catch (IOException e) {
+				sendErrorToAllListeners("Unable to close journal", null, e);
+			}
+		}
+
 		Factory.getEventQueue().execute(new Runnable() {
 			public void run() {
 				updateState(ConnectionState.DISCONNECTED);
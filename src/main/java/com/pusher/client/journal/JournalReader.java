@@ -0,0 +1,98 @@
+package com.pusher.client.journal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Reads back the records written by a {@link JournalWriter}, segment by segment, in the order that they were written.
+ */
+public class JournalReader implements Closeable {
+
+	private final File[] segments;
+	private int nextSegment;
+	private MappedByteBuffer segment;
+
+	public JournalReader(File directory) throws IOException {
+
+		if (!directory.isDirectory()) {
+			throw new IOException("Journal directory " + directory + " does not exist");
+		}
+		this.segments = listSegments(directory);
+	}
+
+	/**
+	 * @return The next record, or null once every segment has been read.
+	 */
+	public JournalRecord next() throws IOException {
+
+		while (true) {
+			if (segment != null && segment.remaining() >= JournalWriter.RECORD_HEADER_SIZE) {
+				int length = segment.getInt();
+				if (length > 0 && segment.remaining() >= length + 16) {
+					long timestamp = segment.getLong();
+					long nanoTime = segment.getLong();
+					byte[] bytes = new byte[length];
+					segment.get(bytes);
+					return new JournalRecord(timestamp, nanoTime, new String(bytes, "UTF-8"));
+				}
+			}
+
+			// the rest of this segment is unused, so move on to the next one
+			if (nextSegment == segments.length) {
+				segment = null;
+				return null;
+			}
+			segment = map(segments[nextSegment++]);
+		}
+	}
+
+	@Override
+	public void close() {
+		segment = null;
+		nextSegment = segments.length;
+	}
+
+	/* implementation detail */
+
+	static File[] listSegments(File directory) {
+
+		File[] segments = directory.listFiles(new FileFilter() {
+			@Override
+			public boolean accept(File file) {
+				return file.isFile() && file.getName().endsWith(JournalWriter.SEGMENT_SUFFIX);
+			}
+		});
+		if (segments == null) {
+			return new File[0];
+		}
+		Arrays.sort(segments);
+		return segments;
+	}
+
+	static int segmentIndexOf(File segment) {
+
+		String name = segment.getName();
+		try {
+			return Integer.parseInt(name.substring(0, name.length() - JournalWriter.SEGMENT_SUFFIX.length()));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private static MappedByteBuffer map(File file) throws IOException {
+
+		RandomAccessFile segmentFile = new RandomAccessFile(file, "r");
+		try {
+			return segmentFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, segmentFile.length());
+		} finally {
+			// the mapping stays valid after the file is closed
+			segmentFile.close();
+		}
+	}
+}
@@ -0,0 +1,44 @@
+package com.pusher.client.journal;
+
+/**
+ * A single inbound frame read back from a journal by {@link JournalReader}.
+ */
+public final class JournalRecord {
+
+	private final long timestamp;
+	private final long nanoTime;
+	private final String frame;
+
+	public JournalRecord(long timestamp, long nanoTime, String frame) {
+		this.timestamp = timestamp;
+		this.nanoTime = nanoTime;
+		this.frame = frame;
+	}
+
+	/**
+	 * @return The wall clock time that the frame was received, in milliseconds since the epoch.
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * @return The value of {@link System#nanoTime()} when the frame was received. This is only meaningful relative to
+	 * other records written by the same process.
+	 */
+	public long getNanoTime() {
+		return nanoTime;
+	}
+
+	/**
+	 * @return The raw frame exactly as it was received from Pusher.
+	 */
+	public String getFrame() {
+		return frame;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("[JournalRecord timestamp=%d, frame=%s]", timestamp, frame);
+	}
+}
@@ -0,0 +1,140 @@
+package com.pusher.client.journal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Appends timestamped inbound frames to a journal made up of memory-mapped segment files in a directory. A segment
+ * starts small and its mapping doubles as records are appended, up to the segment size, so a short recording does not
+ * reserve a whole segment on disk. When a frame does not fit in a full size segment a new segment is started.
+ *
+ * <p>Each record is a 4 byte frame length, an 8 byte wall clock timestamp, an 8 byte {@link System#nanoTime()} value
+ * and the UTF-8 encoded frame. The length is written last, so a record that was only partly written when the process
+ * died reads as the end of the segment. Segments are named with a zero padded sequence number so that they sort in
+ * the order that they were written, and a new writer for an existing directory carries on after the last segment.</p>
+ */
+public class JournalWriter implements Closeable {
+
+	public static final String SEGMENT_SUFFIX = ".journal";
+	public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+	static final int RECORD_HEADER_SIZE = 4 + 8 + 8;
+	static final int INITIAL_MAPPING_SIZE = 64 * 1024;
+
+	private final File directory;
+	private final int segmentSize;
+	private int segmentIndex;
+	private RandomAccessFile segmentFile;
+	private MappedByteBuffer segment;
+	private boolean closed;
+
+	public JournalWriter(File directory, int segmentSize) throws IOException {
+
+		if (segmentSize <= RECORD_HEADER_SIZE) {
+			throw new IllegalArgumentException("Journal segment size must be larger than " + RECORD_HEADER_SIZE + " bytes");
+		}
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Unable to create journal directory " + directory);
+		}
+
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+
+		File[] existing = JournalReader.listSegments(directory);
+		this.segmentIndex = (existing.length > 0) ? JournalReader.segmentIndexOf(existing[existing.length - 1]) + 1 : 0;
+	}
+
+	public synchronized void append(long timestamp, long nanoTime, String frame) throws IOException {
+
+		if (closed) {
+			throw new IOException("Cannot append to a journal that has been closed");
+		}
+		if (frame.length() == 0) {
+			return;
+		}
+
+		byte[] bytes = frame.getBytes("UTF-8");
+		int recordSize = RECORD_HEADER_SIZE + bytes.length;
+		if (recordSize > segmentSize) {
+			throw new IOException("A frame of " + bytes.length + " bytes does not fit in a journal segment of " + segmentSize + " bytes");
+		}
+
+		if (segment == null) {
+			startNextSegment(recordSize);
+		} else if (segment.remaining() < recordSize) {
+			if (segment.position() + recordSize <= segmentSize) {
+				growSegment(recordSize);
+			} else {
+				startNextSegment(recordSize);
+			}
+		}
+
+		int start = segment.position();
+		segment.position(start + 4);
+		segment.putLong(timestamp);
+		segment.putLong(nanoTime);
+		segment.put(bytes);
+		segment.putInt(start, bytes.length);
+	}
+
+	/**
+	 * Forces any appended records out to the storage device.
+	 */
+	public synchronized void flush() {
+		if (segment != null) {
+			segment.force();
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+
+		if (closed) {
+			return;
+		}
+		closed = true;
+		closeSegment();
+	}
+
+	/* implementation detail */
+
+	private void startNextSegment(int recordSize) throws IOException {
+
+		closeSegment();
+
+		File file = new File(directory, String.format("%010d%s", segmentIndex++, SEGMENT_SUFFIX));
+		segmentFile = new RandomAccessFile(file, "rw");
+		segment = map(Math.min(segmentSize, Math.max(INITIAL_MAPPING_SIZE, recordSize)));
+	}
+
+	// the segment is remapped from the start rather than extended with a second mapping, so that records stay
+	// contiguous and the reader sees no gap between them
+	private void growSegment(int recordSize) throws IOException {
+
+		int position = segment.position();
+		long size = Math.max(2L * segment.capacity(), (long) position + recordSize);
+		segment.force();
+		segment = map((int) Math.min(segmentSize, size));
+		segment.position(position);
+	}
+
+	private MappedByteBuffer map(int size) throws IOException {
+		// mapping past the end of the file extends it
+		return segmentFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+	}
+
+	private void closeSegment() throws IOException {
+
+		if (segment != null) {
+			segment.force();
+			segment = null;
+		}
+		if (segmentFile != null) {
+			segmentFile.close();
+			segmentFile = null;
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package com.pusher.client.metrics;
+
+import java.util.Arrays;
+
+/**
+ * The latency of the events delivered to listeners, broken down by {@link LatencyStage}, at a moment in time. Like the
+ * {@link HistogramSnapshot}s it holds, it doesn't change and can be {@link #merge(EventLatency) merged} with others.
+ *
+ * <pre>
+ * EventLatency latency = metrics.getChannelLatency("my-channel");
+ * long p99 = latency.get(LatencyStage.TOTAL).getValueAtPercentile(99);
+ * </pre>
+ */
+public class EventLatency {
+
+	/**
+	 * The latency of no events at all.
+	 */
+	public static final EventLatency EMPTY = new EventLatency(empty());
+
+	private final HistogramSnapshot[] stages;
+
+	EventLatency(HistogramSnapshot[] stages) {
+		this.stages = stages;
+	}
+
+	/**
+	 * @return The time each event spent in the stage, in nanoseconds.
+	 */
+	public HistogramSnapshot get(LatencyStage stage) {
+		if (stage == null) {
+			throw new IllegalArgumentException("Cannot get the latency of a null stage");
+		}
+		return stages[stage.ordinal()];
+	}
+
+	/**
+	 * @return The number of deliveries of an event to a listener that were timed.
+	 */
+	public long getCount() {
+		return get(LatencyStage.TOTAL).getCount();
+	}
+
+	/**
+	 * @return The latency of the events in this and the other.
+	 */
+	public EventLatency merge(EventLatency other) {
+
+		HistogramSnapshot[] merged = new HistogramSnapshot[stages.length];
+		for (int i = 0; i < stages.length; i++) {
+			merged[i] = stages[i].merge(other.stages[i]);
+		}
+		return new EventLatency(merged);
+	}
+
+	@Override
+	public String toString() {
+
+		StringBuilder result = new StringBuilder("[");
+		for (LatencyStage stage : LatencyStage.values()) {
+			if (stage.ordinal() > 0) {
+				result.append(", ");
+			}
+			result.append(stage).append('=').append(get(stage));
+		}
+		return result.append(']').toString();
+	}
+
+	/* implementation detail */
+
+	private static HistogramSnapshot[] empty() {
+
+		HistogramSnapshot[] stages = new HistogramSnapshot[LatencyStage.values().length];
+		Arrays.fill(stages, HistogramSnapshot.EMPTY);
+		return stages;
+	}
+}
@@ -0,0 +1,89 @@
+package com.pusher.client.metrics;
+
+/**
+ * The counts of a {@link LatencyHistogram} at a moment in time. Snapshots don't change, and snapshots of different
+ * histograms can be {@link #merge(HistogramSnapshot) merged}, for example to combine figures kept per channel.
+ */
+public class HistogramSnapshot {
+
+	/**
+	 * A snapshot of a histogram in which nothing has been recorded.
+	 */
+	public static final HistogramSnapshot EMPTY = new HistogramSnapshot(new long[LatencyHistogram.BUCKETS], 0);
+
+	private final long[] counts;
+	private final long count;
+	private final long max;
+
+	HistogramSnapshot(long[] counts, long max) {
+		this.counts = counts;
+		this.max = max;
+
+		long total = 0;
+		for (long c : counts) {
+			total += c;
+		}
+		this.count = total;
+	}
+
+	/**
+	 * @return The number of values recorded.
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return The largest value recorded, or 0 if none have been.
+	 */
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * Gets the value below which the given percentage of the recorded values fall, for example 50 for the median or
+	 * 99.9 for the 999th value in every thousand. The result is the top of the bucket that the value falls in, so it
+	 * may be up to about 6% larger than the value itself, but never larger than {@link #getMax()}.
+	 *
+	 * @param percentile A percentage between 0 and 100.
+	 * @return The value, or 0 if nothing has been recorded.
+	 * @throws IllegalArgumentException if the percentile is not between 0 and 100.
+	 */
+	public long getValueAtPercentile(double percentile) {
+
+		if (percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("Percentile must be between 0 and 100, not " + percentile);
+		}
+		if (count == 0) {
+			return 0;
+		}
+
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return Math.min(LatencyHistogram.upperBoundOf(i), max);
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * @return A snapshot that holds the values of this one and the other.
+	 */
+	public HistogramSnapshot merge(HistogramSnapshot other) {
+
+		long[] merged = new long[counts.length];
+		for (int i = 0; i < counts.length; i++) {
+			merged[i] = counts[i] + other.counts[i];
+		}
+		return new HistogramSnapshot(merged, Math.max(max, other.max));
+	}
+
+	@Override
+	public String toString() {
+		return String.format("[count=%d, p50=%d, p99=%d, p999=%d, max=%d]", count, getValueAtPercentile(50),
+				getValueAtPercentile(99), getValueAtPercentile(99.9), max);
+	}
+}
@@ -0,0 +1,309 @@
+package com.pusher.client.metrics;
+
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.pusher.client.connection.ConnectionState;
+
+/**
+ * A {@link PusherMetrics} that keeps running totals and histograms in memory for an application to read, for example
+ * to export to a monitoring system at intervals. The figures cover everything since this object was created.
+ *
+ * <pre>
+ * InMemoryMetrics metrics = new InMemoryMetrics();
+ * Pusher pusher = new Pusher(YOUR_APP_KEY, new PusherOptions().setMetrics(metrics));
+ * ...
+ * long p99 = metrics.getListenerTime().getValueAtPercentile(99);
+ * </pre>
+ *
+ * <p>The latency of events from their frame arriving to a listener returning is kept by {@link LatencyStage stage}
+ * for all events together, for each channel, and for each event name. To bound the memory this takes, only the
+ * first few names seen of each kind are kept separately, and the rest are kept together under {@link #OTHER}.</p>
+ */
+public class InMemoryMetrics implements PusherMetrics {
+
+	/**
+	 * The name that the latency of channels and events beyond the number that are tracked separately is kept under.
+	 */
+	public static final String OTHER = "(other)";
+
+	private static final int DEFAULT_MAX_TRACKED_NAMES = 64;
+
+	private final StripedCounter framesReceived = new StripedCounter();
+	private final StripedCounter bytesReceived = new StripedCounter();
+	private final StripedCounter framesSent = new StripedCounter();
+	private final StripedCounter bytesSent = new StripedCounter();
+	private final StripedCounter routingMisses = new StripedCounter();
+	private final StripedCounter reconnects = new StripedCounter();
+	private final StripedCounter authorizationFailures = new StripedCounter();
+	private final LatencyHistogram parseTime = new LatencyHistogram();
+	private final LatencyHistogram queueDepth = new LatencyHistogram();
+	private final LatencyHistogram queueWait = new LatencyHistogram();
+	private final LatencyHistogram listenerTime = new LatencyHistogram();
+	private final LatencyHistogram authorizationTime = new LatencyHistogram();
+	private final LatencyHistogram subscriptionTime = new LatencyHistogram();
+	private final StageHistograms latency = new StageHistograms();
+	private final ConcurrentMap<String, StageHistograms> channelLatency = new ConcurrentHashMap<String, StageHistograms>();
+	private final ConcurrentMap<String, StageHistograms> eventLatency = new ConcurrentHashMap<String, StageHistograms>();
+	private final int maxTrackedNames;
+
+	public InMemoryMetrics() {
+		this(DEFAULT_MAX_TRACKED_NAMES);
+	}
+
+	/**
+	 * @param maxTrackedNames The number of channels, and separately of event names, to keep the latency of separately.
+	 * Each takes about 45KB.
+	 */
+	public InMemoryMetrics(int maxTrackedNames) {
+		if (maxTrackedNames < 0) {
+			throw new IllegalArgumentException("The number of names to track must not be negative, not " + maxTrackedNames);
+		}
+		this.maxTrackedNames = maxTrackedNames;
+	}
+
+	/* PusherMetrics implementation */
+
+	@Override
+	public void frameReceived(int size) {
+		framesReceived.increment();
+		bytesReceived.add(size);
+	}
+
+	@Override
+	public void frameSent(int size) {
+		framesSent.increment();
+		bytesSent.add(size);
+	}
+
+	@Override
+	public void frameParsed(long nanos) {
+		parseTime.record(nanos);
+	}
+
+	@Override
+	public void routingMissed() {
+		routingMisses.increment();
+	}
+
+	@Override
+	public void frameQueued(int depth) {
+		queueDepth.record(depth);
+	}
+
+	@Override
+	public void frameDequeued(long waitNanos) {
+		queueWait.record(waitNanos);
+	}
+
+	@Override
+	public void listenerInvoked(String channelName, String eventName, long nanos) {
+		listenerTime.record(nanos);
+	}
+
+	@Override
+	public void eventDelivered(String channelName, String eventName, long receiveNanos, long parseNanos, long routeNanos,
+			long queueNanos, long listenerNanos) {
+		latency.record(receiveNanos, parseNanos, routeNanos, queueNanos, listenerNanos);
+		histogramsFor(channelLatency, channelName).record(receiveNanos, parseNanos, routeNanos, queueNanos, listenerNanos);
+		histogramsFor(eventLatency, eventName).record(receiveNanos, parseNanos, routeNanos, queueNanos, listenerNanos);
+	}
+
+	@Override
+	public void reconnected() {
+		reconnects.increment();
+	}
+
+	@Override
+	public void authorized(String channelName, long nanos, boolean succeeded) {
+		authorizationTime.record(nanos);
+		if (!succeeded) {
+			authorizationFailures.increment();
+		}
+	}
+
+	@Override
+	public void subscribed(String channelName, long nanos) {
+		subscriptionTime.record(nanos);
+	}
+
+	@Override
+	public void connectionStateChanged(ConnectionState previous, ConnectionState current) {
+		// the connection's state is available from the connection, and reconnections are counted separately
+	}
+
+	/* figures */
+
+	public long getFramesReceived() {
+		return framesReceived.sum();
+	}
+
+	/**
+	 * @return The total size of the frames received, in characters.
+	 */
+	public long getBytesReceived() {
+		return bytesReceived.sum();
+	}
+
+	public long getFramesSent() {
+		return framesSent.sum();
+	}
+
+	/**
+	 * @return The total size of the frames sent, in characters.
+	 */
+	public long getBytesSent() {
+		return bytesSent.sum();
+	}
+
+	/**
+	 * @return The number of events that arrived for channels that were not subscribed to.
+	 */
+	public long getRoutingMisses() {
+		return routingMisses.sum();
+	}
+
+	public long getReconnects() {
+		return reconnects.sum();
+	}
+
+	public long getAuthorizationFailures() {
+		return authorizationFailures.sum();
+	}
+
+	/**
+	 * @return The time taken to parse each received frame, in nanoseconds.
+	 */
+	public HistogramSnapshot getParseTime() {
+		return parseTime.snapshot();
+	}
+
+	/**
+	 * @return The number of frames in the inbound queue as each frame was added to it.
+	 */
+	public HistogramSnapshot getQueueDepth() {
+		return queueDepth.snapshot();
+	}
+
+	/**
+	 * @return The time each frame spent in the inbound queue, in nanoseconds.
+	 */
+	public HistogramSnapshot getQueueWait() {
+		return queueWait.snapshot();
+	}
+
+	/**
+	 * @return The time each listener took to handle an event, in nanoseconds.
+	 */
+	public HistogramSnapshot getListenerTime() {
+		return listenerTime.snapshot();
+	}
+
+	/**
+	 * @return The time each private or presence channel authorization took, in nanoseconds.
+	 */
+	public HistogramSnapshot getAuthorizationTime() {
+		return authorizationTime.snapshot();
+	}
+
+	/**
+	 * @return The time from each subscribe message being sent to Pusher confirming the subscription, in nanoseconds.
+	 */
+	public HistogramSnapshot getSubscriptionTime() {
+		return subscriptionTime.snapshot();
+	}
+
+	/**
+	 * @return The latency of every event delivered to a listener.
+	 */
+	public EventLatency getLatency() {
+		return latency.snapshot();
+	}
+
+	/**
+	 * @return The latency of the events on the channel, or {@link EventLatency#EMPTY} if none have been delivered or
+	 * the channel is one of those kept under {@link #OTHER}.
+	 */
+	public EventLatency getChannelLatency(String channelName) {
+		StageHistograms histograms = channelLatency.get(channelName);
+		return (histograms == null) ? EventLatency.EMPTY : histograms.snapshot();
+	}
+
+	/**
+	 * @return The latency of the events with the name, on any channel, or {@link EventLatency#EMPTY} if none have
+	 * been delivered or the name is one of those kept under {@link #OTHER}.
+	 */
+	public EventLatency getEventLatency(String eventName) {
+		StageHistograms histograms = eventLatency.get(eventName);
+		return (histograms == null) ? EventLatency.EMPTY : histograms.snapshot();
+	}
+
+	/**
+	 * @return The names of the channels whose latency is kept, in order, including {@link #OTHER} if there are more.
+	 */
+	public Set<String> getLatencyChannelNames() {
+		return new TreeSet<String>(channelLatency.keySet());
+	}
+
+	/**
+	 * @return The event names whose latency is kept, in order, including {@link #OTHER} if there are more.
+	 */
+	public Set<String> getLatencyEventNames() {
+		return new TreeSet<String>(eventLatency.keySet());
+	}
+
+	/* implementation detail */
+
+	private StageHistograms histogramsFor(ConcurrentMap<String, StageHistograms> nameToHistograms, String name) {
+
+		StageHistograms histograms = nameToHistograms.get(name);
+		if (histograms != null) {
+			return histograms;
+		}
+
+		// the size is checked without a lock, so a few more than the maximum may be kept when names arrive together
+		String key = (nameToHistograms.size() < maxTrackedNames) ? name : OTHER;
+		histograms = nameToHistograms.get(key);
+		if (histograms == null) {
+			StageHistograms created = new StageHistograms();
+			histograms = nameToHistograms.putIfAbsent(key, created);
+			if (histograms == null) {
+				histograms = created;
+			}
+		}
+		return histograms;
+	}
+
+	/**
+	 * A histogram for each {@link LatencyStage}.
+	 */
+	private static final class StageHistograms {
+
+		private final LatencyHistogram[] stages = new LatencyHistogram[LatencyStage.values().length];
+
+		StageHistograms() {
+			for (int i = 0; i < stages.length; i++) {
+				stages[i] = new LatencyHistogram();
+			}
+		}
+
+		void record(long receiveNanos, long parseNanos, long routeNanos, long queueNanos, long listenerNanos) {
+			stages[LatencyStage.RECEIVE.ordinal()].record(receiveNanos);
+			stages[LatencyStage.PARSE.ordinal()].record(parseNanos);
+			stages[LatencyStage.ROUTE.ordinal()].record(routeNanos);
+			stages[LatencyStage.QUEUE.ordinal()].record(queueNanos);
+			stages[LatencyStage.LISTENER.ordinal()].record(listenerNanos);
+			stages[LatencyStage.TOTAL.ordinal()].record(receiveNanos + parseNanos + routeNanos + queueNanos + listenerNanos);
+		}
+
+		EventLatency snapshot() {
+			HistogramSnapshot[] snapshots = new HistogramSnapshot[stages.length];
+			for (int i = 0; i < stages.length; i++) {
+				snapshots[i] = stages[i].snapshot();
+			}
+			return new EventLatency(snapshots);
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package com.pusher.client.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of non-negative values, such as latencies in nanoseconds, with log-linear buckets. Values below 16 have
+ * a bucket each, and every power of two above that is split into 16 equal buckets, so a value is placed within about
+ * 6% of its true size anywhere in the range of a long.
+ *
+ * <p>All the buckets are allocated up front and recording a value is an atomic increment, so recording is safe from
+ * any thread and doesn't allocate. {@link #snapshot()} copies the counts into a {@link HistogramSnapshot} to be read
+ * or merged with others.</p>
+ */
+public class LatencyHistogram {
+
+	static final int SUB_BUCKET_BITS = 4;
+	static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	static final int BUCKETS = SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Records a value. Negative values, which a clock that steps backwards can produce, are recorded as zero.
+	 */
+	public void record(long value) {
+
+		long v = Math.max(value, 0);
+		counts.incrementAndGet(bucketOf(v));
+
+		long current = max.get();
+		while (v > current && !max.compareAndSet(current, v)) {
+			current = max.get();
+		}
+	}
+
+	/**
+	 * Copies the counts recorded so far. Values recorded while the copy is made may or may not be included.
+	 */
+	public HistogramSnapshot snapshot() {
+
+		long[] copy = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			copy[i] = counts.get(i);
+		}
+		return new HistogramSnapshot(copy, max.get());
+	}
+
+	/* implementation detail */
+
+	static int bucketOf(long value) {
+
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int magnitude = 63 - Long.numberOfLeadingZeros(value);
+		int shift = magnitude - SUB_BUCKET_BITS;
+		int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+		return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * @return The largest value that is placed in the bucket.
+	 */
+	static long upperBoundOf(int bucket) {
+
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+		long subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+		long lowerBound = (SUB_BUCKETS + subBucket) << shift;
+		return lowerBound + (1L << shift) - 1;
+	}
+}
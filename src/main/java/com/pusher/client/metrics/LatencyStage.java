@@ -0,0 +1,41 @@
+package com.pusher.client.metrics;
+
+/**
+ * The stages an event passes through between its frame arriving from Pusher and a listener finishing with it, as
+ * reported by {@link PusherMetrics#eventDelivered}.
+ */
+public enum LatencyStage {
+
+	/**
+	 * From the websocket library handing the frame to this library until the event thread takes it from the inbound
+	 * queue. The time the websocket library spends reading and decoding the frame before that can't be seen from
+	 * here. It is zero when events are dispatched inline.
+	 */
+	RECEIVE,
+
+	/**
+	 * Parsing the frame's JSON to find its event name and channel.
+	 */
+	PARSE,
+
+	/**
+	 * Finding the channel, dropping duplicates, and handing the event to the listener.
+	 */
+	ROUTE,
+
+	/**
+	 * Waiting for the listener's turn, behind the tasks queued on the event thread before it, or with inline dispatch
+	 * behind the listeners called before it.
+	 */
+	QUEUE,
+
+	/**
+	 * The listener handling the event.
+	 */
+	LISTENER,
+
+	/**
+	 * The whole way, from the frame arriving until the listener returned.
+	 */
+	TOTAL
+}
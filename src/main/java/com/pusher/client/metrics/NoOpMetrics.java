@@ -0,0 +1,58 @@
+package com.pusher.client.metrics;
+
+import com.pusher.client.connection.ConnectionState;
+
+/**
+ * The {@link PusherMetrics#NONE} implementation. It is final and does nothing, so calls to it are inlined away.
+ */
+final class NoOpMetrics implements PusherMetrics {
+
+	@Override
+	public void frameReceived(int size) {
+	}
+
+	@Override
+	public void frameSent(int size) {
+	}
+
+	@Override
+	public void frameParsed(long nanos) {
+	}
+
+	@Override
+	public void routingMissed() {
+	}
+
+	@Override
+	public void frameQueued(int depth) {
+	}
+
+	@Override
+	public void frameDequeued(long waitNanos) {
+	}
+
+	@Override
+	public void listenerInvoked(String channelName, String eventName, long nanos) {
+	}
+
+	@Override
+	public void eventDelivered(String channelName, String eventName, long receiveNanos, long parseNanos, long routeNanos,
+			long queueNanos, long listenerNanos) {
+	}
+
+	@Override
+	public void reconnected() {
+	}
+
+	@Override
+	public void authorized(String channelName, long nanos, boolean succeeded) {
+	}
+
+	@Override
+	public void subscribed(String channelName, long nanos) {
+	}
+
+	@Override
+	public void connectionStateChanged(ConnectionState previous, ConnectionState current) {
+	}
+}
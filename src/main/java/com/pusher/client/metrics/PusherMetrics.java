@@ -0,0 +1,95 @@
+package com.pusher.client.metrics;
+
+import com.pusher.client.connection.ConnectionState;
+
+/**
+ * Receives measurements from the library's event pipeline. Set an implementation with
+ * {@link com.pusher.client.PusherOptions#setMetrics(PusherMetrics)}.
+ *
+ * <p>The methods are called on the library's hot paths, on the websocket thread and the event thread, so
+ * implementations must be thread safe and should return quickly without allocating or blocking. Times are in
+ * nanoseconds.</p>
+ *
+ * <p>By default the library reports to {@link #NONE}, and while it does it doesn't take the timings at all, so
+ * metrics cost nothing unless they are turned on.</p>
+ */
+public interface PusherMetrics {
+
+	/**
+	 * Discards every measurement.
+	 */
+	PusherMetrics NONE = new NoOpMetrics();
+
+	/**
+	 * A frame was received from Pusher.
+	 * @param size The size of the frame in characters, which is its size in bytes when it is ASCII.
+	 */
+	void frameReceived(int size);
+
+	/**
+	 * A frame was sent to Pusher.
+	 * @param size The size of the frame in characters, which is its size in bytes when it is ASCII.
+	 */
+	void frameSent(int size);
+
+	/**
+	 * A received frame was parsed to find its event name.
+	 */
+	void frameParsed(long nanos);
+
+	/**
+	 * An event arrived for a channel that is not subscribed to, so there was nowhere to route it.
+	 */
+	void routingMissed();
+
+	/**
+	 * A frame was added to the inbound queue to wait for the event thread.
+	 * @param depth The number of frames in the queue, including this one.
+	 */
+	void frameQueued(int depth);
+
+	/**
+	 * A frame was taken from the inbound queue by the event thread.
+	 * @param waitNanos How long the frame was in the queue.
+	 */
+	void frameDequeued(long waitNanos);
+
+	/**
+	 * A listener returned from handling an event.
+	 */
+	void listenerInvoked(String channelName, String eventName, long nanos);
+
+	/**
+	 * A listener returned from handling an event whose frame was timed from when it arrived, with the time the event
+	 * spent in each {@link LatencyStage}. The total is the sum of the stages. Called as well as
+	 * {@link #listenerInvoked(String, String, long)}, for listeners bound to the channel or with
+	 * {@link com.pusher.client.Pusher#bind(String, String, com.pusher.client.channel.SubscriptionEventListener) patterns}
+	 * or {@link com.pusher.client.Pusher#bindGlobal(com.pusher.client.channel.SubscriptionEventListener) globally},
+	 * but not for those that are run on an executor or receive batches.
+	 */
+	void eventDelivered(String channelName, String eventName, long receiveNanos, long parseNanos, long routeNanos,
+			long queueNanos, long listenerNanos);
+
+	/**
+	 * The connection was established again after having been connected before.
+	 */
+	void reconnected();
+
+	/**
+	 * A subscription to a private or presence channel was authorized.
+	 * @param succeeded false if the {@link com.pusher.client.Authorizer} failed.
+	 */
+	void authorized(String channelName, long nanos, boolean succeeded);
+
+	/**
+	 * Pusher confirmed a subscription.
+	 * @param nanos The time from the subscribe message being sent to the confirmation arriving.
+	 */
+	void subscribed(String channelName, long nanos);
+
+	/**
+	 * The connection moved from one state to another. Called on the thread that changed the state, before any
+	 * {@link com.pusher.client.connection.ConnectionEventListener} is told.
+	 */
+	void connectionStateChanged(ConnectionState previous, ConnectionState current);
+}
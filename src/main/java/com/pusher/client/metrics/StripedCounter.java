@@ -0,0 +1,48 @@
+package com.pusher.client.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter that threads can add to at the same time without contending. Each thread adds to one of several cells,
+ * chosen by its id, and the cells are a cache line apart so that threads on different cores don't share a line.
+ * Reading the counter sums the cells.
+ */
+final class StripedCounter {
+
+	// longs per 64 byte cache line, so that each cell has a line of its own
+	private static final int SPACING = 8;
+
+	private final AtomicLongArray cells;
+	private final int mask;
+
+	StripedCounter() {
+		int stripes = 1;
+		while (stripes < Runtime.getRuntime().availableProcessors() && stripes < 64) {
+			stripes <<= 1;
+		}
+		this.cells = new AtomicLongArray(stripes * SPACING);
+		this.mask = stripes - 1;
+	}
+
+	void increment() {
+		add(1);
+	}
+
+	void add(long n) {
+		cells.addAndGet(cell(), n);
+	}
+
+	long sum() {
+		long sum = 0;
+		for (int i = 0; i < cells.length(); i += SPACING) {
+			sum += cells.get(i);
+		}
+		return sum;
+	}
+
+	private int cell() {
+		// spreads the sequential thread ids across the stripes
+		long id = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+		return ((int) (id >>> 32) & mask) * SPACING;
+	}
+}
@@ -0,0 +1,6 @@
+/**
+ * Instrumentation of the library's event pipeline: the {@link com.pusher.client.metrics.PusherMetrics} interface that
+ * the library reports to, and {@link com.pusher.client.metrics.InMemoryMetrics}, which keeps the figures for an
+ * application to read.
+ */
+package com.pusher.client.metrics;
@@ -0,0 +1,70 @@
+package com.pusher.client.reactive;
+
+import java.util.Set;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+
+import com.pusher.client.channel.Channel;
+import com.pusher.client.channel.Event;
+import com.pusher.client.channel.impl.InternalChannel;
+
+/**
+ * Publishes the events received on a channel to Reactive Streams subscribers, so that a channel can be plugged into a
+ * reactive pipeline with flow control.
+ *
+ * <p>Each subscriber receives events only as it requests them. Events that arrive before they are requested are held
+ * in a bounded buffer per subscriber, and the {@link OverflowStrategy} decides what happens when that buffer is full.
+ * Events are taken from the channel as they are dispatched, without a task per event on the event queue, and are
+ * signalled either on the event thread or on the thread that requests them. A subscription completes when the channel
+ * is unsubscribed.</p>
+ *
+ * <p>A subscriber that throws from {@link Subscriber#onNext(Object)} is treated as having cancelled its subscription.</p>
+ */
+public class ChannelPublisher implements Publisher<Event> {
+
+	private final InternalChannel channel;
+	private final Set<String> eventNames;
+	private final int bufferSize;
+	private final OverflowStrategy overflowStrategy;
+
+	/**
+	 * Creates a publisher of every event on the channel with the default {@link PublisherOptions}.
+	 * 
+	 * @param channel A channel returned by {@link com.pusher.client.Pusher}.
+	 */
+	public ChannelPublisher(Channel channel) {
+		this(channel, new PublisherOptions());
+	}
+
+	/**
+	 * @param channel A channel returned by {@link com.pusher.client.Pusher}.
+	 * @param options The options. Changes made to them later do not affect the publisher.
+	 */
+	public ChannelPublisher(Channel channel, PublisherOptions options) {
+
+		if (channel == null) {
+			throw new IllegalArgumentException("Cannot publish the events of a null channel");
+		}
+		if (!(channel instanceof InternalChannel)) {
+			throw new IllegalArgumentException("Cannot publish the events of a channel that was not returned by Pusher");
+		}
+		if (options == null) {
+			throw new IllegalArgumentException("Cannot publish the events of channel " + channel.getName() + " with null options");
+		}
+
+		this.channel = (InternalChannel) channel;
+		this.eventNames = options.getEventNames();
+		this.bufferSize = options.getBufferSize();
+		this.overflowStrategy = options.getOverflowStrategy();
+	}
+
+	@Override
+	public void subscribe(Subscriber<? super Event> subscriber) {
+
+		if (subscriber == null) {
+			throw new NullPointerException("Subscriber cannot be null");
+		}
+		new ChannelSubscription(channel, subscriber, eventNames.isEmpty() ? null : eventNames, bufferSize, overflowStrategy).start();
+	}
+}
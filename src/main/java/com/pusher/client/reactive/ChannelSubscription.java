@@ -0,0 +1,207 @@
+package com.pusher.client.reactive;
+
+import java.util.ArrayDeque;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import com.pusher.client.channel.ChannelState;
+import com.pusher.client.channel.Event;
+import com.pusher.client.channel.SubscriptionEventListener;
+import com.pusher.client.channel.impl.ChannelStateObserver;
+import com.pusher.client.channel.impl.InternalChannel;
+
+/**
+ * One subscriber's subscription to a {@link ChannelPublisher}. Events are offered by the channel on the event thread
+ * and demand is added on whichever thread calls {@link #request(long)}. Both go through {@link #drain()}, which lets
+ * only one thread at a time signal the subscriber, so signals are never concurrent and a subscriber that requests
+ * more from within onNext does not recurse.
+ */
+class ChannelSubscription implements Subscription, SubscriptionEventListener, ChannelStateObserver {
+
+	private final InternalChannel channel;
+	private final Subscriber<? super Event> subscriber;
+	private final Set<String> eventNames;
+	private final int bufferSize;
+	private final OverflowStrategy overflowStrategy;
+	private final ArrayDeque<Event> buffer = new ArrayDeque<Event>(); // guarded by this
+	private long requested; // guarded by this
+	private boolean completed; // guarded by this
+	private Throwable error; // guarded by this
+	private volatile boolean cancelled;
+	private final AtomicInteger drainers = new AtomicInteger();
+
+	/**
+	 * @param eventNames The names of the events to publish, or null to publish every event.
+	 */
+	ChannelSubscription(InternalChannel channel, Subscriber<? super Event> subscriber, Set<String> eventNames,
+			int bufferSize, OverflowStrategy overflowStrategy) {
+		this.channel = channel;
+		this.subscriber = subscriber;
+		this.eventNames = eventNames;
+		this.bufferSize = bufferSize;
+		this.overflowStrategy = overflowStrategy;
+	}
+
+	void start() {
+
+		subscriber.onSubscribe(this);
+		channel.addStateObserver(this);
+		channel.addDirectListener(this);
+
+		if (cancelled) {
+			// cancelled during onSubscribe, before there was anything to remove
+			detach();
+		} else if (channel.getState() == ChannelState.UNSUBSCRIBED) {
+			onStateChange(channel, ChannelState.UNSUBSCRIBED, ChannelState.UNSUBSCRIBED);
+		}
+	}
+
+	/* Subscription implementation */
+
+	@Override
+	public void request(long n) {
+
+		synchronized (this) {
+			if (n <= 0) {
+				if (error == null) {
+					error = new IllegalArgumentException("Rule 3.9: request must be called with a positive number, not " + n);
+				}
+			} else {
+				requested += n;
+				if (requested < 0) {
+					requested = Long.MAX_VALUE;
+				}
+			}
+		}
+		drain();
+	}
+
+	@Override
+	public void cancel() {
+
+		cancelled = true;
+		detach();
+		synchronized (this) {
+			buffer.clear();
+		}
+	}
+
+	/* SubscriptionEventListener implementation */
+
+	@Override
+	public void onEvent(String channelName, String eventName, String data) {
+
+		if (eventNames != null && !eventNames.contains(eventName)) {
+			return;
+		}
+
+		synchronized (this) {
+			if (cancelled || completed || error != null) {
+				return;
+			}
+			if (buffer.size() >= bufferSize) {
+				switch (overflowStrategy) {
+				case DROP_OLDEST:
+					buffer.poll();
+					break;
+				case DROP_NEWEST:
+					return;
+				case ERROR:
+					buffer.clear();
+					error = new IllegalStateException("Subscriber to channel " + channelName + " has not requested the "
+							+ bufferSize + " buffered events");
+					break;
+				}
+			}
+			if (error == null) {
+				buffer.add(new Event(channelName, eventName, data));
+			}
+		}
+		drain();
+	}
+
+	/* ChannelStateObserver implementation */
+
+	@Override
+	public void onStateChange(InternalChannel channel, ChannelState previousState, ChannelState newState) {
+
+		if (newState == ChannelState.UNSUBSCRIBED) {
+			synchronized (this) {
+				completed = true;
+			}
+			drain();
+		}
+	}
+
+	/* implementation detail */
+
+	private void drain() {
+
+		if (drainers.getAndIncrement() != 0) {
+			// the thread that is draining will see what has changed before it stops
+			return;
+		}
+
+		int missed = 1;
+		while (true) {
+			while (true) {
+				Event next = null;
+				Throwable failure;
+				boolean complete = false;
+				synchronized (this) {
+					if (cancelled) {
+						buffer.clear();
+						return;
+					}
+					failure = error;
+					if (failure == null) {
+						if (requested > 0 && !buffer.isEmpty()) {
+							next = buffer.poll();
+							if (requested != Long.MAX_VALUE) {
+								requested--;
+							}
+						} else {
+							complete = completed && buffer.isEmpty();
+						}
+					}
+				}
+
+				if (failure != null || complete) {
+					cancelled = true;
+					detach();
+					if (failure != null) {
+						subscriber.onError(failure);
+					} else {
+						subscriber.onComplete();
+					}
+					return;
+				}
+
+				if (next == null) {
+					break;
+				}
+
+				try {
+					subscriber.onNext(next);
+				} catch (RuntimeException e) {
+					// rule 2.13: the subscriber has broken the contract, so the subscription is treated as cancelled
+					cancel();
+					return;
+				}
+			}
+
+			missed = drainers.addAndGet(-missed);
+			if (missed == 0) {
+				return;
+			}
+		}
+	}
+
+	private void detach() {
+		channel.removeDirectListener(this);
+		channel.removeStateObserver(this);
+	}
+}
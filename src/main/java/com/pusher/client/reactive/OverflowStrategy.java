@@ -0,0 +1,22 @@
+package com.pusher.client.reactive;
+
+/**
+ * What a {@link ChannelPublisher} does with an event that arrives when a subscriber's buffer of unrequested events is
+ * full.
+ * 
+ * @see PublisherOptions#setBufferSize(int)
+ */
+public enum OverflowStrategy {
+    /**
+     * Discard the oldest buffered event to make room for the new one.
+     */
+    DROP_OLDEST,
+    /**
+     * Discard the new event.
+     */
+    DROP_NEWEST,
+    /**
+     * Discard the buffered events and signal an {@link IllegalStateException} to the subscriber, ending the subscription.
+     */
+    ERROR
+}
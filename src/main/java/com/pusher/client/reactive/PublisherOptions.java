@@ -0,0 +1,94 @@
+package com.pusher.client.reactive;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Options that change which events a {@link ChannelPublisher} publishes and how it buffers events that its subscribers
+ * have not yet requested.
+ */
+public class PublisherOptions {
+
+	private static final String INTERNAL_EVENT_PREFIX = "pusher_internal:";
+
+	private Set<String> eventNames = Collections.emptySet();
+	private int bufferSize = 256;
+	private OverflowStrategy overflowStrategy = OverflowStrategy.ERROR;
+
+	/**
+	 * Gets the names of the events that are published.
+	 * @return the event names, or an empty set if every event on the channel is published.
+	 */
+	public Set<String> getEventNames() {
+		return eventNames;
+	}
+
+	/**
+	 * Publishes only the events with these names. By default every event on the channel is published.
+	 * 
+	 * @param eventNames The names of the events to publish, or none to publish every event.
+	 * @return this, for chaining
+	 */
+	public PublisherOptions setEventNames(String... eventNames) {
+		if (eventNames == null) {
+			throw new IllegalArgumentException("Event names cannot be null");
+		}
+		for (String eventName : eventNames) {
+			if (eventName == null) {
+				throw new IllegalArgumentException("Cannot publish events with a null event name");
+			}
+			if (eventName.startsWith(INTERNAL_EVENT_PREFIX)) {
+				throw new IllegalArgumentException("Cannot publish internal events such as " + eventName);
+			}
+		}
+		this.eventNames = Collections.unmodifiableSet(new LinkedHashSet<String>(Arrays.asList(eventNames)));
+		return this;
+	}
+
+	/**
+	 * Gets the maximum number of events held for each subscriber until it requests them.
+	 * @return the number of events.
+	 */
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	/**
+	 * Sets the maximum number of events held for each subscriber until it requests them. When the buffer is full the
+	 * {@link OverflowStrategy} decides what happens to the next event. The default is 256.
+	 * 
+	 * @param bufferSize The number of events, at least 1.
+	 * @return this, for chaining
+	 */
+	public PublisherOptions setBufferSize(int bufferSize) {
+		if (bufferSize < 1) {
+			throw new IllegalArgumentException("Buffer size must be at least 1");
+		}
+		this.bufferSize = bufferSize;
+		return this;
+	}
+
+	/**
+	 * @return the strategy for an event that arrives when a subscriber's buffer is full.
+	 */
+	public OverflowStrategy getOverflowStrategy() {
+		return overflowStrategy;
+	}
+
+	/**
+	 * Sets what happens to an event that arrives when a subscriber's buffer is full. The default is
+	 * {@link OverflowStrategy#ERROR}.
+	 * 
+	 * @param overflowStrategy The strategy.
+	 * @return this, for chaining
+	 */
+	public PublisherOptions setOverflowStrategy(OverflowStrategy overflowStrategy) {
+		if (overflowStrategy == null) {
+			throw new IllegalArgumentException("Overflow strategy cannot be null");
+		}
+		this.overflowStrategy = overflowStrategy;
+		return this;
+	}
+}
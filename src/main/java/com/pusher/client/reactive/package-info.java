@@ -0,0 +1,5 @@
+/**
+ * Adapters that expose channel events as Reactive Streams publishers. Using these classes requires the
+ * <code>org.reactivestreams:reactive-streams</code> library, which is an optional dependency of this library.
+ */
+package com.pusher.client.reactive;
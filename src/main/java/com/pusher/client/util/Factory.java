@@ -1,25 +1,33 @@
 package com.pusher.client.util;
 
+import java.io.File;
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 
 import javax.net.ssl.SSLException;
 
 import org.java_websocket.client.WebSocketClient;
 
 import com.pusher.client.Authorizer;
+import com.pusher.client.PusherOptions;
 import com.pusher.client.channel.impl.ChannelImpl;
 import com.pusher.client.channel.impl.ChannelManager;
 import com.pusher.client.channel.impl.PresenceChannelImpl;
 import com.pusher.client.channel.impl.PrivateChannelImpl;
 import com.pusher.client.connection.impl.InternalConnection;
+import com.pusher.client.connection.websocket.JournalReplayClient;
 import com.pusher.client.connection.websocket.WebSocketClientWrapper;
 import com.pusher.client.connection.websocket.WebSocketConnection;
 import com.pusher.client.connection.websocket.WebSocketListener;
+import com.pusher.client.journal.JournalReader;
+import com.pusher.client.journal.JournalWriter;
 
 /**
  * This is a lightweight way of doing dependency injection and enabling classes
@@ -46,11 +54,13 @@ public class Factory {
     private static InternalConnection connection;
     private static ChannelManager channelManager;
     private static ExecutorService eventQueue;
+    private static ScheduledExecutorService scheduler;
+    private static ThreadFactory threadFactory;
 
-    public static InternalConnection getConnection(String apiKey, boolean encrypted) {
+    public static InternalConnection getConnection(String apiKey, PusherOptions options) {
 	if (connection == null) {
 	    try {
-		connection = new WebSocketConnection(apiKey, encrypted);
+		connection = new WebSocketConnection(apiKey, options);
 	    } catch (URISyntaxException e) {
 		throw new IllegalArgumentException(
 			"Failed to initialise connection", e);
@@ -59,18 +69,87 @@ public class Factory {
 	return connection;
     }
 
+    public static InternalConnection newStandbyConnection(String apiKey, PusherOptions options) {
+	try {
+	    return new WebSocketConnection(apiKey, options, false);
+	} catch (URISyntaxException e) {
+	    throw new IllegalArgumentException(
+		    "Failed to initialise standby connection", e);
+	}
+    }
+
     public static WebSocketClient newWebSocketClientWrapper(URI uri,
 	    WebSocketListener proxy) throws SSLException {
 	return new WebSocketClientWrapper(uri, proxy);
     }
 
+    public static WebSocketClient newJournalReplayClient(URI uri,
+	    WebSocketListener proxy, File journalDirectory, boolean preserveTiming) throws SSLException {
+	return new JournalReplayClient(uri, proxy, journalDirectory, preserveTiming);
+    }
+
+    public static JournalWriter newJournalWriter(File directory, int segmentSize) throws IOException {
+	return new JournalWriter(directory, segmentSize);
+    }
+
+    public static JournalReader newJournalReader(File directory) throws IOException {
+	return new JournalReader(directory);
+    }
+
     public static ExecutorService getEventQueue() {
 	if (eventQueue == null) {
-	    eventQueue = Executors.newSingleThreadExecutor();
+	    // named so that its work can be told apart in thread dumps and profiles, but unlike the library's other
+	    // threads it is not a daemon, so that a connected client keeps the JVM running as it always has
+	    eventQueue = (threadFactory != null) ? Executors.newSingleThreadExecutor(threadFactory) : Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+		    return new Thread(r, "pusher-java-client-event-queue");
+		}
+	    });
 	}
 	return eventQueue;
     }
 
+    /**
+     * A single timer thread shared by every delayed task in the library, such as subscription deadlines. Tasks
+     * scheduled here should do no more than hand work over to the {@link #getEventQueue() event queue}.
+     */
+    public static ScheduledExecutorService getScheduler() {
+	if (scheduler == null) {
+	    scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+		    return Factory.newThread(r, "pusher-java-client-scheduler");
+		}
+	    });
+	}
+	return scheduler;
+    }
+
+    /**
+     * Creates a thread for the library's own use, such as the scheduler or journal replay. The thread comes from the
+     * {@link #setThreadFactory(ThreadFactory) thread factory} if one has been set, which names it, and is otherwise a
+     * daemon thread with the given name.
+     */
+    public static Thread newThread(Runnable runnable, String name) {
+	if (threadFactory != null) {
+	    return threadFactory.newThread(runnable);
+	}
+	Thread thread = new Thread(runnable, name);
+	thread.setDaemon(true);
+	return thread;
+    }
+
+    /**
+     * Sets the factory for the threads that the library creates, as given by
+     * {@link PusherOptions#setThreadFactory(ThreadFactory)}. Like the event queue and scheduler it is shared by every
+     * client in the JVM, and it only affects threads that are created afterwards, so it is set before the event queue
+     * or scheduler is first used and a later client's factory replaces an earlier one's.
+     */
+    public static void setThreadFactory(ThreadFactory factory) {
+	threadFactory = factory;
+    }
+
     public static ChannelImpl newPublicChannel(String channelName) {
 	return new ChannelImpl(channelName);
     }
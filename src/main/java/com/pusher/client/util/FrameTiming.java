@@ -0,0 +1,92 @@
+package com.pusher.client.util;
+
+/**
+ * When the frame that the current thread is handling arrived, was taken from the inbound queue and was parsed, so that
+ * the channels it is routed to can report its latency stage by stage. The times are only taken while metrics are being
+ * collected. They are kept per thread because a frame is handled on a single thread from the moment it is taken from
+ * the queue until its listeners are called or their tasks are queued, which is when the channels read them.
+ */
+public final class FrameTiming {
+
+	// one per thread and reused for each frame, so timing a frame allocates nothing
+	private static final ThreadLocal<FrameTiming> CURRENT = new ThreadLocal<FrameTiming>() {
+		@Override
+		protected FrameTiming initialValue() {
+			return new FrameTiming();
+		}
+	};
+
+	private boolean active;
+	private long receivedAt;
+	private long dequeuedAt;
+	private long parsedAt;
+
+	private FrameTiming() {
+	}
+
+	/**
+	 * Starts timing a frame on this thread.
+	 * @param receivedAt The {@link System#nanoTime()} at which the frame arrived.
+	 * @param dequeuedAt When it was taken from the inbound queue, which is when it arrived if it wasn't queued.
+	 */
+	public static void begin(long receivedAt, long dequeuedAt) {
+		FrameTiming current = CURRENT.get();
+		current.active = true;
+		current.receivedAt = receivedAt;
+		current.dequeuedAt = dequeuedAt;
+		current.parsedAt = dequeuedAt;
+	}
+
+	/**
+	 * Notes that the frame being timed on this thread has been parsed, if there is one.
+	 */
+	public static void parsed(long parsedAt) {
+		FrameTiming current = CURRENT.get();
+		if (current.active) {
+			current.parsedAt = parsedAt;
+		}
+	}
+
+	/**
+	 * Stops timing the frame on this thread.
+	 */
+	public static void end() {
+		CURRENT.get().active = false;
+	}
+
+	/**
+	 * @return The times of the frame being handled on this thread, or null if no frame is being timed. The instance
+	 * belongs to the thread and is reused for its next frame, so a task that reports on the frame later copies the
+	 * times it needs rather than keeping the instance.
+	 */
+	public static FrameTiming current() {
+		FrameTiming current = CURRENT.get();
+		return current.active ? current : null;
+	}
+
+	public long getReceivedAt() {
+		return receivedAt;
+	}
+
+	public long getDequeuedAt() {
+		return dequeuedAt;
+	}
+
+	public long getParsedAt() {
+		return parsedAt;
+	}
+
+	/**
+	 * @return The time that the frame waited in the inbound queue.
+	 */
+	public long getReceiveNanos() {
+		return dequeuedAt - receivedAt;
+	}
+
+	/**
+	 * @return The time that the frame took to parse.
+	 */
+	public long getParseNanos() {
+		return parsedAt - dequeuedAt;
+	}
+}
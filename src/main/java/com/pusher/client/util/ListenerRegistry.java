@@ -0,0 +1,119 @@
+package com.pusher.client.util;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A copy-on-write registry of listeners keyed by, for example, an event name or a connection state.
+ *
+ * <p>Every call to {@link #add(Object, Object)} or {@link #remove(Object, Object)} builds a new immutable
+ * snapshot and publishes it with a single volatile write. Readers on the event thread call {@link #get(Object)}
+ * or {@link #getAll()} and iterate the returned array without taking a lock or allocating. The returned arrays
+ * are shared and must not be modified.</p>
+ *
+ * <p>Binding and unbinding are rare compared with dispatch, so the cost of copying on write is acceptable.</p>
+ */
+public class ListenerRegistry<K, L> {
+
+	private final L[] empty;
+	private volatile Map<K, L[]> keyToListeners = Collections.emptyMap();
+	private volatile L[] allListeners;
+
+	@SuppressWarnings("unchecked")
+	public ListenerRegistry(Class<L> listenerType) {
+		this.empty = (L[]) Array.newInstance(listenerType, 0);
+		this.allListeners = empty;
+	}
+
+	/**
+	 * Adds a listener for the given key.
+	 * @return true if the listener was added, false if it was already registered for the key.
+	 */
+	public synchronized boolean add(K key, L listener) {
+
+		L[] current = get(key);
+		for (L existing : current) {
+			if (existing.equals(listener)) {
+				return false;
+			}
+		}
+
+		L[] updated = Arrays.copyOf(current, current.length + 1);
+		updated[current.length] = listener;
+
+		Map<K, L[]> copy = new HashMap<K, L[]>(keyToListeners);
+		copy.put(key, updated);
+		publish(copy);
+		return true;
+	}
+
+	/**
+	 * Removes a listener for the given key.
+	 * @return true if the listener was removed, false if it was not registered for the key.
+	 */
+	public synchronized boolean remove(K key, L listener) {
+
+		L[] current = get(key);
+		int index = -1;
+		for (int i = 0; i < current.length; i++) {
+			if (current[i].equals(listener)) {
+				index = i;
+				break;
+			}
+		}
+
+		if (index == -1) {
+			return false;
+		}
+
+		Map<K, L[]> copy = new HashMap<K, L[]>(keyToListeners);
+		if (current.length == 1) {
+			copy.remove(key);
+		} else {
+			L[] updated = Arrays.copyOf(current, current.length - 1);
+			System.arraycopy(current, index + 1, updated, index, current.length - index - 1);
+			copy.put(key, updated);
+		}
+		publish(copy);
+		return true;
+	}
+
+	/**
+	 * Gets the listeners registered for the given key. Never returns null.
+	 */
+	public L[] get(K key) {
+		L[] listeners = keyToListeners.get(key);
+		return (listeners != null) ? listeners : empty;
+	}
+
+	/**
+	 * Gets every distinct listener registered against any key. Never returns null.
+	 */
+	public L[] getAll() {
+		return allListeners;
+	}
+
+	public boolean isEmpty() {
+		return allListeners.length == 0;
+	}
+
+	/* implementation detail */
+
+	private void publish(Map<K, L[]> updated) {
+
+		Set<L> distinct = new LinkedHashSet<L>();
+		for (L[] listeners : updated.values()) {
+			Collections.addAll(distinct, listeners);
+		}
+
+		// all listeners is written first so that a reader that sees the new map never sees a stale "all" snapshot
+		// that is missing a newly added listener
+		allListeners = distinct.toArray(empty);
+		keyToListeners = updated;
+	}
+}
@@ -0,0 +1,258 @@
+package com.pusher.client.util;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable map that iterates in the order that its keys were first put, like a {@link java.util.LinkedHashMap}.
+ *
+ * <p>{@link #put(Comparable, Object)} and {@link #remove(Comparable)} return a new map that shares all but the
+ * O(log n) changed nodes with this one, so a version can be kept for every change without copying the whole map.
+ * The entries are held in two balanced trees, one ordered by key for lookups and one ordered by insertion for
+ * iteration.</p>
+ */
+public final class PersistentOrderedMap<K extends Comparable<? super K>, V> implements Iterable<Map.Entry<K, V>> {
+
+	@SuppressWarnings("rawtypes")
+	private static final PersistentOrderedMap EMPTY = new PersistentOrderedMap(null, null, 0, 0);
+
+	private final Node<K, Slot<K, V>> byKey;
+	private final Node<Long, Slot<K, V>> byOrder;
+	private final int size;
+	private final long nextSequence;
+
+	private PersistentOrderedMap(Node<K, Slot<K, V>> byKey, Node<Long, Slot<K, V>> byOrder, int size, long nextSequence) {
+		this.byKey = byKey;
+		this.byOrder = byOrder;
+		this.size = size;
+		this.nextSequence = nextSequence;
+	}
+
+	@SuppressWarnings("unchecked")
+	public static <K extends Comparable<? super K>, V> PersistentOrderedMap<K, V> empty() {
+		return EMPTY;
+	}
+
+	public V get(K key) {
+		Slot<K, V> slot = find(byKey, key);
+		return (slot != null) ? slot.getValue() : null;
+	}
+
+	public boolean containsKey(K key) {
+		return find(byKey, key) != null;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return A map with the key mapped to the value. A key that is already present keeps its place in the iteration
+	 *         order.
+	 */
+	public PersistentOrderedMap<K, V> put(K key, V value) {
+
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot put a null key into a persistent map");
+		}
+
+		Slot<K, V> existing = find(byKey, key);
+		if (existing != null) {
+			Slot<K, V> slot = new Slot<K, V>(key, value, existing.sequence);
+			return new PersistentOrderedMap<K, V>(put(byKey, key, slot), put(byOrder, existing.sequence, slot), size, nextSequence);
+		}
+
+		Slot<K, V> slot = new Slot<K, V>(key, value, nextSequence);
+		return new PersistentOrderedMap<K, V>(put(byKey, key, slot), put(byOrder, nextSequence, slot), size + 1, nextSequence + 1);
+	}
+
+	/**
+	 * @return A map without the key, or this map if the key is not present.
+	 */
+	public PersistentOrderedMap<K, V> remove(K key) {
+
+		Slot<K, V> existing = find(byKey, key);
+		if (existing == null) {
+			return this;
+		}
+		return new PersistentOrderedMap<K, V>(remove(byKey, key), remove(byOrder, existing.sequence), size - 1, nextSequence);
+	}
+
+	/**
+	 * @return An iterator over the entries in insertion order. It does not support removal.
+	 */
+	@Override
+	public Iterator<Map.Entry<K, V>> iterator() {
+		return new EntryIterator<K, V>(byOrder);
+	}
+
+	private static <K extends Comparable<? super K>, T> T find(Node<K, T> node, K key) {
+
+		if (key == null) {
+			return null;
+		}
+		while (node != null) {
+			int comparison = key.compareTo(node.key);
+			if (comparison == 0) {
+				return node.value;
+			}
+			node = (comparison < 0) ? node.left : node.right;
+		}
+		return null;
+	}
+
+	private static <K extends Comparable<? super K>, T> Node<K, T> put(Node<K, T> node, K key, T value) {
+
+		if (node == null) {
+			return new Node<K, T>(key, value, null, null);
+		}
+		int comparison = key.compareTo(node.key);
+		if (comparison < 0) {
+			return balance(node.key, node.value, put(node.left, key, value), node.right);
+		}
+		if (comparison > 0) {
+			return balance(node.key, node.value, node.left, put(node.right, key, value));
+		}
+		return new Node<K, T>(key, value, node.left, node.right);
+	}
+
+	// callers check that the key is present
+	private static <K extends Comparable<? super K>, T> Node<K, T> remove(Node<K, T> node, K key) {
+
+		int comparison = key.compareTo(node.key);
+		if (comparison < 0) {
+			return balance(node.key, node.value, remove(node.left, key), node.right);
+		}
+		if (comparison > 0) {
+			return balance(node.key, node.value, node.left, remove(node.right, key));
+		}
+		if (node.left == null) {
+			return node.right;
+		}
+		if (node.right == null) {
+			return node.left;
+		}
+
+		Node<K, T> successor = node.right;
+		while (successor.left != null) {
+			successor = successor.left;
+		}
+		return balance(successor.key, successor.value, node.left, removeFirst(node.right));
+	}
+
+	private static <K, T> Node<K, T> removeFirst(Node<K, T> node) {
+
+		if (node.left == null) {
+			return node.right;
+		}
+		return balance(node.key, node.value, removeFirst(node.left), node.right);
+	}
+
+	// builds a node from subtrees whose heights differ by at most two, rotating to keep them within one
+	private static <K, T> Node<K, T> balance(K key, T value, Node<K, T> left, Node<K, T> right) {
+
+		int leftHeight = height(left);
+		int rightHeight = height(right);
+
+		if (leftHeight > rightHeight + 1) {
+			if (height(left.left) >= height(left.right)) {
+				return new Node<K, T>(left.key, left.value, left.left, new Node<K, T>(key, value, left.right, right));
+			}
+			Node<K, T> pivot = left.right;
+			return new Node<K, T>(pivot.key, pivot.value,
+					new Node<K, T>(left.key, left.value, left.left, pivot.left),
+					new Node<K, T>(key, value, pivot.right, right));
+		}
+
+		if (rightHeight > leftHeight + 1) {
+			if (height(right.right) >= height(right.left)) {
+				return new Node<K, T>(right.key, right.value, new Node<K, T>(key, value, left, right.left), right.right);
+			}
+			Node<K, T> pivot = right.left;
+			return new Node<K, T>(pivot.key, pivot.value,
+					new Node<K, T>(key, value, left, pivot.left),
+					new Node<K, T>(right.key, right.value, pivot.right, right.right));
+		}
+
+		return new Node<K, T>(key, value, left, right);
+	}
+
+	private static int height(Node<?, ?> node) {
+		return (node != null) ? node.height : 0;
+	}
+
+	private static final class Node<K, T> {
+
+		private final K key;
+		private final T value;
+		private final Node<K, T> left;
+		private final Node<K, T> right;
+		private final int height;
+
+		Node(K key, T value, Node<K, T> left, Node<K, T> right) {
+			this.key = key;
+			this.value = value;
+			this.left = left;
+			this.right = right;
+			this.height = Math.max(height(left), height(right)) + 1;
+		}
+	}
+
+	private static final class Slot<K, V> extends AbstractMap.SimpleImmutableEntry<K, V> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final long sequence;
+
+		Slot(K key, V value, long sequence) {
+			super(key, value);
+			this.sequence = sequence;
+		}
+	}
+
+	private static final class EntryIterator<K, V> implements Iterator<Map.Entry<K, V>> {
+
+		// the path to the next entry, holding the nodes whose own entries and right subtrees are still to be visited
+		private final List<Node<Long, Slot<K, V>>> path = new ArrayList<Node<Long, Slot<K, V>>>();
+
+		EntryIterator(Node<Long, Slot<K, V>> root) {
+			descendLeft(root);
+		}
+
+		@Override
+		public boolean hasNext() {
+			return !path.isEmpty();
+		}
+
+		@Override
+		public Map.Entry<K, V> next() {
+
+			if (path.isEmpty()) {
+				throw new NoSuchElementException();
+			}
+			Node<Long, Slot<K, V>> node = path.remove(path.size() - 1);
+			descendLeft(node.right);
+			return node.value;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		private void descendLeft(Node<Long, Slot<K, V>> node) {
+			while (node != null) {
+				path.add(node);
+				node = node.left;
+			}
+		}
+	}
+}
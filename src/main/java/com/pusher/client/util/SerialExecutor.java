@@ -0,0 +1,99 @@
+package com.pusher.client.util;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs tasks one at a time, in the order they were submitted, on another {@link Executor}. Tasks never overlap, and
+ * each task sees the effects of the ones before it, however many threads the underlying executor has. At most one
+ * task is handed to the underlying executor at a time, so a busy serial executor holds its backlog here rather than
+ * occupying the underlying executor's threads.
+ *
+ * <p>The library uses one serial executor per listener bound with an executor, so that each listener receives its
+ * events in order while different listeners run in parallel.</p>
+ */
+public class SerialExecutor implements Executor {
+
+	private final Executor executor;
+	private final ArrayDeque<Runnable> tasks = new ArrayDeque<Runnable>(); // guarded by this
+	private boolean running; // guarded by this
+
+	private final Runnable drain = new Runnable() {
+		@Override
+		public void run() {
+			drain();
+		}
+	};
+
+	public SerialExecutor(Executor executor) {
+		if (executor == null) {
+			throw new IllegalArgumentException("Cannot run tasks on a null executor");
+		}
+		this.executor = executor;
+	}
+
+	@Override
+	public void execute(Runnable task) {
+
+		if (task == null) {
+			throw new NullPointerException("Task cannot be null");
+		}
+
+		synchronized (this) {
+			tasks.add(task);
+			if (running) {
+				return;
+			}
+			running = true;
+		}
+
+		try {
+			executor.execute(drain);
+		} catch (RuntimeException e) {
+			// a rejected drain would otherwise leave every later task waiting for it
+			synchronized (this) {
+				tasks.clear();
+				running = false;
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * @return The executor that the tasks run on.
+	 */
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	/* implementation detail */
+
+	private void drain() {
+
+		// the tasks that are waiting when the drain starts are run, and any that arrive meanwhile get a fresh drain,
+		// so a steady stream of tasks can't hold one of the underlying executor's threads indefinitely
+		int batch;
+		synchronized (this) {
+			batch = tasks.size();
+		}
+
+		try {
+			for (int i = 0; i < batch; i++) {
+				Runnable task;
+				synchronized (this) {
+					task = tasks.poll();
+				}
+				task.run();
+			}
+		} finally {
+			boolean more;
+			synchronized (this) {
+				more = !tasks.isEmpty();
+				running = more;
+			}
+			if (more) {
+				executor.execute(drain);
+			}
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package com.pusher.client.util;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A {@link Future} that is completed from within the library, typically on the event thread, when a
+ * protocol level acknowledgement such as a subscription success message is received.
+ *
+ * <p>Only the first call to {@link #set(Object)}, {@link #setException(Throwable)} or {@link #cancel(boolean)}
+ * has any effect.</p>
+ */
+public class SettableFuture<V> implements Future<V> {
+
+	private final CountDownLatch done = new CountDownLatch(1);
+	private volatile V value;
+	private volatile Throwable failure;
+	private volatile boolean cancelled;
+	private boolean completed;
+
+	public boolean set(V value) {
+		synchronized (this) {
+			if (completed) {
+				return false;
+			}
+			completed = true;
+			this.value = value;
+		}
+		done.countDown();
+		onCompletion();
+		return true;
+	}
+
+	public boolean setException(Throwable failure) {
+		synchronized (this) {
+			if (completed) {
+				return false;
+			}
+			completed = true;
+			this.failure = failure;
+		}
+		done.countDown();
+		onCompletion();
+		return true;
+	}
+
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		synchronized (this) {
+			if (completed) {
+				return false;
+			}
+			completed = true;
+			cancelled = true;
+		}
+		done.countDown();
+		onCompletion();
+		return true;
+	}
+
+	@Override
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	@Override
+	public boolean isDone() {
+		return done.getCount() == 0;
+	}
+
+	@Override
+	public V get() throws InterruptedException, ExecutionException {
+		done.await();
+		return getResult();
+	}
+
+	@Override
+	public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+		if (!done.await(timeout, unit)) {
+			throw new TimeoutException("Timed out after " + timeout + " " + unit.toString().toLowerCase());
+		}
+		return getResult();
+	}
+
+	/**
+	 * Called once, on the completing thread, after the future has been completed, failed or cancelled. Subclasses
+	 * can override this to release any resources they registered while waiting.
+	 */
+	protected void onCompletion() {
+	}
+
+	/* implementation detail */
+
+	private V getResult() throws ExecutionException {
+		if (cancelled) {
+			throw new CancellationException();
+		}
+		if (failure != null) {
+			throw new ExecutionException(failure);
+		}
+		return value;
+	}
+}
@@ -1,8 +1,10 @@
 package com.pusher.client;
 
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -10,6 +12,10 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import com.pusher.client.connection.InboundOverflowPolicy;
+import com.pusher.client.metrics.InMemoryMetrics;
+import com.pusher.client.metrics.PusherMetrics;
+
 @RunWith(MockitoJUnitRunner.class)
 public class PusherOptionsTest {
 
@@ -52,4 +58,76 @@ public class PusherOptionsTest {
     public void testSetEncryptedReturnsSelf() {
     	assertSame(pusherOptions, pusherOptions.setEncrypted(true));
     }
-}
\ No newline at end of file
+    
+    @Test
+    public void testSubscriptionTimeoutDefaultsToThirtySeconds() {
+    	assertEquals(30000, pusherOptions.getSubscriptionTimeout());
+    }
+    
+    @Test
+    public void testSubscriptionRetrySettingsCanBeSet() {
+    	assertSame(pusherOptions, pusherOptions.setSubscriptionTimeout(5000).setMaxSubscriptionRetries(1).setSubscriptionRetryDelay(250));
+    	assertEquals(5000, pusherOptions.getSubscriptionTimeout());
+    	assertEquals(1, pusherOptions.getMaxSubscriptionRetries());
+    	assertEquals(250, pusherOptions.getSubscriptionRetryDelay());
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testNegativeSubscriptionTimeoutThrowsException() {
+    	pusherOptions.setSubscriptionTimeout(-1);
+    }
+
+    @Test
+    public void testStandbyConnectionsDefaultToNone() {
+    	assertEquals(0, pusherOptions.getStandbyConnections());
+    	assertEquals(4096, pusherOptions.getDeduplicationWindow());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testNegativeStandbyConnectionsThrowsException() {
+    	pusherOptions.setStandbyConnections(-1);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testEmptyDeduplicationWindowThrowsException() {
+    	pusherOptions.setDeduplicationWindow(0);
+    }
+
+    @Test
+    public void testInboundQueueIsNotLimitedByDefault() {
+    	assertEquals(0, pusherOptions.getInboundQueueMaxFrames());
+    	assertEquals(0, pusherOptions.getInboundQueueMaxBytes());
+    	assertSame(InboundOverflowPolicy.BLOCK, pusherOptions.getInboundOverflowPolicy());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testNegativeInboundQueueLimitThrowsException() {
+    	pusherOptions.setInboundQueueLimit(-1, 0);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testNullInboundOverflowPolicyThrowsException() {
+    	pusherOptions.setInboundOverflowPolicy(null);
+    }
+
+    @Test
+    public void testInlineDispatchIsDisabledByDefault() {
+    	assertFalse(pusherOptions.isInlineDispatch());
+    	assertTrue(pusherOptions.setInlineDispatch(true).isInlineDispatch());
+    }
+    
+    @Test
+    public void testThreadingExtensionPointsAreUnsetByDefault() {
+    	assertNull(pusherOptions.getThreadFactory());
+    	assertNull(pusherOptions.getListenerExecutor());
+    	assertNull(pusherOptions.getAuthorizationExecutor());
+    }
+
+    @Test
+    public void testMetricsAreOffByDefaultAndWhenSetToNull() {
+    	assertSame(PusherMetrics.NONE, pusherOptions.getMetrics());
+    	InMemoryMetrics metrics = new InMemoryMetrics();
+    	assertSame(metrics, pusherOptions.setMetrics(metrics).getMetrics());
+    	assertSame(PusherMetrics.NONE, pusherOptions.setMetrics(null).getMetrics());
+    }
+}
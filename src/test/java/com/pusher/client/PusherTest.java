@@ -1,29 +1,51 @@
 package com.pusher.client;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import com.pusher.client.channel.Channel;
 import com.pusher.client.channel.ChannelEventListener;
+import com.pusher.client.channel.ChannelHandle;
 import com.pusher.client.channel.PresenceChannelEventListener;
 import com.pusher.client.channel.PrivateChannelEventListener;
+import com.pusher.client.channel.SubscriptionEventListener;
 import com.pusher.client.channel.impl.ChannelImpl;
 import com.pusher.client.channel.impl.ChannelManager;
+import com.pusher.client.channel.impl.ChannelStateObserver;
+import com.pusher.client.channel.impl.InternalChannel;
 import com.pusher.client.channel.impl.PresenceChannelImpl;
 import com.pusher.client.channel.impl.PrivateChannelImpl;
+import com.pusher.client.connection.Connection;
 import com.pusher.client.connection.ConnectionEventListener;
 import com.pusher.client.connection.ConnectionState;
+import com.pusher.client.connection.ConnectionStateChange;
+import com.pusher.client.connection.InboundQueueStats;
 import com.pusher.client.connection.impl.InternalConnection;
 import com.pusher.client.util.Factory;
 import com.pusher.client.util.InstantExecutor;
@@ -55,7 +77,7 @@ public class PusherTest {
     {
 	PowerMockito.mockStatic(Factory.class);
 
-	when(Factory.getConnection(API_KEY, false)).thenReturn(mockConnection);
+	when(Factory.getConnection(eq(API_KEY), any(PusherOptions.class))).thenReturn(mockConnection);
 	when(Factory.getChannelManager()).thenReturn(mockChannelManager);
 	when(Factory.newPublicChannel(PUBLIC_CHANNEL_NAME)).thenReturn(mockPublicChannel);
 	when(Factory.newPrivateChannel(mockConnection, PRIVATE_CHANNEL_NAME, mockAuthorizer)).thenReturn(mockPrivateChannel);
@@ -300,6 +322,140 @@ public class PusherTest {
 	verify(mockChannelManager).subscribeTo(mockPrivateChannel, mockPrivateChannelEventListener);
     }
     
+    @Test
+    public void testSubscribeAsyncObservesChannelBeforeDelegatingCallToTheChannelManager() {
+	Future<Channel> future = pusher.subscribeAsync(PUBLIC_CHANNEL_NAME, mockChannelEventListener, "event1");
+	
+	InOrder inOrder = inOrder(mockPublicChannel, mockChannelManager);
+	inOrder.verify(mockPublicChannel).addStateObserver(any(ChannelStateObserver.class));
+	inOrder.verify(mockChannelManager).subscribeTo(mockPublicChannel, mockChannelEventListener, "event1");
+	assertFalse(future.isDone());
+    }
+    
+    @Test
+    public void testConnectAsyncConnectsAndCompletesWhenConnected() throws Exception {
+	when(mockConnection.getState()).thenReturn(ConnectionState.DISCONNECTED);
+	Future<Connection> future = pusher.connectAsync();
+	
+	verify(mockConnection).connect();
+	assertFalse(future.isDone());
+	
+	((ConnectionEventListener) future).onConnectionStateChange(new ConnectionStateChange(ConnectionState.CONNECTING, ConnectionState.CONNECTED));
+	assertSame(mockConnection, future.get());
+	verify(mockConnection).unbind(ConnectionState.ALL, (ConnectionEventListener) future);
+    }
+    
+    @Test
+    public void testConnectAsyncWhenAlreadyConnectedIsAlreadyComplete() {
+	when(mockConnection.getState()).thenReturn(ConnectionState.CONNECTED);
+	assertTrue(pusher.connectAsync().isDone());
+    }
+    
+    @Test(expected=ExecutionException.class)
+    public void testConnectAsyncFailsWhenTheConnectionAttemptFails() throws Exception {
+	when(mockConnection.getState()).thenReturn(ConnectionState.DISCONNECTED);
+	Future<Connection> future = pusher.connectAsync();
+	
+	((ConnectionEventListener) future).onConnectionStateChange(new ConnectionStateChange(ConnectionState.CONNECTING, ConnectionState.DISCONNECTED));
+	future.get();
+    }
+    
+    @Test
+    public void testDisconnectAsyncDisconnectsAndCompletesWhenDisconnected() throws Exception {
+	when(mockConnection.getState()).thenReturn(ConnectionState.CONNECTED);
+	Future<Connection> future = pusher.disconnectAsync();
+	
+	verify(mockConnection).disconnect();
+	assertFalse(future.isDone());
+	
+	((ConnectionEventListener) future).onConnectionStateChange(new ConnectionStateChange(ConnectionState.DISCONNECTING, ConnectionState.DISCONNECTED));
+	assertSame(mockConnection, future.get());
+    }
+    
+    @Test
+    public void testSubscribeAllCreatesPublicChannelsAndDelegatesCallToTheChannelManager() {
+	pusher.subscribeAll(Arrays.asList(PUBLIC_CHANNEL_NAME), mockChannelEventListener, "event1");
+	
+	List<InternalChannel> expected = new ArrayList<InternalChannel>();
+	expected.add(mockPublicChannel);
+	verify(mockChannelManager).subscribeToAll(expected, mockChannelEventListener, "event1");
+    }
+    
+    @Test
+    public void testUnsubscribeAllDelegatesCallToTheChannelManager() {
+	when(mockConnection.getState()).thenReturn(ConnectionState.CONNECTED);
+	pusher.unsubscribeAll(Arrays.asList(PUBLIC_CHANNEL_NAME));
+	verify(mockChannelManager).unsubscribeFromAll(Arrays.asList(PUBLIC_CHANNEL_NAME));
+    }
+    
+    @Test
+    public void testAcquireDelegatesCallToTheChannelManager() {
+	ChannelHandle mockHandle = mock(ChannelHandle.class);
+	when(mockChannelManager.acquire(PUBLIC_CHANNEL_NAME)).thenReturn(mockHandle);
+	
+	assertSame(mockHandle, pusher.acquire(PUBLIC_CHANNEL_NAME));
+    }
+    
+    @Test
+    public void testBindAndUnbindWithPatternsDelegateToTheChannelManager() {
+	SubscriptionEventListener listener = mock(SubscriptionEventListener.class);
+	pusher.bind("ticker-*", "trade", listener);
+	pusher.unbind("ticker-*", "trade", listener);
+	
+	verify(mockChannelManager).bind("ticker-*", "trade", listener);
+	verify(mockChannelManager).unbind("ticker-*", "trade", listener);
+    }
+    
+    @Test
+    public void testBindAndUnbindGlobalDelegateToTheChannelManager() {
+	SubscriptionEventListener listener = mock(SubscriptionEventListener.class);
+	pusher.bindGlobal(listener);
+	pusher.unbindGlobal(listener);
+	
+	verify(mockChannelManager).bindGlobal(listener);
+	verify(mockChannelManager).unbindGlobal(listener);
+    }
+    
+    @Test
+    public void testStandbyConnectionsAreCreatedAndConnectedWithThePrimaryConnection() {
+	InternalConnection mockStandby = mock(InternalConnection.class);
+	when(Factory.newStandbyConnection(eq(API_KEY), any(PusherOptions.class))).thenReturn(mockStandby);
+	
+	Pusher redundantPusher = new Pusher(API_KEY, new PusherOptions().setStandbyConnections(2));
+	redundantPusher.connect();
+	
+	verify(mockChannelManager).setStandbyConnections(Arrays.asList(mockStandby, mockStandby));
+	verify(mockConnection).connect();
+	verify(mockStandby, times(2)).connect();
+	assertEquals(2, redundantPusher.getStandbyConnections().size());
+    }
+    
+    @Test
+    public void testNoStandbyConnectionsAreCreatedByDefault() {
+	verify(mockChannelManager, never()).setStandbyConnections(any(List.class));
+	assertTrue(pusher.getStandbyConnections().isEmpty());
+    }
+    
+    @Test
+    public void testGetInboundQueueStatsDelegatesToTheConnection() {
+	InboundQueueStats stats = new InboundQueueStats(0, 0, 0, 0, 0, 0, 0, 0);
+	when(mockConnection.getInboundQueueStats()).thenReturn(stats);
+	
+	assertSame(stats, pusher.getInboundQueueStats());
+    }
+    
+    @Test
+    public void testConstructorPassesOptionsToTheChannelManager() {
+	verify(mockChannelManager).setPusherOptions(mockPusherOptions);
+    }
+    
+    @Test(expected=IllegalStateException.class)
+    public void testUnsubscribeAllWhenDisconnectedThrowsException() {
+	when(mockConnection.getState()).thenReturn(ConnectionState.DISCONNECTED);
+	
+	pusher.unsubscribeAll(Arrays.asList(PUBLIC_CHANNEL_NAME));
+    }
+    
     @Test
     public void testUnsubscribeDelegatesCallToTheChannelManager() {
 	when(mockConnection.getState()).thenReturn(ConnectionState.CONNECTED);
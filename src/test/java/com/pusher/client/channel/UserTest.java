@@ -0,0 +1,63 @@
+package com.pusher.client.channel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+public class UserTest {
+
+    private static final String USER_INFO = "{\"name\":\"Phil Leggetter\",\"twitter_id\":\"@leggetter\"}";
+
+    @Test
+    public void testGetInfoReturnsTheRawJson() {
+	User user = new User("1", USER_INFO);
+	assertEquals(USER_INFO, user.getInfo());
+    }
+
+    @Test
+    public void testGetInfoDecodesIntoTheRequestedType() {
+	User user = new User("1", USER_INFO);
+	
+	UserInfo info = user.getInfo(UserInfo.class);
+	assertEquals("Phil Leggetter", info.name);
+	assertEquals("@leggetter", info.twitter_id);
+    }
+
+    @Test
+    @SuppressWarnings("rawtypes")
+    public void testGetInfoOnlyDecodesOncePerType() {
+	User user = new User("1", USER_INFO);
+	
+	Map first = user.getInfo(Map.class);
+	assertSame(first, user.getInfo(Map.class));
+	assertEquals("Phil Leggetter", first.get("name"));
+    }
+
+    @Test
+    public void testGetInfoWithNoInfoReturnsNull() {
+	User user = new User("1", null);
+	assertNull(user.getInfo(UserInfo.class));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testGetInfoWithNullTypeThrowsException() {
+	new User("1", USER_INFO).getInfo(null);
+    }
+
+    @Test
+    public void testUsersWithoutInfoCanBeCompared() {
+	assertTrue(new User("1", null).equals(new User("1", null)));
+	assertFalse(new User("1", null).equals(new User("1", USER_INFO)));
+    }
+
+    static class UserInfo {
+	String name;
+	String twitter_id;
+    }
+}
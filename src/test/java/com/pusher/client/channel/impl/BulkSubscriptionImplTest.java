@@ -0,0 +1,89 @@
+package com.pusher.client.channel.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.pusher.client.channel.ChannelState;
+
+public class BulkSubscriptionImplTest {
+
+    private InternalChannel channel1;
+    private InternalChannel channel2;
+    private BulkSubscriptionImpl subscription;
+
+    @Before
+    public void setUp() {
+	channel1 = newMockChannel("channel-1");
+	channel2 = newMockChannel("channel-2");
+	subscription = new BulkSubscriptionImpl(Arrays.asList(channel1, channel2));
+    }
+
+    @Test
+    public void testRegistersAsObserverOfEveryChannel() {
+	verify(channel1).addStateObserver(subscription);
+	verify(channel2).addStateObserver(subscription);
+    }
+
+    @Test
+    public void testChannelsAreAvailableImmediately() {
+	assertEquals(2, subscription.getChannels().size());
+	assertFalse(subscription.isDone());
+    }
+
+    @Test
+    public void testCompletesOnlyWhenEveryChannelIsSubscribed() throws Exception {
+	subscription.onStateChange(channel1, ChannelState.SUBSCRIBE_SENT, ChannelState.SUBSCRIBED);
+	assertFalse(subscription.isDone());
+
+	subscription.onStateChange(channel2, ChannelState.SUBSCRIBE_SENT, ChannelState.SUBSCRIBED);
+	assertTrue(subscription.isDone());
+	assertEquals(subscription.getChannels(), subscription.get());
+
+	verify(channel1).removeStateObserver(subscription);
+	verify(channel2).removeStateObserver(subscription);
+    }
+
+    @Test
+    public void testFailsWhenAnyChannelFails() throws Exception {
+	subscription.onStateChange(channel1, ChannelState.SUBSCRIBE_SENT, ChannelState.SUBSCRIBED);
+	subscription.onStateChange(channel2, ChannelState.INITIAL, ChannelState.FAILED);
+
+	try {
+	    subscription.get();
+	    fail("Expected an ExecutionException");
+	} catch(ExecutionException e) {
+	    assertTrue(e.getCause() instanceof IllegalStateException);
+	}
+    }
+
+    @Test(expected=ExecutionException.class)
+    public void testFailsWhenAChannelIsUnsubscribedBeforeItIsSubscribed() throws Exception {
+	subscription.onStateChange(channel1, ChannelState.SUBSCRIBE_SENT, ChannelState.UNSUBSCRIBED);
+	subscription.get();
+    }
+
+    @Test
+    public void testEmptyGroupIsCompletedImmediately() {
+	assertTrue(new BulkSubscriptionImpl(new ArrayList<InternalChannel>()).isDone());
+    }
+
+    /* end of tests */
+
+    private InternalChannel newMockChannel(String channelName) {
+	InternalChannel channel = mock(InternalChannel.class);
+	when(channel.getName()).thenReturn(channelName);
+	return channel;
+    }
+}
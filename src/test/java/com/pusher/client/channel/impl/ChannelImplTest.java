@@ -1,22 +1,47 @@
 package com.pusher.client.channel.impl;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import com.pusher.client.channel.BatchSubscriptionEventListener;
+import com.pusher.client.channel.BindOptions;
 import com.pusher.client.channel.ChannelEventListener;
 import com.pusher.client.channel.ChannelState;
+import com.pusher.client.channel.Event;
+import com.pusher.client.channel.SubscriptionEventListener;
+import com.pusher.client.metrics.PusherMetrics;
 import com.pusher.client.util.Factory;
+import com.pusher.client.util.FrameTiming;
 import com.pusher.client.util.InstantExecutor;
 
 @RunWith(PowerMockRunner.class)
@@ -26,11 +51,13 @@ public class ChannelImplTest {
     private static final String EVENT_NAME = "my-event";
     protected ChannelImpl channel;
     private ChannelEventListener mockListener;
+    private ScheduledExecutorService mockScheduler = mock(ScheduledExecutorService.class);
     
     @Before
     public void setUp() {
 	PowerMockito.mockStatic(Factory.class);
 	when(Factory.getEventQueue()).thenReturn(new InstantExecutor());
+	when(Factory.getScheduler()).thenReturn(mockScheduler);
 	
 	this.mockListener = getEventListener();
 	this.channel = newInstance(getChannelName());
@@ -95,6 +122,479 @@ public class ChannelImplTest {
 	verify(mockListener2).onEvent(getChannelName(), EVENT_NAME, "{\"fish\":\"chips\"}");
     }   
 
+    @Test
+    public void testBindWithReplayDeliversRetainedEventsBeforeNewEvents() {
+	channel.enableEventHistory(10, 0);
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"n\":\"1\"}}");
+	channel.onMessage("other-event", "{\"event\":\"other-event\",\"data\":{\"n\":\"2\"}}");
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"n\":\"3\"}}");
+	
+	channel.bind(EVENT_NAME, mockListener, new BindOptions().setReplay(Integer.MAX_VALUE));
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"n\":\"4\"}}");
+	
+	InOrder inOrder = inOrder(mockListener);
+	inOrder.verify(mockListener).onEvent(getChannelName(), EVENT_NAME, "{\"n\":\"1\"}");
+	inOrder.verify(mockListener).onEvent(getChannelName(), EVENT_NAME, "{\"n\":\"3\"}");
+	inOrder.verify(mockListener).onEvent(getChannelName(), EVENT_NAME, "{\"n\":\"4\"}");
+	verify(mockListener, never()).onEvent(getChannelName(), "other-event", "{\"n\":\"2\"}");
+    }
+    
+    @Test
+    public void testBindWithReplayAddsTheListenerBeforeItReturnsAndQueuesOnlyTheReplay() {
+	List<Runnable> queued = queueEvents();
+	channel.enableEventHistory(10, 0);
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"n\":\"1\"}}");
+	
+	channel.bind(EVENT_NAME, mockListener, new BindOptions().setReplay(10));
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"n\":\"2\"}}");
+	
+	assertEquals(2, queued.size());
+	queued.remove(0).run();
+	queued.remove(0).run();
+	InOrder inOrder = inOrder(mockListener);
+	inOrder.verify(mockListener).onEvent(getChannelName(), EVENT_NAME, "{\"n\":\"1\"}");
+	inOrder.verify(mockListener).onEvent(getChannelName(), EVENT_NAME, "{\"n\":\"2\"}");
+    }
+    
+    @Test
+    public void testUnbindStraightAfterBindWithReplayRemovesTheListener() {
+	List<Runnable> queued = queueEvents();
+	channel.enableEventHistory(10, 0);
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"n\":\"1\"}}");
+	
+	channel.bind(EVENT_NAME, mockListener, new BindOptions().setReplay(10));
+	channel.unbind(EVENT_NAME, mockListener);
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"n\":\"2\"}}");
+	while(!queued.isEmpty()) {
+	    queued.remove(0).run();
+	}
+	
+	verify(mockListener, never()).onEvent(anyString(), anyString(), anyString());
+    }
+    
+    @Test
+    public void testInlineDispatchCallsListenersWithoutTheEventQueue() {
+	List<Runnable> queued = queueEvents();
+	channel.setInlineDispatch(true);
+	channel.bind(EVENT_NAME, mockListener);
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"n\":\"1\"}}");
+	
+	verify(mockListener).onEvent(getChannelName(), EVENT_NAME, "{\"n\":\"1\"}");
+	assertEquals(0, queued.size());
+    }
+    
+    @Test
+    public void testInlineDispatchIsolatesAListenerThatThrows() {
+	SubscriptionEventListener failingListener = mock(SubscriptionEventListener.class);
+	RuntimeException failure = new IllegalStateException("listener failed");
+	doThrow(failure).when(failingListener).onEvent(anyString(), anyString(), anyString());
+	Thread.UncaughtExceptionHandler mockHandler = mock(Thread.UncaughtExceptionHandler.class);
+	Thread thread = Thread.currentThread();
+	Thread.UncaughtExceptionHandler previousHandler = thread.getUncaughtExceptionHandler();
+	thread.setUncaughtExceptionHandler(mockHandler);
+	try {
+	    channel.setInlineDispatch(true);
+	    channel.bind(EVENT_NAME, failingListener);
+	    channel.bind(EVENT_NAME, mockListener);
+	    channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"n\":\"1\"}}");
+	} finally {
+	    thread.setUncaughtExceptionHandler(previousHandler);
+	}
+	
+	verify(mockListener).onEvent(getChannelName(), EVENT_NAME, "{\"n\":\"1\"}");
+	verify(mockHandler).uncaughtException(thread, failure);
+    }
+    
+    @Test
+    public void testTimedFrameReportsTheStagesOfEachDeliveryToMetrics() {
+	PusherMetrics mockMetrics = mock(PusherMetrics.class);
+	channel.setMetrics(mockMetrics);
+	channel.bind(EVENT_NAME, mockListener);
+	
+	FrameTiming.begin(1000, 3000);
+	FrameTiming.parsed(3500);
+	try {
+	    channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"n\":\"1\"}}");
+	} finally {
+	    FrameTiming.end();
+	}
+	
+	verify(mockMetrics).eventDelivered(eq(getChannelName()), eq(EVENT_NAME), eq(2000L), eq(500L), anyLong(), anyLong(), anyLong());
+	verify(mockMetrics).listenerInvoked(eq(getChannelName()), eq(EVENT_NAME), anyLong());
+    }
+    
+    @Test
+    public void testAQueuedDeliveryReportsTheStagesOfItsOwnFrame() {
+	List<Runnable> queued = queueEvents();
+	PusherMetrics mockMetrics = mock(PusherMetrics.class);
+	channel.setMetrics(mockMetrics);
+	channel.bind(EVENT_NAME, mockListener);
+	
+	FrameTiming.begin(1000, 3000);
+	FrameTiming.parsed(3500);
+	try {
+	    channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"n\":\"1\"}}");
+	} finally {
+	    FrameTiming.end();
+	}
+	// the thread moves on to the next frame before the delivery runs
+	FrameTiming.begin(5000, 9000);
+	FrameTiming.end();
+	
+	queued.remove(0).run();
+	verify(mockMetrics).eventDelivered(eq(getChannelName()), eq(EVENT_NAME), eq(2000L), eq(500L), anyLong(), anyLong(), anyLong());
+    }
+    
+    @Test
+    public void testSubscriptionRoundTripIsReportedToMetrics() {
+	PusherMetrics mockMetrics = mock(PusherMetrics.class);
+	channel.setMetrics(mockMetrics);
+	channel.updateState(ChannelState.SUBSCRIBE_SENT);
+	channel.updateState(ChannelState.SUBSCRIBED);
+	
+	verify(mockMetrics).subscribed(eq(getChannelName()), anyLong());
+    }
+    
+    @Test
+    public void testUntimedFrameReportsOnlyTheListenerTime() {
+	PusherMetrics mockMetrics = mock(PusherMetrics.class);
+	channel.setMetrics(mockMetrics);
+	channel.bind(EVENT_NAME, mockListener);
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"n\":\"1\"}}");
+	
+	verify(mockMetrics).listenerInvoked(eq(getChannelName()), eq(EVENT_NAME), anyLong());
+	verify(mockMetrics, never()).eventDelivered(anyString(), anyString(), anyLong(), anyLong(), anyLong(), anyLong(), anyLong());
+    }
+    
+    @Test
+    public void testBindWithReplayAndInlineDispatchReplaysOnTheBindingThread() {
+	List<Runnable> queued = queueEvents();
+	channel.setInlineDispatch(true);
+	channel.enableEventHistory(10, 0);
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"n\":\"1\"}}");
+	
+	channel.bind(EVENT_NAME, mockListener, new BindOptions().setReplay(10));
+	verify(mockListener).onEvent(getChannelName(), EVENT_NAME, "{\"n\":\"1\"}");
+	
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"n\":\"2\"}}");
+	verify(mockListener).onEvent(getChannelName(), EVENT_NAME, "{\"n\":\"2\"}");
+	assertEquals(0, queued.size());
+    }
+    
+    @Test
+    public void testListenersBoundWithAListenerExecutorAreCalledOnIt() {
+	List<Runnable> listenerTasks = new ArrayList<Runnable>();
+	channel.setListenerExecutor(collectingExecutor(listenerTasks));
+	channel.bind(EVENT_NAME, mockListener);
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"n\":\"1\"}}");
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"n\":\"2\"}}");
+	
+	verify(mockListener, never()).onEvent(anyString(), anyString(), anyString());
+	assertEquals(1, listenerTasks.size());
+	
+	listenerTasks.remove(0).run();
+	InOrder inOrder = inOrder(mockListener);
+	inOrder.verify(mockListener).onEvent(getChannelName(), EVENT_NAME, "{\"n\":\"1\"}");
+	inOrder.verify(mockListener).onEvent(getChannelName(), EVENT_NAME, "{\"n\":\"2\"}");
+    }
+    
+    @Test
+    public void testAnEventTheListenerExecutorRejectsIsDeliveredOnTheEventQueue() {
+	List<Runnable> queued = queueEvents();
+	channel.setListenerExecutor(new Executor() {
+	    @Override
+	    public void execute(Runnable command) {
+		throw new RejectedExecutionException("shut down");
+	    }
+	});
+	channel.bind(EVENT_NAME, mockListener);
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"n\":\"1\"}}");
+	
+	assertEquals(1, queued.size());
+	queued.remove(0).run();
+	verify(mockListener).onEvent(getChannelName(), EVENT_NAME, "{\"n\":\"1\"}");
+    }
+    
+    @Test
+    public void testUnbindRemovesAListenerBoundWithAListenerExecutor() {
+	List<Runnable> listenerTasks = new ArrayList<Runnable>();
+	channel.setListenerExecutor(collectingExecutor(listenerTasks));
+	channel.bind(EVENT_NAME, mockListener);
+	channel.bind(EVENT_NAME, mockListener);
+	channel.unbind(EVENT_NAME, mockListener);
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"n\":\"1\"}}");
+	
+	assertEquals(0, listenerTasks.size());
+    }
+    
+    @Test
+    public void testBindWithAnExecutorCallsTheListenerOnIt() {
+	List<Runnable> listenerTasks = new ArrayList<Runnable>();
+	SubscriptionEventListener other = mock(SubscriptionEventListener.class);
+	channel.bind(EVENT_NAME, mockListener, collectingExecutor(listenerTasks));
+	channel.bind(EVENT_NAME, other);
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"n\":\"1\"}}");
+	
+	verify(other).onEvent(getChannelName(), EVENT_NAME, "{\"n\":\"1\"}");
+	verify(mockListener, never()).onEvent(anyString(), anyString(), anyString());
+	
+	listenerTasks.remove(0).run();
+	verify(mockListener).onEvent(getChannelName(), EVENT_NAME, "{\"n\":\"1\"}");
+    }
+    
+    @Test
+    public void testAListenerBoundToSeveralEventsOnOneExecutorReceivesThemInOrder() {
+	List<Runnable> listenerTasks = new ArrayList<Runnable>();
+	Executor executor = collectingExecutor(listenerTasks);
+	channel.bind(EVENT_NAME, mockListener, executor);
+	channel.bind("other-event", mockListener, executor);
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"n\":\"1\"}}");
+	channel.onMessage("other-event", "{\"event\":\"other-event\",\"data\":{\"n\":\"2\"}}");
+	
+	// both events wait behind a single task, so the listener can't receive them at the same time
+	assertEquals(1, listenerTasks.size());
+	listenerTasks.remove(0).run();
+	InOrder inOrder = inOrder(mockListener);
+	inOrder.verify(mockListener).onEvent(getChannelName(), EVENT_NAME, "{\"n\":\"1\"}");
+	inOrder.verify(mockListener).onEvent(getChannelName(), "other-event", "{\"n\":\"2\"}");
+    }
+    
+    @Test
+    public void testAListenerBoundWithOptionsSharesTheListenerExecutorOfItsOtherBindings() {
+	List<Runnable> listenerTasks = new ArrayList<Runnable>();
+	channel.setListenerExecutor(collectingExecutor(listenerTasks));
+	channel.enableEventHistory(10, 0);
+	channel.bind(EVENT_NAME, mockListener);
+	channel.bind("other-event", mockListener, new BindOptions().setReplay(1));
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"n\":\"1\"}}");
+	channel.onMessage("other-event", "{\"event\":\"other-event\",\"data\":{\"n\":\"2\"}}");
+	
+	assertEquals(1, listenerTasks.size());
+	listenerTasks.remove(0).run();
+	InOrder inOrder = inOrder(mockListener);
+	inOrder.verify(mockListener).onEvent(getChannelName(), EVENT_NAME, "{\"n\":\"1\"}");
+	inOrder.verify(mockListener).onEvent(getChannelName(), "other-event", "{\"n\":\"2\"}");
+    }
+    
+    @Test
+    public void testBindWithACallingThreadExecutorDoesNotUseTheEventQueue() {
+	List<Runnable> queued = queueEvents();
+	channel.setInlineDispatch(true);
+	channel.bind(EVENT_NAME, mockListener, new InstantExecutor());
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"n\":\"1\"}}");
+	
+	verify(mockListener).onEvent(getChannelName(), EVENT_NAME, "{\"n\":\"1\"}");
+	assertEquals(0, queued.size());
+    }
+    
+    @Test
+    public void testUnbindRemovesAListenerBoundWithAnExecutor() {
+	channel.bind(EVENT_NAME, mockListener, new InstantExecutor());
+	channel.unbind(EVENT_NAME, mockListener);
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"n\":\"1\"}}");
+	
+	verify(mockListener, never()).onEvent(anyString(), anyString(), anyString());
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testBindWithNullExecutorThrowsException() {
+	channel.bind(EVENT_NAME, mockListener, (Executor) null);
+    }
+    
+    @Test
+    public void testBindWithReplayOnlyReplaysTheRequestedNumberOfEvents() {
+	channel.enableEventHistory(10, 0);
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"n\":\"1\"}}");
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"n\":\"2\"}}");
+	
+	channel.bind(EVENT_NAME, mockListener, new BindOptions().setReplay(1));
+	
+	verify(mockListener, never()).onEvent(getChannelName(), EVENT_NAME, "{\"n\":\"1\"}");
+	verify(mockListener).onEvent(getChannelName(), EVENT_NAME, "{\"n\":\"2\"}");
+    }
+    
+    @Test
+    public void testEventsAreNotRetainedUnlessHistoryIsEnabled() {
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"n\":\"1\"}}");
+	channel.bind(EVENT_NAME, mockListener, new BindOptions().setReplay(10));
+	
+	assertNull(channel.getEventHistory());
+	verify(mockListener, never()).onEvent(anyString(), anyString(), anyString());
+    }
+    
+    @Test
+    public void testEventHistoryReportsRetainedEvents() {
+	channel.enableEventHistory(1, 0);
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"n\":\"1\"}}");
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"n\":\"2\"}}");
+	
+	assertEquals(1, channel.getEventHistory().size());
+	assertEquals(1, channel.getEventHistory().getEvictedCount());
+    }
+    
+    @Test
+    public void testConflatedListenerOnlyReceivesTheLatestPendingEvent() {
+	List<Runnable> queued = queueEvents();
+	channel.bind(EVENT_NAME, mockListener, new BindOptions().setConflate(true));
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"n\":\"1\"}}");
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"n\":\"2\"}}");
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"n\":\"3\"}}");
+	
+	assertEquals(1, queued.size());
+	queued.get(0).run();
+	
+	verify(mockListener, never()).onEvent(getChannelName(), EVENT_NAME, "{\"n\":\"1\"}");
+	verify(mockListener, never()).onEvent(getChannelName(), EVENT_NAME, "{\"n\":\"2\"}");
+	verify(mockListener).onEvent(getChannelName(), EVENT_NAME, "{\"n\":\"3\"}");
+    }
+    
+    @Test
+    public void testConflationKeyKeepsTheLatestPendingEventForEachKey() {
+	List<Runnable> queued = queueEvents();
+	channel.bind(EVENT_NAME, mockListener, new BindOptions().setConflationKey("symbol"));
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"symbol\":\"A\",\"n\":\"1\"}}");
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"symbol\":\"B\",\"n\":\"2\"}}");
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"symbol\":\"A\",\"n\":\"3\"}}");
+	
+	assertEquals(1, queued.size());
+	queued.get(0).run();
+	
+	InOrder inOrder = inOrder(mockListener);
+	inOrder.verify(mockListener).onEvent(getChannelName(), EVENT_NAME, "{\"symbol\":\"B\",\"n\":\"2\"}");
+	inOrder.verify(mockListener).onEvent(getChannelName(), EVENT_NAME, "{\"symbol\":\"A\",\"n\":\"3\"}");
+	verify(mockListener, never()).onEvent(getChannelName(), EVENT_NAME, "{\"symbol\":\"A\",\"n\":\"1\"}");
+    }
+    
+    @Test
+    public void testConflatedListenerReceivesEventsThatArriveAfterADelivery() {
+	channel.bind(EVENT_NAME, mockListener, new BindOptions().setConflate(true));
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"n\":\"1\"}}");
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"n\":\"2\"}}");
+	
+	verify(mockListener).onEvent(getChannelName(), EVENT_NAME, "{\"n\":\"1\"}");
+	verify(mockListener).onEvent(getChannelName(), EVENT_NAME, "{\"n\":\"2\"}");
+    }
+    
+    @Test
+    public void testBindingAConflatedListenerTwiceDeliversEachEventOnce() {
+	channel.bind(EVENT_NAME, mockListener, new BindOptions().setConflationKey("symbol"));
+	channel.bind(EVENT_NAME, mockListener, new BindOptions().setConflationKey("symbol"));
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"symbol\":\"A\",\"n\":\"1\"}}");
+	
+	verify(mockListener, times(1)).onEvent(getChannelName(), EVENT_NAME, "{\"symbol\":\"A\",\"n\":\"1\"}");
+    }
+    
+    @Test
+    public void testConflationKeyIsReadFromNestedAndEscapedData() {
+	List<Runnable> queued = queueEvents();
+	channel.bind(EVENT_NAME, mockListener, new BindOptions().setConflationKey("symbol"));
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"quote\":{\"symbol\":\"B\"},\"symbol\":\"A\\\"\",\"n\":\"1\"}}");
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"symbol\":\"B\",\"n\":\"2\"}}");
+	
+	assertEquals(1, queued.size());
+	queued.get(0).run();
+	
+	// the nested symbol is not the key, so the two events are kept apart
+	verify(mockListener).onEvent(getChannelName(), EVENT_NAME, "{\"quote\":{\"symbol\":\"B\"},\"symbol\":\"A\\\"\",\"n\":\"1\"}");
+	verify(mockListener).onEvent(getChannelName(), EVENT_NAME, "{\"symbol\":\"B\",\"n\":\"2\"}");
+    }
+    
+    @Test
+    public void testUnbindRemovesAConflatedListener() {
+	channel.bind(EVENT_NAME, mockListener, new BindOptions().setConflate(true));
+	channel.unbind(EVENT_NAME, mockListener);
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"n\":\"1\"}}");
+	
+	verify(mockListener, never()).onEvent(anyString(), anyString(), anyString());
+    }
+    
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testBatchListenerReceivesTheEventsQueuedForItInOneCall() {
+	BatchSubscriptionEventListener batchListener = mock(BatchSubscriptionEventListener.class);
+	List<Runnable> queued = queueEvents();
+	channel.bindBatch(EVENT_NAME, batchListener, new BindOptions());
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"n\":\"1\"}}");
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"n\":\"2\"}}");
+	
+	assertEquals(1, queued.size());
+	queued.get(0).run();
+	
+	ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+	verify(batchListener).onEvents(eq(getChannelName()), captor.capture());
+	List<Event> batch = captor.getValue();
+	assertEquals(2, batch.size());
+	assertEquals("{\"n\":\"1\"}", batch.get(0).getData());
+	assertEquals(EVENT_NAME, batch.get(1).getEventName());
+    }
+    
+    @Test
+    public void testBindingABatchListenerTwiceDeliversEachBatchOnce() {
+	BatchSubscriptionEventListener batchListener = mock(BatchSubscriptionEventListener.class);
+	List<Runnable> queued = queueEvents();
+	channel.bindBatch(EVENT_NAME, batchListener, new BindOptions());
+	channel.bindBatch(EVENT_NAME, batchListener, new BindOptions());
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"n\":\"1\"}}");
+	
+	assertEquals(1, queued.size());
+	queued.get(0).run();
+	assertEquals(Arrays.asList(1), batchSizes(batchListener, 1));
+    }
+    
+    @Test
+    public void testBatchesAreLimitedToTheMaximumBatchSize() {
+	BatchSubscriptionEventListener batchListener = mock(BatchSubscriptionEventListener.class);
+	List<Runnable> queued = queueEvents();
+	channel.bindBatch(EVENT_NAME, batchListener, new BindOptions().setMaxBatchSize(2));
+	for (int i = 0; i < 5; i++) {
+	    channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"n\":\"" + i + "\"}}");
+	}
+	while (!queued.isEmpty()) {
+	    queued.remove(0).run();
+	}
+	
+	assertEquals(Arrays.asList(2, 2, 1), batchSizes(batchListener, 3));
+    }
+    
+    @Test
+    public void testBatchWaitsForTheLingerTimeUnlessItIsFull() {
+	BatchSubscriptionEventListener batchListener = mock(BatchSubscriptionEventListener.class);
+	channel.bindBatch(EVENT_NAME, batchListener, new BindOptions().setMaxBatchSize(3).setBatchLinger(50));
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"n\":\"1\"}}");
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"n\":\"2\"}}");
+	verify(batchListener, never()).onEvents(anyString(), anyListOf(Event.class));
+	
+	ArgumentCaptor<Runnable> lingerCaptor = ArgumentCaptor.forClass(Runnable.class);
+	verify(mockScheduler).schedule(lingerCaptor.capture(), eq(50L), eq(TimeUnit.MILLISECONDS));
+	lingerCaptor.getValue().run();
+	assertEquals(Arrays.asList(2), batchSizes(batchListener, 1));
+	
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"n\":\"3\"}}");
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"n\":\"4\"}}");
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"n\":\"5\"}}");
+	assertEquals(Arrays.asList(2, 3), batchSizes(batchListener, 2));
+    }
+    
+    @Test
+    public void testUnbindRemovesABatchListener() {
+	BatchSubscriptionEventListener batchListener = mock(BatchSubscriptionEventListener.class);
+	channel.bindBatch(EVENT_NAME, batchListener, new BindOptions());
+	channel.unbindBatch(EVENT_NAME, batchListener);
+	channel.onMessage(EVENT_NAME, "{\"event\":\"event1\",\"data\":{\"n\":\"1\"}}");
+	
+	verify(batchListener, never()).onEvents(anyString(), anyListOf(Event.class));
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testBindBatchListenerWithConflationThrowsException() {
+	channel.bindBatch(EVENT_NAME, mock(BatchSubscriptionEventListener.class), new BindOptions().setConflate(true));
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testBindWithNullOptionsThrowsException() {
+	channel.bind(EVENT_NAME, mockListener, (BindOptions) null);
+    }
+    
     @Test
     public void testEventIsNotPassedOnIfThereAreNoMatchingListeners() {
 	
@@ -164,6 +664,44 @@ public class ChannelImplTest {
 	verify(mockListener).onSubscriptionSucceeded(getChannelName());
     }
     
+    @Test
+    public void testUpdateStateNotifiesStateObservers() {
+	ChannelStateObserver observer = mock(ChannelStateObserver.class);
+	channel.addStateObserver(observer);
+	channel.updateState(ChannelState.SUBSCRIBE_SENT);
+	
+	verify(observer).onStateChange(channel, ChannelState.INITIAL, ChannelState.SUBSCRIBE_SENT);
+	assertEquals(ChannelState.SUBSCRIBE_SENT, channel.getState());
+	
+	channel.removeStateObserver(observer);
+	channel.updateState(ChannelState.SUBSCRIBED);
+	
+	verify(observer, never()).onStateChange(channel, ChannelState.SUBSCRIBE_SENT, ChannelState.SUBSCRIBED);
+    }
+    
+    @Test
+    public void testCompareAndSetStateChangesTheStateWhenItIsTheExpectedState() {
+	ChannelStateObserver observer = mock(ChannelStateObserver.class);
+	channel.addStateObserver(observer);
+	channel.updateState(ChannelState.SUBSCRIBE_SENT);
+	
+	assertTrue(channel.compareAndSetState(ChannelState.SUBSCRIBE_SENT, ChannelState.SUBSCRIBE_TIMED_OUT));
+	assertEquals(ChannelState.SUBSCRIBE_TIMED_OUT, channel.getState());
+	verify(observer).onStateChange(channel, ChannelState.SUBSCRIBE_SENT, ChannelState.SUBSCRIBE_TIMED_OUT);
+    }
+    
+    @Test
+    public void testCompareAndSetStateLeavesAStateThatChangedInBetweenAlone() {
+	ChannelStateObserver observer = mock(ChannelStateObserver.class);
+	channel.updateState(ChannelState.SUBSCRIBE_SENT);
+	channel.updateState(ChannelState.SUBSCRIBED);
+	channel.addStateObserver(observer);
+	
+	assertFalse(channel.compareAndSetState(ChannelState.SUBSCRIBE_SENT, ChannelState.SUBSCRIBE_TIMED_OUT));
+	assertEquals(ChannelState.SUBSCRIBED, channel.getState());
+	verify(observer, never()).onStateChange(channel, ChannelState.SUBSCRIBED, ChannelState.SUBSCRIBE_TIMED_OUT);
+    }
+    
     @Test(expected=IllegalStateException.class)
     public void testBindWhenInUnsubscribedStateThrowsException() {
 	channel.updateState(ChannelState.UNSUBSCRIBED);
@@ -179,6 +717,36 @@ public class ChannelImplTest {
     
     /* end of tests */
     
+    @SuppressWarnings("unchecked")
+    private List<Integer> batchSizes(BatchSubscriptionEventListener batchListener, int expectedBatches) {
+	ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+	verify(batchListener, times(expectedBatches)).onEvents(eq(getChannelName()), captor.capture());
+	List<Integer> sizes = new ArrayList<Integer>();
+	for (List<?> batch : captor.getAllValues()) {
+	    sizes.add(batch.size());
+	}
+	return sizes;
+    }
+    
+    private static Executor collectingExecutor(final List<Runnable> tasks) {
+	return new Executor() {
+	    public void execute(Runnable task) {
+		tasks.add(task);
+	    }
+	};
+    }
+    
+    private List<Runnable> queueEvents() {
+	final List<Runnable> queued = new ArrayList<Runnable>();
+	when(Factory.getEventQueue()).thenReturn(new InstantExecutor() {
+	    @Override
+	    public void execute(Runnable command) {
+		queued.add(command);
+	    }
+	});
+	return queued;
+    }
+    
     /**
      * This method is overridden in the test subclasses so that these tests can be run
      * against PrivateChannelImpl and PresenceChannelImpl.
@@ -1,27 +1,57 @@
 package com.pusher.client.channel.impl;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
 import com.pusher.client.AuthorizationFailureException;
+import com.pusher.client.PusherOptions;
 import com.pusher.client.channel.ChannelEventListener;
+import com.pusher.client.channel.ChannelHandle;
 import com.pusher.client.channel.ChannelState;
 import com.pusher.client.channel.PrivateChannelEventListener;
+import com.pusher.client.channel.SubscriptionEventListener;
+import com.pusher.client.channel.SubscriptionStats;
+import com.pusher.client.channel.SubscriptionTimeoutListener;
+import com.pusher.client.connection.ArrivalStats;
+import com.pusher.client.connection.ConnectionEventListener;
 import com.pusher.client.connection.ConnectionState;
 import com.pusher.client.connection.ConnectionStateChange;
 import com.pusher.client.connection.impl.InternalConnection;
+import com.pusher.client.metrics.InMemoryMetrics;
 import com.pusher.client.util.Factory;
 import com.pusher.client.util.InstantExecutor;
 
@@ -42,6 +72,7 @@ public class ChannelManagerTest {
     private @Mock ChannelEventListener mockEventListener;
     private @Mock PrivateChannelImpl mockPrivateChannel;
     private @Mock PrivateChannelEventListener mockPrivateChannelEventListener;
+    private @Mock ScheduledExecutorService mockScheduler;
     
     @Before
     public void setUp() throws AuthorizationFailureException {
@@ -49,6 +80,7 @@ public class ChannelManagerTest {
 	PowerMockito.mockStatic(Factory.class);
 	
 	when(Factory.getEventQueue()).thenReturn(new InstantExecutor());
+	when(Factory.getScheduler()).thenReturn(mockScheduler);
 	when(mockInternalChannel.getName()).thenReturn(CHANNEL_NAME);
 	when(mockInternalChannel.toSubscribeMessage()).thenReturn(OUTGOING_SUBSCRIBE_MESSAGE);
 	when(mockInternalChannel.toUnsubscribeMessage()).thenReturn(OUTGOING_UNSUBSCRIBE_MESSAGE);
@@ -207,7 +239,114 @@ public class ChannelManagerTest {
 	channelManager.subscribeTo(mockInternalChannel, mockEventListener, "my-event");
 	channelManager.onMessage("my-event", "{\"event\":\"my-event\",\"data\":{\"fish\":\"chips\"},\"channel\":\"" + CHANNEL_NAME + "\"}");
 	
-	verify(mockInternalChannel).onMessage("my-event", "{\"event\":\"my-event\",\"data\":{\"fish\":\"chips\"},\"channel\":\"" + CHANNEL_NAME + "\"}");
+	verify(mockInternalChannel).onMessage("my-event", "{\"event\":\"my-event\",\"data\":{\"fish\":\"chips\"},\"channel\":\"" + CHANNEL_NAME + "\"}", "{\"fish\":\"chips\"}");
+    }
+    
+    @Test
+    public void testPatternBindingReceivesMatchingEventsOnSubscribedChannels() {
+	SubscriptionEventListener routed = mock(SubscriptionEventListener.class);
+	channelManager.bind("my-*", "*", routed);
+	channelManager.subscribeTo(mockInternalChannel, mockEventListener);
+	channelManager.onMessage("my-event", "{\"event\":\"my-event\",\"data\":{\"fish\":\"chips\"},\"channel\":\"" + CHANNEL_NAME + "\"}");
+	channelManager.onMessage("pusher_internal:subscription_succeeded", "{\"event\":\"pusher_internal:subscription_succeeded\",\"data\":{},\"channel\":\"" + CHANNEL_NAME + "\"}");
+	channelManager.onMessage("my-event", "{\"event\":\"my-event\",\"data\":{},\"channel\":\"my-other-channel\"}");
+	
+	verify(routed).onEvent(CHANNEL_NAME, "my-event", "{\"fish\":\"chips\"}");
+	verify(routed, times(1)).onEvent(anyString(), anyString(), anyString());
+    }
+    
+    @Test
+    public void testUnboundPatternBindingReceivesNoEvents() {
+	SubscriptionEventListener routed = mock(SubscriptionEventListener.class);
+	channelManager.bind("*", "my-event", routed);
+	channelManager.unbind("*", "my-event", routed);
+	channelManager.subscribeTo(mockInternalChannel, mockEventListener);
+	channelManager.onMessage("my-event", "{\"event\":\"my-event\",\"data\":{},\"channel\":\"" + CHANNEL_NAME + "\"}");
+	
+	verify(routed, never()).onEvent(anyString(), anyString(), anyString());
+    }
+    
+    @Test
+    public void testGlobalListenerReceivesEveryEventOnSubscribedChannels() {
+	SubscriptionEventListener global = mock(SubscriptionEventListener.class);
+	channelManager.bindGlobal(global);
+	channelManager.bindGlobal(global);
+	channelManager.subscribeTo(mockInternalChannel, mockEventListener);
+	channelManager.subscribeTo(mockPrivateChannel, mockPrivateChannelEventListener);
+	channelManager.onMessage("my-event", "{\"event\":\"my-event\",\"data\":{\"fish\":\"chips\"},\"channel\":\"" + CHANNEL_NAME + "\"}");
+	channelManager.onMessage("client-other", "{\"event\":\"client-other\",\"data\":{},\"channel\":\"" + PRIVATE_CHANNEL_NAME + "\"}");
+	channelManager.onMessage("pusher_internal:subscription_succeeded", "{\"event\":\"pusher_internal:subscription_succeeded\",\"data\":{},\"channel\":\"" + CHANNEL_NAME + "\"}");
+	
+	verify(global).onEvent(CHANNEL_NAME, "my-event", "{\"fish\":\"chips\"}");
+	verify(global).onEvent(PRIVATE_CHANNEL_NAME, "client-other", "{}");
+	verify(global, times(2)).onEvent(anyString(), anyString(), anyString());
+    }
+    
+    @Test
+    public void testAPatternOrGlobalListenerThatThrowsDoesNotKeepTheEventFromTheOthers() {
+	SubscriptionEventListener failingRouted = mock(SubscriptionEventListener.class);
+	SubscriptionEventListener routed = mock(SubscriptionEventListener.class);
+	SubscriptionEventListener failingGlobal = mock(SubscriptionEventListener.class);
+	SubscriptionEventListener global = mock(SubscriptionEventListener.class);
+	RuntimeException failure = new IllegalStateException("listener failed");
+	doThrow(failure).when(failingRouted).onEvent(anyString(), anyString(), anyString());
+	doThrow(failure).when(failingGlobal).onEvent(anyString(), anyString(), anyString());
+	channelManager.bind("*", "my-event", failingRouted);
+	channelManager.bind("*", "my-event", routed);
+	channelManager.bindGlobal(failingGlobal);
+	channelManager.bindGlobal(global);
+	channelManager.subscribeTo(mockInternalChannel, mockEventListener);
+	
+	Thread.UncaughtExceptionHandler mockHandler = mock(Thread.UncaughtExceptionHandler.class);
+	Thread thread = Thread.currentThread();
+	Thread.UncaughtExceptionHandler previousHandler = thread.getUncaughtExceptionHandler();
+	thread.setUncaughtExceptionHandler(mockHandler);
+	try {
+	    channelManager.onMessage("my-event", "{\"event\":\"my-event\",\"data\":{},\"channel\":\"" + CHANNEL_NAME + "\"}");
+	} finally {
+	    thread.setUncaughtExceptionHandler(previousHandler);
+	}
+	
+	verify(routed).onEvent(CHANNEL_NAME, "my-event", "{}");
+	verify(global).onEvent(CHANNEL_NAME, "my-event", "{}");
+	verify(mockHandler, times(2)).uncaughtException(thread, failure);
+    }
+    
+    @Test
+    public void testUnboundGlobalListenerReceivesNoEvents() {
+	SubscriptionEventListener global = mock(SubscriptionEventListener.class);
+	channelManager.bindGlobal(global);
+	channelManager.unbindGlobal(global);
+	channelManager.subscribeTo(mockInternalChannel, mockEventListener);
+	channelManager.onMessage("my-event", "{\"event\":\"my-event\",\"data\":{},\"channel\":\"" + CHANNEL_NAME + "\"}");
+	
+	verify(global, never()).onEvent(anyString(), anyString(), anyString());
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testBindGlobalWithNullListenerThrowsException() {
+	channelManager.bindGlobal(null);
+    }
+    
+    @Test
+    public void testMessageForAnUnknownChannelIsReportedAsARoutingMiss() {
+	InMemoryMetrics metrics = new InMemoryMetrics();
+	channelManager.setPusherOptions(new PusherOptions().setMetrics(metrics));
+	channelManager.onMessage("my-event", "{\"event\":\"my-event\",\"data\":{},\"channel\":\"DIFFERENT_CHANNEL_NAME\"}");
+	
+	assertEquals(1, metrics.getRoutingMisses());
+    }
+    
+    @Test
+    public void testPrivateChannelAuthorizationIsTimed() {
+	InMemoryMetrics metrics = new InMemoryMetrics();
+	channelManager.setPusherOptions(new PusherOptions().setMetrics(metrics));
+	channelManager.subscribeTo(mockInternalChannel, mockEventListener);
+	channelManager.subscribeTo(mockPrivateChannel, mockPrivateChannelEventListener);
+	
+	assertEquals(1, metrics.getAuthorizationTime().getCount());
+	assertEquals(0, metrics.getAuthorizationFailures());
+	verify(mockPrivateChannel).setMetrics(metrics);
     }
     
     @Test
@@ -215,7 +354,7 @@ public class ChannelManagerTest {
 	channelManager.subscribeTo(mockInternalChannel, mockEventListener, "my-event");
 	channelManager.onMessage("my-event", "{\"event\":\"my-event\",\"data\":{\"fish\":\"chips\"},\"channel\":\"" + "DIFFERENT_CHANNEL_NAME" + "\"}");
 	
-	verify(mockInternalChannel, never()).onMessage(anyString(), anyString());
+	verify(mockInternalChannel, never()).onMessage(anyString(), anyString(), anyString());
     }
     
     @Test
@@ -255,7 +394,7 @@ public class ChannelManagerTest {
 	channelManager.unsubscribeFrom(CHANNEL_NAME);
 	channelManager.onMessage("my-event", "{\"event\":\"my-event\",\"data\":{\"fish\":\"chips\"},\"channel\":\"" + CHANNEL_NAME + "\"}");
 	
-	verify(mockInternalChannel, never()).onMessage(anyString(), anyString());	
+	verify(mockInternalChannel, never()).onMessage(anyString(), anyString(), anyString());	
     }
     
     @Test
@@ -267,4 +406,558 @@ public class ChannelManagerTest {
 	
 	verify(mockConnection, never()).sendMessage(anyString());
     }
-}
\ No newline at end of file
+    
+    @Test
+    public void testSubscribeToAllSendsAllSubscribeMessagesTogether() {
+	InternalChannel secondChannel = newMockChannel("my-other-channel");
+	
+	channelManager.subscribeToAll(Arrays.asList(mockInternalChannel, secondChannel), mockEventListener, "event1");
+	
+	verify(mockInternalChannel).bind("event1", mockEventListener);
+	verify(secondChannel).bind("event1", mockEventListener);
+	verify(mockConnection).sendMessages(Arrays.asList(OUTGOING_SUBSCRIBE_MESSAGE, "{\"event\":\"pusher:subscribe\",\"channel\":\"my-other-channel\"}"));
+	verify(mockConnection, never()).sendMessage(anyString());
+	verify(mockInternalChannel).updateState(ChannelState.SUBSCRIBE_SENT);
+	verify(secondChannel).updateState(ChannelState.SUBSCRIBE_SENT);
+    }
+    
+    @Test
+    public void testSubscribeToAllWithADuplicateNameSubscribesToNone() {
+	InternalChannel duplicateChannel = newMockChannel(CHANNEL_NAME);
+	InternalChannel otherChannel = newMockChannel("my-other-channel");
+	
+	try {
+	    channelManager.subscribeToAll(Arrays.asList(otherChannel, mockInternalChannel, duplicateChannel), mockEventListener, "event1");
+	    fail("Expected an IllegalArgumentException");
+	} catch(IllegalArgumentException e) {
+	    // expected
+	}
+	
+	verify(otherChannel, never()).bind(anyString(), any(ChannelEventListener.class));
+	channelManager.subscribeTo(otherChannel, mockEventListener);
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testSubscribeToAllWhenAlreadySubscribedToOneChannelThrowsException() {
+	channelManager.subscribeTo(mockInternalChannel, mockEventListener);
+	channelManager.subscribeToAll(Arrays.asList(newMockChannel("my-other-channel"), mockInternalChannel), mockEventListener);
+    }
+    
+    @Test
+    public void testUnsubscribeFromAllSendsAllUnsubscribeMessagesTogether() {
+	InternalChannel secondChannel = newMockChannel("my-other-channel");
+	channelManager.subscribeToAll(Arrays.asList(mockInternalChannel, secondChannel), mockEventListener);
+	
+	channelManager.unsubscribeFromAll(Arrays.asList(CHANNEL_NAME, "my-other-channel"));
+	
+	verify(mockConnection).sendMessages(Arrays.asList(OUTGOING_UNSUBSCRIBE_MESSAGE, "{\"event\":\"pusher:unsubscribe\",\"channel\":\"my-other-channel\"}"));
+	verify(mockInternalChannel).updateState(ChannelState.UNSUBSCRIBED);
+	verify(secondChannel).updateState(ChannelState.UNSUBSCRIBED);
+    }
+    
+    @Test
+    public void testUnsubscribeFromAllWhenNotSubscribedToOneChannelUnsubscribesFromNone() {
+	channelManager.subscribeTo(mockInternalChannel, mockEventListener);
+	
+	try {
+	    channelManager.unsubscribeFromAll(Arrays.asList(CHANNEL_NAME, "my-other-channel"));
+	    fail("Expected an IllegalArgumentException");
+	} catch(IllegalArgumentException e) {
+	    // expected
+	}
+	
+	verify(mockInternalChannel, never()).updateState(ChannelState.UNSUBSCRIBED);
+    }
+    
+    @Test
+    public void testSubscribeSchedulesASubscriptionDeadline() {
+	channelManager.subscribeTo(mockInternalChannel, mockEventListener);
+	
+	verify(mockScheduler).schedule(any(Runnable.class), eq(30000L), eq(TimeUnit.MILLISECONDS));
+    }
+    
+    @Test
+    public void testSubscribeDoesNotScheduleADeadlineWhenTimeoutIsDisabled() {
+	channelManager.setPusherOptions(new PusherOptions().setSubscriptionTimeout(0));
+	channelManager.subscribeTo(mockInternalChannel, mockEventListener);
+	
+	verify(mockScheduler, never()).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testSetPusherOptionsWithNullOptionsThrowsException() {
+	channelManager.setPusherOptions(null);
+    }
+    
+    @Test
+    public void testSubscriptionDeadlineWithNoResponseTimesOutAndSchedulesARetry() {
+	SubscriptionTimeoutListener mockTimeoutListener = mock(TimeoutAwareChannelEventListener.class);
+	when(mockInternalChannel.getEventListener()).thenReturn((ChannelEventListener) mockTimeoutListener);
+	channelManager.subscribeTo(mockInternalChannel, mockEventListener);
+	when(mockInternalChannel.getState()).thenReturn(ChannelState.SUBSCRIBE_SENT);
+	when(mockInternalChannel.compareAndSetState(ChannelState.SUBSCRIBE_SENT, ChannelState.SUBSCRIBE_TIMED_OUT)).thenReturn(true);
+	
+	runScheduledTask(0, 30000L);
+	
+	verify(mockInternalChannel).compareAndSetState(ChannelState.SUBSCRIBE_SENT, ChannelState.SUBSCRIBE_TIMED_OUT);
+	verify(mockTimeoutListener).onSubscriptionTimeout(CHANNEL_NAME, 1, true);
+	verify(mockScheduler).schedule(any(Runnable.class), eq(1000L), eq(TimeUnit.MILLISECONDS));
+	assertEquals(1, channelManager.getSubscriptionStats().getTotalTimeouts());
+    }
+    
+    @Test
+    public void testRetryResendsTheSubscribeMessage() {
+	channelManager.subscribeTo(mockInternalChannel, mockEventListener);
+	when(mockInternalChannel.getState()).thenReturn(ChannelState.SUBSCRIBE_SENT);
+	when(mockInternalChannel.compareAndSetState(ChannelState.SUBSCRIBE_SENT, ChannelState.SUBSCRIBE_TIMED_OUT)).thenReturn(true);
+	runScheduledTask(0, 30000L);
+	
+	when(mockInternalChannel.getState()).thenReturn(ChannelState.SUBSCRIBE_TIMED_OUT);
+	runScheduledTask(1, 1000L);
+	
+	verify(mockConnection, times(2)).sendMessage(OUTGOING_SUBSCRIBE_MESSAGE);
+	verify(mockInternalChannel, times(2)).updateState(ChannelState.SUBSCRIBE_SENT);
+	assertEquals(1, channelManager.getSubscriptionStats().getTotalRetries());
+    }
+    
+    @Test
+    public void testRetryIsHandedToTheEventQueue() {
+	channelManager.subscribeTo(mockInternalChannel, mockEventListener);
+	when(mockInternalChannel.getState()).thenReturn(ChannelState.SUBSCRIBE_SENT);
+	when(mockInternalChannel.compareAndSetState(ChannelState.SUBSCRIBE_SENT, ChannelState.SUBSCRIBE_TIMED_OUT)).thenReturn(true);
+	runScheduledTask(0, 30000L);
+	
+	final List<Runnable> queued = new ArrayList<Runnable>();
+	when(Factory.getEventQueue()).thenReturn(new InstantExecutor() {
+	    @Override
+	    public void execute(Runnable command) {
+		queued.add(command);
+	    }
+	});
+	runScheduledTask(1, 1000L);
+	verify(mockConnection, times(1)).sendMessage(OUTGOING_SUBSCRIBE_MESSAGE);
+	
+	// by the time the event thread gets to it the subscription has succeeded, so nothing is resent
+	when(mockInternalChannel.getState()).thenReturn(ChannelState.SUBSCRIBED);
+	assertEquals(1, queued.size());
+	queued.get(0).run();
+	verify(mockConnection, times(1)).sendMessage(OUTGOING_SUBSCRIBE_MESSAGE);
+	assertEquals(0, channelManager.getSubscriptionStats().getTotalRetries());
+    }
+    
+    @Test
+    public void testRetryDelayDoublesForEachAttempt() {
+	channelManager.subscribeTo(mockInternalChannel, mockEventListener);
+	when(mockInternalChannel.getState()).thenReturn(ChannelState.SUBSCRIBE_SENT);
+	when(mockInternalChannel.compareAndSetState(ChannelState.SUBSCRIBE_SENT, ChannelState.SUBSCRIBE_TIMED_OUT)).thenReturn(true);
+	runScheduledTask(0, 30000L);
+	when(mockInternalChannel.getState()).thenReturn(ChannelState.SUBSCRIBE_TIMED_OUT);
+	runScheduledTask(1, 1000L);
+	when(mockInternalChannel.getState()).thenReturn(ChannelState.SUBSCRIBE_SENT);
+	when(mockInternalChannel.compareAndSetState(ChannelState.SUBSCRIBE_SENT, ChannelState.SUBSCRIBE_TIMED_OUT)).thenReturn(true);
+	runScheduledTask(2, 30000L);
+	
+	verify(mockScheduler).schedule(any(Runnable.class), eq(2000L), eq(TimeUnit.MILLISECONDS));
+    }
+    
+    @Test
+    public void testSubscriptionDeadlineIsIgnoredOnceSubscribed() {
+	channelManager.subscribeTo(mockInternalChannel, mockEventListener);
+	when(mockInternalChannel.getState()).thenReturn(ChannelState.SUBSCRIBED);
+	when(mockInternalChannel.compareAndSetState(ChannelState.SUBSCRIBE_SENT, ChannelState.SUBSCRIBE_TIMED_OUT)).thenReturn(false);
+	
+	runScheduledTask(0, 30000L);
+	
+	verify(mockInternalChannel, never()).updateState(ChannelState.SUBSCRIBE_TIMED_OUT);
+	verify(mockInternalChannel, never()).updateState(ChannelState.FAILED);
+	assertEquals(0, channelManager.getSubscriptionStats().getTotalTimeouts());
+	assertEquals(1, channelManager.getSubscriptionStats().getSubscribedCount());
+    }
+    
+    @Test
+    public void testSubscriptionDeadlineIsIgnoredAfterUnsubscribing() {
+	channelManager.subscribeTo(mockInternalChannel, mockEventListener);
+	when(mockInternalChannel.getState()).thenReturn(ChannelState.SUBSCRIBE_SENT);
+	when(mockInternalChannel.compareAndSetState(ChannelState.SUBSCRIBE_SENT, ChannelState.SUBSCRIBE_TIMED_OUT)).thenReturn(true);
+	channelManager.unsubscribeFrom(CHANNEL_NAME);
+	
+	runScheduledTask(0, 30000L);
+	
+	verify(mockInternalChannel, never()).compareAndSetState(ChannelState.SUBSCRIBE_SENT, ChannelState.SUBSCRIBE_TIMED_OUT);
+    }
+    
+    @Test
+    public void testSubscriptionFailsWhenRetriesAreExhausted() {
+	channelManager.setPusherOptions(new PusherOptions().setMaxSubscriptionRetries(0));
+	channelManager.subscribeTo(mockInternalChannel, mockEventListener);
+	when(mockInternalChannel.getState()).thenReturn(ChannelState.SUBSCRIBE_SENT);
+	when(mockInternalChannel.compareAndSetState(ChannelState.SUBSCRIBE_SENT, ChannelState.SUBSCRIBE_TIMED_OUT)).thenReturn(true);
+	
+	runScheduledTask(0, 30000L);
+	
+	verify(mockInternalChannel).updateState(ChannelState.FAILED);
+	SubscriptionStats stats = channelManager.getSubscriptionStats();
+	assertEquals(1, stats.getTotalFailures());
+	assertEquals(0, stats.getPendingCount());
+	
+	// the channel is no longer registered so it can be subscribed to again
+	channelManager.subscribeTo(mockInternalChannel, mockEventListener);
+    }
+    
+    @Test
+    public void testSubscribeEnablesEventHistoryWhenConfigured() {
+	channelManager.setPusherOptions(new PusherOptions().setEventHistory(100, 4096));
+	channelManager.subscribeTo(mockInternalChannel, mockEventListener);
+	
+	verify(mockInternalChannel).enableEventHistory(100, 4096);
+    }
+    
+    @Test
+    public void testSubscribeConfiguresInlineDispatch() {
+	channelManager.setPusherOptions(new PusherOptions().setInlineDispatch(true));
+	channelManager.subscribeTo(mockInternalChannel, mockEventListener);
+	
+	verify(mockInternalChannel).setInlineDispatch(true);
+    }
+    
+    @Test
+    public void testSubscribeConfiguresTheListenerExecutorBeforeBindingEvents() {
+	Executor executor = mock(Executor.class);
+	channelManager.setPusherOptions(new PusherOptions().setListenerExecutor(executor));
+	channelManager.subscribeTo(mockInternalChannel, mockEventListener, "event1");
+	
+	InOrder inOrder = inOrder(mockInternalChannel);
+	inOrder.verify(mockInternalChannel).setListenerExecutor(executor);
+	inOrder.verify(mockInternalChannel).bind("event1", mockEventListener);
+    }
+    
+    @Test
+    public void testPrivateChannelIsAuthorizedOnTheAuthorizationExecutor() throws AuthorizationFailureException {
+	List<Runnable> authorizations = new ArrayList<Runnable>();
+	channelManager.setPusherOptions(new PusherOptions().setAuthorizationExecutor(collectingExecutor(authorizations)));
+	channelManager.subscribeTo(mockPrivateChannel, mockPrivateChannelEventListener);
+	
+	verify(mockPrivateChannel, never()).toSubscribeMessage();
+	assertEquals(1, authorizations.size());
+	
+	authorizations.get(0).run();
+	verify(mockConnection).sendMessage(PRIVATE_OUTGOING_SUBSCRIBE_MESSAGE);
+	verify(mockPrivateChannel).updateState(ChannelState.SUBSCRIBE_SENT);
+    }
+    
+    @Test
+    public void testPrivateChannelIsAuthorizedOnTheEventQueueWhenTheAuthorizationExecutorRejectsIt() {
+	channelManager.setPusherOptions(new PusherOptions().setAuthorizationExecutor(new Executor() {
+	    @Override
+	    public void execute(Runnable command) {
+		throw new RejectedExecutionException("shut down");
+	    }
+	}));
+	channelManager.subscribeTo(mockPrivateChannel, mockPrivateChannelEventListener);
+	
+	verify(mockConnection).sendMessage(PRIVATE_OUTGOING_SUBSCRIBE_MESSAGE);
+	verify(mockPrivateChannel).updateState(ChannelState.SUBSCRIBE_SENT);
+    }
+    
+    @Test
+    public void testPublicChannelIsNotAuthorizedOnTheAuthorizationExecutor() {
+	List<Runnable> authorizations = new ArrayList<Runnable>();
+	channelManager.setPusherOptions(new PusherOptions().setAuthorizationExecutor(collectingExecutor(authorizations)));
+	channelManager.subscribeTo(mockInternalChannel, mockEventListener);
+	
+	assertEquals(0, authorizations.size());
+	verify(mockConnection).sendMessage(OUTGOING_SUBSCRIBE_MESSAGE);
+    }
+    
+    @Test
+    public void testAuthorizationFailureOnTheAuthorizationExecutorNotifiesListener() throws AuthorizationFailureException {
+	AuthorizationFailureException exception = new AuthorizationFailureException("Unable to contact auth server");
+	when(mockPrivateChannel.toSubscribeMessage()).thenThrow(exception);
+	List<Runnable> authorizations = new ArrayList<Runnable>();
+	channelManager.setPusherOptions(new PusherOptions().setAuthorizationExecutor(collectingExecutor(authorizations)));
+	channelManager.subscribeTo(mockPrivateChannel, mockPrivateChannelEventListener);
+	
+	authorizations.get(0).run();
+	verify(mockPrivateChannelEventListener).onAuthenticationFailure("Unable to contact auth server", exception);
+	verify(mockConnection, never()).sendMessage(anyString());
+    }
+    
+    @Test
+    public void testAuthorizationForAReplacedSocketIsDiscarded() {
+	List<Runnable> authorizations = new ArrayList<Runnable>();
+	channelManager.setPusherOptions(new PusherOptions().setAuthorizationExecutor(collectingExecutor(authorizations)));
+	channelManager.subscribeTo(mockPrivateChannel, mockPrivateChannelEventListener);
+	
+	when(mockConnection.getSocketId()).thenReturn("99999.99999");
+	authorizations.get(0).run();
+	verify(mockConnection, never()).sendMessage(anyString());
+    }
+    
+    @Test
+    public void testAuthorizationForAnUnsubscribedChannelIsDiscarded() {
+	List<Runnable> authorizations = new ArrayList<Runnable>();
+	channelManager.setPusherOptions(new PusherOptions().setAuthorizationExecutor(collectingExecutor(authorizations)));
+	channelManager.subscribeTo(mockPrivateChannel, mockPrivateChannelEventListener);
+	
+	channelManager.unsubscribeFrom(PRIVATE_CHANNEL_NAME);
+	authorizations.get(0).run();
+	verify(mockConnection, never()).sendMessage(PRIVATE_OUTGOING_SUBSCRIBE_MESSAGE);
+    }
+    
+    @Test
+    public void testSubscribeDoesNotEnableEventHistoryByDefault() {
+	channelManager.subscribeTo(mockInternalChannel, mockEventListener);
+	
+	verify(mockInternalChannel, never()).enableEventHistory(anyInt(), anyLong());
+    }
+    
+    @Test
+    public void testAcquiringAChannelTwiceSubscribesOnce() {
+	ChannelImpl channel = mockSharedChannel();
+	
+	ChannelHandle first = channelManager.acquire(CHANNEL_NAME);
+	ChannelHandle second = channelManager.acquire(CHANNEL_NAME);
+	
+	assertSame(channel, first.getChannel());
+	assertSame(channel, second.getChannel());
+	verify(mockConnection, times(1)).sendMessage(OUTGOING_SUBSCRIBE_MESSAGE);
+    }
+    
+    @Test
+    public void testReleasingTheLastHandleUnsubscribes() {
+	ChannelImpl channel = mockSharedChannel();
+	ChannelHandle first = channelManager.acquire(CHANNEL_NAME);
+	ChannelHandle second = channelManager.acquire(CHANNEL_NAME);
+	
+	first.release();
+	verify(mockConnection, never()).sendMessage(OUTGOING_UNSUBSCRIBE_MESSAGE);
+	
+	second.release();
+	verify(mockConnection).sendMessage(OUTGOING_UNSUBSCRIBE_MESSAGE);
+	verify(channel).updateState(ChannelState.UNSUBSCRIBED);
+    }
+    
+    @Test
+    public void testReleasingAHandleTwiceOnlyReleasesOneReference() {
+	mockSharedChannel();
+	ChannelHandle first = channelManager.acquire(CHANNEL_NAME);
+	channelManager.acquire(CHANNEL_NAME);
+	
+	first.release();
+	first.release();
+	
+	assertTrue(first.isReleased());
+	verify(mockConnection, never()).sendMessage(OUTGOING_UNSUBSCRIBE_MESSAGE);
+    }
+    
+    @Test
+    public void testReleasingAHandleUnbindsItsListeners() {
+	ChannelImpl channel = mockSharedChannel();
+	SubscriptionEventListener listener = mock(SubscriptionEventListener.class);
+	ChannelHandle handle = channelManager.acquire(CHANNEL_NAME);
+	channelManager.acquire(CHANNEL_NAME);
+	
+	handle.bind("event", listener);
+	handle.release();
+	
+	verify(channel).bind("event", listener);
+	verify(channel).unbind("event", listener);
+    }
+    
+    @Test
+    public void testAListenerSharedByTwoHandlesStaysBoundUntilBothLetItGo() {
+	ChannelImpl channel = mockSharedChannel();
+	SubscriptionEventListener listener = mock(SubscriptionEventListener.class);
+	ChannelHandle first = channelManager.acquire(CHANNEL_NAME);
+	ChannelHandle second = channelManager.acquire(CHANNEL_NAME);
+	channelManager.acquire(CHANNEL_NAME);
+	
+	first.bind("event", listener);
+	second.bind("event", listener);
+	verify(channel, times(1)).bind("event", listener);
+	
+	first.release();
+	verify(channel, never()).unbind("event", listener);
+	
+	second.unbind("event", listener);
+	verify(channel).unbind("event", listener);
+    }
+    
+    @Test(expected=IllegalStateException.class)
+    public void testBindingThroughAReleasedHandleThrowsException() {
+	mockSharedChannel();
+	ChannelHandle handle = channelManager.acquire(CHANNEL_NAME);
+	handle.release();
+	
+	handle.bind("event", mock(SubscriptionEventListener.class));
+    }
+    
+    @Test
+    public void testReleasedChannelLingersBeforeUnsubscribing() {
+	ChannelImpl channel = mockSharedChannel();
+	channelManager.setPusherOptions(new PusherOptions().setSharedChannelLinger(500));
+	channelManager.acquire(CHANNEL_NAME).release();
+	
+	verify(mockConnection, never()).sendMessage(OUTGOING_UNSUBSCRIBE_MESSAGE);
+	
+	ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+	verify(mockScheduler).schedule(captor.capture(), eq(500L), eq(TimeUnit.MILLISECONDS));
+	captor.getValue().run();
+	
+	verify(mockConnection).sendMessage(OUTGOING_UNSUBSCRIBE_MESSAGE);
+	verify(channel).updateState(ChannelState.UNSUBSCRIBED);
+    }
+    
+    @Test
+    public void testAcquiringALingeringChannelReusesTheSubscription() {
+	mockSharedChannel();
+	ScheduledFuture<?> mockLingerTask = mock(ScheduledFuture.class);
+	doReturn(mockLingerTask).when(mockScheduler).schedule(any(Runnable.class), eq(500L), eq(TimeUnit.MILLISECONDS));
+	channelManager.setPusherOptions(new PusherOptions().setSharedChannelLinger(500));
+	channelManager.acquire(CHANNEL_NAME).release();
+	
+	channelManager.acquire(CHANNEL_NAME);
+	
+	verify(mockLingerTask).cancel(false);
+	ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+	verify(mockScheduler).schedule(captor.capture(), eq(500L), eq(TimeUnit.MILLISECONDS));
+	captor.getValue().run();
+	
+	verify(mockConnection, times(1)).sendMessage(OUTGOING_SUBSCRIBE_MESSAGE);
+	verify(mockConnection, never()).sendMessage(OUTGOING_UNSUBSCRIBE_MESSAGE);
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testAcquiringAChannelThatIsAlreadySubscribedThrowsException() {
+	channelManager.subscribeTo(mockInternalChannel, mockEventListener);
+	channelManager.acquire(CHANNEL_NAME);
+    }
+    
+    @Test
+    public void testStandbyConnectionIsSubscribedToPublicChannelsOnly() {
+	InternalConnection standby = mockStandbyConnection(ConnectionState.CONNECTED);
+	
+	channelManager.subscribeTo(mockInternalChannel, mockEventListener);
+	channelManager.subscribeTo(mockPrivateChannel, mockPrivateChannelEventListener);
+	
+	verify(standby).sendMessages(Arrays.asList(OUTGOING_SUBSCRIBE_MESSAGE));
+	verify(standby, never()).sendMessages(Arrays.asList(PRIVATE_OUTGOING_SUBSCRIBE_MESSAGE));
+    }
+    
+    @Test
+    public void testStandbyConnectionSubscribesToExistingChannelsWhenItConnects() {
+	InternalConnection standby = mockStandbyConnection(ConnectionState.DISCONNECTED);
+	channelManager.subscribeTo(mockInternalChannel, mockEventListener);
+	verify(standby, never()).sendMessages(Arrays.asList(OUTGOING_SUBSCRIBE_MESSAGE));
+	
+	when(standby.getState()).thenReturn(ConnectionState.CONNECTED);
+	standbyListenerFor(standby).onConnectionStateChange(new ConnectionStateChange(ConnectionState.CONNECTING, ConnectionState.CONNECTED));
+	
+	verify(standby).sendMessages(Arrays.asList(OUTGOING_SUBSCRIBE_MESSAGE));
+    }
+    
+    @Test
+    public void testPrimaryReconnectionDoesNotResubscribeAStandbyConnection() {
+	InternalConnection standby = mockStandbyConnection(ConnectionState.CONNECTED);
+	channelManager.subscribeTo(mockInternalChannel, mockEventListener);
+	
+	channelManager.onConnectionStateChange(new ConnectionStateChange(ConnectionState.CONNECTING, ConnectionState.CONNECTED));
+	
+	verify(standby, times(1)).sendMessages(Arrays.asList(OUTGOING_SUBSCRIBE_MESSAGE));
+    }
+    
+    @Test
+    public void testEventReceivedOnEveryConnectionIsOnlyDeliveredOnce() {
+	String message = "{\"event\":\"my-event\",\"data\":{\"fish\":\"chips\"},\"channel\":\"" + CHANNEL_NAME + "\"}";
+	InternalConnection standby = mockStandbyConnection(ConnectionState.CONNECTED);
+	channelManager.subscribeTo(mockInternalChannel, mockEventListener);
+	
+	channelManager.onMessage(standby, "my-event", message);
+	channelManager.onMessage(mockConnection, "my-event", message);
+	
+	verify(mockInternalChannel, times(1)).onMessage("my-event", message, "{\"fish\":\"chips\"}");
+	List<ArrivalStats> stats = channelManager.getArrivalStats();
+	assertEquals(0, stats.get(0).getWins());
+	assertEquals(1, stats.get(0).getDuplicates());
+	assertEquals(1, stats.get(1).getWins());
+	assertEquals(0, stats.get(1).getDuplicates());
+    }
+    
+    @Test
+    public void testSubscriptionAcknowledgementFromAStandbyConnectionIsIgnored() {
+	String message = "{\"event\":\"pusher_internal:subscription_succeeded\",\"data\":\"{}\",\"channel\":\"" + CHANNEL_NAME + "\"}";
+	InternalConnection standby = mockStandbyConnection(ConnectionState.CONNECTED);
+	channelManager.subscribeTo(mockInternalChannel, mockEventListener);
+	
+	channelManager.onMessage(standby, "pusher_internal:subscription_succeeded", message);
+	verify(mockInternalChannel, never()).onMessage(anyString(), anyString(), anyString());
+	
+	channelManager.onMessage(mockConnection, "pusher_internal:subscription_succeeded", message);
+	verify(mockInternalChannel).onMessage("pusher_internal:subscription_succeeded", message, "\"{}\"");
+    }
+    
+    @Test
+    public void testUnsubscribeAlsoUnsubscribesStandbyConnection() {
+	InternalConnection standby = mockStandbyConnection(ConnectionState.CONNECTED);
+	channelManager.subscribeTo(mockInternalChannel, mockEventListener);
+	
+	channelManager.unsubscribeFrom(CHANNEL_NAME);
+	
+	verify(standby).sendMessages(Arrays.asList(OUTGOING_UNSUBSCRIBE_MESSAGE));
+    }
+    
+    @Test
+    public void testArrivalStatsAreEmptyWithoutStandbyConnections() {
+	assertTrue(channelManager.getArrivalStats().isEmpty());
+    }
+    
+    /* end of tests */
+    
+    private InternalConnection mockStandbyConnection(ConnectionState state) {
+	InternalConnection standby = mock(InternalConnection.class);
+	when(standby.getState()).thenReturn(state);
+	channelManager.setStandbyConnections(Arrays.asList(standby));
+	return standby;
+    }
+    
+    private ConnectionEventListener standbyListenerFor(InternalConnection standby) {
+	ArgumentCaptor<ConnectionEventListener> captor = ArgumentCaptor.forClass(ConnectionEventListener.class);
+	verify(standby).bind(eq(ConnectionState.CONNECTED), captor.capture());
+	return captor.getValue();
+    }
+    
+    private ChannelImpl mockSharedChannel() {
+	ChannelImpl channel = mock(ChannelImpl.class);
+	when(channel.getName()).thenReturn(CHANNEL_NAME);
+	when(channel.toSubscribeMessage()).thenReturn(OUTGOING_SUBSCRIBE_MESSAGE);
+	when(channel.toUnsubscribeMessage()).thenReturn(OUTGOING_UNSUBSCRIBE_MESSAGE);
+	when(Factory.newPublicChannel(CHANNEL_NAME)).thenReturn(channel);
+	return channel;
+    }
+    
+    private void runScheduledTask(int index, long expectedDelay) {
+	ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+	verify(mockScheduler, times(index + 1)).schedule(captor.capture(), anyLong(), eq(TimeUnit.MILLISECONDS));
+	captor.getAllValues().get(index).run();
+    }
+    
+    interface TimeoutAwareChannelEventListener extends ChannelEventListener, SubscriptionTimeoutListener {
+    }
+    
+    
+    private InternalChannel newMockChannel(String channelName) {
+	InternalChannel channel = mock(InternalChannel.class);
+	when(channel.getName()).thenReturn(channelName);
+	when(channel.toSubscribeMessage()).thenReturn("{\"event\":\"pusher:subscribe\",\"channel\":\"" + channelName + "\"}");
+	when(channel.toUnsubscribeMessage()).thenReturn("{\"event\":\"pusher:unsubscribe\",\"channel\":\"" + channelName + "\"}");
+	return channel;
+    }
+    
+    private static Executor collectingExecutor(final List<Runnable> tasks) {
+	return new Executor() {
+	    public void execute(Runnable task) {
+		tasks.add(task);
+	    }
+	};
+    }
+}
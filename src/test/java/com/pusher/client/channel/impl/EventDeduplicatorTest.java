@@ -0,0 +1,114 @@
+package com.pusher.client.channel.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.pusher.client.connection.ArrivalStats;
+
+public class EventDeduplicatorTest {
+
+    private static final String CHANNEL = "my-channel";
+    private static final String MESSAGE = "{\"event\":\"my-event\",\"data\":{\"fish\":\"chips\"},\"channel\":\"my-channel\"}";
+    private static final String OTHER_MESSAGE = "{\"event\":\"my-event\",\"data\":{\"fish\":\"peas\"},\"channel\":\"my-channel\"}";
+
+    private EventDeduplicator deduplicator;
+
+    @Before
+    public void setUp() {
+	deduplicator = new EventDeduplicator(2, 16);
+    }
+
+    @Test
+    public void testFirstCopyIsDeliveredAndLaterCopiesAreDropped() {
+	assertTrue(deduplicator.isFirstArrival(1, CHANNEL, MESSAGE, 100));
+	assertFalse(deduplicator.isFirstArrival(0, CHANNEL, MESSAGE, 150));
+	assertTrue(deduplicator.isFirstArrival(0, CHANNEL, OTHER_MESSAGE, 200));
+	assertFalse(deduplicator.isFirstArrival(1, CHANNEL, OTHER_MESSAGE, 210));
+    }
+
+    @Test
+    public void testAnEventPublishedTwiceIsDeliveredTwice() {
+	assertTrue(deduplicator.isFirstArrival(0, CHANNEL, MESSAGE, 100));
+	assertTrue(deduplicator.isFirstArrival(0, CHANNEL, MESSAGE, 200));
+	assertFalse(deduplicator.isFirstArrival(1, CHANNEL, MESSAGE, 250));
+	assertFalse(deduplicator.isFirstArrival(1, CHANNEL, MESSAGE, 260));
+	assertTrue(deduplicator.isFirstArrival(1, CHANNEL, MESSAGE, 300));
+	assertFalse(deduplicator.isFirstArrival(0, CHANNEL, MESSAGE, 310));
+    }
+
+    @Test
+    public void testStatsReportWinsDuplicatesAndSkew() {
+	deduplicator.isFirstArrival(0, CHANNEL, MESSAGE, 0);
+	deduplicator.isFirstArrival(1, CHANNEL, MESSAGE, 2000000);
+	deduplicator.isFirstArrival(0, CHANNEL, OTHER_MESSAGE, 10000000);
+	deduplicator.isFirstArrival(1, CHANNEL, OTHER_MESSAGE, 14000000);
+
+	List<ArrivalStats> stats = deduplicator.getStats();
+	assertEquals(2, stats.get(0).getWins());
+	assertEquals(1.0, stats.get(0).getWinRate(), 0);
+	assertEquals(2, stats.get(1).getDuplicates());
+	assertEquals(0.0, stats.get(1).getWinRate(), 0);
+	assertEquals(3.0, stats.get(1).getMeanSkewMillis(), 0.0001);
+	assertEquals(4.0, stats.get(1).getMaxSkewMillis(), 0.0001);
+    }
+
+    @Test
+    public void testACopyThatFallsOutOfTheWindowIsDeliveredAgain() {
+	deduplicator = new EventDeduplicator(2, 1);
+
+	deduplicator.isFirstArrival(0, CHANNEL, MESSAGE, 0);
+	deduplicator.isFirstArrival(0, CHANNEL, OTHER_MESSAGE, 1);
+
+	assertTrue(deduplicator.isFirstArrival(1, CHANNEL, MESSAGE, 2));
+    }
+
+    @Test
+    public void testAMostRecentlySeenEventIsKeptInTheWindow() {
+	deduplicator = new EventDeduplicator(3, 2);
+
+	deduplicator.isFirstArrival(0, CHANNEL, MESSAGE, 0);
+	deduplicator.isFirstArrival(0, CHANNEL, OTHER_MESSAGE, 1);
+	deduplicator.isFirstArrival(1, CHANNEL, MESSAGE, 2);
+	deduplicator.isFirstArrival(0, CHANNEL, "{\"event\":\"third\"}", 3);
+
+	assertFalse(deduplicator.isFirstArrival(2, CHANNEL, MESSAGE, 4));
+	assertTrue(deduplicator.isFirstArrival(1, CHANNEL, OTHER_MESSAGE, 5));
+    }
+
+    @Test
+    public void testAStandbyThatMissedAnOccurrenceDeliversOnceThePrimaryDrops() {
+	assertTrue(deduplicator.isFirstArrival(0, CHANNEL, MESSAGE, 100));
+	// the standby resubscribes after the first occurrence, so it never receives it
+	deduplicator.resynchronize(1, CHANNEL);
+	assertTrue(deduplicator.isFirstArrival(0, CHANNEL, MESSAGE, 200));
+	assertFalse(deduplicator.isFirstArrival(1, CHANNEL, MESSAGE, 210));
+	
+	// the primary drops, and the next occurrence arrives over the standby alone
+	assertTrue(deduplicator.isFirstArrival(1, CHANNEL, MESSAGE, 300));
+    }
+
+    @Test
+    public void testResynchronizingOnlyAffectsTheGivenChannel() {
+	assertTrue(deduplicator.isFirstArrival(0, CHANNEL, MESSAGE, 100));
+	deduplicator.resynchronize(1, "other-channel");
+
+	assertFalse(deduplicator.isFirstArrival(1, CHANNEL, MESSAGE, 110));
+    }
+
+    @Test
+    public void testFingerprintsDifferForDifferentMessages() {
+	assertFalse(EventDeduplicator.fingerprintOf(MESSAGE) == EventDeduplicator.fingerprintOf(OTHER_MESSAGE));
+	assertEquals(EventDeduplicator.fingerprintOf(MESSAGE), EventDeduplicator.fingerprintOf(new String(MESSAGE)));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testEmptyWindowThrowsException() {
+	new EventDeduplicator(2, 0);
+    }
+}
@@ -0,0 +1,59 @@
+package com.pusher.client.channel.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class EventHistoryBufferTest {
+
+    @Test
+    public void testOldestEventsAreDiscardedWhenTheCountLimitIsReached() {
+	EventHistoryBuffer history = new EventHistoryBuffer(2, 0);
+	history.add("event", "1");
+	history.add("event", "2");
+	history.add("event", "3");
+	
+	assertEquals(2, history.size());
+	assertEquals(1, history.getEvictedCount());
+	assertEquals(Arrays.asList("2", "3"), history.getRecent("event", 10));
+    }
+
+    @Test
+    public void testRetainedBytesNeverExceedTheSizeLimit() {
+	EventHistoryBuffer history = new EventHistoryBuffer(0, 200);
+	for (int i = 0; i < 100; i++) {
+	    history.add("event", "some data " + i);
+	    assertTrue(history.getRetainedBytes() <= 200);
+	}
+	assertTrue(history.size() > 0);
+    }
+
+    @Test
+    public void testAnEventLargerThanTheSizeLimitIsNotRetained() {
+	EventHistoryBuffer history = new EventHistoryBuffer(0, 100);
+	history.add("event", "small");
+	history.add("event", new String(new char[100]));
+	
+	assertEquals(Arrays.asList("small"), history.getRecent("event", 10));
+	assertEquals(1, history.getEvictedCount());
+    }
+
+    @Test
+    public void testGetRecentReturnsTheNewestMatchingEventsOldestFirst() {
+	EventHistoryBuffer history = new EventHistoryBuffer(10, 0);
+	history.add("event", "1");
+	history.add("other", "2");
+	history.add("event", "3");
+	history.add("event", "4");
+	
+	assertEquals(Arrays.asList("3", "4"), history.getRecent("event", 2));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testHistoryWithoutAnyLimitThrowsException() {
+	new EventHistoryBuffer(0, 0);
+    }
+}
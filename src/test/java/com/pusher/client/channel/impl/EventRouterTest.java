@@ -0,0 +1,146 @@
+package com.pusher.client.channel.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.pusher.client.channel.SubscriptionEventListener;
+
+public class EventRouterTest {
+
+    private EventRouter router;
+    private SubscriptionEventListener listener1;
+    private SubscriptionEventListener listener2;
+    private SubscriptionEventListener listener3;
+
+    @Before
+    public void setUp() {
+	router = new EventRouter();
+	listener1 = mock(SubscriptionEventListener.class);
+	listener2 = mock(SubscriptionEventListener.class);
+	listener3 = mock(SubscriptionEventListener.class);
+    }
+
+    @Test
+    public void testNothingMatchesAnEmptyRouter() {
+	assertTrue(router.isEmpty());
+	assertEquals(0, router.match("my-channel", "my-event").length);
+    }
+
+    @Test
+    public void testAllEventsOnAChannel() {
+	router.bind("my-channel", "*", listener1);
+
+	assertFalse(router.isEmpty());
+	assertArrayEquals(new Object[] { listener1 }, router.match("my-channel", "any-event"));
+	assertEquals(0, router.match("my-channel-2", "any-event").length);
+    }
+
+    @Test
+    public void testAnEventOnAllChannels() {
+	router.bind("*", "my-event", listener1);
+
+	assertArrayEquals(new Object[] { listener1 }, router.match("one", "my-event"));
+	assertArrayEquals(new Object[] { listener1 }, router.match("two", "my-event"));
+	assertEquals(0, router.match("one", "my-event-2").length);
+    }
+
+    @Test
+    public void testChannelAndEventPrefixes() {
+	router.bind("ticker-*", "trade", listener1);
+	router.bind("ticker-eu-*", "trade*", listener2);
+
+	assertArrayEquals(new Object[] { listener1 }, router.match("ticker-us-aapl", "trade"));
+	assertArrayEquals(new Object[] { listener1, listener2 }, router.match("ticker-eu-sap", "trade"));
+	assertArrayEquals(new Object[] { listener2 }, router.match("ticker-eu-sap", "trade-cancelled"));
+	assertEquals(0, router.match("ticker-eu-sap", "quote").length);
+	assertEquals(0, router.match("tick", "trade").length);
+    }
+
+    @Test
+    public void testNestedPrefixesAllMatch() {
+	router.bind("*", "a*", listener1);
+	router.bind("*", "abc*", listener2);
+	router.bind("*", "abd*", listener3);
+
+	assertArrayEquals(new Object[] { listener1 }, router.match("c", "ab"));
+	assertArrayEquals(new Object[] { listener1, listener2 }, router.match("c", "abc"));
+	assertArrayEquals(new Object[] { listener1, listener2 }, router.match("c", "abcdef"));
+	assertArrayEquals(new Object[] { listener1, listener3 }, router.match("c", "abd"));
+	assertEquals(0, router.match("c", "b").length);
+    }
+
+    @Test
+    public void testExactEventNamesAlsoMatchPrefixesAndWildcards() {
+	router.bind("*", "*", listener1);
+	router.bind("*", "trade", listener2);
+	router.bind("*", "tr*", listener3);
+
+	assertArrayEquals(new Object[] { listener1, listener2, listener3 }, router.match("c", "trade"));
+	assertArrayEquals(new Object[] { listener1, listener3 }, router.match("c", "trace"));
+	assertArrayEquals(new Object[] { listener1 }, router.match("c", "quote"));
+    }
+
+    @Test
+    public void testAListenerMatchedByMoreThanOneBindingAppearsOnce() {
+	router.bind("*", "*", listener1);
+	router.bind("my-channel", "my-event", listener1);
+
+	assertArrayEquals(new Object[] { listener1 }, router.match("my-channel", "my-event"));
+    }
+
+    @Test
+    public void testBindingTheSameListenerTwiceHasNoEffect() {
+	assertTrue(router.bind("*", "my-event", listener1));
+	assertFalse(router.bind("*", "my-event", listener1));
+    }
+
+    @Test
+    public void testUnbindRemovesOnlyThatBinding() {
+	router.bind("*", "my-event", listener1);
+	router.bind("my-*", "my-event", listener1);
+	router.match("my-channel", "my-event");
+
+	assertTrue(router.unbind("*", "my-event", listener1));
+	assertFalse(router.unbind("*", "my-event", listener1));
+	assertArrayEquals(new Object[] { listener1 }, router.match("my-channel", "my-event"));
+	assertEquals(0, router.match("other-channel", "my-event").length);
+
+	router.unbind("my-*", "my-event", listener1);
+	assertTrue(router.isEmpty());
+	assertEquals(0, router.match("my-channel", "my-event").length);
+    }
+
+    @Test
+    public void testMatchesAreCompiledOncePerChannel() {
+	router.bind("*", "my-event", listener1);
+
+	assertSame(router.match("my-channel", "my-event"), router.match("my-channel", "my-event"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWildcardOtherThanAtTheEndThrowsException() {
+	router.bind("ticker-*-eu", "*", listener1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInternalEventPatternThrowsException() {
+	router.bind("*", "pusher_internal:subscription_succeeded", listener1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullPatternThrowsException() {
+	router.bind(null, "*", listener1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullListenerThrowsException() {
+	router.bind("*", "*", null);
+    }
+}
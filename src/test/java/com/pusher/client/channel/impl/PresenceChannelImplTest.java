@@ -1,14 +1,21 @@
 package com.pusher.client.channel.impl;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
 import org.junit.Before;
@@ -20,12 +27,17 @@ import org.mockito.Mock;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import com.pusher.client.channel.BindOptions;
 import com.pusher.client.channel.User;
 import com.pusher.client.channel.ChannelEventListener;
 import com.pusher.client.channel.ChannelState;
 import com.pusher.client.channel.PresenceChannelEventListener;
+import com.pusher.client.channel.PresenceDelta;
+import com.pusher.client.channel.PresenceDeltaListener;
+import com.pusher.client.channel.PresenceRoster;
 import com.pusher.client.channel.PrivateChannelEventListener;
 import com.pusher.client.util.Factory;
+import com.pusher.client.util.InstantExecutor;
 
 @RunWith(PowerMockRunner.class)
 @PrepareForTest({Factory.class})
@@ -73,7 +85,7 @@ public class PresenceChannelImplTest extends PrivateChannelImplTest {
 	
 	User user = (User) argument.getValue().toArray()[0];
 	assertEquals("5116a4519575b", user.getId());
-	assertEquals("{name=Phil Leggetter, twitter_id=@leggetter}", user.getInfo());
+	assertEquals("{\"name\":\"Phil Leggetter\",\"twitter_id\":\"@leggetter\"}", user.getInfo());
     }
     
     @Test(expected=IllegalArgumentException.class)
@@ -91,7 +103,247 @@ public class PresenceChannelImplTest extends PrivateChannelImplTest {
 	verify(mockEventListener).onSubscriptionSucceeded(getChannelName());
     }
     
+    @Test
+    public void testGetUsersReturnsTheSameSnapshotUntilMembershipChanges() {
+	subscribeWithMembers("1", "2");
+	
+	Set<User> users = ((PresenceChannelImpl) channel).getUsers();
+	assertSame(users, ((PresenceChannelImpl) channel).getUsers());
+	assertEquals(2, users.size());
+    }
+    
+    @Test
+    public void testMemberAddedCreatesANewVersionWithoutChangingEarlierSnapshots() {
+	subscribeWithMembers("1");
+	PresenceRoster before = ((PresenceChannelImpl) channel).getRoster();
+	
+	channel.onMessage("pusher_internal:member_added", memberEvent("pusher_internal:member_added", "2"));
+	PresenceRoster after = ((PresenceChannelImpl) channel).getRoster();
+	
+	assertNotSame(before, after);
+	assertEquals(before.getVersion() + 1, after.getVersion());
+	assertEquals(1, before.size());
+	assertEquals(2, after.size());
+	assertEquals("2", after.getUser("2").getId());
+    }
+    
+    @Test
+    public void testListenerBoundWithConflationIsToldAboutMembers() {
+	PresenceChannelEventListener listener = mock(PresenceChannelEventListener.class);
+	channel.bind("my-event", listener, new BindOptions().setConflate(true));
+	subscribeWithMembers("1");
+	
+	channel.onMessage("pusher_internal:member_added", memberEvent("pusher_internal:member_added", "2"));
+	
+	verify(listener).userSubscribed(getChannelName(), new User("2", "{}"));
+    }
+    
+    @Test
+    public void testMemberRemovedRemovesTheUserFromTheRoster() {
+	subscribeWithMembers("1", "2");
+	
+	channel.onMessage("pusher_internal:member_removed", memberEvent("pusher_internal:member_removed", "1"));
+	PresenceRoster roster = ((PresenceChannelImpl) channel).getRoster();
+	
+	assertEquals(1, roster.size());
+	assertNull(roster.getUser("1"));
+	assertFalse(roster.contains(new User("1", null)));
+    }
+    
+    @Test
+    public void testSubscriptionSucceededReplacesThePreviousRoster() {
+	subscribeWithMembers("1", "2");
+	subscribeWithMembers("3");
+	
+	PresenceRoster roster = ((PresenceChannelImpl) channel).getRoster();
+	assertEquals(1, roster.size());
+	assertEquals("3", roster.iterator().next().getId());
+    }
+    
+    @Test(expected=UnsupportedOperationException.class)
+    public void testRosterCannotBeModified() {
+	subscribeWithMembers("1");
+	((PresenceChannelImpl) channel).getUsers().clear();
+    }
+    
+    @Test
+    public void testFirstSubscriptionDeliversEveryMemberAsAdded() {
+	DeltaAwarePresenceChannelEventListener listener = mock(DeltaAwarePresenceChannelEventListener.class);
+	channel.setEventListener(listener);
+	
+	subscribeWithMembers("1", "2");
+	
+	PresenceDelta delta = captureDelta(listener, 1);
+	assertEquals(0, delta.getFromVersion());
+	assertEquals(1, delta.getToVersion());
+	assertEquals(2, delta.getAdded().size());
+	assertTrue(delta.getRemoved().isEmpty());
+    }
+    
+    @Test
+    public void testResubscribingDeliversTheDifferenceFromThePreviousRoster() {
+	DeltaAwarePresenceChannelEventListener listener = mock(DeltaAwarePresenceChannelEventListener.class);
+	channel.setEventListener(listener);
+	subscribeWithMembers("1", "2");
+	
+	subscribeWithMembers("2", "3");
+	
+	PresenceDelta delta = captureDelta(listener, 2);
+	assertEquals(1, delta.getAdded().size());
+	assertEquals("3", delta.getAdded().get(0).getId());
+	assertEquals(1, delta.getRemoved().size());
+	assertEquals("1", delta.getRemoved().get(0).getId());
+	assertTrue(delta.getChanged().isEmpty());
+    }
+    
+    @Test
+    public void testMembershipChangesBeforeDeliveryAreCoalescedIntoOneDelta() {
+	DeltaAwarePresenceChannelEventListener listener = mock(DeltaAwarePresenceChannelEventListener.class);
+	channel.setEventListener(listener);
+	subscribeWithMembers("1");
+	
+	final List<Runnable> queued = new ArrayList<Runnable>();
+	when(Factory.getEventQueue()).thenReturn(new InstantExecutor() {
+	    @Override
+	    public void execute(Runnable command) {
+		queued.add(command);
+	    }
+	});
+	channel.onMessage("pusher_internal:member_added", memberEvent("pusher_internal:member_added", "2"));
+	channel.onMessage("pusher_internal:member_removed", memberEvent("pusher_internal:member_removed", "2"));
+	channel.onMessage("pusher_internal:member_added", memberEvent("pusher_internal:member_added", "3"));
+	for (Runnable runnable : queued) {
+	    runnable.run();
+	}
+	
+	PresenceDelta delta = captureDelta(listener, 2);
+	assertEquals(1, delta.getFromVersion());
+	assertEquals(4, delta.getToVersion());
+	assertEquals(1, delta.getAdded().size());
+	assertEquals("3", delta.getAdded().get(0).getId());
+	assertTrue(delta.getRemoved().isEmpty());
+    }
+    
+    @Test
+    public void testChangesThatCancelOutDoNotMoveTheStartOfTheNextDelta() {
+	DeltaAwarePresenceChannelEventListener listener = mock(DeltaAwarePresenceChannelEventListener.class);
+	channel.setEventListener(listener);
+	subscribeWithMembers("1");
+	
+	final List<Runnable> queued = new ArrayList<Runnable>();
+	when(Factory.getEventQueue()).thenReturn(new InstantExecutor() {
+	    @Override
+	    public void execute(Runnable command) {
+		queued.add(command);
+	    }
+	});
+	channel.onMessage("pusher_internal:member_added", memberEvent("pusher_internal:member_added", "2"));
+	channel.onMessage("pusher_internal:member_removed", memberEvent("pusher_internal:member_removed", "2"));
+	runAndClear(queued);
+	channel.onMessage("pusher_internal:member_added", memberEvent("pusher_internal:member_added", "3"));
+	runAndClear(queued);
+	
+	PresenceDelta delta = captureDelta(listener, 2);
+	assertEquals(1, delta.getFromVersion());
+	assertEquals(4, delta.getToVersion());
+	assertEquals("3", delta.getAdded().get(0).getId());
+    }
+    
+    @Test
+    public void testUserInfoIsKeptExactlyAsItWasSent() {
+	subscribeWithMembers();
+	
+	channel.onMessage("pusher_internal:member_added", "{\"event\":\"pusher_internal:member_added\",\"data\":\"{\\\"user_id\\\":\\\"1\\\",\\\"user_info\\\":{ \\\"name\\\" : \\\"Phil\\\" }}\",\"channel\":\"" + getChannelName() + "\"}");
+	
+	assertEquals("{ \"name\" : \"Phil\" }", ((PresenceChannelImpl) channel).getRoster().getUser("1").getInfo());
+    }
+    
+    @Test
+    public void testQueryReturnsMembersWithTheIndexedValue() {
+	PresenceChannelImpl presenceChannel = (PresenceChannelImpl) channel;
+	presenceChannel.addIndex("region");
+	subscribeWithMembers();
+	
+	channel.onMessage("pusher_internal:member_added", memberAddedWithRegion("1", "eu"));
+	channel.onMessage("pusher_internal:member_added", memberAddedWithRegion("2", "us"));
+	channel.onMessage("pusher_internal:member_added", memberAddedWithRegion("3", "eu"));
+	
+	Set<User> users = presenceChannel.query("region", "eu");
+	assertEquals(2, users.size());
+	assertTrue(presenceChannel.query("region", "apac").isEmpty());
+    }
+    
+    @Test
+    public void testIndexIsMaintainedAsMembersLeaveAndChange() {
+	PresenceChannelImpl presenceChannel = (PresenceChannelImpl) channel;
+	presenceChannel.addIndex("region");
+	subscribeWithMembers();
+	channel.onMessage("pusher_internal:member_added", memberAddedWithRegion("1", "eu"));
+	channel.onMessage("pusher_internal:member_added", memberAddedWithRegion("2", "eu"));
+	
+	channel.onMessage("pusher_internal:member_removed", memberEvent("pusher_internal:member_removed", "1"));
+	channel.onMessage("pusher_internal:member_added", memberAddedWithRegion("2", "us"));
+	
+	assertTrue(presenceChannel.query("region", "eu").isEmpty());
+	assertEquals("2", presenceChannel.query("region", "us").iterator().next().getId());
+    }
+    
+    @Test
+    public void testIndexAddedAfterMembersArriveIncludesThem() {
+	PresenceChannelImpl presenceChannel = (PresenceChannelImpl) channel;
+	subscribeWithMembers();
+	channel.onMessage("pusher_internal:member_added", memberAddedWithRegion("1", "eu"));
+	
+	presenceChannel.addIndex("region");
+	
+	assertEquals(1, presenceChannel.query("region", "eu").size());
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testQueryWithoutAnIndexThrowsException() {
+	((PresenceChannelImpl) channel).query("region", "eu");
+    }
+    
     /* end of tests */
+    
+    private String memberAddedWithRegion(String userId, String region) {
+	return "{\"event\":\"pusher_internal:member_added\",\"data\":\"{\\\"user_id\\\":\\\"" + userId + "\\\",\\\"user_info\\\":{\\\"region\\\":\\\"" + region + "\\\"}}\",\"channel\":\"" + getChannelName() + "\"}";
+    }
+    
+    private static void runAndClear(List<Runnable> queued) {
+	List<Runnable> runnables = new ArrayList<Runnable>(queued);
+	queued.clear();
+	for (Runnable runnable : runnables) {
+	    runnable.run();
+	}
+    }
+    
+    private PresenceDelta captureDelta(PresenceDeltaListener listener, int expectedDeltas) {
+	ArgumentCaptor<PresenceDelta> captor = ArgumentCaptor.forClass(PresenceDelta.class);
+	verify(listener, times(expectedDeltas)).onPresenceDelta(eq(getChannelName()), captor.capture());
+	return captor.getValue();
+    }
+    
+    interface DeltaAwarePresenceChannelEventListener extends PresenceChannelEventListener, PresenceDeltaListener {
+    }
+    
+    private void subscribeWithMembers(String... ids) {
+	StringBuilder idList = new StringBuilder();
+	StringBuilder hash = new StringBuilder();
+	for (String id : ids) {
+	    if (idList.length() > 0) {
+		idList.append(",");
+		hash.append(",");
+	    }
+	    idList.append("\\\"").append(id).append("\\\"");
+	    hash.append("\\\"").append(id).append("\\\":{}");
+	}
+	channel.onMessage("pusher_internal:subscription_succeeded", "{\"event\":\"pusher_internal:subscription_succeeded\",\"data\":\"{\\\"presence\\\":{\\\"count\\\":" + ids.length + ",\\\"ids\\\":[" + idList + "],\\\"hash\\\":{" + hash + "}}}\",\"channel\":\"" + getChannelName() + "\"}");
+    }
+    
+    private String memberEvent(String eventName, String userId) {
+	return "{\"event\":\"" + eventName + "\",\"data\":\"{\\\"user_id\\\":\\\"" + userId + "\\\",\\\"user_info\\\":{}}\",\"channel\":\"" + getChannelName() + "\"}";
+    }
 
     @Override
     protected ChannelImpl newInstance(String channelName) {
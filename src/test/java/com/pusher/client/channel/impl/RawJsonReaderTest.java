@@ -0,0 +1,62 @@
+package com.pusher.client.channel.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.google.gson.JsonSyntaxException;
+
+public class RawJsonReaderTest {
+
+    @Test
+    public void testRawValuesAreReturnedExactlyAsWritten() {
+	RawJsonReader reader = new RawJsonReader("{\"a\": { \"b\" : [1, \"}\\\"\"] }, \"c\":null}");
+	
+	reader.beginObject();
+	assertTrue(reader.hasNextMember());
+	assertEquals("a", reader.nextName());
+	assertEquals("{ \"b\" : [1, \"}\\\"\"] }", reader.nextRawValue());
+	assertTrue(reader.hasNextMember());
+	assertEquals("c", reader.nextName());
+	assertNull(reader.nextRawValue());
+	assertFalse(reader.hasNextMember());
+    }
+
+    @Test
+    public void testStringsAreUnescaped() {
+	RawJsonReader reader = new RawJsonReader("[\"a\\\"b\\\\c\\n\\u00e9\", 42]");
+	
+	reader.beginArray();
+	assertTrue(reader.hasNextElement());
+	assertEquals("a\"b\\c\n\u00e9", reader.nextString());
+	assertTrue(reader.hasNextElement());
+	assertEquals("42", reader.nextString());
+	assertFalse(reader.hasNextElement());
+    }
+
+    @Test
+    public void testSkippedValuesAreSteppedOver() {
+	RawJsonReader reader = new RawJsonReader("{\"skip\":{\"x\":[{},[]]},\"keep\":\"yes\"}");
+	
+	reader.beginObject();
+	reader.hasNextMember();
+	reader.nextName();
+	reader.skipValue();
+	reader.hasNextMember();
+	assertEquals("keep", reader.nextName());
+	assertEquals("yes", reader.nextString());
+    }
+
+    @Test(expected=JsonSyntaxException.class)
+    public void testTruncatedInputThrowsJsonSyntaxException() {
+	RawJsonReader reader = new RawJsonReader("{\"a\":{\"b\":1");
+	
+	reader.beginObject();
+	reader.hasNextMember();
+	reader.nextName();
+	reader.skipValue();
+    }
+}
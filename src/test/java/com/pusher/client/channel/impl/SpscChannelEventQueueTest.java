@@ -0,0 +1,179 @@
+package com.pusher.client.channel.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import com.pusher.client.channel.ChannelEventQueue;
+import com.pusher.client.channel.ChannelState;
+import com.pusher.client.channel.Event;
+import com.pusher.client.util.Factory;
+import com.pusher.client.util.InstantExecutor;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({ Factory.class })
+public class SpscChannelEventQueueTest {
+
+	private ChannelImpl channel;
+
+	@Before
+	public void setUp() {
+		PowerMockito.mockStatic(Factory.class);
+		when(Factory.getEventQueue()).thenReturn(new InstantExecutor());
+
+		channel = new ChannelImpl("my-channel");
+	}
+
+	@Test
+	public void testEventsArePolledInOrder() {
+		ChannelEventQueue queue = channel.openEventQueue(8);
+		publish("a", 1);
+		publish("b", 2);
+
+		assertEquals(2, queue.size());
+		Event first = queue.poll();
+		assertEquals("my-channel", first.getChannelName());
+		assertEquals("a", first.getEventName());
+		assertEquals("{\"n\":\"1\"}", first.getData());
+		assertEquals("b", queue.poll().getEventName());
+		assertNull(queue.poll());
+	}
+
+	@Test
+	public void testOnlyTheNamedEventsAreCollected() {
+		ChannelEventQueue queue = channel.openEventQueue(8, "b");
+		publish("a", 1);
+		publish("b", 2);
+		channel.onMessage("pusher_internal:member_added", "{\"event\":\"pusher_internal:member_added\",\"data\":{}}");
+
+		assertEquals(1, queue.size());
+		assertEquals("b", queue.poll().getEventName());
+	}
+
+	@Test
+	public void testDrainToTakesUpToTheMaximumNumberOfEvents() {
+		ChannelEventQueue queue = channel.openEventQueue(8);
+		for (int i = 1; i <= 5; i++) {
+			publish("a", i);
+		}
+
+		List<Event> batch = new ArrayList<Event>();
+		assertEquals(3, queue.drainTo(batch, 3));
+		assertEquals("{\"n\":\"3\"}", batch.get(2).getData());
+
+		batch.clear();
+		assertEquals(2, queue.drainTo(batch));
+		assertEquals("{\"n\":\"4\"}", batch.get(0).getData());
+		assertEquals(0, queue.drainTo(batch));
+	}
+
+	@Test
+	public void testEventsThatArriveWhenTheQueueIsFullAreDropped() {
+		ChannelEventQueue queue = channel.openEventQueue(3);
+		assertEquals(4, queue.getCapacity());
+		for (int i = 1; i <= 6; i++) {
+			publish("a", i);
+		}
+
+		assertEquals(4, queue.size());
+		assertEquals(2, queue.getDroppedCount());
+		assertEquals("{\"n\":\"1\"}", queue.poll().getData());
+
+		publish("a", 7);
+		List<Event> batch = new ArrayList<Event>();
+		queue.drainTo(batch);
+		assertEquals("{\"n\":\"7\"}", batch.get(3).getData());
+	}
+
+	@Test
+	public void testTheRingWrapsAround() {
+		ChannelEventQueue queue = channel.openEventQueue(2);
+		for (int i = 1; i <= 10; i++) {
+			publish("a", i);
+			assertEquals("{\"n\":\"" + i + "\"}", queue.poll().getData());
+		}
+		assertEquals(0, queue.getDroppedCount());
+	}
+
+	@Test
+	public void testPollWithTimeoutWaitsForAnEventFromAnotherThread() throws InterruptedException {
+		ChannelEventQueue queue = channel.openEventQueue(8);
+		Thread producer = new Thread() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(50);
+				} catch (InterruptedException e) {
+					return;
+				}
+				publish("a", 1);
+			}
+		};
+		producer.start();
+
+		Event event = queue.poll(5, TimeUnit.SECONDS);
+		producer.join();
+		assertEquals("a", event.getEventName());
+	}
+
+	@Test
+	public void testPollWithTimeoutReturnsNullWhenNothingArrives() throws InterruptedException {
+		ChannelEventQueue queue = channel.openEventQueue(8);
+
+		assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void testCloseStopsCollectingButKeepsQueuedEvents() throws InterruptedException {
+		ChannelEventQueue queue = channel.openEventQueue(8);
+		publish("a", 1);
+		queue.close();
+		publish("a", 2);
+
+		assertTrue(queue.isClosed());
+		assertEquals("{\"n\":\"1\"}", queue.poll(5, TimeUnit.SECONDS).getData());
+		assertNull(queue.poll(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testUnsubscribingClosesTheQueue() {
+		ChannelEventQueue queue = channel.openEventQueue(8);
+		assertFalse(queue.isClosed());
+
+		channel.updateState(ChannelState.UNSUBSCRIBED);
+		assertTrue(queue.isClosed());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testOpenWithCapacityBelowOneThrowsException() {
+		channel.openEventQueue(0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testOpenWithInternalEventNameThrowsException() {
+		channel.openEventQueue(8, "pusher_internal:subscription_succeeded");
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testOpenOnUnsubscribedChannelThrowsException() {
+		channel.updateState(ChannelState.UNSUBSCRIBED);
+		channel.openEventQueue(8);
+	}
+
+	private void publish(String eventName, int n) {
+		channel.onMessage(eventName, "{\"event\":\"" + eventName + "\",\"data\":{\"n\":\"" + n + "\"}}");
+	}
+}
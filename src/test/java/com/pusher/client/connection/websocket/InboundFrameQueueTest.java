@@ -0,0 +1,291 @@
+package com.pusher.client.connection.websocket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import com.pusher.client.connection.InboundOverflowPolicy;
+import com.pusher.client.connection.InboundQueueStats;
+import com.pusher.client.metrics.InMemoryMetrics;
+import com.pusher.client.util.Factory;
+import com.pusher.client.util.FrameTiming;
+import com.pusher.client.util.InstantExecutor;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({ Factory.class })
+public class InboundFrameQueueTest {
+
+	private static final String CONNECTION_ESTABLISHED = "{\"event\":\"pusher:connection_established\",\"data\":\"{\\\"socket_id\\\":\\\"1.2\\\"}\"}";
+	private static final String SUBSCRIPTION_SUCCEEDED = "{\"event\":\"pusher_internal:subscription_succeeded\",\"data\":\"{}\",\"channel\":\"my-channel\"}";
+
+	private final List<Runnable> queued = Collections.synchronizedList(new ArrayList<Runnable>());
+	private @Mock InboundFrameQueue.FrameHandler mockHandler;
+
+	@Before
+	public void setUp() {
+		PowerMockito.mockStatic(Factory.class);
+		when(Factory.getEventQueue()).thenReturn(new InstantExecutor() {
+			@Override
+			public void execute(Runnable command) {
+				queued.add(command);
+			}
+		});
+	}
+
+	@Test
+	public void testFramesAreHandledInOrderByASingleTask() {
+		InboundFrameQueue queue = new InboundFrameQueue(0, 0, InboundOverflowPolicy.BLOCK, mockHandler);
+		queue.offer("one");
+		queue.offer("two");
+		queue.offer("three");
+
+		assertEquals(1, queued.size());
+		runQueued();
+
+		InOrder inOrder = inOrder(mockHandler);
+		inOrder.verify(mockHandler).onFrame("one");
+		inOrder.verify(mockHandler).onFrame("two");
+		inOrder.verify(mockHandler).onFrame("three");
+		assertEquals(0, queue.getStats().getDepth());
+		assertEquals(3, queue.getStats().getHighWaterMark());
+	}
+
+	@Test
+	public void testQueueDepthAndWaitAreReportedToMetrics() {
+		InMemoryMetrics metrics = new InMemoryMetrics();
+		InboundFrameQueue queue = new InboundFrameQueue(2, 0, InboundOverflowPolicy.DROP_OLDEST, mockHandler, metrics);
+		queue.offer("one");
+		queue.offer("two");
+		queue.offer("three");
+		runQueued();
+
+		assertEquals(3, metrics.getQueueDepth().getCount());
+		assertEquals(2, metrics.getQueueDepth().getMax());
+		// the dropped frame is not counted as having been waited for
+		assertEquals(2, metrics.getQueueWait().getCount());
+	}
+
+	@Test
+	public void testAFrameThatCannotBeHandledIsReportedAndTheFramesAfterItAreStillHandled() {
+		RuntimeException e = new RuntimeException("malformed");
+		doThrow(e).when(mockHandler).onFrame("bad");
+		InboundFrameQueue queue = new InboundFrameQueue(0, 0, InboundOverflowPolicy.BLOCK, mockHandler);
+		queue.offer("bad");
+		queue.offer("good");
+		runQueued();
+
+		verify(mockHandler).onError("bad", e);
+		verify(mockHandler).onFrame("good");
+
+		// the drain is no longer scheduled once the queue is empty, so the next frame schedules it again
+		queue.offer("later");
+		assertEquals(1, queued.size());
+		runQueued();
+		verify(mockHandler).onFrame("later");
+	}
+
+	@Test
+	public void testFramesAreTimedFromArrivalWhileTheyAreHandled() {
+		final List<FrameTiming> timings = new ArrayList<FrameTiming>();
+		InboundFrameQueue queue = new InboundFrameQueue(0, 0, InboundOverflowPolicy.BLOCK, new InboundFrameQueue.FrameHandler() {
+			@Override
+			public void onFrame(String frame) {
+				timings.add(FrameTiming.current());
+			}
+
+			@Override
+			public void onError(String frame, RuntimeException e) {
+			}
+
+			@Override
+			public void onOverflow() {
+			}
+		}, new InMemoryMetrics());
+		long receivedAt = System.nanoTime();
+		queue.offer("one", receivedAt);
+		runQueued();
+
+		assertEquals(1, timings.size());
+		assertEquals(receivedAt, timings.get(0).getReceivedAt());
+		assertTrue(timings.get(0).getDequeuedAt() >= receivedAt);
+		// the timing stops with the frame
+		assertNull(FrameTiming.current());
+	}
+
+	@Test
+	public void testFramesAreNotTimedWithoutMetrics() {
+		final List<FrameTiming> timings = new ArrayList<FrameTiming>();
+		InboundFrameQueue queue = new InboundFrameQueue(0, 0, InboundOverflowPolicy.BLOCK, new InboundFrameQueue.FrameHandler() {
+			@Override
+			public void onFrame(String frame) {
+				timings.add(FrameTiming.current());
+			}
+
+			@Override
+			public void onError(String frame, RuntimeException e) {
+			}
+
+			@Override
+			public void onOverflow() {
+			}
+		});
+		queue.offer("one");
+		runQueued();
+
+		assertNull(timings.get(0));
+	}
+
+	@Test
+	public void testDrainYieldsToOtherTasksAfterABatch() {
+		InboundFrameQueue queue = new InboundFrameQueue(0, 0, InboundOverflowPolicy.BLOCK, mockHandler);
+		for (int i = 0; i < InboundFrameQueue.DRAIN_BATCH_SIZE + 1; i++) {
+			queue.offer("frame-" + i);
+		}
+
+		queued.remove(0).run();
+
+		assertEquals(1, queued.size());
+		assertEquals(1, queue.getStats().getDepth());
+		verify(mockHandler, never()).onFrame("frame-" + InboundFrameQueue.DRAIN_BATCH_SIZE);
+	}
+
+	@Test
+	public void testDropOldestDiscardsTheOldestQueuedFrames() {
+		InboundFrameQueue queue = new InboundFrameQueue(2, 0, InboundOverflowPolicy.DROP_OLDEST, mockHandler);
+		queue.offer("one");
+		queue.offer("two");
+		queue.offer("three");
+		runQueued();
+
+		verify(mockHandler, never()).onFrame("one");
+		verify(mockHandler).onFrame("two");
+		verify(mockHandler).onFrame("three");
+		assertEquals(1, queue.getStats().getDroppedOldest());
+	}
+
+	@Test
+	public void testDropNewestDiscardsTheNewFrame() {
+		InboundFrameQueue queue = new InboundFrameQueue(2, 0, InboundOverflowPolicy.DROP_NEWEST, mockHandler);
+		queue.offer("one");
+		queue.offer("two");
+		queue.offer("three");
+		runQueued();
+
+		verify(mockHandler).onFrame("one");
+		verify(mockHandler).onFrame("two");
+		verify(mockHandler, never()).onFrame("three");
+		assertEquals(1, queue.getStats().getDroppedNewest());
+	}
+
+	@Test
+	public void testQueueIsLimitedBySize() {
+		InboundFrameQueue queue = new InboundFrameQueue(0, 200, InboundOverflowPolicy.DROP_NEWEST, mockHandler);
+		queue.offer("one");
+		queue.offer("two");
+
+		InboundQueueStats stats = queue.getStats();
+		assertEquals(1, stats.getDepth());
+		assertEquals(1, stats.getDroppedNewest());
+	}
+
+	@Test
+	public void testDisconnectPolicyReportsTheOverflow() {
+		InboundFrameQueue queue = new InboundFrameQueue(1, 0, InboundOverflowPolicy.DISCONNECT, mockHandler);
+		queue.offer("one");
+		queue.offer("two");
+
+		verify(mockHandler).onOverflow();
+		assertEquals(1, queue.getStats().getOverflowDisconnects());
+		runQueued();
+		verify(mockHandler).onFrame("one");
+		verify(mockHandler, never()).onFrame("two");
+	}
+
+	@Test
+	public void testControlFramesAreQueuedPastTheLimit() {
+		InboundFrameQueue queue = new InboundFrameQueue(1, 0, InboundOverflowPolicy.DISCONNECT, mockHandler);
+		queue.offer("one");
+		queue.offer(SUBSCRIPTION_SUCCEEDED);
+		runQueued();
+
+		verify(mockHandler, never()).onOverflow();
+		InOrder inOrder = inOrder(mockHandler);
+		inOrder.verify(mockHandler).onFrame("one");
+		inOrder.verify(mockHandler).onFrame(SUBSCRIPTION_SUCCEEDED);
+	}
+
+	@Test
+	public void testDropOldestKeepsQueuedControlFrames() {
+		InboundFrameQueue queue = new InboundFrameQueue(2, 0, InboundOverflowPolicy.DROP_OLDEST, mockHandler, new InMemoryMetrics());
+		queue.offer(CONNECTION_ESTABLISHED);
+		queue.offer("one");
+		queue.offer("two");
+		runQueued();
+
+		InOrder inOrder = inOrder(mockHandler);
+		inOrder.verify(mockHandler).onFrame(CONNECTION_ESTABLISHED);
+		inOrder.verify(mockHandler).onFrame("two");
+		verify(mockHandler, never()).onFrame("one");
+		assertEquals(1, queue.getStats().getDroppedOldest());
+	}
+
+	@Test
+	public void testControlFramesAreRecognisedWithoutParsing() {
+		assertTrue(InboundFrameQueue.isControlFrame(CONNECTION_ESTABLISHED));
+		assertTrue(InboundFrameQueue.isControlFrame("{ \"event\" : \"pusher:error\", \"data\":{}}"));
+		assertTrue(InboundFrameQueue.isControlFrame(SUBSCRIPTION_SUCCEEDED));
+		assertFalse(InboundFrameQueue.isControlFrame("{\"event\":\"pusher:errors\",\"data\":\"{}\"}"));
+		assertFalse(InboundFrameQueue.isControlFrame("{\"event\":\"my-event\",\"data\":\"{\\\"event\\\":\\\"pusher:error\\\"}\"}"));
+	}
+
+	@Test
+	public void testBlockPolicyMakesTheReaderWaitForRoom() throws InterruptedException {
+		final InboundFrameQueue queue = new InboundFrameQueue(1, 0, InboundOverflowPolicy.BLOCK, mockHandler);
+		queue.offer("one");
+
+		Thread reader = new Thread() {
+			@Override
+			public void run() {
+				queue.offer("two");
+			}
+		};
+		reader.start();
+		while (queue.getStats().getBlockedCount() == 0) {
+			Thread.sleep(1);
+		}
+		assertEquals(Thread.State.WAITING, reader.getState());
+
+		runQueued();
+		reader.join(5000);
+		runQueued();
+
+		InOrder inOrder = inOrder(mockHandler);
+		inOrder.verify(mockHandler).onFrame("one");
+		inOrder.verify(mockHandler).onFrame("two");
+	}
+
+	private void runQueued() {
+		while (!queued.isEmpty()) {
+			queued.remove(0).run();
+		}
+	}
+}
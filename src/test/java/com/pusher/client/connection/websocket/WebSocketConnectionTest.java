@@ -4,16 +4,25 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.File;
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 import javax.net.ssl.SSLException;
 
@@ -21,16 +30,21 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import com.google.gson.JsonSyntaxException;
+import com.pusher.client.PusherOptions;
 import com.pusher.client.channel.impl.ChannelManager;
 import com.pusher.client.connection.ConnectionEventListener;
 import com.pusher.client.connection.ConnectionState;
 import com.pusher.client.connection.ConnectionStateChange;
 import com.pusher.client.connection.impl.InternalConnection;
+import com.pusher.client.journal.JournalWriter;
+import com.pusher.client.metrics.PusherMetrics;
 import com.pusher.client.util.Factory;
 import com.pusher.client.util.InstantExecutor;
 
@@ -66,6 +80,60 @@ public class WebSocketConnectionTest {
 		this.connection.bind(ConnectionState.ALL, mockEventListener);
 	}
 
+	@Test
+	public void testConnectWithJournalReplayUsesTheReplayClient() throws Exception {
+		File directory = new File("journal");
+		when(Factory.newJournalReplayClient(any(URI.class), any(WebSocketConnection.class), eq(directory), eq(true)))
+				.thenReturn(mockUnderlyingConnection);
+		WebSocketConnection replayConnection = new WebSocketConnection(API_KEY, new PusherOptions().setJournalReplay(directory, true));
+
+		replayConnection.connect();
+
+		verify(mockUnderlyingConnection).connect();
+	}
+
+	@Test
+	public void testReceivedFramesAreRecordedToTheJournal() throws Exception {
+		JournalWriter mockJournal = mock(JournalWriter.class);
+		when(Factory.newJournalWriter(any(File.class), anyInt())).thenReturn(mockJournal);
+		WebSocketConnection recordingConnection = new WebSocketConnection(API_KEY, new PusherOptions().setJournalRecording(new File("journal")));
+
+		recordingConnection.connect();
+		recordingConnection.onMessage(INCOMING_MESSAGE);
+
+		verify(mockJournal).append(anyLong(), anyLong(), eq(INCOMING_MESSAGE));
+	}
+
+	@Test
+	public void testJournalIsClosedWhenTheConnectionCloses() throws Exception {
+		JournalWriter mockJournal = mock(JournalWriter.class);
+		when(Factory.newJournalWriter(any(File.class), anyInt())).thenReturn(mockJournal);
+		WebSocketConnection recordingConnection = new WebSocketConnection(API_KEY, new PusherOptions().setJournalRecording(new File("journal")));
+
+		recordingConnection.connect();
+		recordingConnection.onClose(1000, "reason", false);
+		recordingConnection.onMessage(INCOMING_MESSAGE);
+
+		verify(mockJournal).close();
+		verify(mockJournal, never()).append(anyLong(), anyLong(), anyString());
+	}
+
+	@Test
+	public void testJournalWriteFailureStopsRecordingAndReportsAnError() throws Exception {
+		JournalWriter mockJournal = mock(JournalWriter.class);
+		doThrow(new IOException("disk full")).when(mockJournal).append(anyLong(), anyLong(), anyString());
+		when(Factory.newJournalWriter(any(File.class), anyInt())).thenReturn(mockJournal);
+		WebSocketConnection recordingConnection = new WebSocketConnection(API_KEY, new PusherOptions().setJournalRecording(new File("journal")));
+		recordingConnection.bind(ConnectionState.ALL, mockEventListener);
+
+		recordingConnection.connect();
+		recordingConnection.onMessage(INCOMING_MESSAGE);
+		recordingConnection.onMessage(INCOMING_MESSAGE);
+
+		verify(mockJournal, times(1)).append(anyLong(), anyLong(), eq(INCOMING_MESSAGE));
+		verify(mockEventListener).onError(eq("Unable to write to journal, recording has stopped"), any(String.class), any(IOException.class));
+	}
+
 	@Test
 	public void testUnbindingWhenNotAlreadyBoundReturnsFalse()
 			throws URISyntaxException {
@@ -137,6 +205,15 @@ public class WebSocketConnectionTest {
 		assertEquals(ConnectionState.CONNECTING, connection.getState());
 	}
 
+	@Test
+	public void testStateChangesAreReportedToMetrics() throws URISyntaxException {
+		PusherMetrics mockMetrics = mock(PusherMetrics.class);
+		WebSocketConnection measuredConnection = new WebSocketConnection(API_KEY, new PusherOptions().setMetrics(mockMetrics));
+		measuredConnection.connect();
+
+		verify(mockMetrics).connectionStateChanged(ConnectionState.DISCONNECTED, ConnectionState.CONNECTING);
+	}
+
 	@Test
 	public void testConnectDoesNotCallConnectOnUnderlyingConnectionIfAlreadyInConnectingState() {
 		connection.connect();
@@ -198,6 +275,20 @@ public class WebSocketConnectionTest {
 				"4001", null);
 	}
 
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testAMalformedFrameRaisesAnErrorEventAndLaterFramesAreStillHandled() {
+		connect();
+
+		connection.onMessage("{\"event\":");
+		verify(mockEventListener).onError(eq("An exception occurred while handling message [{\"event\":]"),
+				any(String.class), any(JsonSyntaxException.class));
+
+		connection.onMessage("{\"channel\":\"my-channel\"}");
+		connection.onMessage(INCOMING_MESSAGE);
+		verify(mockChannelManager).onMessage(eq(connection), eq(EVENT_NAME), eq(INCOMING_MESSAGE), any(Map.class));
+	}
+
 	@Test
 	public void testSendMessageSendsMessageToPusher() {
 		connect();
@@ -231,12 +322,57 @@ public class WebSocketConnectionTest {
 	}
 
 	@Test
+	@SuppressWarnings("unchecked")
 	public void testReceiveUserMessagePassesMessageToChannelManager() {
 		connect();
 
 		connection.onMessage(INCOMING_MESSAGE);
 
-		verify(mockChannelManager).onMessage(EVENT_NAME, INCOMING_MESSAGE);
+		verify(mockChannelManager).onMessage(eq(connection), eq(EVENT_NAME), eq(INCOMING_MESSAGE), any(Map.class));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testInlineDispatchPassesChannelEventsToChannelManagerWithoutTheEventQueue() throws URISyntaxException {
+		List<Runnable> queued = queueEvents();
+		WebSocketConnection inlineConnection = new WebSocketConnection(API_KEY, new PusherOptions().setInlineDispatch(true));
+
+		inlineConnection.onMessage(INCOMING_MESSAGE);
+
+		verify(mockChannelManager).onMessage(eq(inlineConnection), eq(EVENT_NAME), eq(INCOMING_MESSAGE), any(Map.class));
+		assertEquals(0, queued.size());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testInlineDispatchPassesChannelInternalEventsInlineSoTheyStayInOrderWithChannelEvents() throws URISyntaxException {
+		List<Runnable> queued = queueEvents();
+		WebSocketConnection inlineConnection = new WebSocketConnection(API_KEY, new PusherOptions().setInlineDispatch(true));
+		String subscriptionSucceeded = "{\"event\":\"pusher_internal:subscription_succeeded\",\"channel\":\"my-channel\",\"data\":{}}";
+
+		inlineConnection.onMessage(subscriptionSucceeded);
+		inlineConnection.onMessage(INCOMING_MESSAGE);
+
+		InOrder inOrder = inOrder(mockChannelManager);
+		inOrder.verify(mockChannelManager).onMessage(eq(inlineConnection), eq("pusher_internal:subscription_succeeded"),
+				eq(subscriptionSucceeded), any(Map.class));
+		inOrder.verify(mockChannelManager).onMessage(eq(inlineConnection), eq(EVENT_NAME), eq(INCOMING_MESSAGE), any(Map.class));
+		assertEquals(0, queued.size());
+	}
+
+	@Test
+	public void testInlineDispatchStillQueuesConnectionEvents() throws URISyntaxException {
+		WebSocketConnection inlineConnection = new WebSocketConnection(API_KEY, new PusherOptions().setInlineDispatch(true));
+		inlineConnection.connect();
+		List<Runnable> queued = queueEvents();
+
+		inlineConnection.onMessage("{\"event\":\"pusher:connection_established\",\"data\":\"{\\\"socket_id\\\":\\\"21112.816204\\\"}\"}");
+		assertEquals(ConnectionState.CONNECTING, inlineConnection.getState());
+
+		assertEquals(1, queued.size());
+		queued.get(0).run();
+		assertEquals(ConnectionState.CONNECTED, inlineConnection.getState());
+		assertEquals("21112.816204", inlineConnection.getSocketId());
 	}
 
 	@Test
@@ -340,4 +476,15 @@ public class WebSocketConnectionTest {
 		connection
 				.onMessage("{\"event\":\"pusher:connection_established\",\"data\":\"{\\\"socket_id\\\":\\\"21112.816204\\\"}\"}");
 	}
-}
\ No newline at end of file
+
+	private List<Runnable> queueEvents() {
+		final List<Runnable> queued = new ArrayList<Runnable>();
+		when(Factory.getEventQueue()).thenReturn(new InstantExecutor() {
+			@Override
+			public void execute(Runnable command) {
+				queued.add(command);
+			}
+		});
+		return queued;
+	}
+}
@@ -6,6 +6,7 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.*;
 
 import java.net.URI;
+import java.util.concurrent.ScheduledExecutorService;
 
 import org.java_websocket.handshake.ServerHandshake;
 import org.junit.After;
@@ -59,6 +60,7 @@ public class EndToEndTest {
 		connection = new WebSocketConnection(API_KEY, false);
 		
 		when(Factory.getEventQueue()).thenReturn(new InstantExecutor());
+		when(Factory.getScheduler()).thenReturn(mock(ScheduledExecutorService.class));
 		when(Factory.newWebSocketClientWrapper(any(URI.class), any(WebSocketListener.class))).thenAnswer(new Answer<WebSocketClientWrapper>() {
 
 			@Override
@@ -70,7 +72,7 @@ public class EndToEndTest {
 			}
 		});
 		
-		when(Factory.getConnection(API_KEY, false)).thenReturn(connection);
+		when(Factory.getConnection(eq(API_KEY), any(PusherOptions.class))).thenReturn(connection);
 		
 		when(Factory.getChannelManager()).thenAnswer(new Answer<ChannelManager>() {
 			public ChannelManager answer(InvocationOnMock invocation) throws Throwable {
@@ -0,0 +1,112 @@
+package com.pusher.client.journal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JournalWriterTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+	directory = File.createTempFile("pusher-journal", "");
+	directory.delete();
+    }
+
+    @After
+    public void tearDown() {
+	File[] files = directory.listFiles();
+	if (files != null) {
+	    for (File file : files) {
+		file.delete();
+	    }
+	}
+	directory.delete();
+    }
+
+    @Test
+    public void testRecordsAreReadBackInTheOrderTheyWereWritten() throws IOException {
+	JournalWriter writer = new JournalWriter(directory, 4096);
+	writer.append(1000, 5, "{\"event\":\"first\"}");
+	writer.append(2000, 6, "{\"event\":\"second\"}");
+	writer.close();
+	
+	JournalReader reader = new JournalReader(directory);
+	JournalRecord first = reader.next();
+	assertEquals("{\"event\":\"first\"}", first.getFrame());
+	assertEquals(1000, first.getTimestamp());
+	assertEquals(5, first.getNanoTime());
+	assertEquals("{\"event\":\"second\"}", reader.next().getFrame());
+	assertNull(reader.next());
+    }
+
+    @Test
+    public void testANewSegmentIsStartedWhenTheCurrentOneIsFull() throws IOException {
+	JournalWriter writer = new JournalWriter(directory, 64);
+	for (int i = 0; i < 10; i++) {
+	    writer.append(i, i, "frame-" + i);
+	}
+	writer.close();
+	
+	assertTrue(directory.list().length > 1);
+	JournalReader reader = new JournalReader(directory);
+	for (int i = 0; i < 10; i++) {
+	    assertEquals("frame-" + i, reader.next().getFrame());
+	}
+	assertNull(reader.next());
+    }
+
+    @Test
+    public void testASegmentGrowsAsRecordsAreAppended() throws IOException {
+	JournalWriter writer = new JournalWriter(directory, 1024 * 1024);
+	writer.append(1, 1, "small");
+	assertEquals(JournalWriter.INITIAL_MAPPING_SIZE, directory.listFiles()[0].length());
+	
+	char[] padding = new char[1000];
+	Arrays.fill(padding, 'x');
+	for (int i = 0; i < 100; i++) {
+	    writer.append(i, i, i + new String(padding));
+	}
+	writer.close();
+	
+	assertEquals(1, directory.list().length);
+	assertTrue(directory.listFiles()[0].length() > JournalWriter.INITIAL_MAPPING_SIZE);
+	JournalReader reader = new JournalReader(directory);
+	assertEquals("small", reader.next().getFrame());
+	for (int i = 0; i < 100; i++) {
+	    assertEquals(i + new String(padding), reader.next().getFrame());
+	}
+	assertNull(reader.next());
+    }
+    
+    @Test
+    public void testANewWriterAppendsAfterAnExistingJournal() throws IOException {
+	JournalWriter writer = new JournalWriter(directory, 4096);
+	writer.append(1, 1, "before");
+	writer.close();
+	
+	writer = new JournalWriter(directory, 4096);
+	writer.append(2, 2, "after");
+	writer.close();
+	
+	JournalReader reader = new JournalReader(directory);
+	assertEquals("before", reader.next().getFrame());
+	assertEquals("after", reader.next().getFrame());
+	assertNull(reader.next());
+    }
+
+    @Test(expected=IOException.class)
+    public void testAFrameLargerThanASegmentCannotBeAppended() throws IOException {
+	JournalWriter writer = new JournalWriter(directory, 32);
+	writer.append(1, 1, "a frame that is much too large for the segment");
+    }
+}
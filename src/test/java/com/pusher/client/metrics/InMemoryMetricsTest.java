@@ -0,0 +1,128 @@
+package com.pusher.client.metrics;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+public class InMemoryMetricsTest {
+
+	@Test
+	public void testCountersAddUp() {
+		InMemoryMetrics metrics = new InMemoryMetrics();
+		metrics.frameReceived(100);
+		metrics.frameReceived(50);
+		metrics.frameSent(20);
+		metrics.routingMissed();
+		metrics.reconnected();
+		metrics.authorized("private-a", 1000, true);
+		metrics.authorized("private-b", 2000, false);
+
+		assertEquals(2, metrics.getFramesReceived());
+		assertEquals(150, metrics.getBytesReceived());
+		assertEquals(1, metrics.getFramesSent());
+		assertEquals(20, metrics.getBytesSent());
+		assertEquals(1, metrics.getRoutingMisses());
+		assertEquals(1, metrics.getReconnects());
+		assertEquals(1, metrics.getAuthorizationFailures());
+		assertEquals(2, metrics.getAuthorizationTime().getCount());
+		assertEquals(0, metrics.getSubscriptionTime().getCount());
+	}
+
+	@Test
+	public void testTimingsAreRecordedInTheirHistograms() {
+		InMemoryMetrics metrics = new InMemoryMetrics();
+		metrics.frameParsed(10);
+		metrics.frameQueued(3);
+		metrics.frameDequeued(500);
+		metrics.listenerInvoked("a", "x", 7);
+		metrics.listenerInvoked("a", "y", 9);
+		metrics.subscribed("a", 300);
+
+		assertEquals(10, metrics.getParseTime().getMax());
+		assertEquals(3, metrics.getQueueDepth().getMax());
+		assertEquals(1, metrics.getQueueWait().getCount());
+		assertEquals(2, metrics.getListenerTime().getCount());
+		assertEquals(300, metrics.getSubscriptionTime().getMax());
+	}
+
+	@Test
+	public void testEventLatencyIsKeptByStageForEachChannelAndEvent() {
+		InMemoryMetrics metrics = new InMemoryMetrics();
+		metrics.eventDelivered("a", "x", 100, 20, 30, 40, 10);
+		metrics.eventDelivered("a", "y", 200, 20, 30, 40, 10);
+		metrics.eventDelivered("b", "x", 300, 20, 30, 40, 10);
+
+		assertEquals(3, metrics.getLatency().getCount());
+		assertEquals(300, metrics.getLatency().get(LatencyStage.RECEIVE).getMax());
+		assertEquals(400, metrics.getLatency().get(LatencyStage.TOTAL).getMax());
+		assertEquals(2, metrics.getChannelLatency("a").getCount());
+		assertEquals(200, metrics.getChannelLatency("a").get(LatencyStage.RECEIVE).getMax());
+		assertEquals(2, metrics.getEventLatency("x").getCount());
+		assertEquals(300, metrics.getEventLatency("x").get(LatencyStage.RECEIVE).getMax());
+		assertEquals(EventLatency.EMPTY, metrics.getChannelLatency("c"));
+		assertEquals(new TreeSet<String>(Arrays.asList("a", "b")), metrics.getLatencyChannelNames());
+	}
+
+	@Test
+	public void testEventLatencyBeyondTheTrackedNamesIsKeptTogether() {
+		InMemoryMetrics metrics = new InMemoryMetrics(1);
+		metrics.eventDelivered("a", "x", 1, 1, 1, 1, 1);
+		metrics.eventDelivered("b", "y", 1, 1, 1, 1, 1);
+		metrics.eventDelivered("c", "x", 1, 1, 1, 1, 1);
+
+		assertEquals(1, metrics.getChannelLatency("a").getCount());
+		assertEquals(2, metrics.getChannelLatency(InMemoryMetrics.OTHER).getCount());
+		assertEquals(2, metrics.getEventLatency("x").getCount());
+		assertEquals(1, metrics.getEventLatency(InMemoryMetrics.OTHER).getCount());
+	}
+
+	@Test
+	public void testEventLatencyOfChannelsMergesToTheWhole() {
+		InMemoryMetrics metrics = new InMemoryMetrics();
+		metrics.eventDelivered("a", "x", 100, 1, 1, 1, 1);
+		metrics.eventDelivered("b", "x", 5000, 1, 1, 1, 1);
+
+		EventLatency merged = metrics.getChannelLatency("a").merge(metrics.getChannelLatency("b"));
+		assertEquals(2, merged.getCount());
+		assertEquals(metrics.getLatency().get(LatencyStage.TOTAL).getValueAtPercentile(50),
+				merged.get(LatencyStage.TOTAL).getValueAtPercentile(50));
+		assertEquals(5004, merged.get(LatencyStage.TOTAL).getMax());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeNumberOfTrackedNamesThrowsException() {
+		new InMemoryMetrics(-1);
+	}
+
+	@Test
+	public void testCountersAreExactUnderConcurrentUpdates() throws InterruptedException {
+		final InMemoryMetrics metrics = new InMemoryMetrics();
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < 8; t++) {
+			threads.add(new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 10000; i++) {
+						metrics.frameReceived(2);
+						metrics.listenerInvoked("a", "x", i);
+					}
+				}
+			});
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(80000, metrics.getFramesReceived());
+		assertEquals(160000, metrics.getBytesReceived());
+		assertEquals(80000, metrics.getListenerTime().getCount());
+	}
+}
@@ -0,0 +1,93 @@
+package com.pusher.client.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+	@Test
+	public void testSmallValuesAreExact() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 0; i < 10; i++) {
+			histogram.record(i);
+		}
+
+		HistogramSnapshot snapshot = histogram.snapshot();
+		assertEquals(10, snapshot.getCount());
+		assertEquals(4, snapshot.getValueAtPercentile(50));
+		assertEquals(9, snapshot.getValueAtPercentile(100));
+		assertEquals(0, snapshot.getValueAtPercentile(0));
+	}
+
+	@Test
+	public void testLargeValuesAreWithinTheBucketPrecision() {
+		long[] values = { 17, 1000, 123456, 987654321L, Long.MAX_VALUE / 3 };
+		for (long value : values) {
+			int bucket = LatencyHistogram.bucketOf(value);
+			long upper = LatencyHistogram.upperBoundOf(bucket);
+			assertTrue(upper >= value);
+			assertTrue(upper - value <= value / LatencyHistogram.SUB_BUCKETS);
+			assertEquals(bucket, LatencyHistogram.bucketOf(upper));
+			assertEquals(bucket + 1, LatencyHistogram.bucketOf(upper + 1));
+		}
+		assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+	}
+
+	@Test
+	public void testPercentilesOfAUniformSpread() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(i * 1000L);
+		}
+
+		HistogramSnapshot snapshot = histogram.snapshot();
+		assertWithin(500000, snapshot.getValueAtPercentile(50));
+		assertWithin(990000, snapshot.getValueAtPercentile(99));
+		assertWithin(999000, snapshot.getValueAtPercentile(99.9));
+		assertEquals(1000000, snapshot.getMax());
+		assertEquals(1000000, snapshot.getValueAtPercentile(100));
+	}
+
+	@Test
+	public void testSnapshotsMerge() {
+		LatencyHistogram fast = new LatencyHistogram();
+		LatencyHistogram slow = new LatencyHistogram();
+		for (int i = 0; i < 99; i++) {
+			fast.record(100);
+		}
+		slow.record(1000000);
+
+		HistogramSnapshot merged = fast.snapshot().merge(slow.snapshot());
+		assertEquals(100, merged.getCount());
+		assertWithin(100, merged.getValueAtPercentile(99));
+		assertEquals(1000000, merged.getValueAtPercentile(99.9));
+		assertEquals(1000000, merged.getMax());
+	}
+
+	@Test
+	public void testNegativeValuesAreRecordedAsZero() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(-5);
+
+		assertEquals(1, histogram.snapshot().getCount());
+		assertEquals(0, histogram.snapshot().getValueAtPercentile(100));
+	}
+
+	@Test
+	public void testEmptySnapshot() {
+		assertEquals(0, HistogramSnapshot.EMPTY.getCount());
+		assertEquals(0, HistogramSnapshot.EMPTY.getValueAtPercentile(99));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPercentileAboveOneHundredThrowsException() {
+		HistogramSnapshot.EMPTY.getValueAtPercentile(100.1);
+	}
+
+	private static void assertWithin(long expected, long actual) {
+		assertTrue("expected about " + expected + " but was " + actual,
+				actual >= expected && actual - expected <= expected / LatencyHistogram.SUB_BUCKETS);
+	}
+}
@@ -0,0 +1,251 @@
+package com.pusher.client.reactive;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import com.pusher.client.channel.Channel;
+import com.pusher.client.channel.ChannelState;
+import com.pusher.client.channel.Event;
+import com.pusher.client.channel.impl.ChannelImpl;
+import com.pusher.client.util.Factory;
+import com.pusher.client.util.InstantExecutor;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({ Factory.class })
+public class ChannelPublisherTest {
+
+	private static final String CHANNEL_NAME = "my-channel";
+
+	private ChannelImpl channel;
+	private RecordingSubscriber subscriber;
+
+	@Before
+	public void setUp() {
+		PowerMockito.mockStatic(Factory.class);
+		when(Factory.getEventQueue()).thenReturn(new InstantExecutor());
+
+		channel = new ChannelImpl(CHANNEL_NAME);
+		subscriber = new RecordingSubscriber();
+	}
+
+	@Test
+	public void testEventsAreBufferedUntilTheyAreRequested() {
+		new ChannelPublisher(channel).subscribe(subscriber);
+		publish("a", 1);
+		publish("b", 2);
+		publish("a", 3);
+		assertEquals(0, subscriber.events.size());
+
+		subscriber.subscription.request(2);
+		assertEquals(2, subscriber.events.size());
+		assertEquals("{\"n\":\"1\"}", subscriber.events.get(0).getData());
+		assertEquals("b", subscriber.events.get(1).getEventName());
+		assertEquals(CHANNEL_NAME, subscriber.events.get(1).getChannelName());
+
+		publish("b", 4);
+		subscriber.subscription.request(1);
+		assertEquals(3, subscriber.events.size());
+		assertEquals("{\"n\":\"3\"}", subscriber.events.get(2).getData());
+
+		subscriber.subscription.request(5);
+		assertEquals(4, subscriber.events.size());
+		publish("a", 5);
+		assertEquals(5, subscriber.events.size());
+	}
+
+	@Test
+	public void testOnlyTheNamedEventsArePublished() {
+		new ChannelPublisher(channel, new PublisherOptions().setEventNames("b")).subscribe(subscriber);
+		subscriber.subscription.request(Long.MAX_VALUE);
+		publish("a", 1);
+		publish("b", 2);
+		publish("c", 3);
+
+		assertEquals(1, subscriber.events.size());
+		assertEquals("b", subscriber.events.get(0).getEventName());
+	}
+
+	@Test
+	public void testInternalEventsAreNotPublished() {
+		new ChannelPublisher(channel).subscribe(subscriber);
+		subscriber.subscription.request(Long.MAX_VALUE);
+		channel.onMessage("pusher_internal:member_added", "{\"event\":\"pusher_internal:member_added\",\"data\":{}}");
+
+		assertEquals(0, subscriber.events.size());
+	}
+
+	@Test
+	public void testDropOldestKeepsTheNewestEventsInTheBuffer() {
+		new ChannelPublisher(channel, new PublisherOptions().setBufferSize(2).setOverflowStrategy(OverflowStrategy.DROP_OLDEST)).subscribe(subscriber);
+		for (int i = 1; i <= 5; i++) {
+			publish("a", i);
+		}
+		subscriber.subscription.request(10);
+
+		assertEquals(2, subscriber.events.size());
+		assertEquals("{\"n\":\"4\"}", subscriber.events.get(0).getData());
+		assertEquals("{\"n\":\"5\"}", subscriber.events.get(1).getData());
+		assertNull(subscriber.error);
+	}
+
+	@Test
+	public void testDropNewestKeepsTheOldestEventsInTheBuffer() {
+		new ChannelPublisher(channel, new PublisherOptions().setBufferSize(2).setOverflowStrategy(OverflowStrategy.DROP_NEWEST)).subscribe(subscriber);
+		for (int i = 1; i <= 5; i++) {
+			publish("a", i);
+		}
+		subscriber.subscription.request(10);
+
+		assertEquals(2, subscriber.events.size());
+		assertEquals("{\"n\":\"1\"}", subscriber.events.get(0).getData());
+		assertEquals("{\"n\":\"2\"}", subscriber.events.get(1).getData());
+	}
+
+	@Test
+	public void testOverflowSignalsAnErrorByDefault() {
+		new ChannelPublisher(channel, new PublisherOptions().setBufferSize(2)).subscribe(subscriber);
+		publish("a", 1);
+		publish("a", 2);
+		assertNull(subscriber.error);
+
+		publish("a", 3);
+		assertTrue(subscriber.error instanceof IllegalStateException);
+
+		subscriber.subscription.request(10);
+		publish("a", 4);
+		assertEquals(0, subscriber.events.size());
+	}
+
+	@Test
+	public void testRequestingANonPositiveNumberSignalsAnError() {
+		new ChannelPublisher(channel).subscribe(subscriber);
+		subscriber.subscription.request(0);
+
+		assertTrue(subscriber.error instanceof IllegalArgumentException);
+	}
+
+	@Test
+	public void testCancelStopsDelivery() {
+		new ChannelPublisher(channel).subscribe(subscriber);
+		subscriber.subscription.request(10);
+		publish("a", 1);
+		subscriber.subscription.cancel();
+		publish("a", 2);
+
+		assertEquals(1, subscriber.events.size());
+		assertFalse(subscriber.completed);
+	}
+
+	@Test
+	public void testUnsubscribingCompletesOnceTheBufferedEventsAreDelivered() {
+		new ChannelPublisher(channel).subscribe(subscriber);
+		publish("a", 1);
+		channel.updateState(ChannelState.UNSUBSCRIBED);
+		assertFalse(subscriber.completed);
+
+		subscriber.subscription.request(1);
+		assertEquals(1, subscriber.events.size());
+		assertTrue(subscriber.completed);
+	}
+
+	@Test
+	public void testSubscribingToAnUnsubscribedChannelCompletesImmediately() {
+		channel.updateState(ChannelState.UNSUBSCRIBED);
+		new ChannelPublisher(channel).subscribe(subscriber);
+
+		assertTrue(subscriber.completed);
+	}
+
+	@Test
+	public void testRequestingFromOnNextDoesNotRecurse() {
+		RecordingSubscriber oneAtATime = new RecordingSubscriber() {
+			private int depth;
+
+			@Override
+			public void onNext(Event event) {
+				depth++;
+				maxDepth = Math.max(maxDepth, depth);
+				super.onNext(event);
+				subscription.request(1);
+				depth--;
+			}
+		};
+		new ChannelPublisher(channel).subscribe(oneAtATime);
+		for (int i = 1; i <= 10; i++) {
+			publish("a", i);
+		}
+		oneAtATime.subscription.request(1);
+
+		assertEquals(10, oneAtATime.events.size());
+		assertEquals(1, oneAtATime.maxDepth);
+	}
+
+	@Test(expected = NullPointerException.class)
+	public void testSubscribeWithNullSubscriberThrowsException() {
+		new ChannelPublisher(channel).subscribe(null);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testConstructWithChannelNotFromPusherThrowsException() {
+		new ChannelPublisher(mock(Channel.class));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSetEventNamesWithInternalEventThrowsException() {
+		new PublisherOptions().setEventNames("pusher_internal:subscription_succeeded");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSetBufferSizeBelowOneThrowsException() {
+		new PublisherOptions().setBufferSize(0);
+	}
+
+	private void publish(String eventName, int n) {
+		channel.onMessage(eventName, "{\"event\":\"" + eventName + "\",\"data\":{\"n\":\"" + n + "\"}}");
+	}
+
+	private static class RecordingSubscriber implements Subscriber<Event> {
+
+		final List<Event> events = new ArrayList<Event>();
+		Subscription subscription;
+		Throwable error;
+		boolean completed;
+		int maxDepth;
+
+		@Override
+		public void onSubscribe(Subscription subscription) {
+			this.subscription = subscription;
+		}
+
+		@Override
+		public void onNext(Event event) {
+			events.add(event);
+		}
+
+		@Override
+		public void onError(Throwable error) {
+			this.error = error;
+		}
+
+		@Override
+		public void onComplete() {
+			completed = true;
+		}
+	}
+}
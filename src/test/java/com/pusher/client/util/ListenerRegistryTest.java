@@ -0,0 +1,90 @@
+package com.pusher.client.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ListenerRegistryTest {
+
+    private ListenerRegistry<String, Object> registry;
+    private final Object listener1 = new Object();
+    private final Object listener2 = new Object();
+
+    @Before
+    public void setUp() {
+	registry = new ListenerRegistry<String, Object>(Object.class);
+    }
+
+    @Test
+    public void testGetForUnknownKeyReturnsEmptyArray() {
+	assertEquals(0, registry.get("event").length);
+	assertEquals(0, registry.getAll().length);
+	assertTrue(registry.isEmpty());
+    }
+
+    @Test
+    public void testAddedListenersAreReturnedInBindOrder() {
+	registry.add("event", listener1);
+	registry.add("event", listener2);
+
+	Object[] listeners = registry.get("event");
+	assertEquals(2, listeners.length);
+	assertSame(listener1, listeners[0]);
+	assertSame(listener2, listeners[1]);
+    }
+
+    @Test
+    public void testAddingTheSameListenerTwiceIsIgnored() {
+	assertTrue(registry.add("event", listener1));
+	assertFalse(registry.add("event", listener1));
+	assertEquals(1, registry.get("event").length);
+    }
+
+    @Test
+    public void testRemoveReturnsFalseWhenListenerIsNotRegistered() {
+	registry.add("event", listener1);
+	assertFalse(registry.remove("event", listener2));
+	assertFalse(registry.remove("other-event", listener1));
+    }
+
+    @Test
+    public void testRemovingTheLastListenerForAKeyEmptiesTheRegistry() {
+	registry.add("event", listener1);
+	assertTrue(registry.remove("event", listener1));
+
+	assertEquals(0, registry.get("event").length);
+	assertTrue(registry.isEmpty());
+    }
+
+    @Test
+    public void testSnapshotIsNotAffectedBySubsequentChanges() {
+	registry.add("event", listener1);
+	Object[] snapshot = registry.get("event");
+
+	registry.add("event", listener2);
+	registry.remove("event", listener1);
+
+	assertEquals(1, snapshot.length);
+	assertSame(listener1, snapshot[0]);
+    }
+
+    @Test
+    public void testGetAllReturnsEachListenerOnceAcrossKeys() {
+	registry.add("event1", listener1);
+	registry.add("event2", listener1);
+	registry.add("event2", listener2);
+
+	assertEquals(2, registry.getAll().length);
+
+	registry.remove("event1", listener1);
+	assertEquals(2, registry.getAll().length);
+
+	registry.remove("event2", listener1);
+	assertEquals(1, registry.getAll().length);
+	assertSame(listener2, registry.getAll()[0]);
+    }
+}
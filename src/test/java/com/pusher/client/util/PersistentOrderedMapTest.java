@@ -0,0 +1,76 @@
+package com.pusher.client.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class PersistentOrderedMapTest {
+
+    @Test
+    public void testIteratesInInsertionOrder() {
+	PersistentOrderedMap<String, Integer> map = PersistentOrderedMap.<String, Integer>empty().put("c", 1).put("a", 2).put("b", 3);
+
+	assertEquals("[c, a, b]", keysOf(map).toString());
+    }
+
+    @Test
+    public void testReplacingAValueKeepsTheKeysPlace() {
+	PersistentOrderedMap<String, Integer> map = PersistentOrderedMap.<String, Integer>empty().put("a", 1).put("b", 2).put("a", 3);
+
+	assertEquals("[a, b]", keysOf(map).toString());
+	assertEquals(Integer.valueOf(3), map.get("a"));
+	assertEquals(2, map.size());
+    }
+
+    @Test
+    public void testChangesDoNotAffectEarlierVersions() {
+	PersistentOrderedMap<String, Integer> before = PersistentOrderedMap.<String, Integer>empty().put("a", 1).put("b", 2);
+
+	PersistentOrderedMap<String, Integer> after = before.remove("a").put("c", 3);
+
+	assertEquals("[a, b]", keysOf(before).toString());
+	assertEquals("[b, c]", keysOf(after).toString());
+	assertFalse(after.containsKey("a"));
+    }
+
+    @Test
+    public void testRemovingAnAbsentKeyReturnsTheSameMap() {
+	PersistentOrderedMap<String, Integer> map = PersistentOrderedMap.<String, Integer>empty().put("a", 1);
+
+	assertSame(map, map.remove("b"));
+	assertNull(map.get("b"));
+    }
+
+    @Test
+    public void testManyChangesKeepTheOrderOfTheRemainingKeys() {
+	PersistentOrderedMap<String, Integer> map = PersistentOrderedMap.empty();
+	for (int i = 0; i < 1000; i++) {
+	    map = map.put("key" + i, i);
+	}
+	for (int i = 0; i < 1000; i += 2) {
+	    map = map.remove("key" + i);
+	}
+
+	List<String> keys = keysOf(map);
+	assertEquals(500, map.size());
+	assertEquals(500, keys.size());
+	for (int i = 0; i < 500; i++) {
+	    assertEquals("key" + (i * 2 + 1), keys.get(i));
+	}
+    }
+
+    private static List<String> keysOf(PersistentOrderedMap<String, Integer> map) {
+	List<String> keys = new ArrayList<String>();
+	for (Map.Entry<String, Integer> entry : map) {
+	    keys.add(entry.getKey());
+	}
+	return keys;
+    }
+}
@@ -0,0 +1,152 @@
+package com.pusher.client.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SerialExecutorTest {
+
+    private ExecutorService pool;
+
+    @Before
+    public void setUp() {
+	pool = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+	pool.shutdownNow();
+    }
+
+    @Test
+    public void testTasksRunInOrderWithoutOverlapping() throws InterruptedException {
+	SerialExecutor executor = new SerialExecutor(pool);
+	final List<Integer> order = new ArrayList<Integer>();
+	final AtomicInteger running = new AtomicInteger();
+	final AtomicBoolean overlapped = new AtomicBoolean();
+	final CountDownLatch done = new CountDownLatch(1000);
+
+	for (int i = 0; i < 1000; i++) {
+	    final int n = i;
+	    executor.execute(new Runnable() {
+		@Override
+		public void run() {
+		    if (running.incrementAndGet() > 1) {
+			overlapped.set(true);
+		    }
+		    order.add(n);
+		    running.decrementAndGet();
+		    done.countDown();
+		}
+	    });
+	}
+
+	assertTrue(done.await(10, TimeUnit.SECONDS));
+	assertFalse(overlapped.get());
+	for (int i = 0; i < 1000; i++) {
+	    assertEquals(Integer.valueOf(i), order.get(i));
+	}
+    }
+
+    @Test
+    public void testSeparateSerialExecutorsRunInParallel() throws InterruptedException {
+	final CountDownLatch bothStarted = new CountDownLatch(2);
+	final CountDownLatch done = new CountDownLatch(2);
+	Runnable meet = new Runnable() {
+	    @Override
+	    public void run() {
+		bothStarted.countDown();
+		try {
+		    if (bothStarted.await(10, TimeUnit.SECONDS)) {
+			done.countDown();
+		    }
+		} catch (InterruptedException e) {
+		    // the test fails on the count below
+		}
+	    }
+	};
+
+	new SerialExecutor(pool).execute(meet);
+	new SerialExecutor(pool).execute(meet);
+
+	assertTrue(done.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testAFailingTaskDoesNotStopLaterTasks() {
+	SerialExecutor executor = new SerialExecutor(new InstantExecutor());
+	final AtomicBoolean ran = new AtomicBoolean();
+	try {
+	    executor.execute(new Runnable() {
+		@Override
+		public void run() {
+		    throw new IllegalStateException();
+		}
+	    });
+	} catch (IllegalStateException e) {
+	    // expected, as the task runs on this thread
+	}
+	executor.execute(new Runnable() {
+	    @Override
+	    public void run() {
+		ran.set(true);
+	    }
+	});
+
+	assertTrue(ran.get());
+    }
+
+    @Test
+    public void testARejectedDrainDoesNotBlockLaterTasks() {
+	final AtomicBoolean reject = new AtomicBoolean(true);
+	final AtomicBoolean ran = new AtomicBoolean();
+	SerialExecutor executor = new SerialExecutor(new Executor() {
+	    @Override
+	    public void execute(Runnable command) {
+		if (reject.get()) {
+		    throw new RejectedExecutionException();
+		}
+		command.run();
+	    }
+	});
+
+	try {
+	    executor.execute(new Runnable() {
+		@Override
+		public void run() {
+		}
+	    });
+	} catch (RejectedExecutionException e) {
+	    // expected
+	}
+	reject.set(false);
+	executor.execute(new Runnable() {
+	    @Override
+	    public void run() {
+		ran.set(true);
+	    }
+	});
+
+	assertTrue(ran.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructWithNullExecutorThrowsException() {
+	new SerialExecutor(null);
+    }
+}